@@ -0,0 +1,148 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+/**
+ * Compares two JMH JSON reports, ex: of a baseline and of a change, and prints the relative
+ * difference of each benchmark score. Exits with a non-zero status if any benchmark regressed by
+ * more than the given threshold, so that it can be used as a CI gate.
+ *
+ * <p>Usage: {@code BenchmarkReportComparator <baseline.json> <current.json> [threshold-percent]}
+ */
+@RequiredArgsConstructor
+public final class BenchmarkReportComparator {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final double DEFAULT_THRESHOLD_PERCENT = 10.0;
+  private static final String THROUGHPUT_MODE = "thrpt";
+
+  private final double thresholdPercent;
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println(
+          "Usage: BenchmarkReportComparator <baseline.json> <current.json> [threshold-percent]");
+      System.exit(2);
+    }
+
+    final double threshold =
+        args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+    final int regressions =
+        new BenchmarkReportComparator(threshold)
+            .compare(readReport(new File(args[0])), readReport(new File(args[1])));
+
+    if (regressions > 0) {
+      System.err.println(
+          String.format("%d benchmark(s) regressed by more than %.1f%%", regressions, threshold));
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Prints the comparison of the current results against the baseline results.
+   *
+   * @return the number of benchmarks that regressed by more than the threshold.
+   */
+  int compare(
+      @NonNull final Map<String, Result> baseline, @NonNull final Map<String, Result> current) {
+    int regressions = 0;
+
+    System.out.println(
+        String.format(
+            "%-100s %14s %14s %9s %s", "Benchmark", "Baseline", "Current", "Change", "Unit"));
+    for (Map.Entry<String, Result> entry : current.entrySet()) {
+      final Result result = entry.getValue();
+      final Result baselineResult = baseline.get(entry.getKey());
+
+      if (baselineResult == null) {
+        System.out.println(
+            String.format(
+                "%-100s %14s %14.3f %9s %s",
+                entry.getKey(), "-", result.getScore(), "new", result.getUnit()));
+        continue;
+      }
+
+      final double change = getImprovementPercent(baselineResult, result);
+      final boolean regressed = change < -thresholdPercent;
+      if (regressed) {
+        regressions++;
+      }
+
+      System.out.println(
+          String.format(
+              "%-100s %14.3f %14.3f %+8.1f%% %s%s",
+              entry.getKey(),
+              baselineResult.getScore(),
+              result.getScore(),
+              change,
+              result.getUnit(),
+              regressed ? " REGRESSION" : ""));
+    }
+
+    return regressions;
+  }
+
+  /**
+   * @return the relative improvement of the current score over the baseline, in percent, where a
+   *     negative value is a regression. Higher is better for throughput, lower for all other modes.
+   */
+  static double getImprovementPercent(final Result baseline, final Result current) {
+    if (baseline.getScore() == 0.0) {
+      return 0.0;
+    }
+
+    final double change = (current.getScore() - baseline.getScore()) / baseline.getScore() * 100;
+    return THROUGHPUT_MODE.equals(current.getMode()) ? change : -change;
+  }
+
+  /** @return the results of a JMH JSON report, keyed by benchmark name and parameters. */
+  static Map<String, Result> readReport(@NonNull final File file) throws IOException {
+    final Map<String, Result> results = new LinkedHashMap<>();
+
+    for (JsonNode benchmark : OBJECT_MAPPER.readTree(file)) {
+      final JsonNode metric = benchmark.get("primaryMetric");
+      results.put(
+          getKey(benchmark),
+          new Result(
+              benchmark.get("mode").asText(),
+              metric.get("score").asDouble(),
+              metric.get("scoreUnit").asText()));
+    }
+
+    return results;
+  }
+
+  private static String getKey(final JsonNode benchmark) {
+    final StringBuilder key = new StringBuilder(benchmark.get("benchmark").asText());
+    final JsonNode params = benchmark.get("params");
+
+    if (params != null) {
+      final Map<String, String> sortedParams = new TreeMap<>();
+      params
+          .fields()
+          .forEachRemaining(field -> sortedParams.put(field.getKey(), field.getValue().asText()));
+      sortedParams.forEach((name, value) -> key.append(':').append(name).append('=').append(value));
+    }
+
+    return key.toString();
+  }
+
+  @Value
+  static class Result {
+    String mode;
+    double score;
+    String unit;
+  }
+}
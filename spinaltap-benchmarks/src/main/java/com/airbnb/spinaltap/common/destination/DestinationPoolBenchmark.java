@@ -0,0 +1,87 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.common.destination;
+
+import com.airbnb.spinaltap.Mutation;
+import com.airbnb.spinaltap.mysql.binlog_connector.SyntheticBinlogGenerator;
+import com.airbnb.spinaltap.mysql.mutation.MysqlKeyProvider;
+import com.airbnb.spinaltap.mysql.mutation.MysqlMutation;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the partitioning of a batch of mutations across the {@link Destination}s of a {@link
+ * DestinationPool}. Destinations discard the mutations, so only the routing cost is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DestinationPoolBenchmark {
+  private static final int BATCH_SIZE = 100;
+
+  @Param({"1", "4", "16"})
+  private int poolSize;
+
+  private DestinationPool destinationPool;
+  private List<MysqlMutation> mutations;
+
+  @Setup
+  public void setup() {
+    final List<Destination> destinations = new ArrayList<>(poolSize);
+    for (int i = 0; i < poolSize; i++) {
+      destinations.add(new NoopDestination());
+    }
+
+    destinationPool = new DestinationPool(MysqlKeyProvider.INSTANCE, destinations);
+    mutations =
+        new SyntheticBinlogGenerator(0L)
+            .createMutations(
+                SyntheticBinlogGenerator.createTable(1L, "benchmark", 20),
+                Mutation.Type.INSERT,
+                BATCH_SIZE);
+  }
+
+  @Benchmark
+  public void send() {
+    destinationPool.send(mutations);
+  }
+
+  private static final class NoopDestination extends ListenableDestination {
+    @Override
+    public Mutation<?> getLastPublishedMutation() {
+      return null;
+    }
+
+    @Override
+    public void send(final List<? extends Mutation<?>> mutations) {}
+
+    @Override
+    public boolean isStarted() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+
+    @Override
+    public void clear() {}
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.consumer;
+
+import com.airbnb.jitney.event.spinaltap.v1.Mutation;
+import com.airbnb.spinaltap.common.util.Mapper;
+import com.airbnb.spinaltap.mysql.ColumnSerializationUtil;
+import com.airbnb.spinaltap.mysql.binlog_connector.SyntheticBinlogGenerator;
+import com.airbnb.spinaltap.mysql.mutation.mapper.ThriftMutationMapper;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import com.google.common.collect.ImmutableSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the decoding of serialized thrift {@link Mutation}s by a consumer, with a {@link
+ * MutationDecoder} against the pattern of a new {@link TDeserializer} per message and {@link
+ * ColumnSerializationUtil} per column. Either all columns are read, or only a few of them, i.e. the
+ * primary key, a string and an int column.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MutationDecoderBenchmark {
+  private static final String SOURCE_NAME = "benchmark_source";
+  private static final int MUTATION_COUNT = 100;
+  private static final Set<String> PROJECTION = ImmutableSet.of("id", "column_1", "column_2");
+
+  @Param({"5", "20", "100"})
+  private int columnCount;
+
+  private final MutationDecoder decoder = new MutationDecoder();
+  private final MutationDecoder projectedDecoder = new MutationDecoder(PROJECTION);
+
+  private List<byte[]> messages;
+  private int index;
+
+  @Setup
+  public void setup() throws TException {
+    final Table table = SyntheticBinlogGenerator.createTable(1L, "benchmark", columnCount);
+    final Mapper<com.airbnb.spinaltap.Mutation<?>, Mutation> mapper =
+        ThriftMutationMapper.create(SOURCE_NAME);
+    final TSerializer serializer = new TSerializer(new TBinaryProtocol.Factory());
+
+    messages =
+        new SyntheticBinlogGenerator(0L)
+            .createMutations(table, com.airbnb.spinaltap.Mutation.Type.INSERT, MUTATION_COUNT)
+            .stream()
+            .map(mapper::map)
+            .map(
+                mutation -> {
+                  try {
+                    return serializer.serialize(mutation);
+                  } catch (TException ex) {
+                    throw new RuntimeException(ex);
+                  }
+                })
+            .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public void deserializeAllColumns(final Blackhole blackhole) throws TException {
+    final Mutation mutation = new Mutation();
+    new TDeserializer(new TBinaryProtocol.Factory()).deserialize(mutation, nextMessage());
+
+    for (String column : mutation.getEntity().keySet()) {
+      blackhole.consume(ColumnSerializationUtil.deserializeColumn(mutation.getEntity(), column));
+    }
+  }
+
+  @Benchmark
+  public void decodeAllColumns(final Blackhole blackhole) throws TException {
+    final ColumnValues entity = decoder.decode(nextMessage()).getEntity();
+
+    for (String column : entity.getColumnNames()) {
+      blackhole.consume(entity.getValue(column));
+    }
+  }
+
+  @Benchmark
+  public void deserializeProjectedColumns(final Blackhole blackhole) throws TException {
+    final Mutation mutation = new Mutation();
+    new TDeserializer(new TBinaryProtocol.Factory()).deserialize(mutation, nextMessage());
+
+    for (String column : PROJECTION) {
+      blackhole.consume(ColumnSerializationUtil.deserializeColumn(mutation.getEntity(), column));
+    }
+  }
+
+  @Benchmark
+  public void decodeProjectedColumns(final Blackhole blackhole) throws TException {
+    final ColumnValues entity = projectedDecoder.decode(nextMessage()).getEntity();
+
+    blackhole.consume(entity.getLong("id"));
+    blackhole.consume(entity.getString("column_1"));
+    blackhole.consume(entity.getInt("column_2"));
+  }
+
+  private byte[] nextMessage() {
+    final int i = index;
+    index = (i + 1) % messages.size();
+    return messages.get(i);
+  }
+}
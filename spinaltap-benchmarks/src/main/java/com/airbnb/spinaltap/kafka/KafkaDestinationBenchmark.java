@@ -0,0 +1,79 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.kafka;
+
+import com.airbnb.common.metrics.TaggedMetricRegistry;
+import com.airbnb.jitney.event.spinaltap.v1.Mutation;
+import com.airbnb.spinaltap.common.destination.DestinationMetrics;
+import com.airbnb.spinaltap.common.util.Mapper;
+import com.airbnb.spinaltap.mysql.binlog_connector.SyntheticBinlogGenerator;
+import com.airbnb.spinaltap.mysql.mutation.mapper.ThriftMutationMapper;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the transformation of thrift {@link Mutation}s to Kafka {@link ProducerRecord}s, i.e.
+ * the topic and key derivation and the thrift serialization. No records are sent, so no broker is
+ * required.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KafkaDestinationBenchmark {
+  private static final String SOURCE_NAME = "benchmark_source";
+  private static final int MUTATION_COUNT = 100;
+
+  @Param({"5", "20", "100"})
+  private int columnCount;
+
+  private KafkaDestination<Mutation> destination;
+  private List<Mutation> mutations;
+  private int index;
+
+  @Setup
+  public void setup() {
+    final Table table = SyntheticBinlogGenerator.createTable(1L, "benchmark", columnCount);
+    final Mapper<com.airbnb.spinaltap.Mutation<?>, Mutation> mapper =
+        ThriftMutationMapper.create(SOURCE_NAME);
+
+    destination =
+        new KafkaDestination<>(
+            null,
+            new KafkaProducerConfiguration("localhost:9092"),
+            batch -> batch.stream().map(mapper::map).collect(Collectors.toList()),
+            new DestinationMetrics(SOURCE_NAME, "mysql", new TaggedMetricRegistry()),
+            0L);
+    mutations =
+        new SyntheticBinlogGenerator(0L)
+            .createMutations(table, com.airbnb.spinaltap.Mutation.Type.INSERT, MUTATION_COUNT)
+            .stream()
+            .map(mapper::map)
+            .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public ProducerRecord<byte[], byte[]> transform() {
+    final int i = index;
+    index = (i + 1) % mutations.size();
+    return destination.transform(mutations.get(i));
+  }
+}
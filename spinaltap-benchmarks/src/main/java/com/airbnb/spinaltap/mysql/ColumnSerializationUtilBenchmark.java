@@ -0,0 +1,76 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql;
+
+import com.airbnb.spinaltap.mysql.binlog_connector.SyntheticBinlogGenerator;
+import com.airbnb.spinaltap.mysql.mutation.schema.Column;
+import com.airbnb.spinaltap.mysql.mutation.schema.Row;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the serialization and deserialization of a full row with {@link
+ * ColumnSerializationUtil}, for rows of different widths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnSerializationUtilBenchmark {
+  @Param({"5", "20", "100"})
+  private int columnCount;
+
+  private Row row;
+  private Map<String, byte[]> serializedColumns;
+
+  @Setup
+  public void setup() {
+    final Table table = SyntheticBinlogGenerator.createTable(1L, "benchmark", columnCount);
+
+    row =
+        SyntheticBinlogGenerator.toRow(
+            table, new SyntheticBinlogGenerator(0L).createRow(table, 1L));
+    serializedColumns = new HashMap<>();
+    for (Column column : row.getColumns().values()) {
+      serializedColumns.put(
+          column.getMetadata().getName(), ColumnSerializationUtil.serializeColumn(column));
+    }
+  }
+
+  @Benchmark
+  public void serialize(final Blackhole blackhole) {
+    for (Column column : row.getColumns().values()) {
+      blackhole.consume(ColumnSerializationUtil.serializeColumn(column));
+    }
+  }
+
+  @Benchmark
+  public void deserialize(final Blackhole blackhole) {
+    // Entity buffers are consumed when read, so they are wrapped anew as when decoding a mutation
+    final Map<String, ByteBuffer> entity = new HashMap<>();
+    serializedColumns.forEach((column, bytes) -> entity.put(column, ByteBuffer.wrap(bytes)));
+
+    for (String column : serializedColumns.keySet()) {
+      blackhole.consume(ColumnSerializationUtil.deserializeColumn(entity, column));
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link GtidSet} operations performed for every transaction, for GTID sets spanning a
+ * number of servers, i.e. after as many master failovers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GtidSetBenchmark {
+  private static final int INTERVALS_PER_SERVER = 3;
+
+  @Param({"1", "5", "20"})
+  private int serverCount;
+
+  private String gtidSetString;
+  private GtidSet gtidSet;
+  private GtidSet laterGtidSet;
+
+  @Setup
+  public void setup() {
+    gtidSetString = createGtidSetString(0L);
+    gtidSet = new GtidSet(gtidSetString);
+    laterGtidSet = new GtidSet(createGtidSetString(1000L));
+  }
+
+  @Benchmark
+  public GtidSet parse() {
+    return new GtidSet(gtidSetString);
+  }
+
+  @Benchmark
+  public boolean isContainedWithin() {
+    return gtidSet.isContainedWithin(laterGtidSet);
+  }
+
+  @Benchmark
+  public String format() {
+    return gtidSet.toString();
+  }
+
+  private String createGtidSetString(final long offset) {
+    final List<String> servers = new ArrayList<>(serverCount);
+    for (int server = 0; server < serverCount; server++) {
+      final StringBuilder builder = new StringBuilder(new UUID(server, server).toString());
+      long start = 1L;
+      for (int interval = 0; interval < INTERVALS_PER_SERVER; interval++) {
+        final long end = start + 100000L + (interval == INTERVALS_PER_SERVER - 1 ? offset : 0L);
+        builder.append(':').append(start).append('-').append(end);
+        start = end + 10L;
+      }
+      servers.add(builder.toString());
+    }
+    return String.join(",", servers);
+  }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql;
+
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link TableCache} over a fixed set of {@link Table}s, so that benchmarks do not require a
+ * schema store.
+ */
+public class StaticTableCache extends TableCache {
+  private final Map<Long, Table> tables = new HashMap<>();
+
+  public StaticTableCache(final Collection<Table> tables) {
+    super(null, null);
+    tables.forEach(table -> this.tables.put(table.getId(), table));
+  }
+
+  @Override
+  public Table get(final long tableId) {
+    return tables.get(tableId);
+  }
+
+  @Override
+  public boolean contains(final long tableId) {
+    return tables.containsKey(tableId);
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.binlog_connector;
+
+import com.airbnb.spinaltap.Mutation;
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.event.BinlogEvent;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import com.github.shyiko.mysql.binlog.event.Event;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the mapping of binlog client events to {@link BinlogEvent}s, over a stream of
+ * synthetic transactions mixing inserts, updates and deletes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryLogConnectorEventMapperBenchmark {
+  private static final int TRANSACTION_COUNT = 1000;
+  private static final Mutation.Type[] MUTATION_TYPES = {
+    Mutation.Type.INSERT, Mutation.Type.UPDATE, Mutation.Type.DELETE
+  };
+
+  @Param({"1", "10"})
+  private int rowsPerEvent;
+
+  private Event[] events;
+  private BinlogFilePos[] positions;
+  private int index;
+
+  @Setup
+  public void setup() {
+    final SyntheticBinlogGenerator generator = new SyntheticBinlogGenerator(0L);
+    final Table table = SyntheticBinlogGenerator.createTable(1L, "benchmark_table", 20);
+    final List<Event> eventList = new ArrayList<>();
+
+    for (int i = 0; i < TRANSACTION_COUNT; i++) {
+      eventList.addAll(
+          generator.createTransaction(
+              table, MUTATION_TYPES[i % MUTATION_TYPES.length], rowsPerEvent));
+    }
+
+    events = eventList.toArray(new Event[0]);
+    positions = new BinlogFilePos[events.length];
+    for (int i = 0; i < events.length; i++) {
+      positions[i] = generator.nextBinlogFilePos();
+    }
+  }
+
+  @Benchmark
+  public Optional<BinlogEvent> map() {
+    final int i = index;
+    index = (i + 1) % events.length;
+    return BinaryLogConnectorEventMapper.INSTANCE.map(events[i], positions[i]);
+  }
+}
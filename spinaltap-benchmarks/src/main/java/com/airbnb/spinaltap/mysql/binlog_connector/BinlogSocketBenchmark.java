@@ -0,0 +1,237 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.binlog_connector;
+
+import com.airbnb.spinaltap.mysql.config.MysqlConfiguration;
+import com.github.shyiko.mysql.binlog.event.deserialization.ChecksumType;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.google.common.base.Strings;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to stream and deserialize binlog traffic through a socket created by {@link
+ * BinlogSocketFactory}, for each of its settings. Each operation streams the whole traffic once
+ * over loopback, framed as replication packets, so the throughput is the traffic size divided by
+ * the operation time.
+ *
+ * <p>The traffic is read from a binlog file recorded from a server, ex: with {@code mysqlbinlog
+ * --read-from-remote-server --raw}, given with {@code -p binlogFile=<path>} (and {@code -p
+ * checksum=CRC32} if the server writes checksums). Synthetic query and XID events are streamed if
+ * no file is given. Loopback has no bandwidth-delay product, so receive buffer gains on distant
+ * replicas should be confirmed by streaming from such a replica.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinlogSocketBenchmark {
+  private static final int BINLOG_MAGIC_LENGTH = 4;
+  private static final int EVENT_HEADER_LENGTH = 19;
+  private static final int EVENT_LENGTH_OFFSET = 9;
+  private static final byte QUERY_EVENT_TYPE = 2;
+  private static final byte XID_EVENT_TYPE = 16;
+  private static final int MAX_PACKET_LENGTH = 0xFFFFFF;
+  private static final int SYNTHETIC_TRAFFIC_BYTES = 64 * 1024 * 1024;
+  private static final int SYNTHETIC_SQL_LENGTH = 1024;
+  private static final int OK_MARKER = 0x00;
+  private static final int EOF_MARKER = 0xFE;
+
+  @Param({""})
+  private String binlogFile;
+
+  @Param({"NONE"})
+  private String checksum;
+
+  @Param({"0", "4194304"})
+  private int receiveBufferBytes;
+
+  @Param({"0", "65536"})
+  private int inputBufferBytes;
+
+  @Param({"false", "true"})
+  private boolean tcpNoDelay;
+
+  private byte[] traffic;
+  private BinlogSocketFactory socketFactory;
+  private ServerSocket serverSocket;
+  private ExecutorService sender;
+
+  @Setup
+  public void setup() throws IOException {
+    traffic = Strings.isNullOrEmpty(binlogFile) ? createSyntheticTraffic() : readTraffic();
+    System.out.printf("Streaming %d bytes of binlog traffic per operation%n", traffic.length);
+
+    final MysqlConfiguration config = new MysqlConfiguration();
+    config.setSocketReceiveBufferBytes(receiveBufferBytes);
+    config.setSocketInputBufferBytes(inputBufferBytes);
+    config.setTcpNoDelay(tcpNoDelay);
+    socketFactory = new BinlogSocketFactory(config);
+
+    serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    sender = Executors.newSingleThreadExecutor();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    sender.shutdownNow();
+    serverSocket.close();
+  }
+
+  @Benchmark
+  public long stream() throws Exception {
+    final Future<?> sent = sender.submit(this::send);
+    final EventDeserializer deserializer = new EventDeserializer();
+    deserializer.setChecksumType(ChecksumType.valueOf(checksum));
+
+    long eventCount = 0;
+    try (Socket socket = socketFactory.createSocket()) {
+      socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), getPort()));
+      final ByteArrayInputStream inputStream = new ByteArrayInputStream(socket.getInputStream());
+
+      while (true) {
+        final int length = inputStream.readInteger(3);
+        inputStream.skip(1); // Sequence number
+        if (inputStream.read() == EOF_MARKER) {
+          break;
+        }
+
+        deserializer.nextEvent(new ByteArrayInputStream(inputStream.read(length - 1)));
+        eventCount++;
+      }
+    }
+
+    sent.get();
+    return eventCount;
+  }
+
+  private int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  private Void send() throws IOException {
+    try (Socket socket = serverSocket.accept()) {
+      final OutputStream outputStream = socket.getOutputStream();
+      outputStream.write(traffic);
+      outputStream.flush();
+    }
+    return null;
+  }
+
+  /** Frames the events of the recorded binlog file as replication packets. */
+  private byte[] readTraffic() throws IOException {
+    final ByteBuffer binlog =
+        ByteBuffer.wrap(Files.readAllBytes(Paths.get(binlogFile))).order(ByteOrder.LITTLE_ENDIAN);
+    final ByteArrayOutputStream packets = new ByteArrayOutputStream(binlog.capacity());
+
+    int offset = BINLOG_MAGIC_LENGTH;
+    while (offset + EVENT_HEADER_LENGTH <= binlog.limit()) {
+      final int eventLength = binlog.getInt(offset + EVENT_LENGTH_OFFSET);
+      if (eventLength < EVENT_HEADER_LENGTH || offset + eventLength > binlog.limit()) {
+        throw new IllegalArgumentException("Invalid event length at offset " + offset);
+      }
+
+      writePacket(packets, binlog.array(), offset, eventLength);
+      offset += eventLength;
+    }
+
+    writeEofPacket(packets);
+    return packets.toByteArray();
+  }
+
+  /** Creates replication packets of query events, each followed by the XID of its transaction. */
+  private static byte[] createSyntheticTraffic() {
+    final byte[] sql =
+        ("INSERT INTO benchmark_table VALUES ('" + Strings.repeat("x", SYNTHETIC_SQL_LENGTH) + "')")
+            .getBytes(StandardCharsets.UTF_8);
+    final byte[] database = "benchmark_db".getBytes(StandardCharsets.UTF_8);
+    final ByteArrayOutputStream packets = new ByteArrayOutputStream(SYNTHETIC_TRAFFIC_BYTES);
+
+    long xid = 0;
+    while (packets.size() < SYNTHETIC_TRAFFIC_BYTES) {
+      final ByteBuffer query =
+          createEvent(QUERY_EVENT_TYPE, 13 + database.length + 1 + sql.length)
+              .putInt(1) // Thread id
+              .putInt(0) // Execution time
+              .put((byte) database.length)
+              .putShort((short) 0) // Error code
+              .putShort((short) 0) // Status variables length
+              .put(database)
+              .put((byte) 0)
+              .put(sql);
+      writePacket(packets, query.array(), 0, query.capacity());
+
+      final ByteBuffer xidEvent = createEvent(XID_EVENT_TYPE, 8).putLong(xid++);
+      writePacket(packets, xidEvent.array(), 0, xidEvent.capacity());
+    }
+
+    writeEofPacket(packets);
+    return packets.toByteArray();
+  }
+
+  private static ByteBuffer createEvent(final byte type, final int bodyLength) {
+    final int length = EVENT_HEADER_LENGTH + bodyLength;
+    return ByteBuffer.allocate(length)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .putInt((int) (System.currentTimeMillis() / 1000))
+        .put(type)
+        .putInt(1) // Server id
+        .putInt(length)
+        .putInt(0) // Next position
+        .putShort((short) 0); // Flags
+  }
+
+  private static void writePacket(
+      final ByteArrayOutputStream packets, final byte[] event, final int offset, final int length) {
+    if (length + 1 > MAX_PACKET_LENGTH) {
+      throw new IllegalArgumentException("Events split across packets are not supported");
+    }
+
+    writePacketHeader(packets, length + 1);
+    packets.write(OK_MARKER);
+    packets.write(event, offset, length);
+  }
+
+  private static void writeEofPacket(final ByteArrayOutputStream packets) {
+    writePacketHeader(packets, 1);
+    packets.write(EOF_MARKER);
+  }
+
+  private static void writePacketHeader(final ByteArrayOutputStream packets, final int length) {
+    packets.write(length & 0xFF);
+    packets.write((length >>> 8) & 0xFF);
+    packets.write((length >>> 16) & 0xFF);
+    packets.write(0); // Sequence number
+  }
+}
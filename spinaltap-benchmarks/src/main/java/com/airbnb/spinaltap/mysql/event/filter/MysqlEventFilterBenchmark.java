@@ -0,0 +1,95 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.event.filter;
+
+import com.airbnb.spinaltap.Mutation;
+import com.airbnb.spinaltap.common.source.MysqlSourceState;
+import com.airbnb.spinaltap.common.util.Filter;
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.StaticTableCache;
+import com.airbnb.spinaltap.mysql.binlog_connector.BinaryLogConnectorEventMapper;
+import com.airbnb.spinaltap.mysql.binlog_connector.SyntheticBinlogGenerator;
+import com.airbnb.spinaltap.mysql.event.BinlogEvent;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import com.github.shyiko.mysql.binlog.event.Event;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link MysqlEventFilter} chain over a stream of synthetic events, where only half
+ * of the tables are subscribed to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MysqlEventFilterBenchmark {
+  private static final int TRANSACTION_COUNT = 1000;
+
+  @Param({"10", "1000"})
+  private int tableCount;
+
+  private Filter<BinlogEvent> filter;
+  private BinlogEvent[] events;
+  private int index;
+
+  @Setup
+  public void setup() {
+    final SyntheticBinlogGenerator generator = new SyntheticBinlogGenerator(0L);
+    final List<Table> tables = new ArrayList<>(tableCount);
+    final List<Table> subscribedTables = new ArrayList<>();
+    final Set<String> tableNames = new HashSet<>();
+
+    for (int i = 0; i < tableCount; i++) {
+      final Table table = SyntheticBinlogGenerator.createTable(i, "table_" + i, 10);
+      tables.add(table);
+      if (i % 2 == 0) {
+        subscribedTables.add(table);
+        tableNames.add(table.getCanonicalName());
+      }
+    }
+
+    final List<BinlogEvent> eventList = new ArrayList<>();
+    for (int i = 0; i < TRANSACTION_COUNT; i++) {
+      for (Event event :
+          generator.createTransaction(tables.get(i % tableCount), Mutation.Type.INSERT, 1)) {
+        BinaryLogConnectorEventMapper.INSTANCE
+            .map(event, generator.nextBinlogFilePos())
+            .ifPresent(eventList::add);
+      }
+    }
+    events = eventList.toArray(new BinlogEvent[0]);
+
+    filter =
+        MysqlEventFilter.create(
+            new StaticTableCache(subscribedTables),
+            tableNames,
+            new AtomicReference<>(new MysqlSourceState(0L, 0L, 0L, new BinlogFilePos(0L))));
+  }
+
+  @Benchmark
+  public boolean apply() {
+    final int i = index;
+    index = (i + 1) % events.length;
+    return filter.apply(events[i]);
+  }
+}
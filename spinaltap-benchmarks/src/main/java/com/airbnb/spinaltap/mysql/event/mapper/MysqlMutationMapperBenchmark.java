@@ -0,0 +1,114 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.event.mapper;
+
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.DataSource;
+import com.airbnb.spinaltap.mysql.StaticTableCache;
+import com.airbnb.spinaltap.mysql.TableCache;
+import com.airbnb.spinaltap.mysql.Transaction;
+import com.airbnb.spinaltap.mysql.binlog_connector.SyntheticBinlogGenerator;
+import com.airbnb.spinaltap.mysql.event.DeleteEvent;
+import com.airbnb.spinaltap.mysql.event.UpdateEvent;
+import com.airbnb.spinaltap.mysql.event.WriteEvent;
+import com.airbnb.spinaltap.mysql.mutation.MysqlDeleteMutation;
+import com.airbnb.spinaltap.mysql.mutation.MysqlInsertMutation;
+import com.airbnb.spinaltap.mysql.mutation.MysqlMutation;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the mapping of row events to {@link MysqlMutation}s for tables of different widths. Each
+ * operation maps an event of 10 rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MysqlMutationMapperBenchmark {
+  private static final long TABLE_ID = 1L;
+  private static final int ROWS_PER_EVENT = 10;
+
+  @Param({"5", "20", "100"})
+  private int columnCount;
+
+  private InsertMutationMapper insertMapper;
+  private UpdateMutationMapper updateMapper;
+  private DeleteMutationMapper deleteMapper;
+
+  private WriteEvent writeEvent;
+  private UpdateEvent updateEvent;
+  private DeleteEvent deleteEvent;
+
+  @Setup
+  public void setup() {
+    final SyntheticBinlogGenerator generator = new SyntheticBinlogGenerator(0L);
+    final Table table = SyntheticBinlogGenerator.createTable(TABLE_ID, "benchmark", columnCount);
+    final DataSource dataSource = generator.getDataSource();
+    final TableCache tableCache = new StaticTableCache(ImmutableList.of(table));
+    final BinlogFilePos filePos = generator.nextBinlogFilePos();
+    final AtomicReference<Transaction> transaction =
+        new AtomicReference<>(
+            new Transaction(System.currentTimeMillis(), filePos.getPosition(), filePos));
+    final AtomicLong leaderEpoch = new AtomicLong(1L);
+
+    insertMapper =
+        new InsertMutationMapper(dataSource, tableCache, transaction, transaction, leaderEpoch);
+    updateMapper =
+        new UpdateMutationMapper(dataSource, tableCache, transaction, transaction, leaderEpoch);
+    deleteMapper =
+        new DeleteMutationMapper(dataSource, tableCache, transaction, transaction, leaderEpoch);
+
+    final List<Serializable[]> rows = new ArrayList<>(ROWS_PER_EVENT);
+    final List<Map.Entry<Serializable[], Serializable[]>> updatedRows =
+        new ArrayList<>(ROWS_PER_EVENT);
+    for (int i = 0; i < ROWS_PER_EVENT; i++) {
+      rows.add(generator.createRow(table, i));
+      updatedRows.add(
+          Maps.immutableEntry(generator.createRow(table, i), generator.createRow(table, i)));
+    }
+
+    final long timestamp = System.currentTimeMillis();
+    writeEvent = new WriteEvent(TABLE_ID, 1L, timestamp, filePos, rows);
+    updateEvent = new UpdateEvent(TABLE_ID, 1L, timestamp, filePos, updatedRows);
+    deleteEvent = new DeleteEvent(TABLE_ID, 1L, timestamp, filePos, rows);
+  }
+
+  @Benchmark
+  public List<MysqlInsertMutation> insert() {
+    return insertMapper.map(writeEvent);
+  }
+
+  @Benchmark
+  public List<MysqlMutation> update() {
+    return updateMapper.map(updateEvent);
+  }
+
+  @Benchmark
+  public List<MysqlDeleteMutation> delete() {
+    return deleteMapper.map(deleteEvent);
+  }
+}
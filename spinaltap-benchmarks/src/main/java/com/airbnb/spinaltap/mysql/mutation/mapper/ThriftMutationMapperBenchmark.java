@@ -0,0 +1,64 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.mutation.mapper;
+
+import com.airbnb.jitney.event.spinaltap.v1.Mutation;
+import com.airbnb.spinaltap.common.util.Mapper;
+import com.airbnb.spinaltap.mysql.binlog_connector.SyntheticBinlogGenerator;
+import com.airbnb.spinaltap.mysql.mutation.MysqlMutation;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the mapping of {@link MysqlMutation}s to their thrift representation, which includes
+ * the Java serialization of every column value.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThriftMutationMapperBenchmark {
+  private static final int MUTATION_COUNT = 100;
+
+  @Param({"5", "20", "100"})
+  private int columnCount;
+
+  @Param({"INSERT", "UPDATE", "DELETE"})
+  private com.airbnb.spinaltap.Mutation.Type mutationType;
+
+  private Mapper<com.airbnb.spinaltap.Mutation<?>, Mutation> mapper;
+  private List<MysqlMutation> mutations;
+  private int index;
+
+  @Setup
+  public void setup() {
+    final Table table = SyntheticBinlogGenerator.createTable(1L, "benchmark", columnCount);
+
+    mapper = ThriftMutationMapper.create("benchmark_source");
+    mutations =
+        new SyntheticBinlogGenerator(0L).createMutations(table, mutationType, MUTATION_COUNT);
+  }
+
+  @Benchmark
+  public Mutation map() {
+    final int i = index;
+    index = (i + 1) % mutations.size();
+    return mapper.map(mutations.get(i));
+  }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.schema;
+
+import com.airbnb.spinaltap.mysql.binlog_connector.SyntheticBinlogGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the parsing of the DDL statements of a large schema, as done when bootstrapping the
+ * schema store of a source with many tables. Applying the parsed DDL requires a MySQL server, so
+ * only parsing is measured.
+ *
+ * <p>Each iteration parses every statement once with a new {@link MysqlSchemaDatabase}, so the
+ * parsed DDL cache does not hide the parsing cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MysqlSchemaDatabaseBenchmark {
+  private static final int COLUMN_COUNT = 20;
+
+  @Param({"10000"})
+  private int tableCount;
+
+  private List<String> statements;
+  private MysqlSchemaDatabase schemaDatabase;
+
+  @Setup
+  public void setup() {
+    statements = new ArrayList<>(tableCount);
+    for (int i = 0; i < tableCount; i++) {
+      statements.add(
+          SyntheticBinlogGenerator.createTableDDL(
+              SyntheticBinlogGenerator.createTable(i, "table_" + i, COLUMN_COUNT)));
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    schemaDatabase = new MysqlSchemaDatabase("benchmark_source", null, null);
+  }
+
+  @Benchmark
+  public void parseDDL(final Blackhole blackhole) {
+    for (String statement : statements) {
+      blackhole.consume(
+          schemaDatabase.parseDDL(statement, SyntheticBinlogGenerator.DATABASE).getTargets());
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.common.metrics;
+
+import com.codahale.metrics.Gauge;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Recorder;
+
+/**
+ * A {@link Histogram} backed by an HdrHistogram {@link Recorder}, which records values wait-free
+ * and with a fixed relative precision regardless of their distribution. This makes it suitable
+ * for latencies recorded on the hot path, where the reservoir sampling of Dropwizard histograms
+ * tends to hide outliers.
+ *
+ * <p>Values are exposed as gauges of percentiles over the last reporting interval, registered in
+ * the {@link TaggedMetricRegistry} under the histogram name suffixed with the percentile.
+ */
+public class HdrHistogram implements Histogram {
+  private static final int SIGNIFICANT_VALUE_DIGITS = 2;
+  private static final long SNAPSHOT_REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final Recorder recorder = new Recorder(SIGNIFICANT_VALUE_DIGITS);
+
+  private org.HdrHistogram.Histogram intervalHistogram;
+  private long lastRefreshNanos = System.nanoTime();
+
+  /**
+   * Adds a recorded value.
+   *
+   * @param value the value, which must be non-negative
+   */
+  @Override
+  public void update(long value) {
+    recorder.recordValue(Math.max(0L, value));
+  }
+
+  void register(TaggedMetricRegistry registry, String name, String... tags) {
+    registry.register(name + ".p50", percentileGauge(50.0), tags);
+    registry.register(name + ".p99", percentileGauge(99.0), tags);
+    registry.register(name + ".p999", percentileGauge(99.9), tags);
+    registry.register(name + ".max", (Gauge<Long>) () -> getSnapshot().getMaxValue(), tags);
+    registry.register(name + ".count", (Gauge<Long>) () -> getSnapshot().getTotalCount(), tags);
+  }
+
+  private Gauge<Long> percentileGauge(final double percentile) {
+    return () -> getSnapshot().getValueAtPercentile(percentile);
+  }
+
+  /**
+   * @return the histogram of values recorded over the last interval. Gauges of the same reporting
+   *     run share the same snapshot, as the snapshot is only refreshed once per second.
+   */
+  private synchronized org.HdrHistogram.Histogram getSnapshot() {
+    final long now = System.nanoTime();
+    if (intervalHistogram == null || now - lastRefreshNanos >= SNAPSHOT_REFRESH_INTERVAL_NANOS) {
+      intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+      lastRefreshNanos = now;
+    }
+    return intervalHistogram;
+  }
+}
@@ -7,7 +7,12 @@ package com.airbnb.common.metrics;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.MetricSet;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The TaggedMetricRegistry is a proxy for a MetricRegistry that enables tags for Metrics. It relies
@@ -29,6 +34,7 @@ public class TaggedMetricRegistry {
       new TaggedMetricRegistry();
 
   private final MetricRegistry registry;
+  private final ConcurrentMap<String, HdrHistogram> hdrHistograms = new ConcurrentHashMap<>();
 
   public TaggedMetricRegistry() {
     this(new MetricRegistry());
@@ -70,6 +76,47 @@ public class TaggedMetricRegistry {
     return registry.remove(taggedName(name, tags));
   }
 
+  /**
+   * Removes the metrics with one of the given names, or a name derived from one of them (ex: the
+   * percentile gauges of a {@link HdrHistogram}), tagged with (at least) all the given tags.
+   *
+   * @param names the metric names, without tags
+   * @param tags the tags from a key:value format
+   */
+  public void removeTagged(Set<String> names, Map<String, String> tags) {
+    final String[] tagsArray = getTagsAsArray(tags);
+    if (tagsArray == null) {
+      return;
+    }
+    registry.removeMatching((name, metric) -> hasName(name, names) && hasTags(name, tagsArray));
+    hdrHistograms.keySet().removeIf(name -> hasName(name, names) && hasTags(name, tagsArray));
+  }
+
+  /** Whether the given tagged metric name is one of the given names, or derived from one. */
+  static boolean hasName(String taggedName, Set<String> names) {
+    final int end = taggedName.indexOf('[');
+    String name = end < 0 ? taggedName : taggedName.substring(0, end);
+    while (!names.contains(name)) {
+      final int dot = name.lastIndexOf('.');
+      if (dot < 0) {
+        return false;
+      }
+      name = name.substring(0, dot);
+    }
+    return true;
+  }
+
+  /** Whether the given tagged metric name has all the given tags. */
+  static boolean hasTags(String taggedName, String... tags) {
+    final int start = taggedName.indexOf('[');
+    if (start < 0 || !taggedName.endsWith("]")) {
+      return false;
+    }
+    final List<String> nameTags =
+        Arrays.asList(taggedName.substring(start + 1, taggedName.length() - 1).split(","));
+    return nameTags.containsAll(Arrays.asList(tags));
+  }
+
   /**
    * Build the tagged metric for Datadog from a map for tags in a key:value format.
    *
@@ -161,6 +208,21 @@ public class TaggedMetricRegistry {
         registry.histogram(taggedName(name, tags)), registry.histogram(name + UNTAGGED_SUFFIX));
   }
 
+  /**
+   * Returns the {@link HdrHistogram} for the given name and tags, registering its percentile
+   * gauges if it does not exist yet.
+   */
+  public Histogram hdrHistogram(String name, Map<String, String> tags) {
+    final String[] tagsArray = getTagsAsArray(tags);
+    return hdrHistograms.computeIfAbsent(
+        taggedName(name, tagsArray),
+        key -> {
+          final HdrHistogram histogram = new HdrHistogram();
+          histogram.register(this, name, tagsArray);
+          return histogram;
+        });
+  }
+
   public MetricRegistry getMetricRegistry() {
     return registry;
   }
@@ -14,40 +14,95 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-@RequiredArgsConstructor
 public abstract class AbstractDestination<T> extends ListenableDestination {
   @NonNull private final BatchMapper<Mutation<?>, T> mapper;
   @NonNull private final DestinationMetrics metrics;
   private final long delaySendMs;
 
+  /**
+   * The {@link DelayStage} holding batches until their last mutation is {@code delaySendMs} old,
+   * or {@code null} if sends are not delayed.
+   */
+  private final DelayStage delayStage;
+
   private final AtomicBoolean started = new AtomicBoolean(false);
   private final AtomicReference<Mutation<?>> lastPublishedMutation = new AtomicReference<>();
+  private final AtomicReference<Exception> delayedSendFailure = new AtomicReference<>();
+
+  public AbstractDestination(
+      @NonNull final BatchMapper<Mutation<?>, T> mapper,
+      @NonNull final DestinationMetrics metrics,
+      final long delaySendMs) {
+    this.mapper = mapper;
+    this.metrics = metrics;
+    this.delaySendMs = delaySendMs;
+    this.delayStage =
+        delaySendMs > 0
+            ? new DelayStage(
+                getClass().getSimpleName(), metrics, this::publishMutations, this::onDelayError)
+            : null;
+  }
 
   @Override
   public Mutation<?> getLastPublishedMutation() {
     return lastPublishedMutation.get();
   }
 
-  @SuppressWarnings("unchecked")
+  /**
+   * Publishes a list of {@link Mutation}s, or adds them to the {@link DelayStage} to be published
+   * once their last mutation is {@code delaySendMs} old. A failure to publish delayed mutations is
+   * notified to the listeners, and fails the following sends until the destination is reopened.
+   */
   @Override
   public void send(@NonNull final List<? extends Mutation<?>> mutations) {
     if (mutations.isEmpty()) {
       return;
     }
 
+    if (delayStage == null) {
+      publishMutations(mutations);
+      return;
+    }
+
+    final Exception failure = delayedSendFailure.get();
+    if (failure != null) {
+      throw new DestinationException("Failed to send delayed mutations", failure);
+    }
+
     try {
-      final Stopwatch stopwatch = Stopwatch.createStarted();
+      final Mutation<?> latestMutation = mutations.get(mutations.size() - 1);
+      delayStage.add(mutations, latestMutation.getMetadata().getTimestamp() + delaySendMs);
+
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new DestinationException("Interrupted while delaying mutations", ex);
+    } catch (Exception ex) {
+      log.error("Failed to delay {} mutations.", mutations.size(), ex);
+      metrics.sendFailed(ex);
+
+      throw new DestinationException("Failed to delay mutations", ex);
+    }
+  }
+
+  private void onDelayError(final Exception ex) {
+    delayedSendFailure.set(ex);
+    notifyError(ex);
+  }
 
-      // introduce delay before mapper apply
+  @SuppressWarnings("unchecked")
+  private void publishMutations(final List<? extends Mutation<?>> mutations) {
+    try {
+      final Stopwatch stopwatch = Stopwatch.createStarted();
       final Mutation<?> latestMutation = mutations.get(mutations.size() - 1);
-      delay(latestMutation);
 
       final List<T> messages = mapper.apply(mutations.stream().collect(Collectors.toList()));
+      markStage(mutations, Mutation.Stage.SERIALIZED);
+
       publish(messages);
+      markStage(mutations, Mutation.Stage.ACKED);
 
       lastPublishedMutation.set(latestMutation);
 
@@ -56,6 +111,7 @@ public abstract class AbstractDestination<T> extends ListenableDestination {
 
       metrics.publishTime(time);
       metrics.publishSucceeded(mutations);
+      metrics.stageLatencies(mutations);
 
       log(mutations);
       notifySend(mutations);
@@ -68,23 +124,18 @@ public abstract class AbstractDestination<T> extends ListenableDestination {
     }
   }
 
-  /**
-   * Induces a delay given the configured delay time.
-   *
-   * @param mutation The {@link Mutation} for which to consider the delay
-   * @throws InterruptedException
-   */
-  private void delay(final Mutation<?> mutation) throws InterruptedException {
-    final long delayMs = System.currentTimeMillis() - mutation.getMetadata().getTimestamp();
-    if (delayMs >= delaySendMs) {
-      return;
-    }
+  public abstract void publish(List<T> messages) throws Exception;
 
-    Thread.sleep(delaySendMs - delayMs);
+  static void markStage(final List<? extends Mutation<?>> mutations, final Mutation.Stage stage) {
+    final long nanoTime = System.nanoTime();
+    for (Mutation<?> mutation : mutations) {
+      final Mutation.Metadata metadata = mutation.getMetadata();
+      if (metadata != null) {
+        metadata.markStage(stage, nanoTime);
+      }
+    }
   }
 
-  public abstract void publish(List<T> messages) throws Exception;
-
   private void log(final List<? extends Mutation<?>> mutations) {
     mutations.forEach(
         mutation ->
@@ -100,6 +151,11 @@ public abstract class AbstractDestination<T> extends ListenableDestination {
   @Override
   public void open() {
     lastPublishedMutation.set(null);
+    delayedSendFailure.set(null);
+    if (delayStage != null) {
+      delayStage.start();
+    }
+
     super.open();
 
     started.set(true);
@@ -108,6 +164,9 @@ public abstract class AbstractDestination<T> extends ListenableDestination {
   @Override
   public void close() {
     started.set(false);
+    if (delayStage != null) {
+      delayStage.stop();
+    }
   }
 
   @Override
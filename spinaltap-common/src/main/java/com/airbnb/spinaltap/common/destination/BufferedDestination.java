@@ -80,6 +80,7 @@ public final class BufferedDestination extends ListenableDestination {
       }
 
       mutationBuffer.put(mutations);
+      AbstractDestination.markStage(mutations, Mutation.Stage.ENQUEUED);
 
       metrics.bufferSize(mutationBuffer.size(), metadata);
 
@@ -112,7 +113,11 @@ public final class BufferedDestination extends ListenableDestination {
     mutationBatches.add(mutationBuffer.take());
     mutationBuffer.drainTo(mutationBatches);
 
-    destination.send(mutationBatches.stream().flatMap(List::stream).collect(Collectors.toList()));
+    final List<? extends Mutation<?>> mutations =
+        mutationBatches.stream().flatMap(List::stream).collect(Collectors.toList());
+    AbstractDestination.markStage(mutations, Mutation.Stage.DEQUEUED);
+
+    destination.send(mutations);
   }
 
   private void execute() {
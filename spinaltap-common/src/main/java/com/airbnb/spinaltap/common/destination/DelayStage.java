@@ -0,0 +1,204 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.common.destination;
+
+import com.airbnb.spinaltap.Mutation;
+import com.airbnb.spinaltap.common.util.ConcurrencyUtil;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds batches of {@link Mutation}s until they are due, and releases them in order on a single
+ * timer thread, instead of blocking the sending thread for each batch.
+ *
+ * <p>Batches are kept in a hashed timer wheel: each bucket holds the batches due in a tick, and
+ * the timer thread visits one bucket per tick. Due times are never earlier than the due time of
+ * the previous batch, so batches expire in the order they were added. Adding a batch blocks only
+ * when the stage is at capacity, i.e. when publishing falls behind.
+ */
+@Slf4j
+final class DelayStage {
+  private static final long TICK_MS = 10L;
+  private static final int WHEEL_SIZE = 512;
+  private static final int CAPACITY = 1000;
+
+  @NonNull private final String name;
+  @NonNull private final DestinationMetrics metrics;
+
+  /** Publishes a released batch on the timer thread. */
+  @NonNull private final Consumer<List<? extends Mutation<?>>> publisher;
+
+  /** Handles a failure to publish a released batch, after which the stage stops. */
+  @NonNull private final Consumer<Exception> errorHandler;
+
+  private final List<Deque<Entry>> wheel = new ArrayList<>(WHEEL_SIZE);
+  private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+  private final Semaphore permits = new Semaphore(CAPACITY);
+  private final AtomicInteger size = new AtomicInteger();
+
+  private volatile boolean running = false;
+
+  /** Incremented on each start, so a timer thread left over from a previous start exits. */
+  private volatile int generation = 0;
+
+  private long startTimeMs;
+  private long lastDueTimeMs;
+  private ExecutorService timer;
+
+  DelayStage(
+      @NonNull final String name,
+      @NonNull final DestinationMetrics metrics,
+      @NonNull final Consumer<List<? extends Mutation<?>>> publisher,
+      @NonNull final Consumer<Exception> errorHandler) {
+    this.name = name;
+    this.metrics = metrics;
+    this.publisher = publisher;
+    this.errorHandler = errorHandler;
+
+    for (int i = 0; i < WHEEL_SIZE; i++) {
+      wheel.add(new ArrayDeque<>());
+    }
+  }
+
+  /**
+   * Adds a batch to be released once due, or right after the previously added batch if that is
+   * later. This action blocks if the stage is at capacity.
+   *
+   * @param mutations the mutations to delay
+   * @param dueTimeMs the time in milliseconds at which the batch is due
+   */
+  synchronized void add(@NonNull final List<? extends Mutation<?>> mutations, final long dueTimeMs)
+      throws InterruptedException {
+    while (!permits.tryAcquire(TICK_MS, TimeUnit.MILLISECONDS)) {
+      Preconditions.checkState(running, "Delay stage is not running.");
+    }
+    Preconditions.checkState(running, "Delay stage is not running.");
+
+    lastDueTimeMs = Math.max(lastDueTimeMs, dueTimeMs);
+    pending.add(new Entry(mutations, lastDueTimeMs, System.currentTimeMillis()));
+    metrics.delayQueueSize(size.incrementAndGet());
+  }
+
+  synchronized void start() {
+    if (running) {
+      return;
+    }
+
+    wheel.forEach(Deque::clear);
+    pending.clear();
+    permits.drainPermits();
+    permits.release(CAPACITY);
+    size.set(0);
+    metrics.delayQueueSize(0);
+
+    startTimeMs = System.currentTimeMillis();
+    lastDueTimeMs = startTimeMs;
+    running = true;
+
+    final int currentGeneration = ++generation;
+    timer =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat(name + "-delay-stage-timer-%d").build());
+    timer.execute(() -> run(currentGeneration));
+  }
+
+  void stop() {
+    running = false;
+
+    final ExecutorService executor;
+    synchronized (this) {
+      executor = timer;
+      timer = null;
+    }
+
+    if (executor != null) {
+      ConcurrencyUtil.shutdownGracefully(executor, 2, TimeUnit.SECONDS);
+    }
+  }
+
+  private void run(final int currentGeneration) {
+    long tick = 0;
+    try {
+      while (isRunning(currentGeneration)) {
+        final long sleepMs = startTimeMs + (tick + 1) * TICK_MS - System.currentTimeMillis();
+        if (sleepMs > 0) {
+          Thread.sleep(sleepMs);
+        }
+
+        transferPending(tick);
+        expire(tick, currentGeneration);
+        tick++;
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      log.info("Delay stage timer interrupted");
+    } catch (Exception ex) {
+      log.error("Failed to publish delayed mutations.", ex);
+      running = false;
+
+      errorHandler.accept(ex);
+    }
+  }
+
+  /** Places the added batches in the bucket of the tick they are due in. */
+  private void transferPending(final long currentTick) {
+    Entry entry;
+    while ((entry = pending.poll()) != null) {
+      final long dueTick = Math.max(currentTick, (entry.dueTimeMs - startTimeMs) / TICK_MS);
+
+      entry.rounds = (dueTick - currentTick) / WHEEL_SIZE;
+      wheel.get((int) (dueTick % WHEEL_SIZE)).add(entry);
+    }
+  }
+
+  /** Releases the batches of the bucket due in the given tick, in the order they were added. */
+  private void expire(final long tick, final int currentGeneration) {
+    final Iterator<Entry> iterator = wheel.get((int) (tick % WHEEL_SIZE)).iterator();
+    while (iterator.hasNext() && isRunning(currentGeneration)) {
+      final Entry entry = iterator.next();
+      if (entry.rounds > 0) {
+        entry.rounds--;
+        continue;
+      }
+
+      iterator.remove();
+      permits.release();
+      metrics.delayQueueSize(size.decrementAndGet());
+      metrics.delayTime(System.currentTimeMillis() - entry.addedTimeMs);
+
+      publisher.accept(entry.mutations);
+    }
+  }
+
+  private boolean isRunning(final int currentGeneration) {
+    return running && generation == currentGeneration;
+  }
+
+  @RequiredArgsConstructor
+  private static final class Entry {
+    private final List<? extends Mutation<?>> mutations;
+    private final long dueTimeMs;
+    private final long addedTimeMs;
+
+    /** The number of wheel revolutions left before the batch is due. */
+    private long rounds;
+  }
+}
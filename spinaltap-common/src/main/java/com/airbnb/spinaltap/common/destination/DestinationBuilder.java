@@ -24,6 +24,7 @@ public abstract class DestinationBuilder<T> {
   protected DestinationMetrics metrics;
   protected String topicNamePrefix = "spinaltap";
   protected boolean largeMessageEnabled = false;
+  protected boolean schemaFingerprintEnabled = false;
   protected long delaySendMs = 0;
   protected Map<String, Object> producerConfig;
   private String name = "";
@@ -85,6 +86,11 @@ public abstract class DestinationBuilder<T> {
     return this;
   }
 
+  public final DestinationBuilder<T> withSchemaFingerprint(final boolean schemaFingerprintEnabled) {
+    this.schemaFingerprintEnabled = schemaFingerprintEnabled;
+    return this;
+  }
+
   public DestinationBuilder<T> withDelaySendMs(long delaySendMs) {
     this.delaySendMs = delaySendMs;
     return this;
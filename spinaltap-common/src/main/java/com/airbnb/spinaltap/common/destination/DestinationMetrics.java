@@ -4,16 +4,34 @@
  */
 package com.airbnb.spinaltap.common.destination;
 
+import com.airbnb.common.metrics.Counter;
+import com.airbnb.common.metrics.Histogram;
 import com.airbnb.common.metrics.TaggedMetricRegistry;
 import com.airbnb.spinaltap.Mutation;
+import com.airbnb.spinaltap.common.metrics.MetricHandles;
 import com.airbnb.spinaltap.common.metrics.SpinalTapMetrics;
+import com.airbnb.spinaltap.common.metrics.TagsKey;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.RateLimiter;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.DoubleStream;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
 
 /** Responsible for metrics collection for a {@link Destination}. */
+@Slf4j
 public class DestinationMetrics extends SpinalTapMetrics {
   private static final String DESTINATION_PREFIX = METRIC_PREFIX + ".destination";
 
@@ -29,6 +47,14 @@ public class DestinationMetrics extends SpinalTapMetrics {
   private static final String PUBLISH_LAG_METRIC = DESTINATION_PREFIX + ".publish.lag";
   private static final String PUBLISH_LAG_GAUGE_METRIC = DESTINATION_PREFIX + ".publish.lag.gauge";
   private static final String PUBLISH_TIME_METRIC = DESTINATION_PREFIX + ".publish.time";
+  private static final String COMPRESSION_RATIO_GAUGE_METRIC =
+      DESTINATION_PREFIX + ".publish.compression.ratio";
+  private static final String RECORD_BATCH_SIZE_GAUGE_METRIC =
+      DESTINATION_PREFIX + ".publish.record_batch.size.bytes";
+  private static final String PRODUCER_CONNECTION_COUNT_GAUGE_METRIC =
+      DESTINATION_PREFIX + ".producer.connection.count";
+  private static final String PRODUCER_BUFFER_MEMORY_GAUGE_METRIC =
+      DESTINATION_PREFIX + ".producer.buffer.memory.bytes";
 
   private static final String PUBLISH_OUT_OF_ORDER_METRIC =
       DESTINATION_PREFIX + ".publish.out.of.order.count";
@@ -36,16 +62,73 @@ public class DestinationMetrics extends SpinalTapMetrics {
   private static final String IGNORE_RECORD_TOO_LARGE_METRIC =
       DESTINATION_PREFIX + ".publish.record.too.large.count";
 
+  private static final String LARGE_MESSAGE_METRIC =
+      DESTINATION_PREFIX + ".publish.large_message.count";
+  private static final String LARGE_MESSAGE_CHUNKS_METRIC =
+      DESTINATION_PREFIX + ".publish.large_message.chunks";
+  private static final String LARGE_MESSAGE_SIZE_METRIC =
+      DESTINATION_PREFIX + ".publish.large_message.size.bytes";
+
+  private static final String SCHEMA_REGISTERED_METRIC =
+      DESTINATION_PREFIX + ".publish.schema_fingerprint.registered.count";
+  private static final String SCHEMA_BYTES_SAVED_METRIC =
+      DESTINATION_PREFIX + ".publish.schema_fingerprint.saved.bytes";
+
   private static final String SEND_TIME_METRIC = DESTINATION_PREFIX + ".send.time";
   private static final String SEND_FAILURE_METRIC = DESTINATION_PREFIX + ".send.failure.count";
 
+  private static final String DELAY_QUEUE_SIZE_GAUGE_METRIC =
+      DESTINATION_PREFIX + ".delay.queue.size";
+  private static final String DELAY_TIME_METRIC = DESTINATION_PREFIX + ".delay.time";
+
   private static final String BUFFER_SIZE_METRIC = DESTINATION_PREFIX + ".buffer.size";
   private static final String BUFFER_FULL_METRIC = DESTINATION_PREFIX + ".buffer.full";
 
   private static final String OUT_OF_ORDER_METRIC =
       DESTINATION_PREFIX + ".mutation.out_of_order.count";
 
+  private static final String STAGE_LATENCY_METRIC = DESTINATION_PREFIX + ".stage.latency.micros";
+  private static final String PIPELINE_LATENCY_METRIC =
+      DESTINATION_PREFIX + ".pipeline.latency.micros";
+  private static final String STAGE_TAG = "stage";
+
+  private static final Mutation.Stage[] STAGES = Mutation.Stage.values();
+  private static final long SLOW_TRACE_THRESHOLD_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final double SLOW_TRACE_LOGS_PER_SECOND = 1.0;
+
   private final AtomicReference<Long> mutationLag = new AtomicReference<>();
+  private final AtomicReference<Integer> delayQueueSize = new AtomicReference<>();
+
+  /**
+   * Latency histograms of each {@link Mutation.Stage}, i.e. the time from the previous stage
+   * reached to that stage, indexed by stage ordinal.
+   */
+  private final Histogram[] stageLatencies = new Histogram[STAGES.length];
+
+  /** Latency histogram from the source event received to the mutation acknowledged. */
+  private final Histogram pipelineLatency;
+
+  private final RateLimiter slowTraceLogLimiter = RateLimiter.create(SLOW_TRACE_LOGS_PER_SECOND);
+
+  private final Histogram publishBatchSize =
+      histogram(PUBLISH_BATCH_SIZE_METRIC, ImmutableMap.of());
+  private final Histogram publishTime = histogram(PUBLISH_TIME_METRIC, ImmutableMap.of());
+  private final Histogram sendTime = histogram(SEND_TIME_METRIC, ImmutableMap.of());
+  private final Histogram delayTime = hdrHistogram(DELAY_TIME_METRIC, ImmutableMap.of());
+  private final Histogram largeMessageChunks =
+      histogram(LARGE_MESSAGE_CHUNKS_METRIC, ImmutableMap.of());
+  private final Histogram largeMessageSize =
+      histogram(LARGE_MESSAGE_SIZE_METRIC, ImmutableMap.of());
+  private final Histogram schemaBytesSaved =
+      histogram(SCHEMA_BYTES_SAVED_METRIC, ImmutableMap.of());
+
+  private final MutationHandles<Counter> publishCounts = mutationCounters(PUBLISH_METRIC);
+  private final MutationHandles<Histogram> publishLags = mutationHistograms(PUBLISH_LAG_METRIC);
+  private final MetricHandles<TagsKey, Histogram> bufferSizes =
+      tagsKeyHandles(key -> histogram(BUFFER_SIZE_METRIC, key.getTags()));
+
+  /** The producer gauges of the destinations sharing these metrics. */
+  private final List<ProducerGauges> producerGauges = new CopyOnWriteArrayList<>();
 
   public DestinationMetrics(
       String sourceName, String sourceType, TaggedMetricRegistry metricRegistry) {
@@ -71,6 +154,13 @@ public class DestinationMetrics extends SpinalTapMetrics {
     super(tags, metricRegistry);
 
     registerGauge(PUBLISH_LAG_GAUGE_METRIC, mutationLag::get);
+    registerGauge(DELAY_QUEUE_SIZE_GAUGE_METRIC, delayQueueSize::get);
+
+    for (Mutation.Stage stage : STAGES) {
+      stageLatencies[stage.ordinal()] =
+          hdrHistogram(STAGE_LATENCY_METRIC, ImmutableMap.of(STAGE_TAG, stage.name()));
+    }
+    pipelineLatency = hdrHistogram(PIPELINE_LATENCY_METRIC, ImmutableMap.of());
   }
 
   public void start() {
@@ -90,15 +180,71 @@ public class DestinationMetrics extends SpinalTapMetrics {
             .orElse(0L);
 
     mutationLag.set(System.currentTimeMillis() - lastTimestamp);
-    update(PUBLISH_BATCH_SIZE_METRIC, mutations.size());
+    publishBatchSize.update(mutations.size());
+
+    final long now = System.currentTimeMillis();
+    for (Mutation<?> mutation : mutations) {
+      publishLags.get(mutation).update(now - mutation.getMetadata().getTimestamp());
+      publishCounts.get(mutation).inc();
+    }
+  }
+
+  /**
+   * Records the latency of each stage the given {@link Mutation}s went through, from the source
+   * event received to the mutation acknowledged. Stages that were not reached (ex: there is no
+   * buffer between source and destination) are skipped. A sample of slow mutations is logged with
+   * their latency breakdown.
+   */
+  public void stageLatencies(List<? extends Mutation<?>> mutations) {
+    for (Mutation<?> mutation : mutations) {
+      final Mutation.Metadata metadata = mutation.getMetadata();
+      final long receivedNanos =
+          metadata == null ? 0L : metadata.getStageNanos(Mutation.Stage.RECEIVED);
+      if (receivedNanos == 0L) {
+        continue;
+      }
+
+      long previousNanos = receivedNanos;
+      for (int i = 1; i < STAGES.length; i++) {
+        final long stageNanos = metadata.getStageNanos(STAGES[i]);
+        if (stageNanos != 0L) {
+          stageLatencies[i].update(TimeUnit.NANOSECONDS.toMicros(stageNanos - previousNanos));
+          previousNanos = stageNanos;
+        }
+      }
+
+      final long totalNanos = previousNanos - receivedNanos;
+      pipelineLatency.update(TimeUnit.NANOSECONDS.toMicros(totalNanos));
+
+      if (totalNanos >= SLOW_TRACE_THRESHOLD_NANOS && slowTraceLogLimiter.tryAcquire()) {
+        log.warn(
+            "Slow mutation took {} ms from received to {}: {} (metadata: {})",
+            TimeUnit.NANOSECONDS.toMillis(totalNanos),
+            STAGES[STAGES.length - 1],
+            formatStageLatencies(metadata),
+            metadata);
+      }
+    }
+  }
 
-    mutations.forEach(
-        mutation -> {
-          long lag = System.currentTimeMillis() - mutation.getMetadata().getTimestamp();
-          Map<String, String> mutationTags = getTags(mutation);
-          update(PUBLISH_LAG_METRIC, lag, mutationTags);
-          inc(PUBLISH_METRIC, mutationTags);
-        });
+  private static String formatStageLatencies(final Mutation.Metadata metadata) {
+    final StringBuilder builder = new StringBuilder();
+    long previousNanos = metadata.getStageNanos(Mutation.Stage.RECEIVED);
+    for (int i = 1; i < STAGES.length; i++) {
+      final long stageNanos = metadata.getStageNanos(STAGES[i]);
+      if (stageNanos != 0L) {
+        if (builder.length() > 0) {
+          builder.append(", ");
+        }
+        builder
+            .append(STAGES[i])
+            .append('=')
+            .append(TimeUnit.NANOSECONDS.toMicros(stageNanos - previousNanos))
+            .append("us");
+        previousNanos = stageNanos;
+      }
+    }
+    return builder.toString();
   }
 
   public void publishFailed(Mutation<?> mutation, Throwable error) {
@@ -120,7 +266,83 @@ public class DestinationMetrics extends SpinalTapMetrics {
   }
 
   public void publishTime(long timeInMilliseconds) {
-    update(PUBLISH_TIME_METRIC, timeInMilliseconds);
+    publishTime.update(timeInMilliseconds);
+  }
+
+  /**
+   * Adds the producer of a destination to the producer gauges, which read the given suppliers when
+   * reported, so that the producer metrics are not looked up on publish. The destinations of a pool
+   * share their metrics, so the gauges are registered once and aggregate over the distinct
+   * producers in use: ratios and sizes are averaged, and counts and memory are summed.
+   *
+   * @param producer the producer currently used by the destination, which may be shared, or {@code
+   *     null} if there is none
+   * @param compressionRatio the ratio of compressed to uncompressed size of the record batches
+   * @param recordBatchSize the average size in bytes of the record batches
+   * @param connectionCount the number of broker connections of the producer
+   * @param bufferMemory the total buffer memory of the producer in bytes
+   */
+  public synchronized void producerGauges(
+      Supplier<?> producer,
+      Supplier<Double> compressionRatio,
+      Supplier<Double> recordBatchSize,
+      Supplier<Double> connectionCount,
+      Supplier<Double> bufferMemory) {
+    if (producerGauges.isEmpty()) {
+      registerGauge(
+          COMPRESSION_RATIO_GAUGE_METRIC,
+          () -> average(producerValues(ProducerGauges::getCompressionRatio)));
+      registerGauge(
+          RECORD_BATCH_SIZE_GAUGE_METRIC,
+          () -> average(producerValues(ProducerGauges::getRecordBatchSize)));
+      registerGauge(
+          PRODUCER_CONNECTION_COUNT_GAUGE_METRIC,
+          () -> producerValues(ProducerGauges::getConnectionCount).sum());
+      registerGauge(
+          PRODUCER_BUFFER_MEMORY_GAUGE_METRIC,
+          () -> producerValues(ProducerGauges::getBufferMemory).sum());
+    }
+
+    producerGauges.add(
+        new ProducerGauges(
+            producer, compressionRatio, recordBatchSize, connectionCount, bufferMemory));
+  }
+
+  /** @return the values of the given gauge, read once per distinct producer in use. */
+  private DoubleStream producerValues(final Function<ProducerGauges, Supplier<Double>> gauge) {
+    final Set<Object> producers = Collections.newSetFromMap(new IdentityHashMap<>());
+    return producerGauges
+        .stream()
+        .filter(
+            gauges -> {
+              final Object producer = gauges.getProducer().get();
+              return producer != null && producers.add(producer);
+            })
+        .map(gauges -> gauge.apply(gauges).get())
+        .filter(Objects::nonNull)
+        .mapToDouble(Double::doubleValue);
+  }
+
+  private static Double average(final DoubleStream values) {
+    final OptionalDouble average = values.average();
+    return average.isPresent() ? average.getAsDouble() : null;
+  }
+
+  /** Records a large message split into the given number of chunks. */
+  public void largeMessageChunked(int chunkCount, int sizeInBytes) {
+    inc(LARGE_MESSAGE_METRIC);
+    largeMessageChunks.update(chunkCount);
+    largeMessageSize.update(sizeInBytes);
+  }
+
+  /** Records a table schema registered under its fingerprint for the first time. */
+  public void schemaRegistered() {
+    inc(SCHEMA_REGISTERED_METRIC);
+  }
+
+  /** Records the bytes saved in a message by replacing the table schema with its fingerprint. */
+  public void schemaBytesSaved(int sizeInBytes) {
+    schemaBytesSaved.update(sizeInBytes);
   }
 
   public void sendFailed(Throwable error) {
@@ -128,11 +350,21 @@ public class DestinationMetrics extends SpinalTapMetrics {
   }
 
   public void sendTime(long delayInMilliseconds) {
-    update(SEND_TIME_METRIC, delayInMilliseconds);
+    sendTime.update(delayInMilliseconds);
+  }
+
+  /** Records the number of batches held in the delay stage. */
+  public void delayQueueSize(int size) {
+    delayQueueSize.set(size);
+  }
+
+  /** Records the time in milliseconds a batch was held in the delay stage. */
+  public void delayTime(long delayInMilliseconds) {
+    delayTime.update(delayInMilliseconds);
   }
 
   public void bufferSize(int size, Mutation.Metadata metadata) {
-    update(BUFFER_SIZE_METRIC, size, getTags(metadata));
+    bufferSizes.get(getTagsKey(metadata)).update(size);
   }
 
   public void bufferFull(Mutation.Metadata metadata) {
@@ -144,8 +376,24 @@ public class DestinationMetrics extends SpinalTapMetrics {
   }
 
   @Override
-  public void clear() {
+  public synchronized void clear() {
     removeGauge(PUBLISH_LAG_GAUGE_METRIC);
+    removeGauge(COMPRESSION_RATIO_GAUGE_METRIC);
+    removeGauge(RECORD_BATCH_SIZE_GAUGE_METRIC);
+    removeGauge(PRODUCER_CONNECTION_COUNT_GAUGE_METRIC);
+    removeGauge(PRODUCER_BUFFER_MEMORY_GAUGE_METRIC);
+    removeGauge(DELAY_QUEUE_SIZE_GAUGE_METRIC);
     mutationLag.set(null);
+    delayQueueSize.set(null);
+    producerGauges.clear();
+  }
+
+  @Value
+  private static class ProducerGauges {
+    Supplier<?> producer;
+    Supplier<Double> compressionRatio;
+    Supplier<Double> recordBatchSize;
+    Supplier<Double> connectionCount;
+    Supplier<Double> bufferMemory;
   }
 }
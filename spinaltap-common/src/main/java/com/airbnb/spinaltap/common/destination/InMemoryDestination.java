@@ -0,0 +1,63 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.common.destination;
+
+import com.airbnb.spinaltap.Mutation;
+import com.airbnb.spinaltap.common.util.BatchMapper;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.validation.constraints.Min;
+import lombok.NonNull;
+
+/**
+ * Represents a {@link Destination} that publishes messages in memory rather than to an external
+ * system. This is used to measure the throughput and latency of a source and of the destination
+ * path itself, without the variance of a remote system.
+ *
+ * <p>Only the last published messages, up to the given capacity, are retained.
+ */
+public final class InMemoryDestination<T> extends AbstractDestination<T> {
+  private final int capacity;
+  private final Deque<T> messages = new ArrayDeque<>();
+  private final AtomicLong publishedCount = new AtomicLong();
+
+  public InMemoryDestination(
+      @NonNull final BatchMapper<Mutation<?>, T> mapper,
+      @NonNull final DestinationMetrics metrics,
+      final long delaySendMs,
+      @Min(0) final int capacity) {
+    super(mapper, metrics, delaySendMs);
+    this.capacity = capacity;
+  }
+
+  @Override
+  public void publish(final List<T> messages) {
+    publishedCount.addAndGet(messages.size());
+
+    if (capacity > 0) {
+      synchronized (this.messages) {
+        messages.forEach(this.messages::addLast);
+        while (this.messages.size() > capacity) {
+          this.messages.removeFirst();
+        }
+      }
+    }
+  }
+
+  /** @return the number of messages published since creation. */
+  public long getPublishedCount() {
+    return publishedCount.get();
+  }
+
+  /** @return the last published messages, up to the capacity, in publish order. */
+  public List<T> getMessages() {
+    synchronized (messages) {
+      return new ArrayList<>(messages);
+    }
+  }
+}
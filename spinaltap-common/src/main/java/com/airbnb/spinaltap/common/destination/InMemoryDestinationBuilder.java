@@ -0,0 +1,18 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.common.destination;
+
+import lombok.RequiredArgsConstructor;
+
+/** Represents an implement of {@link DestinationBuilder} for {@link InMemoryDestination}s. */
+@RequiredArgsConstructor
+public final class InMemoryDestinationBuilder<T> extends DestinationBuilder<T> {
+  private final int capacity;
+
+  @Override
+  protected Destination createDestination() {
+    return new InMemoryDestination<>(mapper, metrics, delaySendMs, capacity);
+  }
+}
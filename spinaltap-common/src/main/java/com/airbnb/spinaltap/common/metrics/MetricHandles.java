@@ -0,0 +1,39 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.common.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Cache of metric handles (ex: {@link com.airbnb.common.metrics.Counter}s) resolved once per key,
+ * typically a tag set. Once a handle is resolved, looking it up again does not allocate, as
+ * opposed to building the tagged metric name on every update.
+ *
+ * @param <K> The key type, which should be cheap to hash (ex: a {@link Class} or an {@link Enum})
+ * @param <M> The metric handle type
+ */
+@RequiredArgsConstructor
+public final class MetricHandles<K, M> {
+  private final ConcurrentMap<K, M> handles = new ConcurrentHashMap<>();
+
+  @NonNull private final Function<K, M> resolver;
+
+  public M get(@NonNull final K key) {
+    final M handle = handles.get(key);
+    return handle != null ? handle : handles.computeIfAbsent(key, resolver);
+  }
+
+  public void remove(@NonNull final K key) {
+    handles.remove(key);
+  }
+
+  public void clear() {
+    handles.clear();
+  }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.common.metrics;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Space-saving sketch estimating the most frequent items of a stream in bounded memory. At most
+ * {@code capacity} items are tracked, and an untracked item replaces the least frequent tracked
+ * item, inheriting its count as estimation error. Any item occurring more than {@code total /
+ * capacity} times is guaranteed to be tracked.
+ *
+ * <p>Tracked items are kept in a min-heap on their count, so that offering an item is O(log
+ * capacity) and only allocates when a new item is tracked. Counts can be decayed, such that the
+ * sketch favors the items with the highest recent rate.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @param <T> The item type
+ */
+public final class SpaceSavingSketch<T> {
+  private final Map<T, Entry<T>> entries;
+  private final Entry<T>[] heap;
+  private int size;
+
+  @SuppressWarnings("unchecked")
+  public SpaceSavingSketch(final int capacity) {
+    Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+
+    this.entries = new HashMap<>(capacity * 2);
+    this.heap = (Entry<T>[]) new Entry[capacity];
+  }
+
+  public void offer(final T item) {
+    offer(item, 1L);
+  }
+
+  /** Offers the given number of occurrences of the item at once. */
+  public void offer(final T item, final long count) {
+    Preconditions.checkArgument(count > 0, "count must be positive");
+    final Entry<T> entry = entries.get(item);
+
+    if (entry != null) {
+      entry.count += count;
+      siftDown(entry.index);
+    } else if (size < heap.length) {
+      final Entry<T> newEntry = new Entry<>(item, size);
+      newEntry.count = count;
+      heap[size++] = newEntry;
+      entries.put(item, newEntry);
+      siftUp(newEntry.index);
+    } else {
+      // Replace the least frequent item, which is the root of the heap
+      final Entry<T> minEntry = heap[0];
+      entries.remove(minEntry.item);
+      minEntry.item = item;
+      minEntry.error = minEntry.count;
+      minEntry.count += count;
+      entries.put(item, minEntry);
+      siftDown(0);
+    }
+  }
+
+  /** @return the estimated count of the given item (an upper bound), or 0 if it is not tracked. */
+  public long getCount(final T item) {
+    final Entry<T> entry = entries.get(item);
+    return entry == null ? 0L : entry.count;
+  }
+
+  /** @return the maximum over-estimation of the count of the given item. */
+  public long getError(final T item) {
+    final Entry<T> entry = entries.get(item);
+    return entry == null ? 0L : entry.error;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** @return up to {@code limit} tracked items, from the most to the least frequent. */
+  public List<T> top(final int limit) {
+    return Arrays.stream(heap, 0, size)
+        .sorted(Comparator.comparingLong((Entry<T> entry) -> entry.count).reversed())
+        .limit(limit)
+        .map(entry -> entry.item)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Halves all the counts, so that past occurrences weigh less than recent ones. Halving preserves
+   * the order of counts, so the heap does not need to be rebuilt.
+   */
+  public void decay() {
+    for (int i = 0; i < size; i++) {
+      heap[i].count >>>= 1;
+      heap[i].error >>>= 1;
+    }
+  }
+
+  private void siftUp(int index) {
+    final Entry<T> entry = heap[index];
+
+    while (index > 0) {
+      final int parent = (index - 1) / 2;
+      if (heap[parent].count <= entry.count) {
+        break;
+      }
+      heap[index] = heap[parent];
+      heap[index].index = index;
+      index = parent;
+    }
+
+    heap[index] = entry;
+    entry.index = index;
+  }
+
+  private void siftDown(int index) {
+    final Entry<T> entry = heap[index];
+
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+        child++;
+      }
+      if (entry.count <= heap[child].count) {
+        break;
+      }
+      heap[index] = heap[child];
+      heap[index].index = index;
+      index = child;
+    }
+
+    heap[index] = entry;
+    entry.index = index;
+  }
+
+  private static final class Entry<T> {
+    private T item;
+    private long count;
+    private long error;
+    private int index;
+
+    Entry(final T item, final int index) {
+      this.item = item;
+      this.index = index;
+    }
+  }
+}
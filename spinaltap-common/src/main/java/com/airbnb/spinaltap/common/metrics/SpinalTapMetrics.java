@@ -4,15 +4,25 @@
  */
 package com.airbnb.spinaltap.common.metrics;
 
+import com.airbnb.common.metrics.Counter;
+import com.airbnb.common.metrics.Histogram;
 import com.airbnb.common.metrics.TaggedMetricRegistry;
 import com.airbnb.spinaltap.Mutation;
 import com.airbnb.spinaltap.common.source.SourceEvent;
 import com.codahale.metrics.Gauge;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
 /** Base class for metrics collection. */
@@ -38,9 +48,21 @@ public abstract class SpinalTapMetrics {
   public static final String SOURCE_TYPE_TAG = "source_type";
   public static final String SOURCE_NAME_TAG = "source_name";
 
+  private static final int MUTATION_TYPE_COUNT = Mutation.Type.values().length;
+
   private final ImmutableMap<String, String> defaultTags;
   private final TaggedMetricRegistry metricRegistry;
 
+  /** The handles resolved per {@link TagsKey}, to clear when metrics of a tags key are removed. */
+  private final List<MetricHandles<TagsKey, ?>> allTagsKeyHandles = new CopyOnWriteArrayList<>();
+
+  /**
+   * The names of the metrics registered by this instance, so that removing the metrics of a tags
+   * key leaves alone those of other instances on the same registry with the same default tags (ex:
+   * the source and destination metrics of a pipe).
+   */
+  private final Set<String> metricNames = ConcurrentHashMap.newKeySet();
+
   public SpinalTapMetrics(TaggedMetricRegistry metricRegistry) {
     this(ImmutableMap.of(), metricRegistry);
   }
@@ -53,6 +75,7 @@ public abstract class SpinalTapMetrics {
     // Remove the old gauge from the registry if it exists, since we
     // cannot register a new gauge if the key already is present
     removeGauge(metricName, tags);
+    metricNames.add(metricName);
 
     Map<String, String> allTags = new HashMap<>();
 
@@ -97,32 +120,112 @@ public abstract class SpinalTapMetrics {
   }
 
   protected void inc(String metricName, Map<String, String> tags, int count) {
+    counter(metricName, tags).inc(count);
+  }
+
+  protected void update(String metricName, long value) {
+    update(metricName, value, Collections.emptyMap());
+  }
+
+  protected void update(String metricName, long value, Map<String, String> tags) {
+    histogram(metricName, tags).update(value);
+  }
+
+  /**
+   * Resolves the {@link Counter} for the given metric and tags. On the hot path, the counter
+   * should be resolved once and held, or cached in {@link MetricHandles}.
+   */
+  protected Counter counter(String metricName, Map<String, String> tags) {
     Map<String, String> allTags = Maps.newHashMap();
 
     allTags.putAll(defaultTags);
     allTags.putAll(tags);
 
-    metricRegistry.counter(metricName, allTags).inc(count);
+    metricNames.add(metricName);
+    return metricRegistry.counter(metricName, allTags);
   }
 
-  protected void update(String metricName, long value) {
-    update(metricName, value, Collections.emptyMap());
+  /**
+   * Resolves the {@link Histogram} for the given metric and tags. On the hot path, the histogram
+   * should be resolved once and held, or cached in {@link MetricHandles}.
+   */
+  protected Histogram histogram(String metricName, Map<String, String> tags) {
+    Map<String, String> allTags = Maps.newHashMap();
+
+    allTags.putAll(defaultTags);
+    allTags.putAll(tags);
+
+    metricNames.add(metricName);
+    return metricRegistry.histogram(metricName, allTags);
   }
 
-  protected void update(String metricName, long value, Map<String, String> tags) {
+  /** Creates the handles of the given counter metric, resolved per source event type. */
+  protected MetricHandles<Class<?>, Counter> eventCounters(String metricName) {
+    return new MetricHandles<>(eventType -> counter(metricName, getEventTags(eventType)));
+  }
+
+  /** Creates the handles of the given histogram metric, resolved per source event type. */
+  protected MetricHandles<Class<?>, Histogram> eventHistograms(String metricName) {
+    return new MetricHandles<>(eventType -> histogram(metricName, getEventTags(eventType)));
+  }
+
+  /** Creates handles resolved per {@link TagsKey}. */
+  protected <M> MetricHandles<TagsKey, M> tagsKeyHandles(Function<TagsKey, M> resolver) {
+    final MetricHandles<TagsKey, M> handles = new MetricHandles<>(resolver);
+    allTagsKeyHandles.add(handles);
+    return handles;
+  }
+
+  /**
+   * Removes the metrics registered by this instance tagged with the given tags keys, ex: the
+   * metrics of tables evicted by {@link TopKTagsKeys}.
+   */
+  protected void removeMetrics(Collection<TagsKey> tagsKeys) {
+    for (TagsKey tagsKey : tagsKeys) {
+      allTagsKeyHandles.forEach(handles -> handles.remove(tagsKey));
+
+      Map<String, String> allTags = new HashMap<>();
+
+      allTags.putAll(defaultTags);
+      allTags.putAll(tagsKey.getTags());
+
+      metricRegistry.removeTagged(metricNames, allTags);
+    }
+  }
+
+  /** Creates the handles of the given counter metric, resolved per mutation tag set. */
+  protected MutationHandles<Counter> mutationCounters(String metricName) {
+    return new MutationHandles<>(tags -> counter(metricName, tags));
+  }
+
+  /** Creates the handles of the given histogram metric, resolved per mutation tag set. */
+  protected MutationHandles<Histogram> mutationHistograms(String metricName) {
+    return new MutationHandles<>(tags -> histogram(metricName, tags));
+  }
+
+  /**
+   * Resolves the {@link com.airbnb.common.metrics.HdrHistogram} for the given metric and tags, to
+   * be held by the caller and updated directly on the hot path.
+   */
+  protected Histogram hdrHistogram(String metricName, Map<String, String> tags) {
     Map<String, String> allTags = Maps.newHashMap();
 
     allTags.putAll(defaultTags);
     allTags.putAll(tags);
 
-    metricRegistry.histogram(metricName, allTags).update(value);
+    metricNames.add(metricName);
+    return metricRegistry.hdrHistogram(metricName, allTags);
   }
 
   protected Map<String, String> getTags(SourceEvent event) {
+    return getEventTags(event.getClass());
+  }
+
+  private Map<String, String> getEventTags(Class<?> eventType) {
     Map<String, String> eventTags = new HashMap<>();
 
     eventTags.putAll(defaultTags);
-    eventTags.put(EVENT_TYPE_TAG, event.getClass().getSimpleName());
+    eventTags.put(EVENT_TYPE_TAG, eventType.getSimpleName());
 
     return eventTags;
   }
@@ -137,8 +240,50 @@ public abstract class SpinalTapMetrics {
   }
 
   protected Map<String, String> getTags(Mutation.Metadata metadata) {
-    return Collections.emptyMap();
+    return getTagsKey(metadata).getTags();
+  }
+
+  /**
+   * Returns the canonical {@link TagsKey} of the given metadata, which must be the same instance
+   * for all metadata with the same tags. Implementations should not allocate once the key of a
+   * tag set is created, as this is called for every mutation.
+   */
+  protected TagsKey getTagsKey(Mutation.Metadata metadata) {
+    return TagsKey.EMPTY;
   }
 
   public void clear() {}
+
+  /**
+   * Handles of a metric resolved per {@link Mutation} tag set, i.e. per metadata {@link TagsKey}
+   * and mutation type.
+   */
+  protected final class MutationHandles<M> {
+    private final MetricHandles<TagsKey, AtomicReferenceArray<M>> handles =
+        tagsKeyHandles(key -> new AtomicReferenceArray<>(MUTATION_TYPE_COUNT));
+
+    private final Function<Map<String, String>, M> resolver;
+
+    private MutationHandles(final Function<Map<String, String>, M> resolver) {
+      this.resolver = resolver;
+    }
+
+    public M get(@NonNull final Mutation<?> mutation) {
+      final AtomicReferenceArray<M> typeHandles =
+          handles.get(getTagsKey(mutation.getMetadata()));
+      final int index = mutation.getType().ordinal();
+
+      M handle = typeHandles.get(index);
+      if (handle == null) {
+        // Resolving is idempotent, so concurrent misses can safely race to set the handle.
+        handle = resolver.apply(getTags(mutation));
+        typeHandles.set(index, handle);
+      }
+      return handle;
+    }
+
+    public void clear() {
+      handles.clear();
+    }
+  }
 }
@@ -0,0 +1,27 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.common.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The canonical key of a metric tag set (ex: the tags of a table). Keys are compared by identity,
+ * so there must be a single instance per tag set, and looking up the metric handles of a tag set
+ * is cheap.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public final class TagsKey {
+  /** The key of metrics without additional tags. */
+  public static final TagsKey EMPTY = new TagsKey(Collections.emptyMap());
+
+  @NonNull private final Map<String, String> tags;
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.common.metrics;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounds the cardinality of metrics tagged per entity (ex: per table), which would otherwise
+ * create metrics for every entity ever seen. Only the top-K entities by rate keep their own {@link
+ * TagsKey}, and the long tail is folded into a shared "other" key.
+ *
+ * <p>Rates are estimated with a {@link SpaceSavingSketch} sized as a multiple of K, and the top-K
+ * is re-ranked periodically. Until K entities are seen, every entity is admitted to the top-K
+ * straight away. Keys falling out of the top-K on re-rank are reported to the eviction listener,
+ * so that their metrics can be removed.
+ *
+ * <p>As keys are looked up on the hot path from many threads, lookups only count occurrences in
+ * concurrent counters. The counts are folded into the sketch when re-ranking, which runs on a
+ * shared background thread along with the eviction listener.
+ */
+@Slf4j
+public final class TopKTagsKeys {
+  private static final int SKETCH_SIZE_FACTOR = 4;
+  private static final long DEFAULT_RERANK_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private static final ScheduledExecutorService RERANK_EXECUTOR =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("top-k-tags-keys-rerank-%d")
+              .setDaemon(true)
+              .build());
+
+  private final int limit;
+  private final TagsKey otherTagsKey;
+  private final Consumer<Collection<TagsKey>> evictionListener;
+
+  /** The occurrences of each key since the last re-rank. */
+  private final ConcurrentMap<TagsKey, LongAdder> counts = new ConcurrentHashMap<>();
+
+  /** Guarded by {@code this}. */
+  private final SpaceSavingSketch<TagsKey> sketch;
+
+  /** Read without locking, and only updated while holding {@code this}. */
+  private final Set<TagsKey> topTagsKeys = ConcurrentHashMap.newKeySet();
+
+  public TopKTagsKeys(
+      final int limit,
+      @NonNull final TagsKey otherTagsKey,
+      @NonNull final Consumer<Collection<TagsKey>> evictionListener) {
+    this(limit, DEFAULT_RERANK_INTERVAL_NANOS, otherTagsKey, evictionListener);
+  }
+
+  public TopKTagsKeys(
+      final int limit,
+      final long rerankIntervalNanos,
+      @NonNull final TagsKey otherTagsKey,
+      @NonNull final Consumer<Collection<TagsKey>> evictionListener) {
+    Preconditions.checkArgument(limit > 0, "limit must be positive");
+    Preconditions.checkArgument(rerankIntervalNanos > 0, "rerank interval must be positive");
+
+    this.limit = limit;
+    this.otherTagsKey = otherTagsKey;
+    this.evictionListener = evictionListener;
+    this.sketch = new SpaceSavingSketch<>(limit * SKETCH_SIZE_FACTOR);
+
+    scheduleRerank(this, rerankIntervalNanos);
+  }
+
+  /**
+   * Re-ranks the given instance periodically. The task only holds a weak reference to it, and is
+   * cancelled once it is garbage collected, so that instances do not need to be closed.
+   */
+  private static void scheduleRerank(
+      final TopKTagsKeys topKTagsKeys, final long rerankIntervalNanos) {
+    final WeakReference<TopKTagsKeys> reference = new WeakReference<>(topKTagsKeys);
+    final AtomicReference<ScheduledFuture<?>> future = new AtomicReference<>();
+
+    future.set(
+        RERANK_EXECUTOR.scheduleAtFixedRate(
+            () -> {
+              final TopKTagsKeys instance = reference.get();
+              if (instance == null) {
+                future.get().cancel(false);
+                return;
+              }
+
+              try {
+                instance.rerank();
+              } catch (Exception ex) {
+                log.error("Failed to re-rank top tags keys", ex);
+              }
+            },
+            rerankIntervalNanos,
+            rerankIntervalNanos,
+            TimeUnit.NANOSECONDS));
+  }
+
+  /**
+   * Records an occurrence of the given key.
+   *
+   * @return the key itself if it is in the top-K, or the "other" key otherwise.
+   */
+  public TagsKey get(@NonNull final TagsKey tagsKey) {
+    LongAdder count = counts.get(tagsKey);
+    if (count == null) {
+      count = counts.computeIfAbsent(tagsKey, key -> new LongAdder());
+    }
+    count.increment();
+
+    if (topTagsKeys.contains(tagsKey)) {
+      return tagsKey;
+    }
+
+    if (topTagsKeys.size() < limit && admit(tagsKey)) {
+      return tagsKey;
+    }
+
+    return otherTagsKey;
+  }
+
+  private synchronized boolean admit(final TagsKey tagsKey) {
+    if (topTagsKeys.size() < limit) {
+      topTagsKeys.add(tagsKey);
+      return true;
+    }
+
+    return topTagsKeys.contains(tagsKey);
+  }
+
+  @VisibleForTesting
+  void rerank() {
+    final Set<TagsKey> evicted;
+    synchronized (this) {
+      for (Map.Entry<TagsKey, LongAdder> entry : counts.entrySet()) {
+        final long count = entry.getValue().sumThenReset();
+        if (count > 0) {
+          sketch.offer(entry.getKey(), count);
+        } else {
+          // Keys not seen since the last re-rank are dropped, so that counts do not grow with
+          // every key ever seen. An occurrence racing with the removal is lost, which does not
+          // matter for ranking.
+          counts.remove(entry.getKey(), entry.getValue());
+        }
+      }
+
+      final Set<TagsKey> top = new HashSet<>(sketch.top(limit));
+      evicted = topTagsKeys.stream().filter(key -> !top.contains(key)).collect(Collectors.toSet());
+
+      topTagsKeys.addAll(top);
+      topTagsKeys.removeAll(evicted);
+      sketch.decay();
+    }
+
+    // The listener may be slow (ex: scanning the metric registry), so it is called without locking
+    if (!evicted.isEmpty()) {
+      evictionListener.accept(evicted);
+    }
+  }
+}
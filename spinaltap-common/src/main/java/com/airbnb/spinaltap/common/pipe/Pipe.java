@@ -7,10 +7,12 @@ package com.airbnb.spinaltap.common.pipe;
 import com.airbnb.spinaltap.Mutation;
 import com.airbnb.spinaltap.common.destination.Destination;
 import com.airbnb.spinaltap.common.source.Source;
+import com.google.common.base.Stopwatch;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -58,6 +60,8 @@ public class Pipe {
 
   /** Starts event streaming for the pipe. */
   public void start() {
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+
     source.addListener(sourceListener);
     destination.addListener(destinationListener);
 
@@ -72,6 +76,9 @@ public class Pipe {
                 .setNameFormat(getName() + "-error-handling-executor")
                 .build());
     metrics.start();
+
+    stopwatch.stop();
+    metrics.startTime(stopwatch.elapsed(TimeUnit.MILLISECONDS));
   }
 
   private void scheduleKeepAliveExecutor() {
@@ -167,8 +174,13 @@ public class Pipe {
 
   /** Opens the {@link Source} and {@link Destination} to initiate event streaming */
   private synchronized void open() {
+    final Stopwatch stopwatch = Stopwatch.createStarted();
     destination.open();
+    metrics.destinationOpenTime(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+
+    stopwatch.reset().start();
     source.open();
+    metrics.sourceOpenTime(stopwatch.elapsed(TimeUnit.MILLISECONDS));
 
     metrics.open();
   }
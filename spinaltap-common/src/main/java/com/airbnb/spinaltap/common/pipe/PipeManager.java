@@ -4,17 +4,26 @@
  */
 package com.airbnb.spinaltap.common.pipe;
 
+import com.airbnb.spinaltap.common.util.ConcurrencyUtil;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Table;
 import com.google.common.collect.Tables;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import lombok.NoArgsConstructor;
+import java.util.stream.Collectors;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
@@ -24,10 +33,18 @@ import lombok.extern.slf4j.Slf4j;
  * <p>A resource is typically associated with a data source, ex: a MySQL database
  */
 @Slf4j
-@NoArgsConstructor
 public class PipeManager {
   private static final long CHECK_STOPPED_WAIT_MILLISEC = 1000L;
   private static final int CHECK_STOPPED_WAIT_TIMEOUT_SECONDS = 30;
+
+  /**
+   * Matches the parallelism of a parallel stream, which pipes were started on previously: the
+   * common pool threads plus the calling thread.
+   */
+  public static final int DEFAULT_START_PARALLELISM = ForkJoinPool.getCommonPoolParallelism() + 1;
+
+  public static final double DEFAULT_START_RATE_PER_SECOND = Double.MAX_VALUE;
+
   /**
    * Mapped table of [Resource][Partition][Pipes]. In other words, registered resource will have a
    * set of partitions, each of which will have a collection of {@link Pipe}s registered.
@@ -37,6 +54,37 @@ public class PipeManager {
 
   private final Executor executor = Executors.newSingleThreadExecutor();
 
+  /**
+   * Bounded executor used to start {@link Pipe}s, so that a large number of resources can be
+   * brought up concurrently without overwhelming the source hosts or the schema store.
+   */
+  private final ExecutorService startExecutor;
+
+  /** Throttles the rate at which {@link Pipe}s are started across all resources. */
+  private final RateLimiter startRateLimiter;
+
+  public PipeManager() {
+    this(DEFAULT_START_PARALLELISM, DEFAULT_START_RATE_PER_SECOND);
+  }
+
+  /**
+   * @param startParallelism the maximum number of {@link Pipe}s started concurrently
+   * @param startRatePerSecond the maximum number of {@link Pipe}s started per second
+   */
+  public PipeManager(final int startParallelism, final double startRatePerSecond) {
+    Preconditions.checkArgument(startParallelism > 0, "Start parallelism must be positive");
+    Preconditions.checkArgument(startRatePerSecond > 0, "Start rate must be positive");
+
+    this.startExecutor =
+        Executors.newFixedThreadPool(
+            startParallelism,
+            new ThreadFactoryBuilder()
+                .setNameFormat("pipe-manager-start-%d")
+                .setDaemon(true)
+                .build());
+    this.startRateLimiter = RateLimiter.create(startRatePerSecond);
+  }
+
   /**
    * Registers a pipe for the given resource.
    *
@@ -72,12 +120,45 @@ public class PipeManager {
       @NonNull final List<Pipe> pipes) {
     log.debug("Adding pipes for {} / {}", name, partition);
 
-    pipes.forEach(Pipe::start);
+    pipes.forEach(this::startPipe);
     pipeTable.put(name, partition, pipes);
 
     log.info("Added pipes for {} / {}", name, partition);
   }
 
+  /**
+   * Asynchronously creates and registers a list of {@link Pipe}s for the given resource partition
+   * on the bounded start executor. Creation is deferred to the executor as well, as it typically
+   * involves expensive initialization (ex: loading the schema cache).
+   *
+   * @param name The resource name
+   * @param partition the partition name
+   * @param pipesSupplier supplies the list of {@link Pipe}s to register
+   * @return a future that completes when the {@link Pipe}s have been started and registered
+   */
+  public CompletableFuture<Void> addPipesAsync(
+      @NonNull final String name,
+      @NonNull final String partition,
+      @NonNull final Callable<List<Pipe>> pipesSupplier) {
+    return CompletableFuture.runAsync(
+        () -> {
+          try {
+            addPipes(name, partition, pipesSupplier.call());
+          } catch (RuntimeException ex) {
+            throw ex;
+          } catch (Exception ex) {
+            throw new RuntimeException(
+                String.format("Failed to create pipes for %s / %s", name, partition), ex);
+          }
+        },
+        startExecutor);
+  }
+
+  private void startPipe(final Pipe pipe) {
+    startRateLimiter.acquire();
+    pipe.start();
+  }
+
   private static String getDefaultPartition(final String name) {
     return String.format("%s_%d", name, 0);
   }
@@ -136,26 +217,36 @@ public class PipeManager {
   public void start() throws Exception {
     log.debug("Starting pipe manager");
 
-    pipeTable
-        .values()
-        .parallelStream()
-        .flatMap(Collection::parallelStream)
-        .forEach(
-            pipe -> {
-              try {
-                pipe.start();
-              } catch (Exception ex) {
-                log.error("Failed to start pipe " + pipe.getName(), ex);
-              }
-            });
+    final List<CompletableFuture<Void>> futures =
+        pipeTable
+            .values()
+            .stream()
+            .flatMap(Collection::stream)
+            .map(
+                pipe ->
+                    CompletableFuture.runAsync(
+                        () -> {
+                          try {
+                            startPipe(pipe);
+                          } catch (Exception ex) {
+                            log.error("Failed to start pipe " + pipe.getName(), ex);
+                          }
+                        },
+                        startExecutor))
+            .collect(Collectors.toList());
+
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
 
     log.info("Started pipe manager");
   }
 
-  /** Starts all {@link Pipe}s for all managed resources. */
+  /** Stops all {@link Pipe}s for all managed resources. The pipe manager cannot start again. */
   public void stop() {
     log.debug("Stopping pipe manager");
 
+    // Pending starts are dropped, so that no pipe is started after it is stopped
+    ConcurrencyUtil.shutdownGracefully(startExecutor, 2, TimeUnit.SECONDS);
+
     pipeTable
         .values()
         .parallelStream()
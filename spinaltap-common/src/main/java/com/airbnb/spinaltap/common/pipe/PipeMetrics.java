@@ -18,6 +18,11 @@ public class PipeMetrics extends SpinalTapMetrics {
   private static final String STOP_METRIC = PIPE_PREFIX + ".stop.count";
   private static final String CHECKPOINT_METRIC = PIPE_PREFIX + ".checkpoint.count";
 
+  private static final String START_TIME_METRIC = PIPE_PREFIX + ".start.time";
+  private static final String DESTINATION_OPEN_TIME_METRIC =
+      PIPE_PREFIX + ".destination.open.time";
+  private static final String SOURCE_OPEN_TIME_METRIC = PIPE_PREFIX + ".source.open.time";
+
   public PipeMetrics(String sourceName, TaggedMetricRegistry metricRegistry) {
     this(ImmutableMap.of(SOURCE_NAME_TAG, sourceName), metricRegistry);
   }
@@ -45,4 +50,16 @@ public class PipeMetrics extends SpinalTapMetrics {
   public void checkpoint() {
     inc(CHECKPOINT_METRIC);
   }
+
+  public void startTime(long timeInMilliseconds) {
+    update(START_TIME_METRIC, timeInMilliseconds);
+  }
+
+  public void destinationOpenTime(long timeInMilliseconds) {
+    update(DESTINATION_OPEN_TIME_METRIC, timeInMilliseconds);
+  }
+
+  public void sourceOpenTime(long timeInMilliseconds) {
+    update(SOURCE_OPEN_TIME_METRIC, timeInMilliseconds);
+  }
 }
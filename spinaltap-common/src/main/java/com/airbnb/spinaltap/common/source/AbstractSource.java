@@ -122,11 +122,15 @@ public abstract class AbstractSource<E extends SourceEvent> extends ListenableSo
    */
   public final void processEvent(final E event) {
     try {
+      final long receivedNanos = System.nanoTime();
+
       if (!eventFilter.apply(event)) {
         log.debug("Event filtered from source {}. Skipping. event={}", name, event);
         return;
       }
 
+      final long filteredNanos = System.nanoTime();
+
       notifyEvent(event);
 
       final Stopwatch stopwatch = Stopwatch.createStarted();
@@ -134,7 +138,19 @@ public abstract class AbstractSource<E extends SourceEvent> extends ListenableSo
       metrics.eventReceived(event);
       log.debug("Received event from source {}. event={}", name, event);
 
-      notifyMutations(mutationMapper.map(event));
+      final List<? extends Mutation<?>> mutations = mutationMapper.map(event);
+
+      final long mappedNanos = System.nanoTime();
+      for (Mutation<?> mutation : mutations) {
+        final Mutation.Metadata metadata = mutation.getMetadata();
+        if (metadata != null) {
+          metadata.markStage(Mutation.Stage.RECEIVED, receivedNanos);
+          metadata.markStage(Mutation.Stage.FILTERED, filteredNanos);
+          metadata.markStage(Mutation.Stage.MAPPED, mappedNanos);
+        }
+      }
+
+      notifyMutations(mutations);
 
       stopwatch.stop();
       final long time = stopwatch.elapsed(TimeUnit.MILLISECONDS);
@@ -4,8 +4,11 @@
  */
 package com.airbnb.spinaltap.common.source;
 
+import com.airbnb.common.metrics.Counter;
+import com.airbnb.common.metrics.Histogram;
 import com.airbnb.common.metrics.TaggedMetricRegistry;
 import com.airbnb.spinaltap.Mutation;
+import com.airbnb.spinaltap.common.metrics.MetricHandles;
 import com.airbnb.spinaltap.common.metrics.SpinalTapMetrics;
 import com.google.common.collect.ImmutableMap;
 import java.util.Map;
@@ -38,6 +41,11 @@ public class SourceMetrics extends SpinalTapMetrics {
 
   private final AtomicReference<Long> eventLag = new AtomicReference<>();
 
+  private final MetricHandles<Class<?>, Counter> eventCounts = eventCounters(EVENT_COUNT_METRIC);
+  private final MetricHandles<Class<?>, Histogram> eventLags = eventHistograms(EVENT_LAG_METRIC);
+  private final MetricHandles<Class<?>, Histogram> eventProcessTimes =
+      eventHistograms(EVENT_PROCESS_TIME_METRIC);
+
   public SourceMetrics(
       String sourceName, String sourceType, TaggedMetricRegistry taggedMetricRegistry) {
     this(sourceName, sourceType, ImmutableMap.of(), taggedMetricRegistry);
@@ -89,16 +97,15 @@ public class SourceMetrics extends SpinalTapMetrics {
 
   public void eventReceived(SourceEvent event) {
     long lag = System.currentTimeMillis() - event.getTimestamp();
-    Map<String, String> eventTags = getTags(event);
 
-    inc(EVENT_COUNT_METRIC, eventTags, event.size());
-    update(EVENT_LAG_METRIC, lag, eventTags);
+    eventCounts.get(event.getClass()).inc(event.size());
+    eventLags.get(event.getClass()).update(lag);
 
     eventLag.set(lag);
   }
 
   public void processEventTime(SourceEvent sourceEvent, long timeInMilliseconds) {
-    update(EVENT_PROCESS_TIME_METRIC, timeInMilliseconds, getTags(sourceEvent));
+    eventProcessTimes.get(sourceEvent.getClass()).update(timeInMilliseconds);
   }
 
   public void outOfOrder(SourceEvent event) {
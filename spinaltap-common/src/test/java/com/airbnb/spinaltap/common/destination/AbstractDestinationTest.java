@@ -7,7 +7,9 @@ package com.airbnb.spinaltap.common.destination;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -22,6 +24,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 
 public class AbstractDestinationTest {
   private final Destination.Listener listener = mock(Destination.Listener.class);
@@ -102,12 +105,73 @@ public class AbstractDestinationTest {
     verify(listener, times(1)).onStart();
   }
 
+  @Test
+  public void testDelayedSend() throws Exception {
+    Mutation.Metadata metadata = mock(Mutation.Metadata.class);
+    when(firstMutation.getMetadata()).thenReturn(metadata);
+    when(secondMutation.getMetadata()).thenReturn(metadata);
+    when(thirdMutation.getMetadata()).thenReturn(metadata);
+    when(metadata.getTimestamp()).thenReturn(System.currentTimeMillis());
+
+    List<Mutation<?>> firstBatch = ImmutableList.of(firstMutation);
+    List<Mutation<?>> secondBatch = ImmutableList.of(secondMutation, thirdMutation);
+
+    destination = new TestDestination(200L);
+    destination.addListener(listener);
+    destination.open();
+
+    try {
+      destination.send(firstBatch);
+      destination.send(secondBatch);
+
+      assertEquals(0, destination.getPublishedMutations());
+
+      verify(listener, timeout(2000)).onSend(secondBatch);
+
+      InOrder inOrder = inOrder(listener);
+      inOrder.verify(listener).onSend(firstBatch);
+      inOrder.verify(listener).onSend(secondBatch);
+
+      assertEquals(3, destination.getPublishedMutations());
+      assertEquals(thirdMutation, destination.getLastPublishedMutation());
+    } finally {
+      destination.close();
+    }
+  }
+
+  @Test(expected = DestinationException.class)
+  public void testDelayedSendFailure() throws Exception {
+    Mutation.Metadata metadata = mock(Mutation.Metadata.class);
+    when(firstMutation.getMetadata()).thenReturn(metadata);
+    when(metadata.getTimestamp()).thenReturn(0L);
+
+    destination = new TestDestination(200L);
+    destination.addListener(listener);
+    destination.setFailPublish(true);
+    destination.open();
+
+    try {
+      destination.send(ImmutableList.of(firstMutation));
+
+      verify(listener, timeout(2000)).onError(any(DestinationException.class));
+      assertNull(destination.getLastPublishedMutation());
+
+      destination.send(ImmutableList.of(firstMutation));
+    } finally {
+      destination.close();
+    }
+  }
+
   class TestDestination extends AbstractDestination<Mutation<?>> {
-    @Getter private int publishedMutations;
+    @Getter private volatile int publishedMutations;
     @Setter private boolean failPublish;
 
     public TestDestination() {
-      super(m -> m, metrics, 0L);
+      this(0L);
+    }
+
+    public TestDestination(long delaySendMs) {
+      super(m -> m, metrics, delaySendMs);
     }
 
     @Override
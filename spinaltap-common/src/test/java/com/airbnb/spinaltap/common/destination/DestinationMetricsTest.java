@@ -0,0 +1,76 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.common.destination;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.airbnb.common.metrics.TaggedMetricRegistry;
+import com.codahale.metrics.Gauge;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.junit.Test;
+
+public class DestinationMetricsTest {
+  private static final String COMPRESSION_RATIO_METRIC =
+      "spinaltap.destination.publish.compression.ratio";
+  private static final String CONNECTION_COUNT_METRIC =
+      "spinaltap.destination.producer.connection.count";
+
+  private final TaggedMetricRegistry metricRegistry = new TaggedMetricRegistry();
+  private final DestinationMetrics metrics =
+      new DestinationMetrics("test", "mysql", metricRegistry);
+
+  @Test
+  public void testAggregateProducerGaugesOfPool() throws Exception {
+    Object sharedProducer = new Object();
+    Object ownProducer = new Object();
+    AtomicReference<Object> detachedProducer = new AtomicReference<>();
+
+    // Two destinations of the pool share a producer, which is only reported once
+    addProducer(() -> sharedProducer, 0.5, 4.0);
+    addProducer(() -> sharedProducer, 0.5, 4.0);
+    addProducer(() -> ownProducer, 0.3, 2.0);
+    addProducer(detachedProducer::get, 0.1, 1.0);
+
+    assertEquals(0.4, getGauge(COMPRESSION_RATIO_METRIC), 0.0001);
+    assertEquals(6.0, getGauge(CONNECTION_COUNT_METRIC), 0.0001);
+
+    detachedProducer.set(new Object());
+    assertEquals(0.3, getGauge(COMPRESSION_RATIO_METRIC), 0.0001);
+    assertEquals(7.0, getGauge(CONNECTION_COUNT_METRIC), 0.0001);
+  }
+
+  @Test
+  public void testProducerGaugesWithoutProducer() throws Exception {
+    addProducer(() -> null, 0.5, 4.0);
+
+    assertNull(getGauge(COMPRESSION_RATIO_METRIC));
+    assertEquals(0.0, getGauge(CONNECTION_COUNT_METRIC), 0.0001);
+  }
+
+  private void addProducer(
+      final Supplier<?> producer,
+      final double compressionRatio,
+      final double connectionCount) {
+    metrics.producerGauges(
+        producer, () -> compressionRatio, () -> 100.0, () -> connectionCount, () -> 1024.0);
+  }
+
+  private Double getGauge(final String name) {
+    Gauge<?> gauge =
+        metricRegistry
+            .getMetricRegistry()
+            .getGauges()
+            .entrySet()
+            .stream()
+            .filter(entry -> entry.getKey().startsWith(name + "["))
+            .map(Map.Entry::getValue)
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("Missing gauge " + name));
+    return (Double) gauge.getValue();
+  }
+}
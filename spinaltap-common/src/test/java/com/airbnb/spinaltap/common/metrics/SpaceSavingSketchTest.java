@@ -0,0 +1,82 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.common.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+public class SpaceSavingSketchTest {
+  @Test
+  public void testTop() throws Exception {
+    SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(3);
+
+    offer(sketch, "a", 5);
+    offer(sketch, "b", 3);
+    offer(sketch, "c", 1);
+
+    assertEquals(ImmutableList.of("a", "b", "c"), sketch.top(3));
+    assertEquals(ImmutableList.of("a", "b"), sketch.top(2));
+    assertEquals(5L, sketch.getCount("a"));
+    assertEquals(0L, sketch.getError("a"));
+  }
+
+  @Test
+  public void testReplaceLeastFrequent() throws Exception {
+    SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(2);
+
+    offer(sketch, "a", 5);
+    offer(sketch, "b", 2);
+    offer(sketch, "c", 1);
+
+    assertEquals(2, sketch.size());
+    assertEquals(0L, sketch.getCount("b"));
+    assertEquals(3L, sketch.getCount("c"));
+    assertEquals(2L, sketch.getError("c"));
+
+    // A frequent item is always tracked, however many rare items go through
+    for (int i = 0; i < 10; i++) {
+      sketch.offer("rare" + i);
+      sketch.offer("a");
+    }
+
+    assertEquals(ImmutableList.of("a"), sketch.top(1));
+    assertEquals(15L, sketch.getCount("a"));
+  }
+
+  @Test
+  public void testDecay() throws Exception {
+    SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(2);
+
+    offer(sketch, "a", 8);
+    sketch.decay();
+    offer(sketch, "b", 6);
+
+    assertEquals(4L, sketch.getCount("a"));
+    assertEquals(ImmutableList.of("b", "a"), sketch.top(2));
+  }
+
+  @Test
+  public void testOfferCount() throws Exception {
+    SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(2);
+
+    sketch.offer("a", 5);
+    sketch.offer("b", 2);
+    sketch.offer("c", 4);
+    sketch.offer("a", 2);
+
+    assertEquals(ImmutableList.of("a", "c"), sketch.top(2));
+    assertEquals(7L, sketch.getCount("a"));
+    assertEquals(6L, sketch.getCount("c"));
+    assertEquals(2L, sketch.getError("c"));
+  }
+
+  private static void offer(SpaceSavingSketch<String> sketch, String item, int times) {
+    for (int i = 0; i < times; i++) {
+      sketch.offer(item);
+    }
+  }
+}
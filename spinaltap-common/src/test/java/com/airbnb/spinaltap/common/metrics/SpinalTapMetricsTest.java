@@ -0,0 +1,83 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.common.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.airbnb.common.metrics.TaggedMetricRegistry;
+import com.airbnb.spinaltap.Mutation;
+import com.airbnb.spinaltap.common.destination.DestinationMetrics;
+import com.airbnb.spinaltap.common.source.SourceMetrics;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class SpinalTapMetricsTest {
+  private static final String SOURCE_PREFIX = "spinaltap.source.";
+  private static final String DESTINATION_PREFIX = "spinaltap.destination.";
+
+  private final TagsKey tableKey = new TagsKey(ImmutableMap.of("table_name", "users"));
+  private final TaggedMetricRegistry metricRegistry = new TaggedMetricRegistry();
+
+  // Source and destination metrics of a pipe share the registry and the default tags
+  private final SourceMetrics sourceMetrics =
+      new SourceMetrics("test", "mysql", metricRegistry) {
+        @Override
+        protected TagsKey getTagsKey(Mutation.Metadata metadata) {
+          return tableKey;
+        }
+      };
+
+  private final DestinationMetrics destinationMetrics =
+      new DestinationMetrics("test", "mysql", metricRegistry) {
+        @Override
+        protected TagsKey getTagsKey(Mutation.Metadata metadata) {
+          return tableKey;
+        }
+      };
+
+  @Test
+  public void testRemoveMetricsOfOwnInstance() throws Exception {
+    Mutation<?> mutation = createMutation();
+
+    sourceMetrics.outOfOrder(mutation);
+    destinationMetrics.publishSucceeded(ImmutableList.of(mutation));
+
+    destinationMetrics.removeMetrics(ImmutableList.of(tableKey));
+    assertEquals(1, getTableMetrics(SOURCE_PREFIX).size());
+    assertEquals(0, getTableMetrics(DESTINATION_PREFIX).size());
+
+    // Metrics are registered again once the table is seen again
+    destinationMetrics.publishSucceeded(ImmutableList.of(mutation));
+    assertEquals(2, getTableMetrics(DESTINATION_PREFIX).size());
+
+    sourceMetrics.removeMetrics(ImmutableList.of(tableKey));
+    assertEquals(0, getTableMetrics(SOURCE_PREFIX).size());
+    assertEquals(2, getTableMetrics(DESTINATION_PREFIX).size());
+  }
+
+  private Set<String> getTableMetrics(final String prefix) {
+    return metricRegistry
+        .getMetricRegistry()
+        .getNames()
+        .stream()
+        .filter(name -> name.startsWith(prefix) && name.contains("table_name:users"))
+        .collect(Collectors.toSet());
+  }
+
+  private static Mutation<?> createMutation() {
+    Mutation.Metadata metadata = mock(Mutation.Metadata.class);
+    when(metadata.getTimestamp()).thenReturn(System.currentTimeMillis());
+
+    Mutation<?> mutation = mock(Mutation.class);
+    when(mutation.getMetadata()).thenReturn(metadata);
+    when(mutation.getType()).thenReturn(Mutation.Type.INSERT);
+    return mutation;
+  }
+}
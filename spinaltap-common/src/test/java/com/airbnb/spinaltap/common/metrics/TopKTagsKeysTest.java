@@ -0,0 +1,54 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.common.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Test;
+
+public class TopKTagsKeysTest {
+  private final TagsKey otherKey = new TagsKey(ImmutableMap.of("table_name", "__other__"));
+  private final TagsKey firstKey = new TagsKey(ImmutableMap.of("table_name", "first"));
+  private final TagsKey secondKey = new TagsKey(ImmutableMap.of("table_name", "second"));
+  private final TagsKey thirdKey = new TagsKey(ImmutableMap.of("table_name", "third"));
+
+  private final List<Collection<TagsKey>> evictions = new ArrayList<>();
+
+  @Test
+  public void testLimit() throws Exception {
+    TopKTagsKeys topKeys = new TopKTagsKeys(2, otherKey, evictions::add);
+
+    assertEquals(firstKey, topKeys.get(firstKey));
+    assertEquals(secondKey, topKeys.get(secondKey));
+    assertEquals(otherKey, topKeys.get(thirdKey));
+    assertEquals(firstKey, topKeys.get(firstKey));
+    assertTrue(evictions.isEmpty());
+  }
+
+  @Test
+  public void testRerank() throws Exception {
+    TopKTagsKeys topKeys = new TopKTagsKeys(2, otherKey, evictions::add);
+
+    topKeys.get(firstKey);
+    topKeys.get(secondKey);
+    for (int i = 0; i < 10; i++) {
+      topKeys.get(firstKey);
+      assertEquals(otherKey, topKeys.get(thirdKey));
+    }
+
+    topKeys.rerank();
+
+    assertEquals(firstKey, topKeys.get(firstKey));
+    assertEquals(thirdKey, topKeys.get(thirdKey));
+    assertEquals(otherKey, topKeys.get(secondKey));
+    assertEquals(1, evictions.size());
+    assertTrue(evictions.get(0).contains(secondKey));
+  }
+}
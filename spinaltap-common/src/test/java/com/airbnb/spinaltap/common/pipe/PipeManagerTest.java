@@ -8,6 +8,7 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import com.google.common.collect.ImmutableList;
+import java.util.concurrent.RejectedExecutionException;
 import org.junit.Test;
 
 public class PipeManagerTest {
@@ -33,4 +34,35 @@ public class PipeManagerTest {
 
     assertTrue(pipeManager.isEmpty());
   }
+
+  @Test
+  public void testAddPipesAsyncAndStart() throws Exception {
+    PipeManager pipeManager = new PipeManager(2, 100.0);
+
+    pipeManager
+        .addPipesAsync(NAME, PARTITION, () -> ImmutableList.of(firstPipe, secondPipe))
+        .get();
+
+    verify(firstPipe, times(1)).start();
+    verify(secondPipe, times(1)).start();
+    assertTrue(pipeManager.contains(NAME, PARTITION));
+
+    pipeManager.start();
+
+    verify(firstPipe, times(2)).start();
+    verify(secondPipe, times(2)).start();
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void testStopStartExecutor() throws Exception {
+    PipeManager pipeManager = new PipeManager(2, 100.0);
+
+    pipeManager.addPipesAsync(NAME, PARTITION, () -> ImmutableList.of(firstPipe)).get();
+    pipeManager.stop();
+
+    verify(firstPipe, times(1)).stop();
+
+    // No pipes are started once the pipe manager is stopped
+    pipeManager.addPipesAsync(NAME, "test_1", () -> ImmutableList.of(secondPipe));
+  }
 }
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.consumer;
+
+import com.google.common.base.Preconditions;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Represents the column values of a decoded mutation entity, which are decoded lazily on access.
+ * Columns that are never accessed are never decoded.
+ *
+ * <p>Typed getters read strings, byte arrays and primitives straight from the serialized values,
+ * and are not cached. Values returned by {@link #getValue(String)} are deserialized once and
+ * cached. This class is not thread-safe.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class ColumnValues {
+  /** The serialized values of the columns, which are views into the consumed message. */
+  @NonNull private final Map<String, ByteBuffer> serializedValues;
+
+  private final Map<String, Serializable> values = new HashMap<>();
+
+  /** @return the names of the columns in the entity, or in the projection if any. */
+  public Set<String> getColumnNames() {
+    return Collections.unmodifiableSet(serializedValues.keySet());
+  }
+
+  /** @return whether the entity has the column, and it is in the projection if any. */
+  public boolean contains(@NonNull final String column) {
+    return serializedValues.containsKey(column);
+  }
+
+  public boolean isNull(@NonNull final String column) {
+    return SerializedValueDecoder.isNull(getSerializedValue(column));
+  }
+
+  /** @return the value of a column of integral type, ex: {@code INT} or {@code BIGINT}. */
+  public long getLong(@NonNull final String column) {
+    return SerializedValueDecoder.decodeLong(getNonNullValue(column));
+  }
+
+  /**
+   * @return the value of a column of integral type that fits an {@code int}.
+   * @throws ArithmeticException if the value overflows an {@code int}
+   */
+  public int getInt(@NonNull final String column) {
+    return Math.toIntExact(getLong(column));
+  }
+
+  /** @return the value of a column of floating point type, ex: {@code DOUBLE}. */
+  public double getDouble(@NonNull final String column) {
+    return SerializedValueDecoder.decodeDouble(getNonNullValue(column));
+  }
+
+  /** @return the value of a column of string type, or {@code null}. */
+  public String getString(@NonNull final String column) {
+    return SerializedValueDecoder.decodeString(getSerializedValue(column));
+  }
+
+  /** @return the value of a column of binary type, or {@code null}. */
+  public byte[] getBytes(@NonNull final String column) {
+    return SerializedValueDecoder.decodeBytes(getSerializedValue(column));
+  }
+
+  /** @return the deserialized value of a column of any type, or {@code null}. */
+  public Serializable getValue(@NonNull final String column) {
+    final ByteBuffer serializedValue = getSerializedValue(column);
+    if (!values.containsKey(column)) {
+      values.put(column, SerializedValueDecoder.decode(serializedValue));
+    }
+
+    return values.get(column);
+  }
+
+  /** @return the deserialized values of all columns, in the projection if any. */
+  public Map<String, Serializable> toMap() {
+    final Map<String, Serializable> map = new HashMap<>(serializedValues.size());
+    for (String column : serializedValues.keySet()) {
+      map.put(column, getValue(column));
+    }
+
+    return map;
+  }
+
+  private ByteBuffer getSerializedValue(final String column) {
+    final ByteBuffer serializedValue = serializedValues.get(column);
+    Preconditions.checkArgument(
+        serializedValue != null, "Column %s is not in the entity or projection", column);
+
+    return serializedValue;
+  }
+
+  private ByteBuffer getNonNullValue(final String column) {
+    final ByteBuffer serializedValue = getSerializedValue(column);
+    Preconditions.checkState(
+        !SerializedValueDecoder.isNull(serializedValue), "Column %s is null", column);
+
+    return serializedValue;
+  }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.consumer;
+
+import com.airbnb.jitney.event.spinaltap.v1.BinlogHeader;
+import com.airbnb.jitney.event.spinaltap.v1.Mutation;
+import com.airbnb.jitney.event.spinaltap.v1.MutationType;
+import com.airbnb.jitney.event.spinaltap.v1.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Represents a mutation decoded by a {@link MutationDecoder}, with lazily decoded {@link
+ * ColumnValues} for its entity and previous entity.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class DecodedMutation {
+  /** The thrift {@link Mutation}, with the serialized column values. */
+  @NonNull private final Mutation mutation;
+
+  /** The column values after the mutation, or before it for deletes. */
+  @NonNull private final ColumnValues entity;
+
+  /** The column values before the mutation for updates, or {@code null}. */
+  private final ColumnValues previousEntity;
+
+  public MutationType getType() {
+    return mutation.getType();
+  }
+
+  public long getTimestamp() {
+    return mutation.getTimestamp();
+  }
+
+  public Table getTable() {
+    return mutation.getTable();
+  }
+
+  public BinlogHeader getBinlogHeader() {
+    return mutation.getBinlogHeader();
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.consumer;
+
+import com.airbnb.jitney.event.spinaltap.v1.Mutation;
+import com.airbnb.jitney.event.spinaltap.v1.Table;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import lombok.NonNull;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+
+/**
+ * Decodes SpinalTap mutations consumed from the message bus, ex: the values of Kafka records
+ * published by a {@code KafkaDestination}. Large messages split into segments should be
+ * reassembled first.
+ *
+ * <p>The thrift deserializer is reused per thread, and column values are views into the consumed
+ * message, decoded lazily by {@link ColumnValues}. With a projection, the other columns are left
+ * out of the decoded mutation, so they are never decoded. Decoders are thread-safe.
+ *
+ * <p>Mutations published with a schema fingerprint are decoded with the table schema resolved from
+ * a {@link TableSchemaRegistry}, which shares its columns between the decoded tables.
+ */
+public final class MutationDecoder {
+  private static final ThreadLocal<TDeserializer> DESERIALIZER =
+      ThreadLocal.withInitial(() -> new TDeserializer(new TBinaryProtocol.Factory()));
+
+  /** The columns to decode, or {@code null} to decode all columns. */
+  private final Set<String> projection;
+
+  /** The registry of table schemas, or {@code null} if there is none. */
+  private final TableSchemaRegistry schemaRegistry;
+
+  /** Creates a decoder of all columns. */
+  public MutationDecoder() {
+    this.projection = null;
+    this.schemaRegistry = null;
+  }
+
+  /** Creates a decoder of the given columns only. */
+  public MutationDecoder(@NonNull final Set<String> projection) {
+    this.projection = ImmutableSet.copyOf(projection);
+    this.schemaRegistry = null;
+  }
+
+  /** Creates a decoder of all columns, resolving schema fingerprints with the given registry. */
+  public MutationDecoder(@NonNull final TableSchemaRegistry schemaRegistry) {
+    this.projection = null;
+    this.schemaRegistry = schemaRegistry;
+  }
+
+  /**
+   * Creates a decoder of the given columns only, resolving schema fingerprints with the given
+   * registry.
+   */
+  public MutationDecoder(
+      @NonNull final Set<String> projection, @NonNull final TableSchemaRegistry schemaRegistry) {
+    this.projection = ImmutableSet.copyOf(projection);
+    this.schemaRegistry = schemaRegistry;
+  }
+
+  public DecodedMutation decode(@NonNull final byte[] message) throws TException {
+    final Mutation mutation = new Mutation();
+    DESERIALIZER.get().deserialize(mutation, message);
+
+    if (mutation.isSetSchemaFingerprint()) {
+      mutation.setTable(resolveTable(mutation.getTable(), mutation.getSchemaFingerprint()));
+    }
+
+    return new DecodedMutation(
+        mutation,
+        project(mutation.getEntity()),
+        mutation.isSetPreviousEntity() ? project(mutation.getPreviousEntity()) : null);
+  }
+
+  /**
+   * Resolves the table schema of a fingerprint, with the binlog table id of the table sent in its
+   * place.
+   *
+   * @throws IllegalStateException if the fingerprint is not registered
+   */
+  private Table resolveTable(final Table table, final long fingerprint) {
+    Preconditions.checkState(
+        schemaRegistry != null, "No schema registry to resolve fingerprint %s", fingerprint);
+
+    final Table schema = schemaRegistry.resolve(fingerprint);
+    Preconditions.checkState(
+        schema != null, "Unknown schema fingerprint %s of table %s", fingerprint, table.getName());
+
+    final Table resolvedTable =
+        new Table(
+            table.getId(),
+            schema.getName(),
+            schema.getDatabase(),
+            schema.getPrimaryKey(),
+            schema.getColumns());
+    if (schema.isSetOverridingDatabase()) {
+      resolvedTable.setOverridingDatabase(schema.getOverridingDatabase());
+    }
+
+    return resolvedTable;
+  }
+
+  private ColumnValues project(final Map<String, ByteBuffer> entity) {
+    if (projection == null) {
+      return new ColumnValues(entity);
+    }
+
+    final Map<String, ByteBuffer> projectedEntity = new HashMap<>(projection.size());
+    for (String column : projection) {
+      final ByteBuffer value = entity.get(column);
+      if (value != null) {
+        projectedEntity.put(column, value);
+      }
+    }
+
+    return new ColumnValues(projectedEntity);
+  }
+}
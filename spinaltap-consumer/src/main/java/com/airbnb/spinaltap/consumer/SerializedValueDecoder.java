@@ -0,0 +1,225 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.consumer;
+
+import java.io.ByteArrayInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import org.apache.commons.lang3.SerializationUtils;
+
+/**
+ * Decodes column values, which are published as Java serialized objects. Strings, byte arrays and
+ * boxed primitives are read straight from the serialized bytes, without going through an {@link
+ * java.io.ObjectInputStream} or boxing. Other values (ex: {@link java.math.BigDecimal} or {@link
+ * java.sql.Timestamp}) fall back to Java deserialization.
+ *
+ * <p>Buffers are read at absolute indexes from their position, so they are left untouched and can
+ * be decoded again.
+ */
+@UtilityClass
+class SerializedValueDecoder {
+  private static final short STREAM_MAGIC = (short) 0xaced;
+  private static final byte TC_NULL = 0x70;
+  private static final byte TC_CLASSDESC = 0x72;
+  private static final byte TC_OBJECT = 0x73;
+  private static final byte TC_STRING = 0x74;
+  private static final byte TC_ARRAY = 0x75;
+  private static final byte TC_ENDBLOCKDATA = 0x78;
+  private static final byte TC_LONGSTRING = 0x7c;
+
+  /** The offset of the first content element, following the stream magic and version. */
+  private static final int CONTENT_OFFSET = 4;
+
+  /** The offset of the class name of a serialized object or array. */
+  private static final int CLASS_NAME_OFFSET = CONTENT_OFFSET + 4;
+
+  /** The offset of the elements of a serialized byte array, following its class descriptor. */
+  private static final int BYTE_ARRAY_OFFSET = CLASS_NAME_OFFSET + 2 + 8 + 1 + 2 + 1 + 1 + 4;
+
+  private static final byte[] LONG_CLASS = className(Long.class);
+  private static final byte[] INTEGER_CLASS = className(Integer.class);
+  private static final byte[] SHORT_CLASS = className(Short.class);
+  private static final byte[] BYTE_CLASS = className(Byte.class);
+  private static final byte[] DOUBLE_CLASS = className(Double.class);
+  private static final byte[] FLOAT_CLASS = className(Float.class);
+  private static final byte[] BYTE_ARRAY_CLASS = className(byte[].class);
+
+  /** @return whether the serialized value is {@code null}. */
+  boolean isNull(@NonNull final ByteBuffer buffer) {
+    return content(buffer) == TC_NULL;
+  }
+
+  /**
+   * @return the serialized integral value, or other number narrowed as by {@link
+   *     Number#longValue()}.
+   */
+  long decodeLong(@NonNull final ByteBuffer buffer) {
+    if (isObject(buffer)) {
+      final int limit = buffer.limit();
+      if (isClass(buffer, LONG_CLASS)) {
+        return buffer.getLong(limit - Long.BYTES);
+      } else if (isClass(buffer, INTEGER_CLASS)) {
+        return buffer.getInt(limit - Integer.BYTES);
+      } else if (isClass(buffer, SHORT_CLASS)) {
+        return buffer.getShort(limit - Short.BYTES);
+      } else if (isClass(buffer, BYTE_CLASS)) {
+        return buffer.get(limit - Byte.BYTES);
+      }
+    }
+
+    return decodeNumber(buffer).longValue();
+  }
+
+  /**
+   * @return the serialized floating point value, or other number converted as by {@link
+   *     Number#doubleValue()}.
+   */
+  double decodeDouble(@NonNull final ByteBuffer buffer) {
+    if (isObject(buffer)) {
+      final int limit = buffer.limit();
+      if (isClass(buffer, DOUBLE_CLASS)) {
+        return buffer.getDouble(limit - Double.BYTES);
+      } else if (isClass(buffer, FLOAT_CLASS)) {
+        return buffer.getFloat(limit - Float.BYTES);
+      }
+    }
+
+    return decodeNumber(buffer).doubleValue();
+  }
+
+  /** @return the serialized string, or {@code null} if the value is {@code null}. */
+  String decodeString(@NonNull final ByteBuffer buffer) {
+    final int position = buffer.position();
+    final byte content = content(buffer);
+
+    if (content == TC_STRING) {
+      return decodeUtf(
+          buffer,
+          position + CONTENT_OFFSET + 1 + Short.BYTES,
+          Short.toUnsignedInt(buffer.getShort(position + CONTENT_OFFSET + 1)));
+    } else if (content == TC_LONGSTRING) {
+      final long length = buffer.getLong(position + CONTENT_OFFSET + 1);
+      if (length <= Integer.MAX_VALUE) {
+        return decodeUtf(buffer, position + CONTENT_OFFSET + 1 + Long.BYTES, (int) length);
+      }
+    }
+
+    return (String) decode(buffer);
+  }
+
+  /** @return a copy of the serialized byte array, or {@code null} if the value is {@code null}. */
+  byte[] decodeBytes(@NonNull final ByteBuffer buffer) {
+    final int position = buffer.position();
+    if (buffer.remaining() >= BYTE_ARRAY_OFFSET
+        && content(buffer) == TC_ARRAY
+        && isClass(buffer, BYTE_ARRAY_CLASS)
+        && buffer.get(position + BYTE_ARRAY_OFFSET - 6) == TC_ENDBLOCKDATA
+        && buffer.get(position + BYTE_ARRAY_OFFSET - 5) == TC_NULL
+        && buffer.getInt(position + BYTE_ARRAY_OFFSET - 4)
+            == buffer.remaining() - BYTE_ARRAY_OFFSET) {
+      final byte[] bytes = new byte[buffer.remaining() - BYTE_ARRAY_OFFSET];
+      final ByteBuffer elements = buffer.duplicate();
+      elements.position(position + BYTE_ARRAY_OFFSET);
+      elements.get(bytes);
+      return bytes;
+    }
+
+    return (byte[]) decode(buffer);
+  }
+
+  /** @return the value deserialized from the buffer. */
+  Serializable decode(@NonNull final ByteBuffer buffer) {
+    if (isNull(buffer)) {
+      return null;
+    }
+
+    if (buffer.hasArray()) {
+      return SerializationUtils.deserialize(
+          new ByteArrayInputStream(
+              buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+    }
+
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return SerializationUtils.deserialize(bytes);
+  }
+
+  private Number decodeNumber(final ByteBuffer buffer) {
+    final Serializable value = decode(buffer);
+    if (value instanceof Number) {
+      return (Number) value;
+    }
+
+    throw new IllegalStateException(
+        String.format("Value of type %s is not a number", value == null ? null : value.getClass()));
+  }
+
+  /**
+   * Decodes a serialized string, written in modified UTF-8. It only differs from standard UTF-8 in
+   * the encoding of the null character and of supplementary characters, which start with bytes
+   * {@code 0xc0} and {@code 0xed}, so strings without those bytes are decoded as UTF-8.
+   */
+  private String decodeUtf(final ByteBuffer buffer, final int offset, final int length) {
+    if (length > buffer.limit() - offset) {
+      return (String) decode(buffer);
+    }
+
+    for (int i = offset; i < offset + length; i++) {
+      final byte value = buffer.get(i);
+      if (value == (byte) 0xc0 || value == (byte) 0xed) {
+        return (String) decode(buffer);
+      }
+    }
+
+    if (buffer.hasArray()) {
+      return new String(
+          buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+    }
+
+    final byte[] bytes = new byte[length];
+    final ByteBuffer content = buffer.duplicate();
+    content.position(offset);
+    content.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** @return the type code of the first content element, or 0 if the stream is invalid. */
+  private byte content(final ByteBuffer buffer) {
+    final int position = buffer.position();
+    if (buffer.remaining() <= CONTENT_OFFSET || buffer.getShort(position) != STREAM_MAGIC) {
+      return 0;
+    }
+
+    return buffer.get(position + CONTENT_OFFSET);
+  }
+
+  private boolean isObject(final ByteBuffer buffer) {
+    return content(buffer) == TC_OBJECT;
+  }
+
+  /** @return whether the serialized object or array is of the class with the given name. */
+  private boolean isClass(final ByteBuffer buffer, final byte[] className) {
+    final int position = buffer.position();
+    if (buffer.remaining() < CLASS_NAME_OFFSET + className.length
+        || buffer.get(position + CONTENT_OFFSET + 1) != TC_CLASSDESC
+        || buffer.getShort(position + CLASS_NAME_OFFSET - 2) != className.length) {
+      return false;
+    }
+
+    for (int i = 0; i < className.length; i++) {
+      if (buffer.get(position + CLASS_NAME_OFFSET + i) != className[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[] className(final Class<?> clazz) {
+    return clazz.getName().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.consumer;
+
+import com.airbnb.jitney.event.spinaltap.v1.Table;
+import com.airbnb.spinaltap.mysql.mutation.schema.TableFingerprint;
+import com.google.common.base.Preconditions;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.NonNull;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+
+/**
+ * Resolves the table schemas of mutations published with a schema fingerprint, from the records
+ * of the compacted schema topic, keyed by fingerprint. Records should be registered before the
+ * mutations referencing them are decoded, ex: by consuming the schema topic from the beginning
+ * first. Registries are thread-safe.
+ */
+public final class TableSchemaRegistry {
+  private final Map<Long, Table> schemas = new ConcurrentHashMap<>();
+
+  /**
+   * Registers a record of the schema topic.
+   *
+   * @throws IllegalArgumentException if the fingerprint does not match the schema
+   */
+  public void register(@NonNull final byte[] key, @NonNull final byte[] value)
+      throws TException {
+    final Table table = new Table();
+    new TDeserializer(new TBinaryProtocol.Factory()).deserialize(table, value);
+
+    final long fingerprint = TableFingerprint.fromBytes(key);
+    Preconditions.checkArgument(
+        fingerprint == TableFingerprint.of(table),
+        "Fingerprint %s does not match the schema of table %s",
+        fingerprint,
+        table.getName());
+
+    schemas.put(fingerprint, table);
+  }
+
+  /** Registers a table schema under its fingerprint. */
+  public void register(@NonNull final Table table) {
+    schemas.put(TableFingerprint.of(table), table);
+  }
+
+  /** @return the table schema registered with the fingerprint, or {@code null} if unknown. */
+  public Table resolve(final long fingerprint) {
+    return schemas.get(fingerprint);
+  }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.consumer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.airbnb.jitney.event.spinaltap.v1.BinlogHeader;
+import com.airbnb.jitney.event.spinaltap.v1.Column;
+import com.airbnb.jitney.event.spinaltap.v1.DataSource;
+import com.airbnb.jitney.event.spinaltap.v1.Mutation;
+import com.airbnb.jitney.event.spinaltap.v1.MutationType;
+import com.airbnb.jitney.event.spinaltap.v1.Table;
+import com.airbnb.spinaltap.mysql.mutation.schema.TableFingerprint;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.junit.Test;
+
+public class MutationDecoderTest {
+  private static final Map<String, Serializable> ENTITY =
+      ImmutableMap.<String, Serializable>builder()
+          .put("long", 1234567890123L)
+          .put("int", -42)
+          .put("short", (short) 7)
+          .put("double", 3.5d)
+          .put("float", 1.25f)
+          .put("ascii", "spinaltap")
+          .put("accented", "caf\u00e9")
+          .put("unicode", "caf\u00e9 \ud83d\ude00 \u0000")
+          .put("bytes", new byte[] {1, 2, 3})
+          .put("decimal", new BigDecimal("12.34"))
+          .put("timestamp", new Timestamp(1500000000000L))
+          .build();
+
+  @Test
+  public void testDecode() throws Exception {
+    Map<String, Serializable> previousEntity = new HashMap<>(ENTITY);
+    previousEntity.put("int", 41);
+    previousEntity.put("ascii", null);
+
+    DecodedMutation mutation =
+        new MutationDecoder().decode(serialize(createMutation(ENTITY, previousEntity)));
+
+    assertEquals(MutationType.UPDATE, mutation.getType());
+    assertEquals("users", mutation.getTable().getName());
+    assertEquals(ENTITY.keySet(), mutation.getEntity().getColumnNames());
+
+    ColumnValues entity = mutation.getEntity();
+    assertEquals(1234567890123L, entity.getLong("long"));
+    assertEquals(-42, entity.getInt("int"));
+    assertEquals(-42L, entity.getLong("int"));
+    assertEquals(7, entity.getInt("short"));
+    assertEquals(3.5d, entity.getDouble("double"), 0d);
+    assertEquals(1.25d, entity.getDouble("float"), 0d);
+    assertEquals(12.34d, entity.getDouble("decimal"), 0d);
+    assertEquals("spinaltap", entity.getString("ascii"));
+    assertEquals("caf\u00e9", entity.getString("accented"));
+    assertEquals("caf\u00e9 \ud83d\ude00 \u0000", entity.getString("unicode"));
+    assertArrayEquals(new byte[] {1, 2, 3}, entity.getBytes("bytes"));
+    assertEquals(new Timestamp(1500000000000L), entity.getValue("timestamp"));
+
+    ColumnValues previous = mutation.getPreviousEntity();
+    assertEquals(41, previous.getInt("int"));
+    assertTrue(previous.isNull("ascii"));
+    assertNull(previous.getString("ascii"));
+    assertNull(previous.getValue("ascii"));
+  }
+
+  @Test
+  public void testDecodeRepeatedly() throws Exception {
+    ColumnValues entity =
+        new MutationDecoder().decode(serialize(createMutation(ENTITY, null))).getEntity();
+
+    assertEquals("spinaltap", entity.getString("ascii"));
+    assertEquals("spinaltap", entity.getString("ascii"));
+    assertEquals("spinaltap", entity.getValue("ascii"));
+    assertEquals(ENTITY.get("decimal"), entity.toMap().get("decimal"));
+  }
+
+  @Test
+  public void testProjection() throws Exception {
+    DecodedMutation mutation =
+        new MutationDecoder(ImmutableSet.of("long", "ascii", "missing"))
+            .decode(serialize(createMutation(ENTITY, null)));
+
+    assertNull(mutation.getPreviousEntity());
+    assertEquals(ImmutableSet.of("long", "ascii"), mutation.getEntity().getColumnNames());
+    assertEquals(2, mutation.getEntity().toMap().size());
+    assertTrue(mutation.getEntity().contains("long"));
+    assertFalse(mutation.getEntity().contains("int"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testColumnOutsideProjection() throws Exception {
+    new MutationDecoder(ImmutableSet.of("long"))
+        .decode(serialize(createMutation(ENTITY, null)))
+        .getEntity()
+        .getInt("int");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNullPrimitive() throws Exception {
+    new MutationDecoder()
+        .decode(serialize(createMutation(Collections.singletonMap("int", null), null)))
+        .getEntity()
+        .getInt("int");
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void testIntOverflow() throws Exception {
+    new MutationDecoder()
+        .decode(serialize(createMutation(ENTITY, null)))
+        .getEntity()
+        .getInt("long");
+  }
+
+  @Test
+  public void testSchemaFingerprint() throws Exception {
+    Table table = createTable();
+    long fingerprint = TableFingerprint.of(table);
+    TableSchemaRegistry registry = new TableSchemaRegistry();
+    registry.register(TableFingerprint.toBytes(fingerprint), serialize(table));
+
+    Mutation mutation = createMutation(ENTITY, null);
+    mutation.getTable().setId(7L);
+    mutation.setSchemaFingerprint(fingerprint);
+
+    Table resolvedTable = new MutationDecoder(registry).decode(serialize(mutation)).getTable();
+
+    assertEquals(7L, resolvedTable.getId());
+    assertEquals("users", resolvedTable.getName());
+    assertEquals(table.getColumns(), resolvedTable.getColumns());
+    assertEquals(fingerprint, TableFingerprint.of(resolvedTable));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnknownSchemaFingerprint() throws Exception {
+    Mutation mutation = createMutation(ENTITY, null);
+    mutation.setSchemaFingerprint(TableFingerprint.of(createTable()));
+
+    new MutationDecoder(new TableSchemaRegistry()).decode(serialize(mutation));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRegisterMismatchedFingerprint() throws Exception {
+    Table table = createTable();
+    byte[] key = TableFingerprint.toBytes(TableFingerprint.of(table));
+    table.getColumns().remove("int");
+
+    new TableSchemaRegistry().register(key, serialize(table));
+  }
+
+  private static Table createTable() {
+    Map<String, Column> columns = new HashMap<>();
+    columns.put("long", new Column(8, true, "long"));
+    columns.put("int", new Column(3, false, "int"));
+    return new Table(1L, "users", "test", ImmutableSet.of("long"), columns);
+  }
+
+  private static Mutation createMutation(
+      Map<String, Serializable> entity, Map<String, Serializable> previousEntity) {
+    Mutation mutation =
+        new Mutation(
+            previousEntity == null ? MutationType.INSERT : MutationType.UPDATE,
+            1500000000000L,
+            "source",
+            new DataSource("localhost", 3306, "service"),
+            new BinlogHeader("mysql-bin-changelog.000001:4:4", 1L, 1500000000000L, 30),
+            new Table(1L, "users", "test", ImmutableSet.of("long"), Collections.emptyMap()),
+            toEntity(entity));
+
+    if (previousEntity != null) {
+      mutation.setPreviousEntity(toEntity(previousEntity));
+    }
+    return mutation;
+  }
+
+  private static Map<String, ByteBuffer> toEntity(Map<String, Serializable> values) {
+    Map<String, ByteBuffer> entity = new HashMap<>();
+    values.forEach(
+        (column, value) ->
+            entity.put(column, ByteBuffer.wrap(SerializationUtils.serialize(value))));
+    return entity;
+  }
+
+  private static byte[] serialize(TBase<?, ?> event) throws Exception {
+    return new TSerializer(new TBinaryProtocol.Factory()).serialize(event);
+  }
+}
@@ -9,18 +9,30 @@ import com.airbnb.spinaltap.Mutation;
 import com.airbnb.spinaltap.common.destination.AbstractDestination;
 import com.airbnb.spinaltap.common.destination.DestinationMetrics;
 import com.airbnb.spinaltap.common.util.BatchMapper;
+import com.airbnb.spinaltap.mysql.mutation.schema.TableFingerprint;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.apache.thrift.TBase;
 import org.apache.thrift.TException;
 import org.apache.thrift.TSerializer;
@@ -33,12 +45,51 @@ import org.apache.thrift.protocol.TBinaryProtocol;
 @Slf4j
 public final class KafkaDestination<T extends TBase<?, ?>> extends AbstractDestination<T> {
   private static final String DEFAULT_TOPIC_PREFIX = "spinaltap";
+  private static final String PRODUCER_METRICS_GROUP = "producer-metrics";
+  private static final String COMPRESSION_RATE_METRIC = "compression-rate-avg";
+  private static final String BATCH_SIZE_METRIC = "batch-size-avg";
+  private static final String CONNECTION_COUNT_METRIC = "connection-count";
+  private static final String BUFFER_TOTAL_BYTES_METRIC = "buffer-total-bytes";
+  private static final String SCHEMA_TOPIC_SUFFIX = "schemas";
+
+  /** The serialized size of the {@code schema_fingerprint} field, i.e. its header and an i64. */
+  private static final int SCHEMA_FINGERPRINT_FIELD_SIZE = 11;
 
   private volatile boolean failed = false;
 
   private final String topicNamePrefix;
-  private final KafkaProducer<byte[], byte[]> kafkaProducer;
-  private final Callback callback = new SpinalTapPublishCallback();
+  private final Properties producerProperties;
+  private final DestinationMetrics metrics;
+
+  /**
+   * Whether the producer is shared with other destinations through the {@link
+   * KafkaProducerRegistry}, in which case it is acquired while the destination is open. A shared
+   * producer cannot be closed on a failed send, so the destination switches to a producer of its
+   * own after its first failure.
+   */
+  private volatile boolean sharedProducer;
+
+  private volatile KafkaProducer<byte[], byte[]> kafkaProducer;
+
+  /** Whether messages above the chunk size are split into segments, instead of failing. */
+  private final boolean largeMessageEnabled;
+
+  /**
+   * Whether the table schema in messages is replaced with its fingerprint, and the schema is
+   * registered under the fingerprint in the compacted schema topic.
+   */
+  private final boolean schemaFingerprintEnabled;
+
+  /**
+   * The schema of each thrift table, keyed by identity. Thrift tables are created once per table
+   * schema, so the fingerprint is only computed when the schema changes or the table is remapped.
+   */
+  private final Cache<Table, TableSchema> tableSchemas =
+      CacheBuilder.newBuilder().weakKeys().build();
+
+  /** The fingerprints of the schemas acknowledged in the schema topic by this destination. */
+  private final Set<Long> registeredFingerprints = ConcurrentHashMap.newKeySet();
+
   private final ThreadLocal<TSerializer> serializer =
       ThreadLocal.withInitial(() -> new TSerializer((new TBinaryProtocol.Factory())));
 
@@ -48,26 +99,65 @@ public final class KafkaDestination<T extends TBase<?, ?>> extends AbstractDesti
       final BatchMapper<Mutation<?>, T> mapper,
       final DestinationMetrics metrics,
       final long delaySendMs) {
+    this(
+        prefix,
+        producerConfig,
+        Collections.emptyMap(),
+        false,
+        false,
+        mapper,
+        metrics,
+        delaySendMs);
+  }
+
+  public KafkaDestination(
+      final String prefix,
+      final KafkaProducerConfiguration producerConfig,
+      final Map<String, Object> producerOverrides,
+      final boolean largeMessageEnabled,
+      final boolean schemaFingerprintEnabled,
+      final BatchMapper<Mutation<?>, T> mapper,
+      final DestinationMetrics metrics,
+      final long delaySendMs) {
     super(mapper, metrics, delaySendMs);
 
+    this.metrics = metrics;
+    this.largeMessageEnabled = largeMessageEnabled;
+    this.schemaFingerprintEnabled = schemaFingerprintEnabled;
+    this.sharedProducer = producerConfig.isSharedProducerEnabled();
     topicNamePrefix = Optional.ofNullable(prefix).orElse(DEFAULT_TOPIC_PREFIX);
-    Properties props = new Properties();
-    setKafkaDefaultConfigs(props, producerConfig.getBootstrapServers());
-    kafkaProducer = new KafkaProducer<>(props);
+    producerProperties =
+        KafkaProducerProperties.create(producerConfig.getBootstrapServers(), producerOverrides);
+
+    if (!sharedProducer) {
+      kafkaProducer = new KafkaProducer<>(producerProperties);
+    }
+
+    metrics.producerGauges(
+        () -> kafkaProducer,
+        () -> getProducerMetric(COMPRESSION_RATE_METRIC),
+        () -> getProducerMetric(BATCH_SIZE_METRIC),
+        () -> getProducerMetric(CONNECTION_COUNT_METRIC),
+        () -> getProducerMetric(BUFFER_TOTAL_BYTES_METRIC));
   }
 
-  private void setKafkaDefaultConfigs(Properties props, String bootstrapServers) {
-    // For bootstrap.servers.
-    props.setProperty("bootstrap.servers", bootstrapServers);
-    // For durability.
-    props.setProperty("acks", "-1");
-    // For in-order delivery.
-    props.setProperty("max.in.flight.requests.per.connection", "1");
-    // For default serializer.
-    props.setProperty(
-        "key.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
-    props.setProperty(
-        "value.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
+  @Override
+  public synchronized void open() {
+    if (sharedProducer && kafkaProducer == null) {
+      kafkaProducer = KafkaProducerRegistry.acquire(producerProperties);
+    }
+
+    super.open();
+  }
+
+  @Override
+  public synchronized void close() {
+    super.close();
+
+    if (sharedProducer && kafkaProducer != null) {
+      KafkaProducerRegistry.release(producerProperties);
+      kafkaProducer = null;
+    }
   }
 
   @Override
@@ -75,23 +165,108 @@ public final class KafkaDestination<T extends TBase<?, ?>> extends AbstractDesti
     try {
       failed = false;
 
-      messages.forEach(message -> kafkaProducer.send(transform(message), callback));
-      kafkaProducer.flush();
+      final Callback callback = new SpinalTapPublishCallback(kafkaProducer, sharedProducer);
+      final List<Future<RecordMetadata>> results = new ArrayList<>(messages.size());
+      for (T message : messages) {
+        if (failed) {
+          break;
+        }
+        send(transform(message), callback, results);
+      }
+
+      if (sharedProducer) {
+        // Only the records of this destination are awaited, not the whole shared producer
+        for (Future<RecordMetadata> result : results) {
+          result.get();
+        }
+      } else {
+        kafkaProducer.flush();
+      }
 
       if (failed) {
         throw new Exception("Error when sending event to Kafka.");
       }
     } catch (Exception ex) {
+      if (sharedProducer) {
+        detachSharedProducer();
+      }
       throw new Exception("Error when sending event to Kafka.");
     }
   }
 
+  /**
+   * Switches from the shared producer to a producer of its own, so that the next failed send
+   * closes the producer and ordering is preserved. Records of the failed batch following the failed
+   * record may still be delivered by the shared producer.
+   */
+  private synchronized void detachSharedProducer() {
+    if (!sharedProducer) {
+      return;
+    }
+
+    log.warn("Switching to a dedicated Kafka producer after a failed send on the shared producer.");
+    if (kafkaProducer != null) {
+      KafkaProducerRegistry.release(producerProperties);
+    }
+    kafkaProducer = new KafkaProducer<>(producerProperties);
+    sharedProducer = false;
+  }
+
+  /**
+   * Sends a record, split into ordered segments with the same key if large messages are enabled
+   * and the record is above the chunk size. The publish only succeeds once all segments are
+   * acknowledged, so the source never checkpoints past a partially sent message.
+   */
+  private void send(
+      final ProducerRecord<byte[], byte[]> record,
+      final Callback callback,
+      final List<Future<RecordMetadata>> results) {
+    if (!largeMessageEnabled || record.value().length <= LargeMessageChunker.DEFAULT_CHUNK_SIZE) {
+      results.add(kafkaProducer.send(record, callback));
+      return;
+    }
+
+    final List<byte[]> segments =
+        LargeMessageChunker.split(record.value(), LargeMessageChunker.DEFAULT_CHUNK_SIZE);
+    metrics.largeMessageChunked(segments.size(), record.value().length);
+
+    for (byte[] segment : segments) {
+      results.add(
+          kafkaProducer.send(
+              new ProducerRecord<>(record.topic(), record.key(), segment), callback));
+    }
+  }
+
+  /**
+   * @return the value of the given metric of the current producer, or {@code null} if the
+   *     destination is closed. The metric is only looked up when the gauges are reported.
+   */
+  private Double getProducerMetric(final String name) {
+    final KafkaProducer<byte[], byte[]> producer = kafkaProducer;
+    if (producer == null) {
+      return null;
+    }
+
+    for (Map.Entry<MetricName, ? extends Metric> entry : producer.metrics().entrySet()) {
+      final MetricName metricName = entry.getKey();
+      if (PRODUCER_METRICS_GROUP.equals(metricName.group()) && name.equals(metricName.name())) {
+        return entry.getValue().value();
+      }
+    }
+
+    return null;
+  }
+
   /** Transform from TBase to the ProducerRecord. */
-  private ProducerRecord<byte[], byte[]> transform(TBase<?, ?> event) throws RuntimeException {
+  @VisibleForTesting
+  ProducerRecord<byte[], byte[]> transform(TBase<?, ?> event) throws RuntimeException {
     try {
       String topic = getTopic(event);
       byte[] key = getKey(event);
-      byte[] value = serializer.get().serialize(event);
+      byte[] value =
+          schemaFingerprintEnabled
+              ? serializeWithFingerprint((com.airbnb.jitney.event.spinaltap.v1.Mutation) event)
+              : serializer.get().serialize(event);
       return new ProducerRecord<>(topic, key, value);
     } catch (TException ex) {
       throw new RuntimeException("Error when transforming event from TBase to ProducerRecord.", ex);
@@ -100,6 +275,85 @@ public final class KafkaDestination<T extends TBase<?, ?>> extends AbstractDesti
     }
   }
 
+  /**
+   * Serializes the mutation with its table schema replaced by the fingerprint, keeping only the
+   * table id, names and primary key. The schema is registered in the schema topic before the
+   * first message with its fingerprint is sent. The mutation is left unchanged.
+   */
+  private byte[] serializeWithFingerprint(
+      final com.airbnb.jitney.event.spinaltap.v1.Mutation mutation) throws Exception {
+    final Table table = mutation.getTable();
+    final TableSchema schema = getSchema(table);
+    registerSchema(schema);
+
+    final byte[] value;
+    try {
+      mutation.setTable(schema.getStub());
+      mutation.setSchemaFingerprint(schema.getFingerprint());
+      value = serializer.get().serialize(mutation);
+    } finally {
+      mutation.setTable(table);
+      mutation.unsetSchemaFingerprint();
+    }
+
+    metrics.schemaBytesSaved(schema.getSavedBytes());
+    return value;
+  }
+
+  private TableSchema getSchema(final Table table) throws TException {
+    TableSchema schema = tableSchemas.getIfPresent(table);
+    if (schema == null) {
+      final Table stub =
+          new Table(
+              table.getId(),
+              table.getName(),
+              table.getDatabase(),
+              table.getPrimaryKey(),
+              Collections.emptyMap());
+      if (table.isSetOverridingDatabase()) {
+        stub.setOverridingDatabase(table.getOverridingDatabase());
+      }
+
+      final byte[] serializedTable = serializer.get().serialize(table);
+      final int savedBytes =
+          serializedTable.length
+              - serializer.get().serialize(stub).length
+              - SCHEMA_FINGERPRINT_FIELD_SIZE;
+
+      schema = new TableSchema(TableFingerprint.of(table), stub, serializedTable, savedBytes);
+      tableSchemas.put(table, schema);
+    }
+
+    return schema;
+  }
+
+  /**
+   * Registers the schema under its fingerprint in the compacted schema topic, unless already
+   * acknowledged. The send is awaited, so consumers can resolve the fingerprint of any message
+   * that follows it.
+   */
+  private void registerSchema(final TableSchema schema) throws Exception {
+    if (registeredFingerprints.contains(schema.getFingerprint())) {
+      return;
+    }
+
+    kafkaProducer
+        .send(
+            new ProducerRecord<>(
+                getSchemaTopic(),
+                TableFingerprint.toBytes(schema.getFingerprint()),
+                schema.getSerializedTable()))
+        .get();
+
+    registeredFingerprints.add(schema.getFingerprint());
+    metrics.schemaRegistered();
+  }
+
+  @VisibleForTesting
+  String getSchemaTopic() {
+    return String.format("%s.%s", topicNamePrefix, SCHEMA_TOPIC_SUFFIX);
+  }
+
   /** Use the primary key as the key of the ProducerRecord. */
   private byte[] getKey(TBase<?, ?> event) {
     com.airbnb.jitney.event.spinaltap.v1.Mutation mutation =
@@ -135,14 +389,35 @@ public final class KafkaDestination<T extends TBase<?, ?>> extends AbstractDesti
 
   /**
    * The callback to mark the asynchronous send result for KafkaProducer. Close the KafkaProducer
-   * inside the callback if there is an exception to prevent out-of-order delivery.
+   * inside the callback if there is an exception to prevent out-of-order delivery. A shared
+   * producer is left open for the other destinations: this destination stops sending the rest of
+   * the batch, and switches to a producer of its own once the publish fails.
    */
+  @RequiredArgsConstructor
   private class SpinalTapPublishCallback implements Callback {
+    /** The producer the records were sent with, which may have been replaced since. */
+    private final KafkaProducer<byte[], byte[]> producer;
+
+    private final boolean shared;
+
     public void onCompletion(RecordMetadata metadata, Exception exception) {
       if (exception != null) {
         failed = true;
-        kafkaProducer.close();
+        if (!shared) {
+          producer.close();
+        }
       }
     }
   }
+
+  /** The schema of a thrift table, along with its fingerprint and the stub sent in its place. */
+  @Value
+  private static class TableSchema {
+    long fingerprint;
+    Table stub;
+    byte[] serializedTable;
+
+    /** The bytes saved in each message by sending the stub and fingerprint instead. */
+    int savedBytes;
+  }
 }
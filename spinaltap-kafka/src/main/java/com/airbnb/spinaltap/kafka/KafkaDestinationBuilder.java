@@ -13,10 +13,18 @@ import org.apache.thrift.TBase;
 /** Represents an implement of {@link DestinationBuilder} for {@link KafkaDestination}s. */
 @RequiredArgsConstructor
 public final class KafkaDestinationBuilder<T extends TBase<?, ?>> extends DestinationBuilder<T> {
-  @NonNull private final KafkaProducerConfiguration producerConfig;
+  @NonNull private final KafkaProducerConfiguration kafkaProducerConfig;
 
   @Override
   protected Destination createDestination() {
-    return new KafkaDestination<>(topicNamePrefix, producerConfig, mapper, metrics, delaySendMs);
+    return new KafkaDestination<>(
+        topicNamePrefix,
+        kafkaProducerConfig,
+        producerConfig,
+        largeMessageEnabled,
+        schemaFingerprintEnabled,
+        mapper,
+        metrics,
+        delaySendMs);
   }
 }
@@ -16,4 +16,19 @@ import lombok.NoArgsConstructor;
 public class KafkaProducerConfiguration {
   @JsonProperty("bootstrap_servers")
   private String bootstrapServers;
+
+  /**
+   * Whether destinations with the same producer config share a single producer, instead of one
+   * producer per destination.
+   *
+   * <p>A shared producer is not closed when a send fails, so records of the failed batch following
+   * the failed record may still be delivered, out of order with their retries. The destination
+   * then switches to a producer of its own, so this only affects its first failure.
+   */
+  @JsonProperty("shared_producer_enabled")
+  private boolean sharedProducerEnabled = false;
+
+  public KafkaProducerConfiguration(final String bootstrapServers) {
+    this(bootstrapServers, false);
+  }
 }
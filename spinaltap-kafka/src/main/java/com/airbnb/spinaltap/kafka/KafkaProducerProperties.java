@@ -0,0 +1,76 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.kafka;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Builds the properties of the Kafka producer used in {@link KafkaDestination}, from safe defaults
+ * and the producer config of the source, ex: to tune compression.type, linger.ms or batch.size.
+ */
+@UtilityClass
+public class KafkaProducerProperties {
+  static final String BOOTSTRAP_SERVERS = "bootstrap.servers";
+  static final String MAX_IN_FLIGHT_REQUESTS = "max.in.flight.requests.per.connection";
+
+  /**
+   * Configs that cannot be overridden: the serializers of records and the partitioner, which
+   * guarantees mutations of a row are sent to the same partition in order.
+   */
+  private static final Set<String> RESERVED_CONFIGS =
+      ImmutableSet.of(BOOTSTRAP_SERVERS, "key.serializer", "value.serializer", "partitioner.class");
+
+  /**
+   * @return the producer properties, with the given producer config merged over the defaults.
+   * @throws IllegalArgumentException if the producer config breaks in-order delivery.
+   */
+  public Properties create(
+      @NonNull final String bootstrapServers, final Map<String, Object> producerConfig) {
+    final Properties props = new Properties();
+    setDefaultConfigs(props, bootstrapServers);
+
+    if (producerConfig != null) {
+      producerConfig.forEach(
+          (key, value) -> {
+            validate(key, value);
+            props.setProperty(key, String.valueOf(value));
+          });
+    }
+
+    return props;
+  }
+
+  private void setDefaultConfigs(final Properties props, final String bootstrapServers) {
+    // For bootstrap.servers.
+    props.setProperty(BOOTSTRAP_SERVERS, bootstrapServers);
+    // For durability.
+    props.setProperty("acks", "-1");
+    // For in-order delivery.
+    props.setProperty(MAX_IN_FLIGHT_REQUESTS, "1");
+    // For default serializer.
+    props.setProperty(
+        "key.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
+    props.setProperty(
+        "value.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
+  }
+
+  private void validate(final String key, final Object value) {
+    Preconditions.checkArgument(
+        !RESERVED_CONFIGS.contains(key), "Producer config %s cannot be overridden", key);
+
+    // Retried requests are reordered with more than one request in flight
+    Preconditions.checkArgument(
+        !MAX_IN_FLIGHT_REQUESTS.equals(key) || "1".equals(String.valueOf(value)),
+        "Producer config %s must be 1 for in-order delivery, but was %s",
+        key,
+        value);
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.kafka;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.KafkaProducer;
+
+/**
+ * Shares {@link KafkaProducer}s between the {@link KafkaDestination}s with the same producer
+ * properties, instead of one producer per destination, each with its own buffer memory, metadata
+ * refreshes and broker connections. Producers are reference counted, and closed once released by
+ * every destination that acquired them.
+ */
+@Slf4j
+@UtilityClass
+public class KafkaProducerRegistry {
+  private final Map<Map<Object, Object>, SharedProducer> PRODUCERS = new HashMap<>();
+
+  /** @return the producer shared for the given properties, created if none is in use yet. */
+  public synchronized KafkaProducer<byte[], byte[]> acquire(@NonNull final Properties props) {
+    final SharedProducer producer =
+        PRODUCERS.computeIfAbsent(
+            ImmutableMap.copyOf(props),
+            key -> {
+              log.info(
+                  "Creating shared Kafka producer for {}, {} producers in use.",
+                  props.getProperty(KafkaProducerProperties.BOOTSTRAP_SERVERS),
+                  PRODUCERS.size() + 1);
+              return new SharedProducer(new KafkaProducer<>(props));
+            });
+
+    producer.references++;
+    return producer.producer;
+  }
+
+  /** Releases the producer shared for the given properties, closing it if no longer in use. */
+  public synchronized void release(@NonNull final Properties props) {
+    final Map<Object, Object> key = ImmutableMap.copyOf(props);
+    final SharedProducer producer = PRODUCERS.get(key);
+    if (producer == null || --producer.references > 0) {
+      return;
+    }
+
+    PRODUCERS.remove(key);
+    log.info(
+        "Closing shared Kafka producer for {}, {} producers in use.",
+        props.getProperty(KafkaProducerProperties.BOOTSTRAP_SERVERS),
+        PRODUCERS.size());
+    producer.producer.close();
+  }
+
+  /** @return the number of shared producers in use. */
+  public synchronized int getProducerCount() {
+    return PRODUCERS.size();
+  }
+
+  @RequiredArgsConstructor
+  private static final class SharedProducer {
+    private final KafkaProducer<byte[], byte[]> producer;
+    private int references = 0;
+  }
+}
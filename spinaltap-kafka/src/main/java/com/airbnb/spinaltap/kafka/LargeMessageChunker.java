@@ -0,0 +1,101 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.kafka;
+
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.validation.constraints.Min;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Splits messages too large for a Kafka record into ordered segments, to be reassembled by a
+ * {@link LargeMessageReassembler} on the consumer side. Segments of a message are sent with the
+ * same key, so they land in the same partition in order.
+ *
+ * <p>Each segment starts with a header: a magic number, the format version, the message id, the
+ * index of the segment, the number of segments and the length of the whole message. The magic
+ * number cannot start a Thrift binary struct, as its first byte is not a valid field type, so
+ * segments are told apart from unchunked messages.
+ */
+@UtilityClass
+public class LargeMessageChunker {
+  /** The default segment payload size, below the default producer and broker record limits. */
+  public static final int DEFAULT_CHUNK_SIZE = 512 * 1024;
+
+  static final int MAGIC = 0x5354_4348;
+  static final byte VERSION = 1;
+  static final int HEADER_SIZE = 4 + 1 + 16 + 4 + 4 + 4;
+
+  /** @return the segments of the message, with payloads of at most the given chunk size. */
+  public List<byte[]> split(@NonNull final byte[] message, @Min(1) final int chunkSize) {
+    Preconditions.checkArgument(chunkSize > 0, "Chunk size must be positive");
+
+    final UUID messageId = UUID.randomUUID();
+    final int count = (message.length + chunkSize - 1) / chunkSize;
+    final List<byte[]> segments = new ArrayList<>(count);
+
+    for (int index = 0; index < count; index++) {
+      final int offset = index * chunkSize;
+      final int length = Math.min(chunkSize, message.length - offset);
+
+      segments.add(
+          ByteBuffer.allocate(HEADER_SIZE + length)
+              .putInt(MAGIC)
+              .put(VERSION)
+              .putLong(messageId.getMostSignificantBits())
+              .putLong(messageId.getLeastSignificantBits())
+              .putInt(index)
+              .putInt(count)
+              .putInt(message.length)
+              .put(message, offset, length)
+              .array());
+    }
+
+    return segments;
+  }
+
+  /** @return whether the value is a segment of a chunked message. */
+  public boolean isSegment(@NonNull final byte[] value) {
+    return value.length >= HEADER_SIZE && ByteBuffer.wrap(value).getInt() == MAGIC;
+  }
+
+  /** @return the segment parsed from a value, which must be a segment. */
+  Segment parse(@NonNull final byte[] value) {
+    Preconditions.checkArgument(isSegment(value), "Value is not a large message segment");
+
+    final ByteBuffer buffer = ByteBuffer.wrap(value);
+    buffer.getInt();
+
+    final byte version = buffer.get();
+    Preconditions.checkArgument(
+        version == VERSION, "Unsupported large message segment version %s", version);
+
+    return new Segment(
+        new UUID(buffer.getLong(), buffer.getLong()),
+        buffer.getInt(),
+        buffer.getInt(),
+        buffer.getInt(),
+        value);
+  }
+
+  /** Represents a segment of a chunked message. */
+  @Value
+  static class Segment {
+    UUID messageId;
+    int index;
+    int count;
+    int messageLength;
+    byte[] value;
+
+    int getPayloadLength() {
+      return value.length - HEADER_SIZE;
+    }
+  }
+}
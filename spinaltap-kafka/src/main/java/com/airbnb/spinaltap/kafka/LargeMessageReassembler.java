@@ -0,0 +1,232 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.kafka;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.LongStream;
+import javax.validation.constraints.Min;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Reassembles the messages split by {@link LargeMessageChunker} from the consumed records. Records
+ * that are not segments are returned as is.
+ *
+ * <p>Consumers should commit the offsets given by {@link #getCommittableOffset(TopicPartition)}
+ * rather than the offsets consumed, so a message whose segments are not all consumed yet is
+ * consumed again from its first segment after a restart.
+ *
+ * <p>A message whose first segment is followed by a new first segment with the same key was
+ * partially published before a retry, and is dropped. Pending messages beyond the maximum pending
+ * size are dropped from the oldest, and are returned by {@link #getDroppedMessages(TopicPartition)}
+ * so that the caller can handle their loss, ex: by consuming them again with a larger limit. The
+ * committable offset does not move past the first segment of a dropped message until the caller
+ * acknowledges it with {@link #acknowledgeDropped(DroppedMessage)}.
+ *
+ * <p>This class is not thread-safe, as records are expected to be consumed from a single thread.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public final class LargeMessageReassembler {
+  @Min(1)
+  private final long maxPendingBytes;
+
+  private final Map<TopicPartition, PartitionState> partitions = new HashMap<>();
+
+  /**
+   * @return the value of the record, or of the message it completes if it is the last segment of
+   *     a message, or {@code null} if it is any other segment.
+   */
+  public byte[] reassemble(@NonNull final ConsumerRecord<byte[], byte[]> record) {
+    final PartitionState partition =
+        partitions.computeIfAbsent(
+            new TopicPartition(record.topic(), record.partition()), key -> new PartitionState());
+    partition.nextOffset = record.offset() + 1;
+
+    if (!LargeMessageChunker.isSegment(record.value())) {
+      return record.value();
+    }
+
+    return partition.add(record, LargeMessageChunker.parse(record.value()));
+  }
+
+  /**
+   * @return the offset to commit for the partition, i.e. the offset of the first segment of the
+   *     earliest pending or unacknowledged dropped message, or the offset following the last record
+   *     consumed, or -1 if no record was consumed from the partition.
+   */
+  public long getCommittableOffset(@NonNull final TopicPartition topicPartition) {
+    final PartitionState partition = partitions.get(topicPartition);
+    if (partition == null) {
+      return -1L;
+    }
+
+    return LongStream.concat(
+            partition.pending.values().stream().mapToLong(message -> message.firstOffset),
+            partition.dropped.values().stream().mapToLong(DroppedMessage::getFirstOffset))
+        .min()
+        .orElse(partition.nextOffset);
+  }
+
+  /**
+   * @return the messages of the partition dropped beyond the maximum pending size, which have not
+   *     been acknowledged yet, from the oldest.
+   */
+  public List<DroppedMessage> getDroppedMessages(@NonNull final TopicPartition topicPartition) {
+    final PartitionState partition = partitions.get(topicPartition);
+    if (partition == null) {
+      return Collections.emptyList();
+    }
+
+    return new ArrayList<>(partition.dropped.values());
+  }
+
+  /** Acknowledges the loss of a dropped message, so that its offset can be committed. */
+  public void acknowledgeDropped(@NonNull final DroppedMessage message) {
+    final PartitionState partition = partitions.get(message.getTopicPartition());
+    if (partition != null) {
+      partition.dropped.remove(message.getMessageId());
+    }
+  }
+
+  /** Drops the pending messages of the partition, ex: when it is revoked from the consumer. */
+  public void clear(@NonNull final TopicPartition topicPartition) {
+    partitions.remove(topicPartition);
+  }
+
+  private final class PartitionState {
+    private final Map<UUID, PendingMessage> pending = new LinkedHashMap<>();
+    private final Map<UUID, DroppedMessage> dropped = new LinkedHashMap<>();
+    private final Map<ByteBuffer, UUID> pendingByKey = new HashMap<>();
+    private long pendingBytes = 0L;
+    private long nextOffset = 0L;
+
+    byte[] add(
+        final ConsumerRecord<byte[], byte[]> record, final LargeMessageChunker.Segment segment) {
+      final ByteBuffer key = record.key() == null ? null : ByteBuffer.wrap(record.key());
+      PendingMessage message = pending.get(segment.getMessageId());
+
+      if (segment.getIndex() == 0) {
+        // The message may be consumed again, ex: after seeking back
+        remove(segment.getMessageId());
+        dropped.remove(segment.getMessageId());
+        if (key != null && pendingByKey.containsKey(key)) {
+          log.warn("Dropping partially published large message {}.", pendingByKey.get(key));
+          remove(pendingByKey.get(key));
+        }
+
+        message = new PendingMessage(record.offset(), key, segment);
+        reserve(new TopicPartition(record.topic(), record.partition()), message.buffer.length);
+        pending.put(segment.getMessageId(), message);
+        if (key != null) {
+          pendingByKey.put(key, segment.getMessageId());
+        }
+      } else if (message == null) {
+        log.debug(
+            "Skipping segment of large message {} without its first segment.",
+            segment.getMessageId());
+        return null;
+      }
+
+      if (segment.getIndex() != message.nextIndex
+          || message.position + segment.getPayloadLength() > message.buffer.length) {
+        log.warn("Dropping large message {} with missing segments.", segment.getMessageId());
+        remove(segment.getMessageId());
+        return null;
+      }
+
+      message.append(segment);
+      if (message.nextIndex < segment.getCount()) {
+        return null;
+      }
+
+      remove(segment.getMessageId());
+      if (message.position != message.buffer.length) {
+        log.warn("Dropping large message {} with invalid length.", segment.getMessageId());
+        return null;
+      }
+
+      return message.buffer;
+    }
+
+    private void reserve(final TopicPartition topicPartition, final int length) {
+      final Iterator<UUID> oldest = pending.keySet().iterator();
+      while (pendingBytes + length > maxPendingBytes && oldest.hasNext()) {
+        final PendingMessage message = pending.get(oldest.next());
+        log.warn("Dropping large message at offset {} beyond pending limit.", message.firstOffset);
+
+        oldest.remove();
+        release(message);
+        dropped.put(
+            message.messageId,
+            new DroppedMessage(
+                topicPartition, message.messageId, message.firstOffset, message.buffer.length));
+      }
+      pendingBytes += length;
+    }
+
+    private void remove(final UUID messageId) {
+      final PendingMessage message = pending.remove(messageId);
+      if (message != null) {
+        release(message);
+      }
+    }
+
+    private void release(final PendingMessage message) {
+      pendingBytes -= message.buffer.length;
+      if (message.key != null) {
+        pendingByKey.remove(message.key, message.messageId);
+      }
+    }
+  }
+
+  /** A message dropped beyond the maximum pending size, before all its segments were consumed. */
+  @Value
+  public static class DroppedMessage {
+    TopicPartition topicPartition;
+    UUID messageId;
+    /** The offset of the first segment of the message. */
+    long firstOffset;
+    /** The length of the message, in bytes. */
+    int length;
+  }
+
+  private static final class PendingMessage {
+    private final long firstOffset;
+    private final ByteBuffer key;
+    private final UUID messageId;
+    private final byte[] buffer;
+    private int position = 0;
+    private int nextIndex = 0;
+
+    PendingMessage(
+        final long firstOffset, final ByteBuffer key, final LargeMessageChunker.Segment segment) {
+      this.firstOffset = firstOffset;
+      this.key = key;
+      this.messageId = segment.getMessageId();
+      this.buffer = new byte[segment.getMessageLength()];
+    }
+
+    void append(final LargeMessageChunker.Segment segment) {
+      final int length = segment.getPayloadLength();
+      System.arraycopy(
+          segment.getValue(), LargeMessageChunker.HEADER_SIZE, buffer, position, length);
+      position += length;
+      nextIndex++;
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.kafka;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Properties;
+import org.junit.Test;
+
+public class KafkaProducerPropertiesTest {
+  private static final String BOOTSTRAP_SERVERS = "localhost:9092";
+
+  @Test
+  public void testDefaults() {
+    Properties props = KafkaProducerProperties.create(BOOTSTRAP_SERVERS, null);
+
+    assertEquals(BOOTSTRAP_SERVERS, props.getProperty("bootstrap.servers"));
+    assertEquals("-1", props.getProperty("acks"));
+    assertEquals("1", props.getProperty("max.in.flight.requests.per.connection"));
+  }
+
+  @Test
+  public void testOverrides() {
+    Properties props =
+        KafkaProducerProperties.create(
+            BOOTSTRAP_SERVERS,
+            ImmutableMap.of(
+                "compression.type", "lz4",
+                "linger.ms", 5,
+                "max.in.flight.requests.per.connection", 1));
+
+    assertEquals("lz4", props.getProperty("compression.type"));
+    assertEquals("5", props.getProperty("linger.ms"));
+    assertEquals("1", props.getProperty("max.in.flight.requests.per.connection"));
+    assertEquals("-1", props.getProperty("acks"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectMultipleInFlightRequests() {
+    KafkaProducerProperties.create(
+        BOOTSTRAP_SERVERS, ImmutableMap.of("max.in.flight.requests.per.connection", 5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectPartitionerOverride() {
+    KafkaProducerProperties.create(
+        BOOTSTRAP_SERVERS, ImmutableMap.of("partitioner.class", "CustomPartitioner"));
+  }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.kafka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Properties;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.junit.Test;
+
+public class KafkaProducerRegistryTest {
+  private static final String BOOTSTRAP_SERVERS = "localhost:9092";
+
+  @Test
+  public void testSharedProducer() {
+    Properties props = KafkaProducerProperties.create(BOOTSTRAP_SERVERS, null);
+    Properties sameProps = KafkaProducerProperties.create(BOOTSTRAP_SERVERS, null);
+    Properties otherProps =
+        KafkaProducerProperties.create(BOOTSTRAP_SERVERS, ImmutableMap.of("linger.ms", 5));
+
+    KafkaProducer<byte[], byte[]> producer = KafkaProducerRegistry.acquire(props);
+    KafkaProducer<byte[], byte[]> sameProducer = KafkaProducerRegistry.acquire(sameProps);
+    KafkaProducer<byte[], byte[]> otherProducer = KafkaProducerRegistry.acquire(otherProps);
+
+    assertSame(producer, sameProducer);
+    assertNotSame(producer, otherProducer);
+    assertEquals(2, KafkaProducerRegistry.getProducerCount());
+
+    KafkaProducerRegistry.release(props);
+    assertEquals(2, KafkaProducerRegistry.getProducerCount());
+
+    KafkaProducerRegistry.release(sameProps);
+    KafkaProducerRegistry.release(otherProps);
+    assertEquals(0, KafkaProducerRegistry.getProducerCount());
+  }
+
+  @Test
+  public void testReleaseUnknownProducer() {
+    KafkaProducerRegistry.release(KafkaProducerProperties.create(BOOTSTRAP_SERVERS, null));
+
+    assertEquals(0, KafkaProducerRegistry.getProducerCount());
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.kafka;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+public class LargeMessageReassemblerTest {
+  private static final String TOPIC = "spinaltap.localhost-database-table";
+  private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+  private static final int CHUNK_SIZE = 100;
+
+  private final LargeMessageReassembler reassembler = new LargeMessageReassembler(10_000L);
+  private long offset = 0L;
+
+  @Test
+  public void testSplit() {
+    byte[] message = createMessage(250);
+    List<byte[]> segments = LargeMessageChunker.split(message, CHUNK_SIZE);
+
+    assertEquals(3, segments.size());
+    for (byte[] segment : segments) {
+      assertTrue(LargeMessageChunker.isSegment(segment));
+    }
+    assertFalse(LargeMessageChunker.isSegment(message));
+  }
+
+  @Test
+  public void testReassemble() {
+    byte[] message = createMessage(250);
+    List<byte[]> segments = LargeMessageChunker.split(message, CHUNK_SIZE);
+
+    assertNull(reassembler.reassemble(createRecord("a", segments.get(0))));
+    assertNull(reassembler.reassemble(createRecord("a", segments.get(1))));
+    assertEquals(0L, reassembler.getCommittableOffset(PARTITION));
+
+    assertArrayEquals(message, reassembler.reassemble(createRecord("a", segments.get(2))));
+    assertEquals(3L, reassembler.getCommittableOffset(PARTITION));
+  }
+
+  @Test
+  public void testUnchunkedMessage() {
+    byte[] message = createMessage(50);
+
+    assertArrayEquals(message, reassembler.reassemble(createRecord("a", message)));
+    assertEquals(1L, reassembler.getCommittableOffset(PARTITION));
+  }
+
+  @Test
+  public void testInterleavedMessages() {
+    byte[] first = createMessage(150);
+    byte[] second = createMessage(150);
+    List<byte[]> firstSegments = LargeMessageChunker.split(first, CHUNK_SIZE);
+    List<byte[]> secondSegments = LargeMessageChunker.split(second, CHUNK_SIZE);
+
+    assertNull(reassembler.reassemble(createRecord("a", firstSegments.get(0))));
+    assertNull(reassembler.reassemble(createRecord("b", secondSegments.get(0))));
+    assertArrayEquals(second, reassembler.reassemble(createRecord("b", secondSegments.get(1))));
+
+    // The first message is still pending, so its first segment is not committed yet
+    assertEquals(0L, reassembler.getCommittableOffset(PARTITION));
+    assertArrayEquals(first, reassembler.reassemble(createRecord("a", firstSegments.get(1))));
+    assertEquals(4L, reassembler.getCommittableOffset(PARTITION));
+  }
+
+  @Test
+  public void testDropPartiallyPublishedMessage() {
+    byte[] message = createMessage(150);
+    List<byte[]> failedSegments = LargeMessageChunker.split(message, CHUNK_SIZE);
+    List<byte[]> retriedSegments = LargeMessageChunker.split(message, CHUNK_SIZE);
+
+    assertNull(reassembler.reassemble(createRecord("a", failedSegments.get(0))));
+    assertNull(reassembler.reassemble(createRecord("a", retriedSegments.get(0))));
+    assertEquals(1L, reassembler.getCommittableOffset(PARTITION));
+
+    assertArrayEquals(message, reassembler.reassemble(createRecord("a", retriedSegments.get(1))));
+  }
+
+  @Test
+  public void testSkipSegmentsWithoutFirst() {
+    byte[] message = createMessage(250);
+    List<byte[]> segments = LargeMessageChunker.split(message, CHUNK_SIZE);
+
+    assertNull(reassembler.reassemble(createRecord("a", segments.get(1))));
+    assertNull(reassembler.reassemble(createRecord("a", segments.get(2))));
+    assertEquals(2L, reassembler.getCommittableOffset(PARTITION));
+  }
+
+  @Test
+  public void testDropMessageBeyondPendingLimit() {
+    LargeMessageReassembler reassembler = new LargeMessageReassembler(300L);
+    byte[] first = createMessage(200);
+    byte[] second = createMessage(150);
+    List<byte[]> firstSegments = LargeMessageChunker.split(first, CHUNK_SIZE);
+    List<byte[]> secondSegments = LargeMessageChunker.split(second, CHUNK_SIZE);
+
+    assertNull(reassembler.reassemble(createRecord("a", firstSegments.get(0))));
+    assertNull(reassembler.reassemble(createRecord("b", secondSegments.get(0))));
+    assertArrayEquals(second, reassembler.reassemble(createRecord("b", secondSegments.get(1))));
+    assertNull(reassembler.reassemble(createRecord("a", firstSegments.get(1))));
+
+    // The dropped message is not committed until its loss is acknowledged
+    List<LargeMessageReassembler.DroppedMessage> dropped =
+        reassembler.getDroppedMessages(PARTITION);
+    assertEquals(1, dropped.size());
+    assertEquals(0L, dropped.get(0).getFirstOffset());
+    assertEquals(200, dropped.get(0).getLength());
+    assertEquals(0L, reassembler.getCommittableOffset(PARTITION));
+
+    reassembler.acknowledgeDropped(dropped.get(0));
+    assertTrue(reassembler.getDroppedMessages(PARTITION).isEmpty());
+    assertEquals(4L, reassembler.getCommittableOffset(PARTITION));
+  }
+
+  private ConsumerRecord<byte[], byte[]> createRecord(final String key, final byte[] value) {
+    return new ConsumerRecord<>(TOPIC, 0, offset++, key.getBytes(StandardCharsets.UTF_8), value);
+  }
+
+  private static byte[] createMessage(final int length) {
+    byte[] message = new byte[length];
+    new Random(length).nextBytes(message);
+    // Thrift binary structs start with a field type
+    message[0] = 12;
+    return message;
+  }
+}
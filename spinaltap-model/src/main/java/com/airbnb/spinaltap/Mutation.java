@@ -10,6 +10,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
@@ -56,12 +57,53 @@ public abstract class Mutation<T> {
   private final Type type;
   private final T entity;
 
+  /** The processing stages a {@link Mutation} goes through, from the source to the destination. */
+  public enum Stage {
+    /** The source event was received. */
+    RECEIVED,
+    /** The source event passed the event filter. */
+    FILTERED,
+    /** The source event was mapped to mutations. */
+    MAPPED,
+    /** The mutation was added to the destination buffer. */
+    ENQUEUED,
+    /** The mutation was taken from the destination buffer. */
+    DEQUEUED,
+    /** The mutation was mapped to the destination message format. */
+    SERIALIZED,
+    /** The mutation was acknowledged by the destination. */
+    ACKED
+  }
+
   @Getter
   @ToString
   @RequiredArgsConstructor
   public abstract static class Metadata {
+    private static final int STAGE_COUNT = Stage.values().length;
+
     private final long id;
     private final long timestamp;
+
+    /**
+     * Monotonic timestamps (as given by {@link System#nanoTime()}) at which the mutation reached
+     * each {@link Stage}, or 0 if it has not. Used for latency tracing.
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final long[] stageNanos = new long[STAGE_COUNT];
+
+    public void markStage(final Stage stage) {
+      markStage(stage, System.nanoTime());
+    }
+
+    public void markStage(final Stage stage, final long nanoTime) {
+      stageNanos[stage.ordinal()] = nanoTime;
+    }
+
+    /** @return the time the mutation reached the given stage, or 0 if it has not. */
+    public long getStageNanos(final Stage stage) {
+      return stageNanos[stage.ordinal()];
+    }
   }
 
   // For use by subclasses that implement a mutation with type UPDATE.
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.mutation.schema;
+
+import com.airbnb.jitney.event.spinaltap.v1.Column;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Comparator;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Computes the fingerprint of a thrift table schema, which identifies it in place of the full
+ * schema in published mutations. The fingerprint covers the names, primary key and columns of the
+ * table, but not its binlog table id, so it is stable across binlog rotations and hosts as long as
+ * the schema is unchanged.
+ */
+@UtilityClass
+public class TableFingerprint {
+  /** The length of an encoded fingerprint, ex: as a key in the schema registry topic. */
+  public static final int LENGTH = Long.BYTES;
+
+  public long of(@NonNull final com.airbnb.jitney.event.spinaltap.v1.Table table) {
+    final Hasher hasher = Hashing.farmHashFingerprint64().newHasher();
+    putString(hasher, table.getDatabase());
+    putString(hasher, table.getName());
+    putString(hasher, Strings.nullToEmpty(table.getOverridingDatabase()));
+
+    hasher.putInt(table.getPrimaryKeySize());
+    table.getPrimaryKey().stream().sorted().forEach(column -> putString(hasher, column));
+
+    hasher.putInt(table.getColumnsSize());
+    (table.getColumns() == null ? Collections.<Column>emptyList() : table.getColumns().values())
+        .stream()
+        .sorted(Comparator.comparing(Column::getName))
+        .forEach(
+            column -> {
+              putString(hasher, column.getName());
+              hasher.putLong(column.getType());
+              hasher.putBoolean(column.isIsPrimaryKey());
+              hasher.putInt(column.isSetPosition() ? column.getPosition() : -1);
+            });
+
+    return hasher.hash().asLong();
+  }
+
+  public byte[] toBytes(final long fingerprint) {
+    return ByteBuffer.allocate(LENGTH).putLong(fingerprint).array();
+  }
+
+  public long fromBytes(@NonNull final byte[] bytes) {
+    Preconditions.checkArgument(
+        bytes.length == LENGTH, "Invalid fingerprint length %s", bytes.length);
+    return ByteBuffer.wrap(bytes).getLong();
+  }
+
+  private void putString(final Hasher hasher, final String value) {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    hasher.putInt(bytes.length).putBytes(bytes);
+  }
+}
@@ -8,6 +8,16 @@ enum MutationType {
   INVALID
 }
 
+// The columns in the entities of UPDATE mutations
+enum UpdateImage {
+  // All columns, in both the entity and the previous entity
+  FULL = 0x1
+  // The primary key and changed columns in the entity, and all columns in the previous entity
+  CHANGED_COLUMNS
+  // The primary key and changed columns, in both the entity and the previous entity
+  CHANGED_COLUMNS_ONLY
+}
+
 struct DataSource {
   1: required string hostname,
   2: required i32 port,
@@ -36,6 +46,8 @@ struct BinlogHeader {
   12: optional string begin_transaction_pos,
   13: optional i64 begin_transaction_timestamp,
   14: optional string begin_transaction_gtid,
+  // Set on UPDATE mutations with a partial image. When not set, the image is FULL
+  15: optional UpdateImage update_image,
 }
 
 struct Table {
@@ -60,4 +72,7 @@ struct Mutation {
   6: required Table table,
   7: required map<string, binary> entity,
   8: optional map<string, binary> previous_entity,
+  // When `schema_fingerprint` is set, `table` only has its id, names and primary key, and its
+  // columns are resolved from the table schema registered with this fingerprint
+  9: optional i64 schema_fingerprint,
 }
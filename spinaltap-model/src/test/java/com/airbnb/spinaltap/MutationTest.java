@@ -60,4 +60,18 @@ public class MutationTest {
     assertEquals(
         ImmutableSet.of(updatedKey), Mutation.getUpdatedColumns(previousColumns, currentColumns));
   }
+
+  @Test
+  public void testMarkStage() {
+    Mutation.Metadata metadata = new Mutation.Metadata(1L, 2L) {};
+
+    assertEquals(0L, metadata.getStageNanos(Mutation.Stage.RECEIVED));
+
+    metadata.markStage(Mutation.Stage.RECEIVED, 10L);
+    metadata.markStage(Mutation.Stage.ACKED, 20L);
+
+    assertEquals(10L, metadata.getStageNanos(Mutation.Stage.RECEIVED));
+    assertEquals(0L, metadata.getStageNanos(Mutation.Stage.MAPPED));
+    assertEquals(20L, metadata.getStageNanos(Mutation.Stage.ACKED));
+  }
 }
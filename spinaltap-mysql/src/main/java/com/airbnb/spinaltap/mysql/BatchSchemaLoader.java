@@ -0,0 +1,131 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql;
+
+import com.airbnb.spinaltap.mysql.schema.MysqlColumn;
+import com.airbnb.spinaltap.mysql.schema.MysqlSchemaManager;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Table;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Loads table columns from the {@link MysqlSchemaManager} asynchronously, in batches. Tables
+ * requested while a batch is loading are loaded together in the next batch, so a burst of table
+ * map events for tables that are not cached results in a few queries instead of one per table.
+ *
+ * <p>Tables that fail to load, or are not found, in a batch are loaded again one by one, so a
+ * single table does not fail the whole batch.
+ */
+@Slf4j
+final class BatchSchemaLoader {
+  private static final long IDLE_TIMEOUT_SECONDS = 60L;
+
+  private final MysqlSchemaManager schemaManager;
+  private final Executor executor;
+
+  /** The tables requested since the last batch started loading. Guarded by {@code this}. */
+  private Map<TableName, CompletableFuture<List<MysqlColumn>>> pendingTables = new HashMap<>();
+
+  private boolean batchScheduled = false;
+
+  BatchSchemaLoader(
+      @NonNull final String sourceName, @NonNull final MysqlSchemaManager schemaManager) {
+    this(
+        schemaManager,
+        // The loader thread exits when idle, so it does not outlive the source
+        new ThreadPoolExecutor(
+            0,
+            1,
+            IDLE_TIMEOUT_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat(sourceName + "-schema-loader-%d")
+                .build()));
+  }
+
+  BatchSchemaLoader(
+      @NonNull final MysqlSchemaManager schemaManager, @NonNull final Executor executor) {
+    this.schemaManager = schemaManager;
+    this.executor = executor;
+  }
+
+  /** @return the future columns of the table, completed once its batch is loaded. */
+  synchronized CompletableFuture<List<MysqlColumn>> load(
+      @NonNull final String database, @NonNull final String table) {
+    final CompletableFuture<List<MysqlColumn>> columns =
+        pendingTables.computeIfAbsent(
+            new TableName(database, table), tableName -> new CompletableFuture<>());
+
+    if (!batchScheduled) {
+      batchScheduled = true;
+      executor.execute(this::loadBatch);
+    }
+
+    return columns;
+  }
+
+  private void loadBatch() {
+    final Map<TableName, CompletableFuture<List<MysqlColumn>>> batch;
+    synchronized (this) {
+      batch = pendingTables;
+      pendingTables = new HashMap<>();
+      batchScheduled = false;
+    }
+
+    final SetMultimap<String, String> tables = HashMultimap.create();
+    batch.keySet().forEach(tableName -> tables.put(tableName.getDatabase(), tableName.getTable()));
+
+    Table<String, String, List<MysqlColumn>> tableColumns = null;
+    try {
+      tableColumns = schemaManager.getTableColumns(tables);
+    } catch (Exception ex) {
+      log.warn("Failed to load the schema of tables {} in a batch.", tables, ex);
+    }
+
+    for (Map.Entry<TableName, CompletableFuture<List<MysqlColumn>>> entry : batch.entrySet()) {
+      final TableName tableName = entry.getKey();
+      final List<MysqlColumn> columns =
+          tableColumns == null
+              ? null
+              : tableColumns.get(tableName.getDatabase(), tableName.getTable());
+
+      if (columns != null) {
+        entry.getValue().complete(columns);
+      } else {
+        loadTable(tableName, entry.getValue());
+      }
+    }
+  }
+
+  private void loadTable(
+      final TableName tableName, final CompletableFuture<List<MysqlColumn>> columns) {
+    try {
+      columns.complete(
+          schemaManager.getTableColumns(tableName.getDatabase(), tableName.getTable()));
+    } catch (Exception ex) {
+      columns.completeExceptionally(ex);
+    }
+  }
+
+  @Value
+  private static class TableName {
+    String database;
+    String table;
+  }
+}
@@ -7,10 +7,11 @@ package com.airbnb.spinaltap.mysql;
 import com.airbnb.common.metrics.TaggedMetricRegistry;
 import com.airbnb.spinaltap.Mutation;
 import com.airbnb.spinaltap.common.destination.DestinationMetrics;
+import com.airbnb.spinaltap.common.metrics.TagsKey;
+import com.airbnb.spinaltap.mysql.config.MysqlConfiguration;
 import com.airbnb.spinaltap.mysql.mutation.MysqlMutationMetadata;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
 import com.google.common.base.Preconditions;
-import java.util.HashMap;
-import java.util.Map;
 import lombok.NonNull;
 
 /**
@@ -19,32 +20,42 @@ import lombok.NonNull;
  * MysqlSource}.
  */
 public class MysqlDestinationMetrics extends DestinationMetrics {
-  private static final String DATABASE_NAME_TAG = "database_name";
-  private static final String TABLE_NAME_TAG = "table_name";
+  private final MysqlTableTagsKeys tableTagsKeys;
 
   public MysqlDestinationMetrics(
       @NonNull final String sourceName, @NonNull final TaggedMetricRegistry metricRegistry) {
-    this("mysql", sourceName, metricRegistry);
+    this(sourceName, MysqlConfiguration.DEFAULT_TABLE_METRICS_LIMIT, metricRegistry);
+  }
+
+  public MysqlDestinationMetrics(
+      @NonNull final String sourceName,
+      final int tableMetricsLimit,
+      @NonNull final TaggedMetricRegistry metricRegistry) {
+    this("mysql", sourceName, tableMetricsLimit, metricRegistry);
+  }
+
+  protected MysqlDestinationMetrics(
+      @NonNull final String sourceType,
+      @NonNull final String sourceName,
+      @NonNull final TaggedMetricRegistry metricRegistry) {
+    this(sourceType, sourceName, MysqlConfiguration.DEFAULT_TABLE_METRICS_LIMIT, metricRegistry);
   }
 
   protected MysqlDestinationMetrics(
       @NonNull final String sourceType,
       @NonNull final String sourceName,
+      final int tableMetricsLimit,
       @NonNull final TaggedMetricRegistry metricRegistry) {
     super(sourceName, sourceType, metricRegistry);
+
+    this.tableTagsKeys = new MysqlTableTagsKeys(tableMetricsLimit, this::removeMetrics);
   }
 
   @Override
-  protected Map<String, String> getTags(@NonNull final Mutation.Metadata metadata) {
+  protected TagsKey getTagsKey(@NonNull final Mutation.Metadata metadata) {
     Preconditions.checkState(metadata instanceof MysqlMutationMetadata);
 
-    MysqlMutationMetadata mysqlMetadata = (MysqlMutationMetadata) metadata;
-    Map<String, String> metadataTags = new HashMap<>();
-
-    metadataTags.put(DATABASE_NAME_TAG, mysqlMetadata.getTable().getDatabase());
-    metadataTags.put(TABLE_NAME_TAG, mysqlMetadata.getTable().getName());
-    metadataTags.putAll(super.getTags(mysqlMetadata));
-
-    return metadataTags;
+    final Table table = ((MysqlMutationMetadata) metadata).getTable();
+    return tableTagsKeys.get(table.getDatabase(), table.getName());
   }
 }
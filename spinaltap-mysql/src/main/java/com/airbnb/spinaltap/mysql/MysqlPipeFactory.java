@@ -122,7 +122,8 @@ public final class MysqlPipeFactory
         repositoryFactory.getStateRepository(configuration.getName(), partitionName),
         repositoryFactory.getStateHistoryRepository(configuration.getName(), partitionName),
         schemaManagerFactory,
-        new MysqlSourceMetrics(configuration.getName(), metricRegistry),
+        new MysqlSourceMetrics(
+            configuration.getName(), configuration.getTableMetricsLimit(), metricRegistry),
         leaderEpoch);
   }
 
@@ -138,12 +139,18 @@ public final class MysqlPipeFactory
         .get()
         .withName(sourceConfiguration.getName())
         .withTopicNamePrefix(MysqlConfiguration.MYSQL_TOPICS.get(sourceConfiguration.getHostRole()))
-        .withMapper(ThriftMutationMapper.create(getHostName()))
-        .withMetrics(new MysqlDestinationMetrics(sourceConfiguration.getName(), metricRegistry))
+        .withMapper(
+            ThriftMutationMapper.create(getHostName(), sourceConfiguration.getUpdateImage()))
+        .withMetrics(
+            new MysqlDestinationMetrics(
+                sourceConfiguration.getName(),
+                sourceConfiguration.getTableMetricsLimit(),
+                metricRegistry))
         .withBuffer(destinationConfiguration.getBufferSize())
         .withPool(destinationConfiguration.getPoolSize(), MysqlKeyProvider.INSTANCE)
         .withValidation()
         .withLargeMessage(sourceConfiguration.isLargeMessageEnabled())
+        .withSchemaFingerprint(sourceConfiguration.isSchemaFingerprintEnabled())
         .withDelaySendMs(sourceConfiguration.getDelaySendMs())
         .withProducerConfig(destinationConfiguration.getProducerConfig())
         .build();
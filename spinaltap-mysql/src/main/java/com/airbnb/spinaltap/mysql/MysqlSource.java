@@ -141,6 +141,14 @@ public abstract class MysqlSource extends AbstractDataStoreSource<BinlogEvent> {
     schemaManager.initialize(state.getLastPosition());
   }
 
+  /**
+   * @return the position of the last transaction processed, which streaming can resume from
+   *     without re-initializing the source.
+   */
+  protected BinlogFilePos getLastTransactionPosition() {
+    return lastTransaction.get().getPosition();
+  }
+
   /** Resets to the last valid {@link MysqlSourceState} recorded in the {@link StateHistory}. */
   void resetToLastValidState() {
     if (stateHistory.size() >= stateRollbackCount.get()) {
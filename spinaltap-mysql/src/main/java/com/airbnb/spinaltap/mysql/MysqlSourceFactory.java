@@ -10,6 +10,8 @@ import com.airbnb.spinaltap.common.source.Source;
 import com.airbnb.spinaltap.common.util.Repository;
 import com.airbnb.spinaltap.common.validator.MutationOrderValidator;
 import com.airbnb.spinaltap.mysql.binlog_connector.BinaryLogConnectorSource;
+import com.airbnb.spinaltap.mysql.binlog_connector.SharedBinlogSource;
+import com.airbnb.spinaltap.mysql.binlog_connector.SharedBinlogStream;
 import com.airbnb.spinaltap.mysql.config.MysqlConfiguration;
 import com.airbnb.spinaltap.mysql.schema.MysqlSchemaManager;
 import com.airbnb.spinaltap.mysql.schema.MysqlSchemaManagerFactory;
@@ -65,21 +67,51 @@ public class MysqlSourceFactory {
             name, mysqlClient, configuration.isSchemaVersionEnabled(), metrics);
 
     final TableCache tableCache =
-        new TableCache(schemaManager, configuration.getOverridingDatabase());
-
-    final BinaryLogConnectorSource source =
-        new BinaryLogConnectorSource(
-            name,
-            configuration,
-            tlsConfiguration,
-            binlogClient,
-            mysqlClient,
-            tableCache,
-            stateRepository,
-            stateHistory,
+        new TableCache(
             schemaManager,
-            metrics,
-            new AtomicLong(leaderEpoch));
+            configuration.getOverridingDatabase(),
+            configuration.isSchemaPrefetchEnabled() && !configuration.isSchemaVersionEnabled()
+                ? new BatchSchemaLoader(name, schemaManager)
+                : null);
+
+    final MysqlSource source;
+    if (configuration.isSharedStreamEnabled()) {
+      final SharedBinlogStream stream =
+          SharedBinlogStream.getOrCreate(
+              configuration,
+              user,
+              password,
+              binlogClient.getServerId(),
+              tlsConfiguration,
+              () -> binlogClient,
+              () -> mysqlClient);
+
+      source =
+          new SharedBinlogSource(
+              name,
+              configuration,
+              stream,
+              tableCache,
+              stateRepository,
+              stateHistory,
+              schemaManager,
+              metrics,
+              new AtomicLong(leaderEpoch));
+    } else {
+      source =
+          new BinaryLogConnectorSource(
+              name,
+              configuration,
+              tlsConfiguration,
+              binlogClient,
+              mysqlClient,
+              tableCache,
+              stateRepository,
+              stateHistory,
+              schemaManager,
+              metrics,
+              new AtomicLong(leaderEpoch));
+    }
 
     source.addEventValidator(new EventOrderValidator(metrics::outOfOrder));
     source.addMutationValidator(new MutationOrderValidator(metrics::outOfOrder));
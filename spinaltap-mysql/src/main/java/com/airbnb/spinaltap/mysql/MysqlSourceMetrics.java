@@ -7,8 +7,8 @@ package com.airbnb.spinaltap.mysql;
 import com.airbnb.common.metrics.TaggedMetricRegistry;
 import com.airbnb.spinaltap.Mutation;
 import com.airbnb.spinaltap.common.source.SourceMetrics;
+import com.airbnb.spinaltap.mysql.config.MysqlConfiguration;
 import com.google.common.collect.ImmutableMap;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -24,8 +24,15 @@ public class MysqlSourceMetrics extends SourceMetrics {
       MYSQL_PREFIX + ".deserialization.failure.count";
   private static final String COMMUNICATION_FAILURE_METRIC = MYSQL_PREFIX + ".comm.failure.count";
 
+  private static final String CAPTURE_FAILURE_METRIC = MYSQL_PREFIX + ".capture.failure.count";
+  private static final String SPOOL_FAILURE_METRIC = MYSQL_PREFIX + ".spool.failure.count";
+  private static final String SPOOL_FULL_METRIC = MYSQL_PREFIX + ".spool.full.count";
+  private static final String SPOOL_LAG_METRIC = MYSQL_PREFIX + ".spool.lag.segments";
+
   private static final String CLIENT_CONNECTED_METRIC = MYSQL_PREFIX + ".connect.count";
   private static final String CLIENT_DISCONNECTED_METRIC = MYSQL_PREFIX + ".disconnect.count";
+  private static final String FAST_RECONNECT_METRIC = MYSQL_PREFIX + ".fast_reconnect.count";
+  private static final String RECONNECT_TIME_METRIC = MYSQL_PREFIX + ".reconnect.time";
 
   private static final String SCHEMA_STORE_GET_SUCCESS_METRIC =
       MYSQL_PREFIX + ".schema_store.get.success.count";
@@ -37,6 +44,9 @@ public class MysqlSourceMetrics extends SourceMetrics {
   private static final String SCHEMA_STORE_PUT_FAILURE_METRIC =
       MYSQL_PREFIX + ".schema_store.put.failure.count";
 
+  private static final String SCHEMA_STORE_LOAD_CACHE_TIME_METRIC =
+      MYSQL_PREFIX + ".schema_store.load_cache.time";
+
   private static final String SCHEMA_DATABASE_APPLY_DDL_SUCCESS_METRIC =
       MYSQL_PREFIX + ".schema_database.apply.ddl.success.count";
   private static final String SCHEMA_DATABASE_APPLY_DDL_FAILURE_METRIC =
@@ -54,6 +64,8 @@ public class MysqlSourceMetrics extends SourceMetrics {
 
   private static final String INVALID_SCHEMA_METRIC = MYSQL_PREFIX + ".table.invalid_schema.count";
   private static final String BINLOG_FILE_START_METRIC = MYSQL_PREFIX + ".binlog_file.start.count";
+  private static final String BINLOG_FILE_SCHEMA_FETCH_METRIC =
+      MYSQL_PREFIX + ".binlog_file.schema_fetch.count";
 
   private static final String SAVE_STATE_METRIC = MYSQL_PREFIX + ".state.save.count";
   private static final String READ_STATE_METRIC = MYSQL_PREFIX + ".state.read.count";
@@ -67,13 +79,32 @@ public class MysqlSourceMetrics extends SourceMetrics {
   private static final String RESET_EARLIEST_POSITION_METRIC =
       MYSQL_PREFIX + ".reset.earliest_position.count";
 
+  private final MysqlTableTagsKeys tableTagsKeys;
+
   public MysqlSourceMetrics(final String sourceName, final TaggedMetricRegistry metricRegistry) {
-    this(sourceName, "mysql", metricRegistry);
+    this(sourceName, MysqlConfiguration.DEFAULT_TABLE_METRICS_LIMIT, metricRegistry);
+  }
+
+  public MysqlSourceMetrics(
+      final String sourceName,
+      final int tableMetricsLimit,
+      final TaggedMetricRegistry metricRegistry) {
+    this(sourceName, "mysql", tableMetricsLimit, metricRegistry);
   }
 
   protected MysqlSourceMetrics(
       String sourceName, String sourceType, TaggedMetricRegistry metricRegistry) {
+    this(sourceName, sourceType, MysqlConfiguration.DEFAULT_TABLE_METRICS_LIMIT, metricRegistry);
+  }
+
+  protected MysqlSourceMetrics(
+      String sourceName,
+      String sourceType,
+      int tableMetricsLimit,
+      TaggedMetricRegistry metricRegistry) {
     super(sourceName, sourceType, metricRegistry);
+
+    this.tableTagsKeys = new MysqlTableTagsKeys(tableMetricsLimit, this::removeMetrics);
   }
 
   public void communicationFailure(Throwable error) {
@@ -84,10 +115,35 @@ public class MysqlSourceMetrics extends SourceMetrics {
     incError(DESERIALIZATION_FAILURE_METRIC, error);
   }
 
+  public void captureFailure(Throwable error) {
+    incError(CAPTURE_FAILURE_METRIC, error);
+  }
+
+  public void spoolFailure(Throwable error) {
+    incError(SPOOL_FAILURE_METRIC, error);
+  }
+
+  public void spoolFull() {
+    inc(SPOOL_FULL_METRIC);
+  }
+
+  public void spoolLag(final long segments) {
+    update(SPOOL_LAG_METRIC, segments);
+  }
+
   public void clientConnected() {
     inc(CLIENT_CONNECTED_METRIC);
   }
 
+  public void fastReconnect() {
+    inc(FAST_RECONNECT_METRIC);
+  }
+
+  /** Records the time from reconnecting to receiving the first event, in milliseconds. */
+  public void reconnectTime(final long timeInMilliseconds) {
+    update(RECONNECT_TIME_METRIC, timeInMilliseconds);
+  }
+
   public void clientDisconnected() {
     inc(CLIENT_DISCONNECTED_METRIC);
   }
@@ -110,6 +166,13 @@ public class MysqlSourceMetrics extends SourceMetrics {
     incError(SCHEMA_STORE_PUT_FAILURE_METRIC, error, getTableTags(database, table));
   }
 
+  public void schemaStoreLoadCacheTime(final long timeInMilliseconds, final boolean preloaded) {
+    update(
+        SCHEMA_STORE_LOAD_CACHE_TIME_METRIC,
+        timeInMilliseconds,
+        ImmutableMap.of("preloaded", String.valueOf(preloaded)));
+  }
+
   public void schemaDatabaseApplyDDLSuccess(final String database) {
     inc(
         SCHEMA_DATABASE_APPLY_DDL_SUCCESS_METRIC,
@@ -131,6 +194,11 @@ public class MysqlSourceMetrics extends SourceMetrics {
     inc(BINLOG_FILE_START_METRIC);
   }
 
+  /** Records the number of table schemas fetched while processing the previous binlog file. */
+  public void binlogFileSchemaFetches(int count) {
+    update(BINLOG_FILE_SCHEMA_FETCH_METRIC, count);
+  }
+
   public void stateSave() {
     inc(SAVE_STATE_METRIC);
   }
@@ -160,11 +228,6 @@ public class MysqlSourceMetrics extends SourceMetrics {
   }
 
   private Map<String, String> getTableTags(final String database, final String table) {
-    Map<String, String> tableTags = new HashMap<>();
-
-    tableTags.put(DATABASE_NAME_TAG, database == null ? "" : database);
-    tableTags.put(TABLE_NAME_TAG, table == null ? "" : table);
-
-    return tableTags;
+    return tableTagsKeys.get(database, table).getTags();
   }
 }
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql;
+
+import com.airbnb.spinaltap.common.metrics.SpinalTapMetrics;
+import com.airbnb.spinaltap.common.metrics.TagsKey;
+import com.airbnb.spinaltap.common.metrics.TopKTagsKeys;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import lombok.NonNull;
+
+/**
+ * Resolves the metric {@link TagsKey} of MySQL tables. Only the top tables by rate are tagged with
+ * their database and table name, while the other tables share the tags of an "other" bucket, so
+ * that the number of per-table metrics of a source is bounded.
+ */
+final class MysqlTableTagsKeys {
+  static final String OTHER_TAG_VALUE = "__other__";
+
+  private static final TagsKey OTHER_TAGS_KEY = createTagsKey(OTHER_TAG_VALUE, OTHER_TAG_VALUE);
+
+  /** Canonical {@link TagsKey}s by database and table name. */
+  private final ConcurrentMap<String, ConcurrentMap<String, TagsKey>> tableTagsKeys =
+      new ConcurrentHashMap<>();
+
+  private final TopKTagsKeys topTagsKeys;
+
+  MysqlTableTagsKeys(
+      final int limit, @NonNull final Consumer<Collection<TagsKey>> evictionListener) {
+    this.topTagsKeys = new TopKTagsKeys(limit, OTHER_TAGS_KEY, evictionListener);
+  }
+
+  TagsKey get(final String database, final String table) {
+    final String databaseName = Strings.nullToEmpty(database);
+    final String tableName = Strings.nullToEmpty(table);
+
+    ConcurrentMap<String, TagsKey> databaseTagsKeys = tableTagsKeys.get(databaseName);
+    if (databaseTagsKeys == null) {
+      databaseTagsKeys =
+          tableTagsKeys.computeIfAbsent(databaseName, name -> new ConcurrentHashMap<>());
+    }
+
+    TagsKey tagsKey = databaseTagsKeys.get(tableName);
+    if (tagsKey == null) {
+      tagsKey =
+          databaseTagsKeys.computeIfAbsent(tableName, name -> createTagsKey(databaseName, name));
+    }
+
+    return topTagsKeys.get(tagsKey);
+  }
+
+  private static TagsKey createTagsKey(final String database, final String table) {
+    return new TagsKey(
+        ImmutableMap.of(
+            SpinalTapMetrics.DATABASE_NAME_TAG, database, SpinalTapMetrics.TABLE_NAME_TAG, table));
+  }
+}
@@ -11,38 +11,115 @@ import com.airbnb.spinaltap.mysql.schema.MysqlColumn;
 import com.airbnb.spinaltap.mysql.schema.MysqlSchemaManager;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import javax.validation.constraints.Min;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Represents an in-memory cache for storing table schema and metadata used during the
  * transformation of MySQL binlog events to {@link com.airbnb.spinaltap.Mutation}s.
+ *
+ * <p>Fetched tables are interned, so a table fetched again with the same schema (ex: after the
+ * cache is cleared on a binlog file rotation or reconnect) resolves to the same {@link Table}
+ * instance, along with its thrift table and anything cached against it downstream.
+ *
+ * <p>Table schemas are also kept by database, table name and column types across binlog file
+ * rotations, which may assign new table ids. The first mapping of a table after a rotation reuses
+ * the schema with the same column types, instead of fetching it again from the schema manager. A
+ * table mapped to a new id within a binlog file may have been altered (ex: a column renamed), so
+ * its schema is fetched again.
+ *
+ * <p>With a {@link BatchSchemaLoader}, the schemas of tables that are not cached are loaded
+ * asynchronously and in batches on table map events, and only the lookup of those tables blocks
+ * until their schema is loaded.
  */
 @Slf4j
-@RequiredArgsConstructor
 public class TableCache {
+  /** Interns tables with identical ids and schemas, weakly so unused tables are collected. */
+  private static final Interner<Table> TABLE_INTERNER = Interners.newWeakInterner();
+
   private final MysqlSchemaManager schemaManager;
   private final String overridingDatabase;
+
+  /** The loader of schemas of tables that are not cached, or {@code null} to fetch them inline. */
+  private final BatchSchemaLoader schemaLoader;
+
   private final Cache<Long, Table> tableCache = CacheBuilder.newBuilder().maximumSize(200).build();
+  private final Cache<SchemaKey, Table> schemaCache =
+      CacheBuilder.newBuilder().maximumSize(200).build();
+
+  /** The tables mapped since the last binlog file rotation, which do not reuse kept schemas. */
+  private final Set<TableName> mappedTables = ConcurrentHashMap.newKeySet();
+
+  /** The number of schema fetches since the last binlog file rotation. */
+  private final AtomicInteger schemaFetchCount = new AtomicInteger();
+
+  /** The tables of table ids with a schema still loading by the schema loader. */
+  private final Map<Long, PendingTable> pendingTables = new ConcurrentHashMap<>();
+
+  public TableCache(final MysqlSchemaManager schemaManager, final String overridingDatabase) {
+    this(schemaManager, overridingDatabase, null);
+  }
+
+  TableCache(
+      final MysqlSchemaManager schemaManager,
+      final String overridingDatabase,
+      final BatchSchemaLoader schemaLoader) {
+    this.schemaManager = schemaManager;
+    this.overridingDatabase = overridingDatabase;
+    this.schemaLoader = schemaLoader;
+  }
 
   /**
+   * Blocks until the table schema is loaded if it is still loading.
+   *
    * @return the {@link Table} cache entry for the given table id if present, otherwise {@code null}
+   * @throws java.util.concurrent.CompletionException if the table schema failed to load
    */
   public Table get(@Min(0) final long tableId) {
+    resolvePendingTable(tableId);
     return tableCache.getIfPresent(tableId);
   }
 
   /**
-   * @return {@code True} if a cache entry exists for the given table id, otherwise {@code False}.
+   * Does not block on a table schema still loading, unlike {@link #get(long)}.
+   *
+   * @return the {@link Table} cache entry for the given table id if present and its schema is
+   *     loaded, otherwise {@code null}
+   */
+  public Table getIfLoaded(@Min(0) final long tableId) {
+    final PendingTable pendingTable = pendingTables.get(tableId);
+    if (pendingTable != null) {
+      final CompletableFuture<Table> table = pendingTable.getTable();
+      if (!table.isDone() || table.isCompletedExceptionally()) {
+        return null;
+      }
+      resolvePendingTable(tableId);
+    }
+
+    return tableCache.getIfPresent(tableId);
+  }
+
+  /**
+   * @return {@code True} if a cache entry exists for the given table id, or its table schema is
+   *     loading, otherwise {@code False}.
    */
   public boolean contains(@Min(0) final long tableId) {
-    return tableCache.getIfPresent(tableId) != null;
+    return pendingTables.containsKey(tableId) || tableCache.getIfPresent(tableId) != null;
   }
 
   /**
@@ -59,16 +136,76 @@ public class TableCache {
       @NonNull final String database,
       @NonNull final List<ColumnDataType> columnTypes)
       throws Exception {
+    // A table mapped again before any lookup (ex: in another transaction with no rows for it)
+    resolvePendingTable(tableId);
+
     final Table table = tableCache.getIfPresent(tableId);
+    if (table != null && validTable(table, tableName, database, columnTypes)) {
+      return;
+    }
 
-    if (table == null || !validTable(table, tableName, database, columnTypes)) {
-      tableCache.put(tableId, fetchTable(tableId, database, tableName, columnTypes));
+    // Only reuse a schema kept from before the rotation, for the first mapping of the table in
+    // the binlog file. A table that no longer matches its id, or is mapped to a new id within the
+    // binlog file (ex: after an ALTER), may have changed, so its schema is fetched again.
+    final SchemaKey schemaKey = new SchemaKey(database, tableName, columnTypes);
+    final boolean firstMapping = mappedTables.add(new TableName(database, tableName));
+    final Table schema = table == null && firstMapping ? schemaCache.getIfPresent(schemaKey) : null;
+
+    if (schema == null && schemaLoader != null) {
+      schemaFetchCount.incrementAndGet();
+      tableCache.invalidate(tableId);
+      pendingTables.put(
+          tableId,
+          new PendingTable(
+              schemaKey,
+              schemaLoader
+                  .load(database, tableName)
+                  .thenApply(
+                      tableSchema ->
+                          createTable(tableId, database, tableName, columnTypes, tableSchema))));
+      return;
     }
+
+    final Table newTable =
+        schema != null
+            ? withTableId(schema, tableId)
+            : fetchTable(tableId, database, tableName, columnTypes);
+
+    schemaCache.put(schemaKey, newTable);
+    tableCache.put(tableId, newTable);
   }
 
-  /** Clears the cache by invalidating all entries. */
+  /** Clears the cache by invalidating all entries, including the schemas kept across rotations. */
   public void clear() {
+    pendingTables.clear();
+    mappedTables.clear();
     tableCache.invalidateAll();
+    schemaCache.invalidateAll();
+  }
+
+  /**
+   * Invalidates the table id entries on a binlog file rotation, keeping the table schemas to remap
+   * to the new table ids.
+   *
+   * @return the number of schema fetches since the previous rotation.
+   */
+  public int rotate() {
+    pendingTables.clear();
+    mappedTables.clear();
+    tableCache.invalidateAll();
+    return schemaFetchCount.getAndSet(0);
+  }
+
+  /** Waits for the schema of the table id to load if it is loading, and caches the table. */
+  private void resolvePendingTable(final long tableId) {
+    final PendingTable pendingTable = pendingTables.remove(tableId);
+    if (pendingTable == null) {
+      return;
+    }
+
+    final Table table = pendingTable.getTable().join();
+    schemaCache.put(pendingTable.getSchemaKey(), table);
+    tableCache.put(tableId, table);
   }
 
   /** Checks whether the table representation is valid */
@@ -93,13 +230,48 @@ public class TableCache {
         .equals(columnTypes);
   }
 
+  /** @return the table with the given schema and table id. */
+  private Table withTableId(final Table schema, final long tableId) {
+    if (schema.getId() == tableId) {
+      return schema;
+    }
+
+    final List<String> primaryColumns =
+        schema.getPrimaryKey().isPresent()
+            ? ImmutableList.copyOf(schema.getPrimaryKey().get().getColumns().keySet())
+            : Collections.emptyList();
+
+    return TABLE_INTERNER.intern(
+        new Table(
+            tableId,
+            schema.getName(),
+            schema.getDatabase(),
+            schema.getOverridingDatabase(),
+            ImmutableList.copyOf(schema.getColumns().values()),
+            primaryColumns));
+  }
+
   private Table fetchTable(
       final long tableId,
       final String databaseName,
       final String tableName,
       final List<ColumnDataType> columnTypes)
       throws Exception {
-    final List<MysqlColumn> tableSchema = schemaManager.getTableColumns(databaseName, tableName);
+    schemaFetchCount.incrementAndGet();
+    return createTable(
+        tableId,
+        databaseName,
+        tableName,
+        columnTypes,
+        schemaManager.getTableColumns(databaseName, tableName));
+  }
+
+  private Table createTable(
+      final long tableId,
+      final String databaseName,
+      final String tableName,
+      final List<ColumnDataType> columnTypes,
+      final List<MysqlColumn> tableSchema) {
     final Iterator<MysqlColumn> schemaIterator = tableSchema.iterator();
 
     if (tableSchema.size() != columnTypes.size()) {
@@ -126,7 +298,34 @@ public class TableCache {
             .map(MysqlColumn::getName)
             .collect(Collectors.toList());
 
-    return new Table(
-        tableId, tableName, databaseName, overridingDatabase, columnMetadata, primaryColumns);
+    return TABLE_INTERNER.intern(
+        new Table(
+            tableId, tableName, databaseName, overridingDatabase, columnMetadata, primaryColumns));
+  }
+
+  @Value
+  private static class PendingTable {
+    SchemaKey schemaKey;
+    CompletableFuture<Table> table;
+  }
+
+  @Value
+  private static class TableName {
+    String database;
+    String tableName;
+  }
+
+  @Value
+  private static class SchemaKey {
+    String database;
+    String tableName;
+    List<ColumnDataType> columnTypes;
+
+    SchemaKey(
+        final String database, final String tableName, final List<ColumnDataType> columnTypes) {
+      this.database = database;
+      this.tableName = tableName;
+      this.columnTypes = ImmutableList.copyOf(columnTypes);
+    }
   }
 }
@@ -5,7 +5,9 @@
 package com.airbnb.spinaltap.mysql.binlog_connector;
 
 import com.airbnb.spinaltap.common.config.TlsConfiguration;
+import com.airbnb.spinaltap.common.exception.SourceException;
 import com.airbnb.spinaltap.common.source.MysqlSourceState;
+import com.airbnb.spinaltap.common.util.ConcurrencyUtil;
 import com.airbnb.spinaltap.mysql.BinlogFilePos;
 import com.airbnb.spinaltap.mysql.DataSource;
 import com.airbnb.spinaltap.mysql.MysqlClient;
@@ -14,17 +16,31 @@ import com.airbnb.spinaltap.mysql.MysqlSourceMetrics;
 import com.airbnb.spinaltap.mysql.StateHistory;
 import com.airbnb.spinaltap.mysql.StateRepository;
 import com.airbnb.spinaltap.mysql.TableCache;
+import com.airbnb.spinaltap.mysql.capture.BinlogCaptureWriter;
+import com.airbnb.spinaltap.mysql.capture.BinlogSpool;
 import com.airbnb.spinaltap.mysql.config.MysqlConfiguration;
+import com.airbnb.spinaltap.mysql.event.BinlogEvent;
+import com.airbnb.spinaltap.mysql.event.TableMapEvent;
+import com.airbnb.spinaltap.mysql.event.XidEvent;
 import com.airbnb.spinaltap.mysql.exception.InvalidBinlogPositionException;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
 import com.airbnb.spinaltap.mysql.schema.MysqlSchemaManager;
 import com.github.shyiko.mysql.binlog.BinaryLogClient;
 import com.github.shyiko.mysql.binlog.event.Event;
 import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
 import com.github.shyiko.mysql.binlog.network.DefaultSSLSocketFactory;
 import com.google.common.base.Preconditions;
-import java.net.Socket;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.net.ssl.SSLContext;
@@ -37,12 +53,50 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public final class BinaryLogConnectorSource extends MysqlSource {
-  private static final String INVALID_BINLOG_POSITION_ERROR_CODE = "1236";
+  static final String INVALID_BINLOG_POSITION_ERROR_CODE = "1236";
+  private static final long BYTES_PER_MB = 1024L * 1024L;
+  private static final long SPOOL_POLL_TIMEOUT_MS = 100L;
+  private static final int MAX_FAST_RECONNECT_ATTEMPTS = 3;
+  private static final long FAST_RECONNECT_BACKOFF_MS = 500L;
 
   @NonNull private final BinaryLogClient binlogClient;
   @NonNull private final MysqlClient mysqlClient;
+  @NonNull private final TableCache tableCache;
   private final String serverUUID;
 
+  /** Captures the streamed events for later replay, if a capture directory is configured. */
+  private final BinlogCaptureWriter captureWriter;
+
+  private volatile boolean captureEnabled;
+
+  /**
+   * The captured table map events held back until their table schema is loaded, by table id. Only
+   * accessed by the thread processing events.
+   */
+  private final Map<Long, TableMapEvent> pendingTableMaps = new LinkedHashMap<>();
+
+  /** The directory to spool streamed events into before processing, if configured. */
+  private final Path spoolDirectory;
+
+  private final long spoolSegmentSize;
+  private final int spoolMaxSegments;
+  private volatile BinlogSpool spool;
+  private ExecutorService spoolDrainer;
+
+  private final boolean fastReconnectEnabled;
+
+  /** Whether the client is being disconnected on stop, in which case it is not reconnected. */
+  private volatile boolean disconnecting = false;
+
+  /** Whether the client can reconnect from memory, which position errors prevent. */
+  private volatile boolean reconnectable = false;
+
+  /** The number of fast reconnects since the last event was received. */
+  private volatile int reconnectAttempts = 0;
+
+  /** The time the client last reconnected at, until the first event is received, or 0. */
+  private volatile long reconnectNanos = 0L;
+
   public BinaryLogConnectorSource(
       @NonNull final String name,
       @NonNull final MysqlConfiguration config,
@@ -71,10 +125,40 @@ public final class BinaryLogConnectorSource extends MysqlSource {
 
     this.binlogClient = binlogClient;
     this.mysqlClient = mysqlClient;
+    this.tableCache = tableCache;
     this.serverUUID = mysqlClient.getServerUUID();
+    this.captureWriter = createCaptureWriter(name, config, metrics);
+    this.captureEnabled = captureWriter != null;
+    this.spoolDirectory =
+        config.getSpoolDirectory() == null ? null : Paths.get(config.getSpoolDirectory(), name);
+    this.spoolSegmentSize = config.getSpoolSegmentSizeMb() * BYTES_PER_MB;
+    this.spoolMaxSegments = config.getSpoolMaxSegments();
+    this.fastReconnectEnabled = config.isFastReconnectEnabled();
     initializeClient(config, tlsConfig);
   }
 
+  private static BinlogCaptureWriter createCaptureWriter(
+      final String name, final MysqlConfiguration config, final MysqlSourceMetrics metrics) {
+    if (config.getCaptureDirectory() == null) {
+      return null;
+    }
+
+    try {
+      return new BinlogCaptureWriter(
+          Paths.get(config.getCaptureDirectory(), name),
+          config.getCaptureSegmentSizeMb() * BYTES_PER_MB,
+          config.getCaptureMaxSegments());
+    } catch (IOException ex) {
+      log.error(
+          String.format(
+              "Failed to create binlog capture in %s for source %s",
+              config.getCaptureDirectory(), name),
+          ex);
+      metrics.captureFailure(ex);
+      return null;
+    }
+  }
+
   /** Initializes the {@link BinaryLogClient}. */
   private void initializeClient(final MysqlConfiguration config, final TlsConfiguration tlsConfig) {
     binlogClient.setThreadFactory(
@@ -85,22 +169,19 @@ public final class BinaryLogConnectorSource extends MysqlSource {
                     "binlog-client-%s-%s-%d",
                     name, getDataSource().getHost(), getDataSource().getPort())));
 
-    binlogClient.setSocketFactory(
-        () -> {
-          Socket socket = new Socket();
-          try {
-            if (config.getSocketTimeoutInSeconds() > 0) {
-              socket.setSoTimeout(config.getSocketTimeoutInSeconds() * 1000);
-            }
-          } catch (Exception ex) {
-            throw new RuntimeException(ex);
-          }
-          return socket;
-        });
-    binlogClient.setSSLMode(config.getSslMode());
-    binlogClient.setKeepAlive(false);
+    configureClient(binlogClient, config, tlsConfig);
     binlogClient.registerEventListener(new BinlogEventListener());
     binlogClient.registerLifecycleListener(new BinlogClientLifeCycleListener());
+  }
+
+  /** Configures the connection of a {@link BinaryLogClient} as set in the configuration. */
+  static void configureClient(
+      final BinaryLogClient binlogClient,
+      final MysqlConfiguration config,
+      final TlsConfiguration tlsConfig) {
+    binlogClient.setSocketFactory(new BinlogSocketFactory(config));
+    binlogClient.setSSLMode(config.getSslMode());
+    binlogClient.setKeepAlive(false);
     if (config.isMTlsEnabled() && tlsConfig != null) {
       binlogClient.setSslSocketFactory(
           new DefaultSSLSocketFactory() {
@@ -119,12 +200,218 @@ public final class BinaryLogConnectorSource extends MysqlSource {
 
   @Override
   protected void connect() throws Exception {
+    disconnecting = false;
+    reconnectable = fastReconnectEnabled;
+    reconnectAttempts = 0;
+
+    if (spoolDirectory != null) {
+      openSpool();
+    }
+
     binlogClient.connect();
+
+    while (canReconnect()) {
+      reconnect();
+    }
+  }
+
+  private boolean canReconnect() {
+    return reconnectable
+        && !disconnecting
+        && started.get()
+        && reconnectAttempts < MAX_FAST_RECONNECT_ATTEMPTS;
+  }
+
+  /**
+   * Reconnects the client from the last processed transaction, keeping the table and schema caches
+   * warm, instead of re-initializing the source from its last checkpoint. Connect failures are
+   * retried with the backoff, until the attempts are exhausted and the source is stopped to be
+   * re-initialized.
+   */
+  private void reconnect() throws Exception {
+    reconnectAttempts++;
+    Thread.sleep(FAST_RECONNECT_BACKOFF_MS * reconnectAttempts);
+
+    final BinlogFilePos position = getLastTransactionPosition();
+    log.info("Reconnecting source {} from last processed position {}.", name, position);
+    metrics.fastReconnect();
+
+    if (spoolDirectory != null) {
+      // Spooled events past the last processed transaction are streamed again
+      closeSpool();
+      openSpool();
+    }
+
+    setPosition(position);
+    reconnectNanos = System.nanoTime();
+    try {
+      binlogClient.connect();
+    } catch (IOException ex) {
+      reconnectNanos = 0L;
+      if (reconnectAttempts >= MAX_FAST_RECONNECT_ATTEMPTS) {
+        throw ex;
+      }
+      log.error(String.format("Failed to reconnect source %s", name), ex);
+    }
   }
 
   @Override
   protected void disconnect() throws Exception {
+    disconnecting = true;
+    closeSpool();
     binlogClient.disconnect();
+
+    if (captureEnabled) {
+      try {
+        captureWriter.close();
+      } catch (IOException ex) {
+        onCaptureFailure(ex);
+      }
+    }
+  }
+
+  /**
+   * Opens a new spool, as streaming resumes from the last checkpoint, and starts draining it.
+   * Events are drained in order on a single thread, so they are processed as if streamed directly.
+   */
+  private synchronized void openSpool() throws IOException {
+    final BinlogSpool newSpool =
+        new BinlogSpool(spoolDirectory, spoolSegmentSize, spoolMaxSegments);
+    log.info("Spooling binlog events for source {} in {}.", name, spoolDirectory);
+
+    spoolDrainer =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat(name + "-binlog-spool-drainer").build());
+    spoolDrainer.execute(() -> drainSpool(newSpool));
+    spool = newSpool;
+  }
+
+  private void drainSpool(final BinlogSpool spool) {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        final BinlogEvent event = spool.poll(SPOOL_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (event != null) {
+          processAndCapture(event);
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (SourceException ex) {
+      // The failure was already reported when processing the event
+      log.info("Stopped draining binlog spool for source {} on failure.", name);
+    } catch (Exception ex) {
+      if (isStarted()) {
+        onSpoolFailure(ex);
+      }
+    }
+
+    log.info("Stopped draining binlog spool for source {}.", name);
+  }
+
+  private synchronized void closeSpool() {
+    if (spool == null) {
+      return;
+    }
+
+    // Undrained events are dropped, as they are streamed again from the last checkpoint
+    ConcurrencyUtil.shutdownGracefully(spoolDrainer, 2, TimeUnit.SECONDS);
+    try {
+      spool.close();
+    } catch (IOException ex) {
+      log.error(String.format("Failed to close binlog spool for source %s", name), ex);
+      metrics.spoolFailure(ex);
+    }
+
+    spool = null;
+    spoolDrainer = null;
+  }
+
+  private void spool(final BinlogEvent event) {
+    final BinlogSpool currentSpool = spool;
+    if (currentSpool == null) {
+      return;
+    }
+
+    try {
+      if (currentSpool.append(event)) {
+        metrics.spoolFull();
+      }
+      if (event instanceof XidEvent) {
+        metrics.spoolLag(currentSpool.getLagSegments());
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (Exception ex) {
+      onSpoolFailure(ex);
+    }
+  }
+
+  private void onSpoolFailure(final Exception ex) {
+    log.error(String.format("Failed to spool binlog events for source %s", name), ex);
+    metrics.spoolFailure(ex);
+
+    // Fail and restart the source from the last checkpoint, as spooled events may be lost
+    notifyError(ex);
+  }
+
+  private void processAndCapture(final BinlogEvent event) {
+    processEvent(event);
+    capture(event);
+  }
+
+  /**
+   * Captures an event after it is processed. Schemas are captured along with the table map events,
+   * so they are replayed first. A table map event whose schema is still loading is held back until
+   * the first row event of the table resolves it, or until the next event of another type, so the
+   * capture never blocks on a schema load. Capture failures do not affect streaming, but disable
+   * the capture.
+   */
+  private void capture(final BinlogEvent event) {
+    if (!captureEnabled) {
+      return;
+    }
+
+    try {
+      if (event instanceof TableMapEvent) {
+        final long tableId = event.getTableId();
+        final Table table = tableCache.getIfLoaded(tableId);
+        if (table == null && tableCache.contains(tableId)) {
+          pendingTableMaps.put(tableId, (TableMapEvent) event);
+          return;
+        }
+        captureTableMap((TableMapEvent) event, table);
+        return;
+      }
+
+      if (event.isMutation()) {
+        // The table schema was loaded when processing the row event, if it was not filtered
+        final TableMapEvent tableMap = pendingTableMaps.remove(event.getTableId());
+        if (tableMap != null) {
+          captureTableMap(tableMap, tableCache.getIfLoaded(tableMap.getTableId()));
+        }
+      } else {
+        for (TableMapEvent tableMap : pendingTableMaps.values()) {
+          captureTableMap(tableMap, tableCache.getIfLoaded(tableMap.getTableId()));
+        }
+        pendingTableMaps.clear();
+      }
+      captureWriter.append(event);
+    } catch (Exception ex) {
+      onCaptureFailure(ex);
+    }
+  }
+
+  private void captureTableMap(final TableMapEvent tableMap, final Table table) throws IOException {
+    if (table != null) {
+      captureWriter.appendTable(table);
+    }
+    captureWriter.append(tableMap);
+  }
+
+  private void onCaptureFailure(final Exception ex) {
+    log.error(String.format("Failed to capture binlog events for source %s", name), ex);
+    metrics.captureFailure(ex);
+    captureEnabled = false;
   }
 
   @Override
@@ -134,6 +421,16 @@ public final class BinaryLogConnectorSource extends MysqlSource {
 
   @Override
   public void setPosition(@NonNull final BinlogFilePos pos) {
+    setClientPosition(name, binlogClient, mysqlClient, serverUUID, pos);
+  }
+
+  /** Sets the position a {@link BinaryLogClient} streams from once connected. */
+  static void setClientPosition(
+      final String name,
+      final BinaryLogClient binlogClient,
+      final MysqlClient mysqlClient,
+      final String serverUUID,
+      final BinlogFilePos pos) {
     if (!mysqlClient.isGtidModeEnabled()
         || (pos.getGtidSet() == null
             && pos != MysqlSource.EARLIEST_BINLOG_POS
@@ -170,6 +467,12 @@ public final class BinaryLogConnectorSource extends MysqlSource {
     public void onEvent(Event event) {
       Preconditions.checkState(isStarted(), "Source is not started and should not process events");
 
+      if (reconnectNanos != 0L) {
+        metrics.reconnectTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - reconnectNanos));
+        reconnectNanos = 0L;
+        reconnectAttempts = 0;
+      }
+
       final EventHeaderV4 header = event.getHeader();
       final BinlogFilePos filePos =
           new BinlogFilePos(
@@ -181,7 +484,10 @@ public final class BinaryLogConnectorSource extends MysqlSource {
 
       BinaryLogConnectorEventMapper.INSTANCE
           .map(event, filePos)
-          .ifPresent(BinaryLogConnectorSource.super::processEvent);
+          .ifPresent(
+              spoolDirectory == null
+                  ? BinaryLogConnectorSource.this::processAndCapture
+                  : BinaryLogConnectorSource.this::spool);
     }
   }
 
@@ -203,6 +509,8 @@ public final class BinaryLogConnectorSource extends MysqlSource {
           ex);
 
       if (ex.getMessage().startsWith(INVALID_BINLOG_POSITION_ERROR_CODE)) {
+        // The source is re-initialized from its last valid state instead
+        reconnectable = false;
         ex =
             new InvalidBinlogPositionException(
                 String.format(
@@ -220,6 +528,7 @@ public final class BinaryLogConnectorSource extends MysqlSource {
               name, client.getBinlogFilename(), client.getBinlogPosition()),
           ex);
 
+      reconnectable = false;
       onDeserializationError(ex);
     }
 
@@ -230,7 +539,10 @@ public final class BinaryLogConnectorSource extends MysqlSource {
           client.getBinlogFilename(),
           client.getBinlogPosition());
       metrics.clientDisconnected();
-      started.set(false);
+
+      if (!canReconnect()) {
+        started.set(false);
+      }
     }
   }
 }
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.binlog_connector;
+
+import com.airbnb.spinaltap.common.source.MysqlSourceState;
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.DataSource;
+import com.airbnb.spinaltap.mysql.MysqlSource;
+import com.airbnb.spinaltap.mysql.MysqlSourceMetrics;
+import com.airbnb.spinaltap.mysql.StateHistory;
+import com.airbnb.spinaltap.mysql.StateRepository;
+import com.airbnb.spinaltap.mysql.TableCache;
+import com.airbnb.spinaltap.mysql.capture.BinlogCaptureReader;
+import com.airbnb.spinaltap.mysql.event.BinlogEvent;
+import com.airbnb.spinaltap.mysql.event.TableMapEvent;
+import com.google.common.base.Strings;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Represents a {@link MysqlSource} that streams the binlog events captured by a {@link
+ * BinaryLogConnectorSource} with a {@link com.airbnb.spinaltap.mysql.capture.BinlogCaptureWriter},
+ * as fast as they can be read from disk. This is used to reproduce production traffic offline, ex:
+ * to investigate an issue or to benchmark the pipeline, without a MySQL server.
+ *
+ * <p>Streaming resumes from the captured block containing the last saved position, and already
+ * streamed events are filtered out. Once all captured events are streamed, the source remains
+ * started, as a source which caught up with its binlog would.
+ */
+@Slf4j
+public final class BinlogCaptureSource extends MysqlSource {
+  private static final String CAPTURE_HOST = "capture";
+
+  @NonNull private final Path directory;
+  @NonNull private final ReplaySchemaManager schemaManager;
+
+  private volatile long startOffset = 0L;
+  private volatile boolean connected = false;
+
+  private BinlogCaptureSource(
+      final String name,
+      final Path directory,
+      final Set<String> tableNames,
+      final ReplaySchemaManager schemaManager,
+      final StateRepository<MysqlSourceState> stateRepository,
+      final StateHistory<MysqlSourceState> stateHistory,
+      final MysqlSourceMetrics metrics) {
+    super(
+        name,
+        new DataSource(CAPTURE_HOST, 0, name),
+        tableNames,
+        new TableCache(schemaManager, null),
+        stateRepository,
+        stateHistory,
+        MysqlSource.EARLIEST_BINLOG_POS,
+        schemaManager,
+        metrics,
+        new AtomicLong(0L),
+        new AtomicReference<>(),
+        new AtomicReference<>());
+
+    this.directory = directory;
+    this.schemaManager = schemaManager;
+  }
+
+  /**
+   * Creates a capture source.
+   *
+   * @param name the source name
+   * @param directory the capture directory of the source
+   * @param tableNames the canonical names of the tables subscribed to
+   */
+  public static BinlogCaptureSource create(
+      @NonNull final String name,
+      @NonNull final Path directory,
+      @NonNull final Set<String> tableNames,
+      @NonNull final StateRepository<MysqlSourceState> stateRepository,
+      @NonNull final StateHistory<MysqlSourceState> stateHistory,
+      @NonNull final MysqlSourceMetrics metrics) {
+    return new BinlogCaptureSource(
+        name,
+        directory,
+        tableNames,
+        new ReplaySchemaManager(name),
+        stateRepository,
+        stateHistory,
+        metrics);
+  }
+
+  @Override
+  protected void connect() throws Exception {
+    connected = true;
+    log.info("Connected to capture source {} in {}.", name, directory);
+    metrics.clientConnected();
+
+    try (BinlogCaptureReader reader =
+        new BinlogCaptureReader(directory, schemaManager::register)) {
+      reader.seek(startOffset);
+
+      BinlogEvent event;
+      while (connected && (event = reader.readEvent()) != null) {
+        if (Thread.currentThread().isInterrupted()) {
+          log.info("Interrupted streaming of capture source {}.", name);
+          return;
+        }
+
+        if (event instanceof TableMapEvent) {
+          final TableMapEvent tableMapEvent = (TableMapEvent) event;
+          schemaManager.registerIfAbsent(
+              tableMapEvent.getDatabase(),
+              tableMapEvent.getTable(),
+              tableMapEvent.getColumnTypes().size());
+        }
+
+        processEvent(event);
+      }
+    }
+
+    log.info("Streamed all captured events for source {}.", name);
+  }
+
+  @Override
+  protected void disconnect() throws Exception {
+    if (connected) {
+      connected = false;
+      log.info("Disconnected from capture source {}.", name);
+      metrics.clientDisconnected();
+    }
+  }
+
+  @Override
+  protected boolean isConnected() {
+    return connected;
+  }
+
+  /** Streams from the start of the capture if there is no binlog file to resume from. */
+  @Override
+  public void setPosition(@NonNull final BinlogFilePos pos) {
+    log.info("Setting capture position for source {} to {}", name, pos);
+
+    startOffset =
+        Strings.isNullOrEmpty(pos.getFileName())
+            ? 0L
+            : (pos.getFileNumber() << 32) | pos.getPosition();
+  }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.binlog_connector;
+
+import com.airbnb.spinaltap.common.source.MysqlSourceState;
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.DataSource;
+import com.airbnb.spinaltap.mysql.MysqlSource;
+import com.airbnb.spinaltap.mysql.MysqlSourceMetrics;
+import com.airbnb.spinaltap.mysql.StateHistory;
+import com.airbnb.spinaltap.mysql.StateRepository;
+import com.airbnb.spinaltap.mysql.TableCache;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import com.github.shyiko.mysql.binlog.BinaryLogFileReader;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.google.common.util.concurrent.RateLimiter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.validation.constraints.Min;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Represents a {@link MysqlSource} that replays binlog events instead of streaming them from a
+ * MySQL server. Events are read from binlog files recorded from a server, or from any other {@link
+ * EventReaderFactory} (ex: generating events in tests and benchmarks), and go through the same
+ * filter, mapper and destination path as events streamed by {@link BinaryLogConnectorSource}. This
+ * is used to measure end-to-end throughput and latency in a reproducible way, ex: on a laptop with
+ * an {@link com.airbnb.spinaltap.common.destination.InMemoryDestination}.
+ *
+ * <p>Events are replayed at a configurable rate, for a number of passes. Each pass is replayed as
+ * a new binlog file, so that its events are not filtered as duplicates of the previous pass. Once
+ * all passes are replayed, the source remains started, as a source which caught up with its binlog
+ * would.
+ *
+ * <p>Table schemas are taken from the given {@link Table}s if present, otherwise derived from the
+ * TABLE_MAP events, with columns named by position and the first column as primary key.
+ */
+@Slf4j
+public final class BinlogReplaySource extends MysqlSource {
+  private static final String REPLAY_HOST = "replay";
+
+  @NonNull private final EventReaderFactory readerFactory;
+  @NonNull private final ReplaySchemaManager schemaManager;
+  private final RateLimiter rateLimiter;
+  private final int passes;
+
+  private volatile boolean connected = false;
+
+  private BinlogReplaySource(
+      final String name,
+      final EventReaderFactory readerFactory,
+      final Set<String> tableNames,
+      final double eventsPerSecond,
+      final int passes,
+      final ReplaySchemaManager schemaManager,
+      final StateRepository<MysqlSourceState> stateRepository,
+      final StateHistory<MysqlSourceState> stateHistory,
+      final MysqlSourceMetrics metrics) {
+    super(
+        name,
+        new DataSource(REPLAY_HOST, 0, name),
+        tableNames,
+        new TableCache(schemaManager, null),
+        stateRepository,
+        stateHistory,
+        MysqlSource.EARLIEST_BINLOG_POS,
+        schemaManager,
+        metrics,
+        new AtomicLong(0L),
+        new AtomicReference<>(),
+        new AtomicReference<>());
+
+    this.readerFactory = readerFactory;
+    this.schemaManager = schemaManager;
+    this.rateLimiter = eventsPerSecond > 0 ? RateLimiter.create(eventsPerSecond) : null;
+    this.passes = passes;
+  }
+
+  /**
+   * Creates a replay source.
+   *
+   * @param name the source name
+   * @param readerFactory opens a reader of the events to replay, once per pass
+   * @param tables the schemas of the replayed tables, if known
+   * @param tableNames the canonical names of the tables subscribed to
+   * @param eventsPerSecond the replay rate, or a non-positive value to replay as fast as possible
+   * @param passes the number of times to replay the events, or 0 to replay until closed
+   */
+  public static BinlogReplaySource create(
+      @NonNull final String name,
+      @NonNull final EventReaderFactory readerFactory,
+      @NonNull final Collection<Table> tables,
+      @NonNull final Set<String> tableNames,
+      final double eventsPerSecond,
+      @Min(0) final int passes,
+      @NonNull final StateRepository<MysqlSourceState> stateRepository,
+      @NonNull final StateHistory<MysqlSourceState> stateHistory,
+      @NonNull final MysqlSourceMetrics metrics) {
+    final ReplaySchemaManager schemaManager = new ReplaySchemaManager(name);
+    tables.forEach(schemaManager::register);
+
+    return new BinlogReplaySource(
+        name,
+        readerFactory,
+        tableNames,
+        eventsPerSecond,
+        passes,
+        schemaManager,
+        stateRepository,
+        stateHistory,
+        metrics);
+  }
+
+  /** @return a factory of readers of the events in the given binlog file. */
+  public static EventReaderFactory fromBinlogFile(@NonNull final Path path) {
+    return () -> {
+      final BinaryLogFileReader reader = new BinaryLogFileReader(path.toFile());
+      return new EventReader() {
+        @Override
+        public Event readEvent() throws IOException {
+          return reader.readEvent();
+        }
+
+        @Override
+        public void close() throws IOException {
+          reader.close();
+        }
+      };
+    };
+  }
+
+  @Override
+  protected void connect() throws Exception {
+    connected = true;
+    log.info("Connected to replay source {}.", name);
+    metrics.clientConnected();
+
+    try {
+      for (int pass = 0; connected && (passes == 0 || pass < passes); pass++) {
+        replay(pass);
+      }
+      log.info("Replayed all events for source {}.", name);
+    } catch (InterruptedException ex) {
+      log.info("Interrupted replay for source {}.", name);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void replay(final int pass) throws Exception {
+    // Each pass is replayed as a new binlog file, after the file of the initial position
+    final String fileName =
+        String.format("%s.%06d", BinlogFilePos.DEFAULT_BINLOG_FILE_NAME, pass + 1);
+    log.info("Replaying events for source {} as binlog file {}.", name, fileName);
+
+    try (EventReader reader = readerFactory.open()) {
+      Event event;
+      while (connected && (event = reader.readEvent()) != null) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedException();
+        }
+        if (rateLimiter != null) {
+          rateLimiter.acquire();
+        }
+
+        final EventHeaderV4 header = event.getHeader();
+        if (header.getEventType() == EventType.TABLE_MAP) {
+          final TableMapEventData data = event.getData();
+          schemaManager.registerIfAbsent(
+              data.getDatabase(), data.getTable(), data.getColumnTypes().length);
+        }
+
+        final BinlogFilePos filePos =
+            new BinlogFilePos(fileName, header.getPosition(), header.getNextPosition());
+        BinaryLogConnectorEventMapper.INSTANCE.map(event, filePos).ifPresent(this::processEvent);
+      }
+    }
+  }
+
+  @Override
+  protected void disconnect() throws Exception {
+    if (connected) {
+      connected = false;
+      log.info("Disconnected from replay source {}.", name);
+      metrics.clientDisconnected();
+    }
+  }
+
+  @Override
+  protected boolean isConnected() {
+    return connected;
+  }
+
+  /** Events are always replayed from the start, and already streamed events are filtered out. */
+  @Override
+  public void setPosition(@NonNull final BinlogFilePos pos) {
+    log.info("Replaying source {} from the start with last position {}", name, pos);
+  }
+
+  /** Reads the events of a replay pass. */
+  public interface EventReader extends Closeable {
+    /** @return the next event, or {@code null} if all events were read. */
+    Event readEvent() throws IOException;
+  }
+
+  /** Opens an {@link EventReader} for each replay pass. */
+  @FunctionalInterface
+  public interface EventReaderFactory {
+    EventReader open() throws IOException;
+  }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.binlog_connector;
+
+import com.airbnb.spinaltap.mysql.config.MysqlConfiguration;
+import com.github.shyiko.mysql.binlog.network.SocketFactory;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import lombok.NonNull;
+
+/**
+ * Creates the sockets of a binlog client, tuned as set in the {@link MysqlConfiguration}.
+ *
+ * <p>The receive buffer is set before connecting, so the TCP window can scale up to it on links
+ * with a high bandwidth-delay product. The input stream can be buffered, as the binlog client
+ * reads packet headers a few bytes at a time.
+ */
+public final class BinlogSocketFactory implements SocketFactory {
+  private final int soTimeoutMs;
+  private final int receiveBufferBytes;
+  private final int inputBufferBytes;
+  private final boolean tcpNoDelay;
+
+  public BinlogSocketFactory(@NonNull final MysqlConfiguration config) {
+    this.soTimeoutMs = config.getSocketTimeoutInSeconds() * 1000;
+    this.receiveBufferBytes = config.getSocketReceiveBufferBytes();
+    this.inputBufferBytes = config.getSocketInputBufferBytes();
+    this.tcpNoDelay = config.isTcpNoDelay();
+  }
+
+  @Override
+  public Socket createSocket() throws SocketException {
+    final Socket socket =
+        inputBufferBytes > 0 ? new BufferedInputSocket(inputBufferBytes) : new Socket();
+
+    if (soTimeoutMs > 0) {
+      socket.setSoTimeout(soTimeoutMs);
+    }
+    if (receiveBufferBytes > 0) {
+      socket.setReceiveBufferSize(receiveBufferBytes);
+    }
+    socket.setTcpNoDelay(tcpNoDelay);
+
+    return socket;
+  }
+
+  /**
+   * A {@link Socket} reading ahead through a buffered input stream. The same stream is returned on
+   * every call, so no buffered bytes are lost when the connection is upgraded to SSL.
+   */
+  private static final class BufferedInputSocket extends Socket {
+    private final int bufferSize;
+    private InputStream inputStream;
+
+    BufferedInputSocket(final int bufferSize) {
+      this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+      if (inputStream == null) {
+        inputStream = new BufferedInputStream(super.getInputStream(), bufferSize);
+      }
+      return inputStream;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.binlog_connector;
+
+import com.airbnb.spinaltap.mysql.mutation.schema.ColumnMetadata;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import com.airbnb.spinaltap.mysql.schema.MysqlColumn;
+import com.airbnb.spinaltap.mysql.schema.MysqlSchemaManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Provides the schemas of replayed tables, as there is no MySQL server to read them from. Schemas
+ * are either registered, or derived from TABLE_MAP events with columns named by position and the
+ * first column as primary key.
+ */
+final class ReplaySchemaManager extends MysqlSchemaManager {
+  private final Map<String, List<MysqlColumn>> tableColumns = new ConcurrentHashMap<>();
+
+  ReplaySchemaManager(final String sourceName) {
+    super(sourceName, null, null, null, null, false);
+  }
+
+  void register(final Table table) {
+    tableColumns.put(
+        Table.canonicalNameOf(table.getDatabase(), table.getName()),
+        table
+            .getColumns()
+            .values()
+            .stream()
+            .map(ReplaySchemaManager::toMysqlColumn)
+            .collect(Collectors.toList()));
+  }
+
+  void registerIfAbsent(final String database, final String table, final int columnCount) {
+    tableColumns.computeIfAbsent(
+        Table.canonicalNameOf(database, table),
+        name -> {
+          final List<MysqlColumn> columns = new ArrayList<>(columnCount);
+          for (int position = 0; position < columnCount; position++) {
+            columns.add(new MysqlColumn("column_" + position, null, null, position == 0));
+          }
+          return columns;
+        });
+  }
+
+  @Override
+  public List<MysqlColumn> getTableColumns(final String database, final String table) {
+    return tableColumns.getOrDefault(
+        Table.canonicalNameOf(database, table), Collections.emptyList());
+  }
+
+  private static MysqlColumn toMysqlColumn(final ColumnMetadata column) {
+    return new MysqlColumn(
+        column.getName(),
+        column.getColType().name().toLowerCase(),
+        column.getRawColumnType(),
+        column.isPrimaryKey());
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.binlog_connector;
+
+import com.airbnb.spinaltap.common.source.MysqlSourceState;
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.DataSource;
+import com.airbnb.spinaltap.mysql.MysqlSource;
+import com.airbnb.spinaltap.mysql.MysqlSourceMetrics;
+import com.airbnb.spinaltap.mysql.StateHistory;
+import com.airbnb.spinaltap.mysql.StateRepository;
+import com.airbnb.spinaltap.mysql.TableCache;
+import com.airbnb.spinaltap.mysql.config.MysqlConfiguration;
+import com.airbnb.spinaltap.mysql.event.BinlogEvent;
+import com.airbnb.spinaltap.mysql.schema.MysqlSchemaManager;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Represents a {@link MysqlSource} that receives its events from a {@link SharedBinlogStream},
+ * instead of opening a binlog stream of its own. The source filters the events on its tables, and
+ * checkpoints its own position, as a {@link BinaryLogConnectorSource} would.
+ */
+@Slf4j
+public final class SharedBinlogSource extends MysqlSource {
+  @NonNull private final SharedBinlogStream stream;
+
+  @Getter private volatile BinlogFilePos position = MysqlSource.LATEST_BINLOG_POS;
+
+  private volatile boolean registered = false;
+
+  /** The offset of the last event received, to skip events received again on stream restarts. */
+  private volatile long lastEventOffset = Long.MIN_VALUE;
+
+  private volatile long skipUntilOffset = Long.MIN_VALUE;
+
+  public SharedBinlogSource(
+      @NonNull final String name,
+      @NonNull final MysqlConfiguration config,
+      @NonNull final SharedBinlogStream stream,
+      @NonNull final TableCache tableCache,
+      @NonNull final StateRepository<MysqlSourceState> stateRepository,
+      @NonNull final StateHistory<MysqlSourceState> stateHistory,
+      @NonNull final MysqlSchemaManager schemaManager,
+      @NonNull final MysqlSourceMetrics metrics,
+      @NonNull final AtomicLong currentLeaderEpoch) {
+    super(
+        name,
+        new DataSource(config.getHost(), config.getPort(), name),
+        new HashSet<>(config.getCanonicalTableNames()),
+        tableCache,
+        stateRepository,
+        stateHistory,
+        config.getInitialBinlogFilePosition(),
+        schemaManager,
+        metrics,
+        currentLeaderEpoch,
+        new AtomicReference<>(),
+        new AtomicReference<>());
+
+    this.stream = stream;
+  }
+
+  @Override
+  protected void connect() throws Exception {
+    lastEventOffset = Long.MIN_VALUE;
+    skipUntilOffset = Long.MIN_VALUE;
+    registered = true;
+
+    try {
+      stream.register(this);
+    } catch (Exception ex) {
+      registered = false;
+      throw ex;
+    }
+
+    log.info("Connected source {} to shared stream {}.", name, stream.getName());
+    metrics.clientConnected();
+  }
+
+  @Override
+  protected void disconnect() throws Exception {
+    if (registered) {
+      registered = false;
+      stream.unregister(this);
+      metrics.clientDisconnected();
+    }
+  }
+
+  @Override
+  protected boolean isConnected() {
+    return registered && stream.isConnected();
+  }
+
+  /** Sets the position to stream from, which the shared stream starts from if the earliest. */
+  @Override
+  public void setPosition(@NonNull final BinlogFilePos pos) {
+    log.info(
+        "Setting binlog position for source {} on stream {} to {}", name, stream.getName(), pos);
+    position = pos;
+  }
+
+  void onStreamEvent(final BinlogEvent event) {
+    if (!isStarted()) {
+      return;
+    }
+
+    final long offset = event.getOffset();
+    if (offset <= skipUntilOffset) {
+      return;
+    }
+    lastEventOffset = offset;
+
+    try {
+      processEvent(event);
+    } catch (Exception ex) {
+      // The failure is already reported, and should not affect other sources on the stream
+      log.debug("Failed to process event from shared stream for source {}.", name, ex);
+    }
+  }
+
+  /** Skips the events already received, as the stream restarts from an earlier position. */
+  void skipReceivedEvents() {
+    skipUntilOffset = lastEventOffset;
+  }
+
+  void onStreamCommunicationFailure(final Exception ex, final boolean positionedAtSource) {
+    try {
+      if (positionedAtSource) {
+        onCommunicationError(ex);
+      } else {
+        metrics.communicationFailure(ex);
+      }
+    } catch (RuntimeException e) {
+      // The failure is reported through the source lifecycle, as for unshared sources
+    }
+  }
+
+  void onStreamDeserializationFailure(final Exception ex) {
+    try {
+      onDeserializationError(ex);
+    } catch (RuntimeException e) {
+      // The failure is reported through the source lifecycle, as for unshared sources
+    }
+  }
+
+  void onStreamDisconnected() {
+    log.info("Shared stream {} of source {} disconnected.", stream.getName(), name);
+    metrics.clientDisconnected();
+    started.set(false);
+  }
+}
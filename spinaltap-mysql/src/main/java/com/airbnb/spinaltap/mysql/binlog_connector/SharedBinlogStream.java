@@ -0,0 +1,320 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.binlog_connector;
+
+import com.airbnb.spinaltap.common.config.TlsConfiguration;
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.MysqlClient;
+import com.airbnb.spinaltap.mysql.config.MysqlConfiguration;
+import com.airbnb.spinaltap.mysql.exception.InvalidBinlogPositionException;
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.network.SSLMode;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Represents a single binlog stream from a MySQL server, shared by several {@link
+ * SharedBinlogSource}s on the same host and port connecting with the same settings. Events are
+ * streamed and decoded once, and fanned out to every registered source, which filters, maps and
+ * checkpoints them on its own.
+ *
+ * <p>The stream is positioned at the earliest position of its sources. When a source registers
+ * with an earlier position than the stream's, the stream restarts from it, and the sources already
+ * registered skip the events they have already received.
+ *
+ * <p>Sources are notified in sequence on the stream thread, so a source blocked on its destination
+ * delays the other sources on the stream.
+ *
+ * <p>The stream is released once its last source unregisters, so that sources created afterwards
+ * get a new stream. It is shared again if one of its sources registers back, unless a new stream
+ * was created in the meantime.
+ */
+@Slf4j
+public final class SharedBinlogStream {
+  private static final long CONNECT_TIMEOUT_MS = 10_000L;
+  private static final Map<ConnectionKey, SharedBinlogStream> STREAMS = new ConcurrentHashMap<>();
+
+  @Getter @NonNull private final String name;
+  @NonNull private final ConnectionKey key;
+  @NonNull private final BinaryLogClient binlogClient;
+  @NonNull private final MysqlClient mysqlClient;
+  private final String serverUUID;
+
+  private final List<SharedBinlogSource> sources = new CopyOnWriteArrayList<>();
+
+  /** The position the stream was last connected at. */
+  private volatile BinlogFilePos startPosition;
+
+  /** Whether the stream is restarting, in which case disconnects are not notified to sources. */
+  private volatile boolean restarting = false;
+
+  /** Whether the stream was removed from the shared streams. Guarded by {@code this}. */
+  private boolean released = false;
+
+  SharedBinlogStream(
+      @NonNull final String name,
+      @NonNull final ConnectionKey key,
+      @NonNull final BinaryLogClient binlogClient,
+      @NonNull final MysqlClient mysqlClient) {
+    this.name = name;
+    this.key = key;
+    this.binlogClient = binlogClient;
+    this.mysqlClient = mysqlClient;
+    this.serverUUID = mysqlClient.getServerUUID();
+
+    binlogClient.setThreadFactory(
+        runnable -> new Thread(runnable, String.format("shared-binlog-client-%s", name)));
+    binlogClient.registerEventListener(new BinlogEventListener());
+    binlogClient.registerLifecycleListener(new BinlogClientLifeCycleListener());
+  }
+
+  /**
+   * @return the stream shared by sources connecting with the same settings, which is created with
+   *     the given client, configuration and server id if it does not exist yet. Sources of any host
+   *     role share the stream, which keeps the server id of the source that created it.
+   */
+  public static SharedBinlogStream getOrCreate(
+      @NonNull final MysqlConfiguration config,
+      @NonNull final String user,
+      @NonNull final String password,
+      final long serverId,
+      final TlsConfiguration tlsConfig,
+      @NonNull final Supplier<BinaryLogClient> binlogClientSupplier,
+      @NonNull final Supplier<MysqlClient> mysqlClientSupplier) {
+    return STREAMS.computeIfAbsent(
+        ConnectionKey.create(config, user, password, tlsConfig),
+        key -> {
+          final String name = String.format("%s:%d", config.getHost(), config.getPort());
+          log.info(
+              "Creating shared binlog stream {} with server id {} for source {}.",
+              name,
+              serverId,
+              config.getName());
+
+          final BinaryLogClient binlogClient = binlogClientSupplier.get();
+          binlogClient.setServerId(serverId);
+          BinaryLogConnectorSource.configureClient(binlogClient, config, tlsConfig);
+          return new SharedBinlogStream(name, key, binlogClient, mysqlClientSupplier.get());
+        });
+  }
+
+  /**
+   * Registers a source to receive the streamed events from its position, connecting or restarting
+   * the stream if needed.
+   */
+  synchronized void register(@NonNull final SharedBinlogSource source) throws Exception {
+    log.info("Registering source {} on shared binlog stream {}.", source.getName(), name);
+    sources.remove(source);
+
+    if (released) {
+      // A restarted source keeps its stream, which is shared again if no stream replaced it
+      released = false;
+      STREAMS.putIfAbsent(key, this);
+    }
+
+    if (!binlogClient.isConnected()) {
+      sources.add(source);
+      connect(getEarliestPosition());
+      return;
+    }
+
+    final BinlogFilePos currentPosition = getCurrentPosition();
+    if (source.getPosition().compareTo(currentPosition) >= 0) {
+      // Events preceding the position of the source are filtered out as duplicates
+      sources.add(source);
+      return;
+    }
+
+    log.info(
+        "Restarting shared binlog stream {} from position {} of source {}.",
+        name,
+        source.getPosition(),
+        source.getName());
+
+    sources.forEach(SharedBinlogSource::skipReceivedEvents);
+    sources.add(source);
+
+    restarting = true;
+    try {
+      binlogClient.disconnect();
+      connect(getEarliestPosition());
+    } finally {
+      restarting = false;
+    }
+  }
+
+  /** Unregisters a source, disconnecting and releasing the stream once no source is registered. */
+  synchronized void unregister(@NonNull final SharedBinlogSource source) throws Exception {
+    if (!sources.remove(source)) {
+      return;
+    }
+
+    log.info("Unregistered source {} from shared binlog stream {}.", source.getName(), name);
+    if (!sources.isEmpty()) {
+      return;
+    }
+
+    if (binlogClient.isConnected()) {
+      log.info("Disconnecting shared binlog stream {} with no registered source.", name);
+      binlogClient.disconnect();
+    }
+
+    released = STREAMS.remove(key, this);
+  }
+
+  boolean isConnected() {
+    return binlogClient.isConnected();
+  }
+
+  private void connect(final BinlogFilePos position) throws Exception {
+    log.info("Connecting shared binlog stream {} at position {}.", name, position);
+
+    startPosition = position;
+    BinaryLogConnectorSource.setClientPosition(
+        name, binlogClient, mysqlClient, serverUUID, position);
+    binlogClient.connect(CONNECT_TIMEOUT_MS);
+  }
+
+  private BinlogFilePos getEarliestPosition() {
+    return sources
+        .stream()
+        .map(SharedBinlogSource::getPosition)
+        .min(BinlogFilePos::compareTo)
+        .orElseThrow(() -> new IllegalStateException("No source registered on stream " + name));
+  }
+
+  private BinlogFilePos getCurrentPosition() {
+    return new BinlogFilePos(
+        binlogClient.getBinlogFilename(),
+        binlogClient.getBinlogPosition(),
+        binlogClient.getBinlogPosition(),
+        binlogClient.getGtidSet(),
+        serverUUID);
+  }
+
+  private final class BinlogEventListener implements BinaryLogClient.EventListener {
+    public void onEvent(Event event) {
+      final EventHeaderV4 header = event.getHeader();
+      final BinlogFilePos filePos =
+          new BinlogFilePos(
+              binlogClient.getBinlogFilename(),
+              header.getPosition(),
+              header.getNextPosition(),
+              binlogClient.getGtidSet(),
+              serverUUID);
+
+      BinaryLogConnectorEventMapper.INSTANCE
+          .map(event, filePos)
+          .ifPresent(
+              binlogEvent -> {
+                for (SharedBinlogSource source : sources) {
+                  source.onStreamEvent(binlogEvent);
+                }
+              });
+    }
+  }
+
+  /**
+   * Lifecycle listener methods are called synchronized in BinaryLogClient. We should not enter
+   * critical sections in SpinalTap code path to avoid deadlocks
+   */
+  private final class BinlogClientLifeCycleListener implements BinaryLogClient.LifecycleListener {
+    public void onConnect(BinaryLogClient client) {
+      log.info("Connected shared binlog stream {}.", name);
+    }
+
+    public void onCommunicationFailure(BinaryLogClient client, Exception ex) {
+      log.error(
+          String.format(
+              "Communication failure from shared binlog stream %s, binlogFile=%s, binlogPos=%s",
+              name, client.getBinlogFilename(), client.getBinlogPosition()),
+          ex);
+
+      if (ex.getMessage().startsWith(BinaryLogConnectorSource.INVALID_BINLOG_POSITION_ERROR_CODE)) {
+        ex =
+            new InvalidBinlogPositionException(
+                String.format(
+                    "Invalid position %s in binlog file %s",
+                    client.getBinlogPosition(), client.getBinlogFilename()));
+      }
+
+      // Only the sources the stream was positioned at are reset on an invalid position
+      for (SharedBinlogSource source : sources) {
+        source.onStreamCommunicationFailure(
+            ex, source.getPosition().compareTo(startPosition) == 0);
+      }
+    }
+
+    public void onEventDeserializationFailure(BinaryLogClient client, Exception ex) {
+      log.error(
+          String.format(
+              "Deserialization failure from shared binlog stream %s, binlogFile=%s, binlogPos=%s",
+              name, client.getBinlogFilename(), client.getBinlogPosition()),
+          ex);
+
+      sources.forEach(source -> source.onStreamDeserializationFailure(ex));
+    }
+
+    public void onDisconnect(BinaryLogClient client) {
+      log.info(
+          "Disconnected shared binlog stream {}. BinlogFile={}, binlogPos={}",
+          name,
+          client.getBinlogFilename(),
+          client.getBinlogPosition());
+
+      if (!restarting) {
+        sources.forEach(SharedBinlogSource::onStreamDisconnected);
+      }
+    }
+  }
+
+  /**
+   * The settings the stream client connects with, which sources must have in common to share a
+   * stream, as the client is configured once for all of them. The server id is left out, as it
+   * differs by host role, so that the sources of all roles on a host share one stream.
+   */
+  @Value
+  static class ConnectionKey {
+    String host;
+    int port;
+    String user;
+    @ToString.Exclude String password;
+    SSLMode sslMode;
+    TlsConfiguration tlsConfiguration;
+    int socketTimeoutInSeconds;
+    int socketReceiveBufferBytes;
+    int socketInputBufferBytes;
+    boolean tcpNoDelay;
+
+    static ConnectionKey create(
+        final MysqlConfiguration config,
+        final String user,
+        final String password,
+        final TlsConfiguration tlsConfig) {
+      return new ConnectionKey(
+          config.getHost(),
+          config.getPort(),
+          user,
+          password,
+          config.getSslMode(),
+          // The TLS configuration is only used by the client with mTLS enabled
+          config.isMTlsEnabled() ? tlsConfig : null,
+          config.getSocketTimeoutInSeconds(),
+          config.getSocketReceiveBufferBytes(),
+          config.getSocketInputBufferBytes(),
+          config.isTcpNoDelay());
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.capture;
+
+import com.airbnb.spinaltap.mysql.event.BinlogEvent;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads the {@link BinlogEvent}s captured by a {@link BinlogCaptureWriter}, in the order they were
+ * captured, across all segments in the capture directory. Segments are memory-mapped, so events
+ * are read at the speed of the disk and decompression.
+ *
+ * <p>Captured table schemas are passed to the table listener before the events on the table are
+ * read. The reader can follow a capture that is still being written: once all committed blocks are
+ * read, {@link #readEvent()} returns {@code null} until more blocks are committed.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public final class BinlogCaptureReader implements Closeable {
+  private static final String SEQUENCE_FORMAT = "%020d";
+  private static final int INDEX_ENTRY_SIZE = 16;
+  private static final int COMMITTED_LENGTH_POSITION = 8;
+  private static final int BLOCK_OFFSET_POSITION = 12;
+
+  @NonNull private final Path directory;
+  @NonNull private final Consumer<Table> tableListener;
+
+  private final Inflater inflater = new Inflater();
+  private volatile long segmentSequence = -1L;
+  private MappedByteBuffer segment;
+  private DataInputStream block;
+  private int blockRemainingRecords;
+
+  /** @return the next captured event, or {@code null} if all captured events were read. */
+  public BinlogEvent readEvent() throws IOException {
+    while (true) {
+      while (blockRemainingRecords > 0) {
+        blockRemainingRecords--;
+
+        final byte type = block.readByte();
+        if (type == BinlogEventCodec.TABLE_SCHEMA) {
+          tableListener.accept(BinlogEventCodec.readTable(block));
+        } else {
+          return BinlogEventCodec.readEvent(block, type);
+        }
+      }
+
+      if (!readBlock()) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Positions the reader at the start of the captured block that contains the event with the given
+   * offset, or at the start of the capture if no such block is found. The table schemas of the
+   * block's segment are read, but events preceding the given offset in the block are not skipped.
+   *
+   * @param offset the binlog offset, as in {@link BinlogEvent#getOffset()}
+   */
+  public void seek(final long offset) throws IOException {
+    final List<Path> segments = listSegments(directory);
+
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      final long sequence = getSequence(segments.get(i));
+      final ByteBuffer index = readIndex(sequence);
+      final int entryCount = index.capacity() / INDEX_ENTRY_SIZE;
+
+      if (i > 0 && (entryCount == 0 || index.getLong(0) > offset)) {
+        continue;
+      }
+
+      openSegment(segments.get(i));
+      readSchemaBlocks();
+
+      // Index entries are ordered by offset, so find the last block starting at or before it
+      int position = -1;
+      for (int entry = 0; entry < entryCount; entry++) {
+        if (index.getLong(entry * INDEX_ENTRY_SIZE) > offset) {
+          break;
+        }
+        position = (int) index.getLong(entry * INDEX_ENTRY_SIZE + 8);
+      }
+
+      if (position >= 0) {
+        segment.position(position);
+        blockRemainingRecords = 0;
+      }
+
+      log.info("Positioned binlog capture reader at offset {} of segment {}.", offset, sequence);
+      return;
+    }
+  }
+
+  /** @return the sequence of the segment being read, or -1 if no segment was read yet. */
+  long getSegmentSequence() {
+    return segmentSequence;
+  }
+
+  @Override
+  public void close() {
+    inflater.end();
+    segment = null;
+    block = null;
+    blockRemainingRecords = 0;
+  }
+
+  /** Reads the blocks with no events at the current position, which hold table schemas only. */
+  private void readSchemaBlocks() throws IOException {
+    while (segment.position() < getCommittedLength()
+        && segment.getLong(segment.position() + BLOCK_OFFSET_POSITION)
+            == BinlogCaptureWriter.NO_EVENT_OFFSET) {
+      readBlock();
+
+      while (blockRemainingRecords > 0) {
+        blockRemainingRecords--;
+        block.readByte();
+        tableListener.accept(BinlogEventCodec.readTable(block));
+      }
+    }
+  }
+
+  /** @return whether a block was read, otherwise all committed blocks were read. */
+  private boolean readBlock() throws IOException {
+    while (segment == null || segment.position() >= getCommittedLength()) {
+      final Path nextSegment = getNextSegment();
+      if (nextSegment == null) {
+        return false;
+      }
+      // The segment is complete once the next one exists, which may be after its last block
+      if (segment != null && segment.position() < getCommittedLength()) {
+        break;
+      }
+      openSegment(nextSegment);
+    }
+
+    final byte[] compressed = new byte[segment.getInt()];
+    final byte[] uncompressed = new byte[segment.getInt()];
+    final int recordCount = segment.getInt();
+    segment.getLong();
+    segment.get(compressed);
+
+    inflater.reset();
+    inflater.setInput(compressed);
+    try {
+      if (inflater.inflate(uncompressed) != uncompressed.length) {
+        throw new IOException("Truncated binlog capture block in segment " + segmentSequence);
+      }
+    } catch (DataFormatException ex) {
+      throw new IOException("Corrupted binlog capture block in segment " + segmentSequence, ex);
+    }
+
+    block = new DataInputStream(new ByteArrayInputStream(uncompressed));
+    blockRemainingRecords = recordCount;
+    return true;
+  }
+
+  private ByteBuffer readIndex(final long sequence) throws IOException {
+    final Path path = getIndexPath(directory, sequence);
+    return Files.exists(path) ? ByteBuffer.wrap(Files.readAllBytes(path)) : ByteBuffer.allocate(0);
+  }
+
+  private Path getNextSegment() throws IOException {
+    return listSegments(directory)
+        .stream()
+        .filter(path -> getSequence(path) > segmentSequence)
+        .findFirst()
+        .orElse(null);
+  }
+
+  private void openSegment(final Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path)) {
+      segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (segment.capacity() < BinlogCaptureWriter.SEGMENT_HEADER_SIZE
+        || segment.getInt(0) != BinlogCaptureWriter.MAGIC
+        || segment.getInt(4) != BinlogCaptureWriter.VERSION) {
+      throw new IOException("Invalid binlog capture segment " + path);
+    }
+
+    segmentSequence = getSequence(path);
+    segment.position(BinlogCaptureWriter.SEGMENT_HEADER_SIZE);
+    blockRemainingRecords = 0;
+  }
+
+  private long getCommittedLength() {
+    return segment.getLong(COMMITTED_LENGTH_POSITION);
+  }
+
+  /** @return the segments in the capture directory, ordered by sequence. */
+  static List<Path> listSegments(@NonNull final Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return Collections.emptyList();
+    }
+
+    try (Stream<Path> paths = Files.list(directory)) {
+      return paths
+          .filter(path -> path.toString().endsWith(BinlogCaptureWriter.SEGMENT_SUFFIX))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  static long getSequence(@NonNull final Path segment) {
+    final String fileName = segment.getFileName().toString();
+    return Long.parseLong(
+        fileName.substring(0, fileName.length() - BinlogCaptureWriter.SEGMENT_SUFFIX.length()));
+  }
+
+  static Path getSegmentPath(@NonNull final Path directory, final long sequence) {
+    return directory.resolve(
+        String.format(SEQUENCE_FORMAT, sequence) + BinlogCaptureWriter.SEGMENT_SUFFIX);
+  }
+
+  static Path getIndexPath(@NonNull final Path directory, final long sequence) {
+    return directory.resolve(
+        String.format(SEQUENCE_FORMAT, sequence) + BinlogCaptureWriter.INDEX_SUFFIX);
+  }
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.capture;
+
+import com.airbnb.spinaltap.mysql.event.BinlogEvent;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import javax.validation.constraints.Min;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Captures {@link BinlogEvent}s into rotating, memory-mapped segment files in a local directory,
+ * so that a binlog stream can be replayed later with a {@link BinlogCaptureReader}, ex: to
+ * reproduce a production issue or to benchmark the pipeline on a real workload.
+ *
+ * <p>Records are grouped into blocks, which are compressed and appended to the current segment.
+ * Each segment has an index file, with the offset of the first event of each block, so that a
+ * reader can seek to a binlog position without decompressing the whole segment. Table schemas are
+ * written before the first event on the table, and again at the start of each segment, so that
+ * each segment can be read on its own.
+ *
+ * <p>Segments are pre-allocated to the segment size, and rotated once full. A new segment is
+ * created under a temporary name, and only moved in place once its header is written, so that a
+ * reader following the capture never opens a partially created segment. The oldest segments are
+ * deleted beyond the maximum segment count.
+ */
+@Slf4j
+public final class BinlogCaptureWriter implements Closeable {
+  static final String SEGMENT_SUFFIX = ".capture";
+  static final String INDEX_SUFFIX = ".index";
+  static final String TEMPORARY_SUFFIX = ".tmp";
+  static final int MAGIC = 0x5354_4350;
+  static final int VERSION = 1;
+  /** Magic, version and the committed length of the segment. */
+  static final int SEGMENT_HEADER_SIZE = 16;
+  /** Compressed length, uncompressed length, record count and offset of the first event. */
+  static final int BLOCK_HEADER_SIZE = 20;
+  /** The first event offset of blocks with no events, which are not indexed. */
+  static final long NO_EVENT_OFFSET = -1L;
+
+  private static final int BLOCK_SIZE = 64 * 1024;
+  private static final long BLOCK_FLUSH_INTERVAL_MS = 1000L;
+
+  @NonNull private final Path directory;
+  private final long segmentSize;
+  private final int maxSegments;
+
+  private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE);
+  private final DataOutputStream blockOutput = new DataOutputStream(block);
+  private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+  private byte[] buffer = new byte[BLOCK_SIZE];
+  private int blockRecordCount;
+  private long blockFirstEventOffset = NO_EVENT_OFFSET;
+  private long blockStartTimeMs;
+
+  /** The latest written schema of each table, to write again at the start of each segment. */
+  private final Map<String, Table> tables = new HashMap<>();
+
+  private long segmentSequence;
+  private MappedByteBuffer segment;
+  private DataOutputStream index;
+
+  public BinlogCaptureWriter(
+      @NonNull final Path directory, @Min(1) final long segmentSize, @Min(1) final int maxSegments)
+      throws IOException {
+    Files.createDirectories(directory);
+
+    deleteTemporarySegments(directory);
+
+    final List<Path> segments = BinlogCaptureReader.listSegments(directory);
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.maxSegments = maxSegments;
+    this.segmentSequence =
+        segments.isEmpty()
+            ? 0L
+            : BinlogCaptureReader.getSequence(segments.get(segments.size() - 1)) + 1;
+  }
+
+  /** Appends the schema of a table, if it changed since it was last appended. */
+  public synchronized void appendTable(@NonNull final Table table) throws IOException {
+    if (tables.put(table.getCanonicalName(), table) != table) {
+      BinlogEventCodec.writeTable(blockOutput, table);
+      blockRecordCount++;
+    }
+  }
+
+  public synchronized void append(@NonNull final BinlogEvent event) throws IOException {
+    if (blockRecordCount == 0) {
+      blockStartTimeMs = System.currentTimeMillis();
+    }
+    if (blockFirstEventOffset == NO_EVENT_OFFSET) {
+      blockFirstEventOffset = event.getOffset();
+    }
+
+    BinlogEventCodec.writeEvent(blockOutput, event);
+    blockRecordCount++;
+
+    if (block.size() >= BLOCK_SIZE
+        || System.currentTimeMillis() - blockStartTimeMs >= BLOCK_FLUSH_INTERVAL_MS) {
+      writeBlock();
+    }
+  }
+
+  /** @return the sequence of the current segment, or -1 if no segment was written yet. */
+  synchronized long getSegmentSequence() {
+    return segmentSequence - 1;
+  }
+
+  /** Writes the pending records to the current segment. */
+  public synchronized void flush() throws IOException {
+    writeBlock();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    writeBlock();
+    closeSegment();
+  }
+
+  private void writeBlock() throws IOException {
+    if (blockRecordCount == 0) {
+      return;
+    }
+
+    final byte[] compressed = compress(block.toByteArray());
+    if (segment == null || segment.remaining() < BLOCK_HEADER_SIZE + compressed.length) {
+      rotate(BLOCK_HEADER_SIZE + compressed.length);
+    }
+
+    writeBlock(compressed, block.size(), blockRecordCount, blockFirstEventOffset);
+
+    block.reset();
+    blockRecordCount = 0;
+    blockFirstEventOffset = NO_EVENT_OFFSET;
+  }
+
+  private void writeBlock(
+      final byte[] compressed,
+      final int uncompressedLength,
+      final int recordCount,
+      final long offset)
+      throws IOException {
+    final int position = segment.position();
+
+    segment.putInt(compressed.length);
+    segment.putInt(uncompressedLength);
+    segment.putInt(recordCount);
+    segment.putLong(offset);
+    segment.put(compressed);
+
+    // Commit the block, so that it is visible to readers only once fully written
+    segment.putLong(8, segment.position());
+
+    if (offset != NO_EVENT_OFFSET) {
+      index.writeLong(offset);
+      index.writeLong(position);
+      index.flush();
+    }
+  }
+
+  private byte[] compress(final byte[] bytes) {
+    deflater.reset();
+    deflater.setInput(bytes);
+    deflater.finish();
+
+    int length = 0;
+    while (!deflater.finished()) {
+      if (length == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      length += deflater.deflate(buffer, length, buffer.length - length);
+    }
+
+    return Arrays.copyOf(buffer, length);
+  }
+
+  private void rotate(final int minimumSize) throws IOException {
+    closeSegment();
+
+    final long sequence = segmentSequence++;
+    final Path segmentPath = BinlogCaptureReader.getSegmentPath(directory, sequence);
+    final Path temporaryPath =
+        segmentPath.resolveSibling(segmentPath.getFileName() + TEMPORARY_SUFFIX);
+    final long size = Math.max(segmentSize, SEGMENT_HEADER_SIZE + minimumSize);
+    log.info("Rotating binlog capture to segment {} of {} bytes.", segmentPath, size);
+
+    index =
+        new DataOutputStream(
+            new BufferedOutputStream(
+                Files.newOutputStream(BinlogCaptureReader.getIndexPath(directory, sequence))));
+
+    try (RandomAccessFile file = new RandomAccessFile(temporaryPath.toFile(), "rw")) {
+      file.setLength(size);
+      // The mapping remains valid once the file is closed or moved
+      segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    segment.putInt(MAGIC);
+    segment.putInt(VERSION);
+    segment.putLong(SEGMENT_HEADER_SIZE);
+    writeSchemas(size - SEGMENT_HEADER_SIZE - minimumSize);
+
+    Files.move(temporaryPath, segmentPath, StandardCopyOption.ATOMIC_MOVE);
+    deleteExpiredSegments();
+  }
+
+  /** Writes the known table schemas at the start of a new segment, if they fit. */
+  private void writeSchemas(final long available) throws IOException {
+    if (tables.isEmpty()) {
+      return;
+    }
+
+    final ByteArrayOutputStream schemas = new ByteArrayOutputStream();
+    final DataOutputStream output = new DataOutputStream(schemas);
+    for (Table table : tables.values()) {
+      BinlogEventCodec.writeTable(output, table);
+    }
+
+    final byte[] compressed = compress(schemas.toByteArray());
+    if (BLOCK_HEADER_SIZE + compressed.length <= available) {
+      writeBlock(compressed, schemas.size(), tables.size(), NO_EVENT_OFFSET);
+    } else {
+      log.warn("Skipped table schemas of binlog capture segment, as they do not fit.");
+    }
+  }
+
+  private void deleteExpiredSegments() throws IOException {
+    final List<Path> segments = BinlogCaptureReader.listSegments(directory);
+
+    for (int i = 0; i < segments.size() - maxSegments; i++) {
+      final long sequence = BinlogCaptureReader.getSequence(segments.get(i));
+      log.info("Deleting expired binlog capture segment {}.", segments.get(i));
+
+      Files.deleteIfExists(segments.get(i));
+      Files.deleteIfExists(BinlogCaptureReader.getIndexPath(directory, sequence));
+    }
+  }
+
+  /** Deletes the segments left partially created, ex: by a crash while rotating. */
+  private static void deleteTemporarySegments(final Path directory) throws IOException {
+    final List<Path> temporarySegments;
+    try (Stream<Path> paths = Files.list(directory)) {
+      temporarySegments =
+          paths
+              .filter(path -> path.toString().endsWith(SEGMENT_SUFFIX + TEMPORARY_SUFFIX))
+              .collect(Collectors.toList());
+    }
+
+    for (Path path : temporarySegments) {
+      log.info("Deleting partially created binlog capture segment {}.", path);
+      Files.delete(path);
+    }
+  }
+
+  private void closeSegment() throws IOException {
+    if (segment != null) {
+      segment.force();
+      segment = null;
+    }
+    if (index != null) {
+      index.close();
+      index = null;
+    }
+  }
+}
@@ -0,0 +1,386 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.capture;
+
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.event.BinlogEvent;
+import com.airbnb.spinaltap.mysql.event.DeleteEvent;
+import com.airbnb.spinaltap.mysql.event.GTIDEvent;
+import com.airbnb.spinaltap.mysql.event.QueryEvent;
+import com.airbnb.spinaltap.mysql.event.StartEvent;
+import com.airbnb.spinaltap.mysql.event.TableMapEvent;
+import com.airbnb.spinaltap.mysql.event.UpdateEvent;
+import com.airbnb.spinaltap.mysql.event.WriteEvent;
+import com.airbnb.spinaltap.mysql.event.XidEvent;
+import com.airbnb.spinaltap.mysql.mutation.schema.ColumnDataType;
+import com.airbnb.spinaltap.mysql.mutation.schema.ColumnMetadata;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import com.google.common.collect.Maps;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import lombok.experimental.UtilityClass;
+import org.apache.commons.lang3.SerializationUtils;
+
+/**
+ * Encodes {@link BinlogEvent}s and {@link Table} schemas into a compact binary representation for
+ * capture files, and decodes them back.
+ *
+ * <p>Each record starts with a type byte. Column values are tagged with their Java type, so that
+ * they are decoded to the same type the binlog client deserialized them to. Types without a
+ * dedicated tag fall back to Java serialization.
+ */
+@UtilityClass
+class BinlogEventCodec {
+  static final byte TABLE_SCHEMA = 0;
+  private static final byte START = 1;
+  private static final byte TABLE_MAP = 2;
+  private static final byte WRITE = 3;
+  private static final byte UPDATE = 4;
+  private static final byte DELETE = 5;
+  private static final byte XID = 6;
+  private static final byte GTID = 7;
+  private static final byte QUERY = 8;
+
+  private static final byte NULL_VALUE = 0;
+  private static final byte INTEGER_VALUE = 1;
+  private static final byte LONG_VALUE = 2;
+  private static final byte SHORT_VALUE = 3;
+  private static final byte BYTE_VALUE = 4;
+  private static final byte FLOAT_VALUE = 5;
+  private static final byte DOUBLE_VALUE = 6;
+  private static final byte STRING_VALUE = 7;
+  private static final byte BYTES_VALUE = 8;
+  private static final byte DECIMAL_VALUE = 9;
+  private static final byte TIMESTAMP_VALUE = 10;
+  private static final byte SQL_DATE_VALUE = 11;
+  private static final byte SQL_TIME_VALUE = 12;
+  private static final byte DATE_VALUE = 13;
+  private static final byte BIT_SET_VALUE = 14;
+  private static final byte SERIALIZED_VALUE = 15;
+
+  void writeTable(final DataOutput out, final Table table) throws IOException {
+    out.writeByte(TABLE_SCHEMA);
+    out.writeLong(table.getId());
+    writeString(out, table.getName());
+    writeString(out, table.getDatabase());
+    writeString(out, table.getOverridingDatabase());
+
+    out.writeInt(table.getColumns().size());
+    for (ColumnMetadata column : table.getColumns().values()) {
+      writeString(out, column.getName());
+      out.writeInt(column.getColType().getCode());
+      out.writeBoolean(column.isPrimaryKey());
+      out.writeInt(column.getPosition());
+      writeString(out, column.getRawColumnType());
+    }
+
+    if (table.getPrimaryKey().isPresent()) {
+      final Map<String, ColumnMetadata> primaryKey = table.getPrimaryKey().get().getColumns();
+      out.writeInt(primaryKey.size());
+      for (String column : primaryKey.keySet()) {
+        writeString(out, column);
+      }
+    } else {
+      out.writeInt(0);
+    }
+  }
+
+  /** Reads a {@link Table} schema, after its type byte was read. */
+  Table readTable(final DataInput in) throws IOException {
+    final long id = in.readLong();
+    final String name = readString(in);
+    final String database = readString(in);
+    final String overridingDatabase = readString(in);
+
+    final int columnCount = in.readInt();
+    final List<ColumnMetadata> columns = new ArrayList<>(columnCount);
+    for (int i = 0; i < columnCount; i++) {
+      columns.add(
+          new ColumnMetadata(
+              readString(in),
+              ColumnDataType.byCode(in.readInt()),
+              in.readBoolean(),
+              in.readInt(),
+              readString(in)));
+    }
+
+    final int primaryKeyCount = in.readInt();
+    final List<String> primaryKey = new ArrayList<>(primaryKeyCount);
+    for (int i = 0; i < primaryKeyCount; i++) {
+      primaryKey.add(readString(in));
+    }
+
+    return new Table(id, name, database, overridingDatabase, columns, primaryKey);
+  }
+
+  void writeEvent(final DataOutput out, final BinlogEvent event) throws IOException {
+    if (event instanceof WriteEvent) {
+      writeHeader(out, WRITE, event);
+      writeRows(out, ((WriteEvent) event).getRows());
+    } else if (event instanceof UpdateEvent) {
+      final List<Map.Entry<Serializable[], Serializable[]>> rows = ((UpdateEvent) event).getRows();
+      writeHeader(out, UPDATE, event);
+      out.writeInt(rows.size());
+      for (Map.Entry<Serializable[], Serializable[]> row : rows) {
+        writeRow(out, row.getKey());
+        writeRow(out, row.getValue());
+      }
+    } else if (event instanceof DeleteEvent) {
+      writeHeader(out, DELETE, event);
+      writeRows(out, ((DeleteEvent) event).getRows());
+    } else if (event instanceof TableMapEvent) {
+      final TableMapEvent tableMapEvent = (TableMapEvent) event;
+      writeHeader(out, TABLE_MAP, event);
+      writeString(out, tableMapEvent.getDatabase());
+      writeString(out, tableMapEvent.getTable());
+      out.writeInt(tableMapEvent.getColumnTypes().size());
+      for (ColumnDataType columnType : tableMapEvent.getColumnTypes()) {
+        out.writeByte(columnType.getCode());
+      }
+    } else if (event instanceof XidEvent) {
+      writeHeader(out, XID, event);
+      out.writeLong(((XidEvent) event).getXid());
+    } else if (event instanceof GTIDEvent) {
+      writeHeader(out, GTID, event);
+      writeString(out, ((GTIDEvent) event).getGtid());
+    } else if (event instanceof QueryEvent) {
+      final QueryEvent queryEvent = (QueryEvent) event;
+      writeHeader(out, QUERY, event);
+      writeString(out, queryEvent.getDatabase());
+      writeString(out, queryEvent.getSql());
+    } else if (event instanceof StartEvent) {
+      writeHeader(out, START, event);
+    } else {
+      throw new IllegalArgumentException("Unsupported event type " + event.getClass());
+    }
+  }
+
+  /** Reads a {@link BinlogEvent}, after its type byte was read. */
+  BinlogEvent readEvent(final DataInput in, final byte type) throws IOException {
+    final long tableId = in.readLong();
+    final long serverId = in.readLong();
+    final long timestamp = in.readLong();
+    final BinlogFilePos filePos = readBinlogFilePos(in);
+
+    switch (type) {
+      case WRITE:
+        return new WriteEvent(tableId, serverId, timestamp, filePos, readRows(in));
+      case UPDATE:
+        final int rowCount = in.readInt();
+        final List<Map.Entry<Serializable[], Serializable[]>> rows = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+          rows.add(Maps.immutableEntry(readRow(in), readRow(in)));
+        }
+        return new UpdateEvent(tableId, serverId, timestamp, filePos, rows);
+      case DELETE:
+        return new DeleteEvent(tableId, serverId, timestamp, filePos, readRows(in));
+      case TABLE_MAP:
+        final String database = readString(in);
+        final String table = readString(in);
+        final byte[] columnTypeCodes = new byte[in.readInt()];
+        in.readFully(columnTypeCodes);
+        return new TableMapEvent(
+            tableId, serverId, timestamp, filePos, database, table, columnTypeCodes);
+      case XID:
+        return new XidEvent(serverId, timestamp, filePos, in.readLong());
+      case GTID:
+        return new GTIDEvent(serverId, timestamp, filePos, readString(in));
+      case QUERY:
+        return new QueryEvent(serverId, timestamp, filePos, readString(in), readString(in));
+      case START:
+        return new StartEvent(serverId, timestamp, filePos);
+      default:
+        throw new IOException("Unknown capture record type " + type);
+    }
+  }
+
+  private void writeHeader(final DataOutput out, final byte type, final BinlogEvent event)
+      throws IOException {
+    final BinlogFilePos filePos = event.getBinlogFilePos();
+
+    out.writeByte(type);
+    out.writeLong(event.getTableId());
+    out.writeLong(event.getServerId());
+    out.writeLong(event.getTimestamp());
+    writeString(out, filePos.getFileName());
+    out.writeLong(filePos.getPosition());
+    out.writeLong(filePos.getNextPosition());
+    writeString(out, filePos.getGtidSet() == null ? null : filePos.getGtidSet().toString());
+    writeString(out, filePos.getServerUUID());
+  }
+
+  private BinlogFilePos readBinlogFilePos(final DataInput in) throws IOException {
+    return new BinlogFilePos(
+        readString(in), in.readLong(), in.readLong(), readString(in), readString(in));
+  }
+
+  private void writeRows(final DataOutput out, final List<Serializable[]> rows)
+      throws IOException {
+    out.writeInt(rows.size());
+    for (Serializable[] row : rows) {
+      writeRow(out, row);
+    }
+  }
+
+  private List<Serializable[]> readRows(final DataInput in) throws IOException {
+    final int rowCount = in.readInt();
+    final List<Serializable[]> rows = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      rows.add(readRow(in));
+    }
+    return rows;
+  }
+
+  private void writeRow(final DataOutput out, final Serializable[] row) throws IOException {
+    out.writeInt(row.length);
+    for (Serializable value : row) {
+      writeValue(out, value);
+    }
+  }
+
+  private Serializable[] readRow(final DataInput in) throws IOException {
+    final Serializable[] row = new Serializable[in.readInt()];
+    for (int i = 0; i < row.length; i++) {
+      row[i] = readValue(in);
+    }
+    return row;
+  }
+
+  private void writeValue(final DataOutput out, final Serializable value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL_VALUE);
+      return;
+    }
+
+    // Exact class checks, as subclasses (ex: java.sql.Timestamp of java.util.Date) carry more state
+    final Class<?> type = value.getClass();
+    if (type == Integer.class) {
+      out.writeByte(INTEGER_VALUE);
+      out.writeInt((Integer) value);
+    } else if (type == Long.class) {
+      out.writeByte(LONG_VALUE);
+      out.writeLong((Long) value);
+    } else if (type == Short.class) {
+      out.writeByte(SHORT_VALUE);
+      out.writeShort((Short) value);
+    } else if (type == Byte.class) {
+      out.writeByte(BYTE_VALUE);
+      out.writeByte((Byte) value);
+    } else if (type == Float.class) {
+      out.writeByte(FLOAT_VALUE);
+      out.writeFloat((Float) value);
+    } else if (type == Double.class) {
+      out.writeByte(DOUBLE_VALUE);
+      out.writeDouble((Double) value);
+    } else if (type == String.class) {
+      out.writeByte(STRING_VALUE);
+      writeString(out, (String) value);
+    } else if (type == byte[].class) {
+      out.writeByte(BYTES_VALUE);
+      writeBytes(out, (byte[]) value);
+    } else if (type == BigDecimal.class) {
+      out.writeByte(DECIMAL_VALUE);
+      writeString(out, value.toString());
+    } else if (type == java.sql.Timestamp.class) {
+      out.writeByte(TIMESTAMP_VALUE);
+      out.writeLong(((java.sql.Timestamp) value).getTime());
+      out.writeInt(((java.sql.Timestamp) value).getNanos());
+    } else if (type == java.sql.Date.class) {
+      out.writeByte(SQL_DATE_VALUE);
+      out.writeLong(((java.sql.Date) value).getTime());
+    } else if (type == java.sql.Time.class) {
+      out.writeByte(SQL_TIME_VALUE);
+      out.writeLong(((java.sql.Time) value).getTime());
+    } else if (type == java.util.Date.class) {
+      out.writeByte(DATE_VALUE);
+      out.writeLong(((java.util.Date) value).getTime());
+    } else if (type == BitSet.class) {
+      out.writeByte(BIT_SET_VALUE);
+      writeBytes(out, ((BitSet) value).toByteArray());
+    } else {
+      out.writeByte(SERIALIZED_VALUE);
+      writeBytes(out, SerializationUtils.serialize(value));
+    }
+  }
+
+  private Serializable readValue(final DataInput in) throws IOException {
+    final byte tag = in.readByte();
+    switch (tag) {
+      case NULL_VALUE:
+        return null;
+      case INTEGER_VALUE:
+        return in.readInt();
+      case LONG_VALUE:
+        return in.readLong();
+      case SHORT_VALUE:
+        return in.readShort();
+      case BYTE_VALUE:
+        return in.readByte();
+      case FLOAT_VALUE:
+        return in.readFloat();
+      case DOUBLE_VALUE:
+        return in.readDouble();
+      case STRING_VALUE:
+        return readString(in);
+      case BYTES_VALUE:
+        return readBytes(in);
+      case DECIMAL_VALUE:
+        return new BigDecimal(readString(in));
+      case TIMESTAMP_VALUE:
+        final java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readLong());
+        timestamp.setNanos(in.readInt());
+        return timestamp;
+      case SQL_DATE_VALUE:
+        return new java.sql.Date(in.readLong());
+      case SQL_TIME_VALUE:
+        return new java.sql.Time(in.readLong());
+      case DATE_VALUE:
+        return new java.util.Date(in.readLong());
+      case BIT_SET_VALUE:
+        return BitSet.valueOf(readBytes(in));
+      case SERIALIZED_VALUE:
+        return SerializationUtils.deserialize(readBytes(in));
+      default:
+        throw new IOException("Unknown capture value tag " + tag);
+    }
+  }
+
+  /** Writes a nullable string, which unlike {@link DataOutput#writeUTF} is not limited to 64KB. */
+  private void writeString(final DataOutput out, final String value) throws IOException {
+    writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String readString(final DataInput in) throws IOException {
+    final byte[] bytes = readBytes(in);
+    return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private void writeBytes(final DataOutput out, final byte[] value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(value.length);
+    out.write(value);
+  }
+
+  private byte[] readBytes(final DataInput in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.capture;
+
+import com.airbnb.spinaltap.mysql.event.BinlogEvent;
+import com.airbnb.spinaltap.mysql.event.QueryEvent;
+import com.airbnb.spinaltap.mysql.event.XidEvent;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.validation.constraints.Min;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Represents a bounded on-disk queue of {@link BinlogEvent}s, used to decouple the binlog client
+ * from the processing of events and the backpressure of the destination. The binlog client appends
+ * events to the spool at the speed of the disk, while events are drained by a separate thread.
+ *
+ * <p>Events are stored in the same segment format as a {@link BinlogCaptureWriter} capture. Drained
+ * segments are deleted, and appending blocks while the maximum number of segments are not drained.
+ * The spool is cleared when created, as streaming resumes from the last checkpoint, which only
+ * covers drained events.
+ */
+@Slf4j
+public final class BinlogSpool implements Closeable {
+  private static final long FULL_WAIT_MS = 100L;
+
+  @NonNull private final Path directory;
+  private final int maxSegments;
+  private final BinlogCaptureWriter writer;
+  private final BinlogCaptureReader reader;
+
+  private final Object lock = new Object();
+  private long flushCount = 0L;
+  private long drainedSegmentSequence = -1L;
+  private boolean closed = false;
+
+  public BinlogSpool(
+      @NonNull final Path directory, @Min(1) final long segmentSize, @Min(1) final int maxSegments)
+      throws IOException {
+    deleteSegments(directory);
+
+    this.directory = directory;
+    this.maxSegments = maxSegments;
+    this.writer = new BinlogCaptureWriter(directory, segmentSize, Integer.MAX_VALUE);
+    this.reader = new BinlogCaptureReader(directory, table -> {});
+  }
+
+  /**
+   * Appends an event to the spool, blocking while the spool is full. Events are made visible to
+   * the drain at transaction and statement boundaries. Events appended once the spool is closed
+   * are dropped.
+   *
+   * @return whether the spool was full.
+   */
+  public boolean append(@NonNull final BinlogEvent event) throws IOException, InterruptedException {
+    synchronized (lock) {
+      boolean full = false;
+      while (!closed && getLagSegments() >= maxSegments) {
+        full = true;
+        lock.wait(FULL_WAIT_MS);
+      }
+
+      if (closed) {
+        return full;
+      }
+
+      writer.append(event);
+      if (event instanceof XidEvent || event instanceof QueryEvent) {
+        writer.flush();
+        flushCount++;
+        lock.notifyAll();
+      }
+
+      return full;
+    }
+  }
+
+  /**
+   * Drains the next event from the spool. This should only be called from a single thread.
+   *
+   * @return the next event, or {@code null} if no event was appended before the timeout.
+   */
+  public BinlogEvent poll(final long timeout, @NonNull final TimeUnit unit)
+      throws IOException, InterruptedException {
+    final long flushes;
+    synchronized (lock) {
+      flushes = flushCount;
+    }
+
+    BinlogEvent event = reader.readEvent();
+    if (event == null) {
+      synchronized (lock) {
+        if (!closed && flushCount == flushes) {
+          lock.wait(unit.toMillis(timeout));
+        }
+      }
+      event = reader.readEvent();
+    }
+
+    deleteDrainedSegments();
+    return event;
+  }
+
+  /** @return the number of segments appended that are not drained yet. */
+  public long getLagSegments() {
+    return writer.getSegmentSequence() - reader.getSegmentSequence();
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+
+      closed = true;
+      lock.notifyAll();
+      writer.close();
+    }
+
+    reader.close();
+    deleteSegments(directory);
+  }
+
+  private void deleteDrainedSegments() throws IOException {
+    final long sequence = reader.getSegmentSequence();
+    if (sequence <= drainedSegmentSequence + 1) {
+      return;
+    }
+
+    for (long drained = drainedSegmentSequence + 1; drained < sequence; drained++) {
+      Files.deleteIfExists(BinlogCaptureReader.getSegmentPath(directory, drained));
+      Files.deleteIfExists(BinlogCaptureReader.getIndexPath(directory, drained));
+    }
+    drainedSegmentSequence = sequence - 1;
+
+    synchronized (lock) {
+      lock.notifyAll();
+    }
+  }
+
+  private static void deleteSegments(final Path directory) throws IOException {
+    for (Path segment : BinlogCaptureReader.listSegments(directory)) {
+      Files.deleteIfExists(segment);
+      Files.deleteIfExists(
+          BinlogCaptureReader.getIndexPath(directory, BinlogCaptureReader.getSequence(segment)));
+    }
+  }
+}
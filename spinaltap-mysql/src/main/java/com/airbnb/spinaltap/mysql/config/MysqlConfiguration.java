@@ -4,6 +4,7 @@
  */
 package com.airbnb.spinaltap.mysql.config;
 
+import com.airbnb.jitney.event.spinaltap.v1.UpdateImage;
 import com.airbnb.spinaltap.common.config.DestinationConfiguration;
 import com.airbnb.spinaltap.mysql.BinlogFilePos;
 import com.airbnb.spinaltap.mysql.binlog_connector.BinaryLogConnectorSource;
@@ -40,6 +41,13 @@ public class MysqlConfiguration extends AbstractMysqlConfiguration {
   public static final boolean DEFAULT_SCHEMA_VERSION_ENABLED = false;
   public static final boolean DEFAULT_LARGE_MESSAGE_ENABLED = false;
   public static final long DEFAULT_DELAY_SEND_MS = 0L;
+  public static final boolean DEFAULT_SCHEMA_FINGERPRINT_ENABLED = false;
+  public static final UpdateImage DEFAULT_UPDATE_IMAGE = UpdateImage.FULL;
+  public static final int DEFAULT_TABLE_METRICS_LIMIT = 1000;
+  public static final int DEFAULT_CAPTURE_SEGMENT_SIZE_MB = 256;
+  public static final int DEFAULT_CAPTURE_MAX_SEGMENTS = 16;
+  public static final int DEFAULT_SPOOL_SEGMENT_SIZE_MB = 64;
+  public static final int DEFAULT_SPOOL_MAX_SEGMENTS = 16;
   public static final Map<HostRole, String> MYSQL_TOPICS =
       ImmutableMap.of(
           MysqlConfiguration.HostRole.MASTER, "spinaltap",
@@ -95,9 +103,38 @@ public class MysqlConfiguration extends AbstractMysqlConfiguration {
   @JsonProperty("socket_timeout_seconds")
   private int socketTimeoutInSeconds = DEFAULT_SOCKET_TIMEOUT_IN_SECONDS;
 
+  /** The SO_RCVBUF size of the binlog client socket, or 0 to use the OS default. */
+  @Min(0)
+  @JsonProperty("socket_receive_buffer_bytes")
+  private int socketReceiveBufferBytes = 0;
+
+  /** The size of the buffer reading ahead from the binlog client socket, or 0 for no buffering. */
+  @Min(0)
+  @JsonProperty("socket_input_buffer_bytes")
+  private int socketInputBufferBytes = 0;
+
+  @JsonProperty("tcp_no_delay")
+  private boolean tcpNoDelay = false;
+
+  /**
+   * Whether to reconnect the binlog client from the last processed transaction on disconnects,
+   * keeping the table and schema caches, instead of re-initializing the source from its last
+   * checkpoint.
+   */
+  @JsonProperty("fast_reconnect_enabled")
+  private boolean fastReconnectEnabled = false;
+
   @JsonProperty("schema_version_enabled")
   private boolean schemaVersionEnabled = DEFAULT_SCHEMA_VERSION_ENABLED;
 
+  /**
+   * Whether to load the schemas of tables that are not cached asynchronously and in batches on
+   * table map events, instead of one query per table on the binlog thread. Only applies when
+   * schema versioning is not enabled, as schemas are then read from the schema store in memory.
+   */
+  @JsonProperty("schema_prefetch_enabled")
+  private boolean schemaPrefetchEnabled = false;
+
   @JsonProperty("initial_binlog_position")
   private BinlogFilePos initialBinlogFilePosition = BinaryLogConnectorSource.LATEST_BINLOG_POS;
 
@@ -107,6 +144,62 @@ public class MysqlConfiguration extends AbstractMysqlConfiguration {
   @JsonProperty("delay_send_ms")
   private long delaySendMs = DEFAULT_DELAY_SEND_MS;
 
+  @JsonProperty("schema_fingerprint_enabled")
+  private boolean schemaFingerprintEnabled = DEFAULT_SCHEMA_FINGERPRINT_ENABLED;
+
+  @JsonProperty("update_image")
+  private UpdateImage updateImage = DEFAULT_UPDATE_IMAGE;
+
+  /**
+   * The maximum number of tables with their own per-table metrics. Beyond it, only the most active
+   * tables keep their own metrics, and the others are aggregated under an "other" table.
+   */
+  @Min(1)
+  @JsonProperty("table_metrics_limit")
+  private int tableMetricsLimit = DEFAULT_TABLE_METRICS_LIMIT;
+
+  /**
+   * The local directory to capture the binlog events streamed from the source into, for later
+   * replay. Events are captured in a sub-directory named after the source. No events are captured
+   * if not set.
+   */
+  @JsonProperty("capture_directory")
+  private String captureDirectory;
+
+  @Min(1)
+  @Max(2047)
+  @JsonProperty("capture_segment_size_mb")
+  private int captureSegmentSizeMb = DEFAULT_CAPTURE_SEGMENT_SIZE_MB;
+
+  @Min(1)
+  @JsonProperty("capture_max_segments")
+  private int captureMaxSegments = DEFAULT_CAPTURE_MAX_SEGMENTS;
+
+  /**
+   * The local directory to spool the binlog events streamed from the source into, before they are
+   * processed and sent to the destination. This keeps the binlog client streaming when the
+   * destination is slow, as long as the spool is not full. Events are spooled in a sub-directory
+   * named after the source. Events are not spooled if not set.
+   */
+  @JsonProperty("spool_directory")
+  private String spoolDirectory;
+
+  @Min(1)
+  @Max(2047)
+  @JsonProperty("spool_segment_size_mb")
+  private int spoolSegmentSizeMb = DEFAULT_SPOOL_SEGMENT_SIZE_MB;
+
+  @Min(1)
+  @JsonProperty("spool_max_segments")
+  private int spoolMaxSegments = DEFAULT_SPOOL_MAX_SEGMENTS;
+
+  /**
+   * Whether to share a single binlog stream with the other sources on the same host and port,
+   * instead of opening a binlog stream per source.
+   */
+  @JsonProperty("shared_stream_enabled")
+  private boolean sharedStreamEnabled = false;
+
   @JsonProperty("overriding_database")
   private String overridingDatabase;
 
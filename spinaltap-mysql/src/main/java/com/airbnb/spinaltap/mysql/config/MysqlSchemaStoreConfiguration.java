@@ -17,6 +17,8 @@ import lombok.NonNull;
 @NoArgsConstructor
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class MysqlSchemaStoreConfiguration {
+  public static final int DEFAULT_BOOTSTRAP_PARALLELISM = 8;
+
   @NonNull @JsonProperty private String host;
 
   @Min(0)
@@ -32,4 +34,19 @@ public class MysqlSchemaStoreConfiguration {
   @NonNull
   @JsonProperty("archive-database")
   private String archiveDatabase = "schema_store_archives";
+
+  /**
+   * Local directory to keep snapshots of the schema caches in, so that only the schema changes
+   * since the last snapshot are fetched from the store on restart. Disabled if not set.
+   */
+  @JsonProperty("snapshot-directory")
+  private String snapshotDirectory;
+
+  /**
+   * Maximum number of tables bootstrapped concurrently, each on its own connections to the source
+   * and the schema database.
+   */
+  @Min(1)
+  @JsonProperty("bootstrap-parallelism")
+  private int bootstrapParallelism = DEFAULT_BOOTSTRAP_PARALLELISM;
 }
@@ -65,7 +65,7 @@ public abstract class MysqlMutationMapper<R extends BinlogEvent, T extends Mysql
         .addMapper(GTIDEvent.class, new GTIDMapper(gtid))
         .addMapper(
             QueryEvent.class,
-            new QueryMapper(beginTransaction, lastTransaction, gtid, schemaManager))
+            new QueryMapper(beginTransaction, lastTransaction, gtid, schemaManager, tableCache))
         .addMapper(XidEvent.class, new XidMapper(lastTransaction, gtid, metrics))
         .addMapper(StartEvent.class, new StartMapper(dataSource, tableCache, metrics))
         .addMapper(
@@ -5,6 +5,7 @@
 package com.airbnb.spinaltap.mysql.event.mapper;
 
 import com.airbnb.spinaltap.common.util.Mapper;
+import com.airbnb.spinaltap.mysql.TableCache;
 import com.airbnb.spinaltap.mysql.Transaction;
 import com.airbnb.spinaltap.mysql.event.QueryEvent;
 import com.airbnb.spinaltap.mysql.mutation.MysqlMutation;
@@ -19,7 +20,7 @@ import lombok.extern.slf4j.Slf4j;
 /**
  * Represents a {@link com.airbnb.spinaltap.common.util.Mapper} that keeps track of {@link
  * QueryEvent}s. This is used to detect schema changes from DDL statements, and mark BEGIN
- * statements.
+ * statements. Schema changes clear the {@link TableCache}, so the changed tables are fetched again.
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -31,6 +32,7 @@ final class QueryMapper implements Mapper<QueryEvent, List<MysqlMutation>> {
   private final AtomicReference<Transaction> lastTransaction;
   private final AtomicReference<String> gtid;
   private final MysqlSchemaManager schemaManager;
+  private final TableCache tableCache;
 
   public List<MysqlMutation> map(@NonNull final QueryEvent event) {
     Transaction transaction =
@@ -43,6 +45,9 @@ final class QueryMapper implements Mapper<QueryEvent, List<MysqlMutation>> {
       lastTransaction.set(transaction);
       if (!isTransactionEnd(event)) {
         schemaManager.processDDL(event, gtid.get());
+        if (MysqlSchemaManager.shouldProcessDDL(event.getSql())) {
+          tableCache.clear();
+        }
       }
     }
 
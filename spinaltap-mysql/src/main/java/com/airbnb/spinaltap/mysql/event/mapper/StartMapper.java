@@ -19,8 +19,9 @@ import org.joda.time.DateTime;
 
 /**
  * Represents a {@link com.airbnb.spinaltap.common.util.Mapper} that keeps track of binlog file
- * starts detected on {@link StartEvent}s. This is used to clear the {@link TableCache}, to ensure
- * table to tableId mapping remains consistent.
+ * starts detected on {@link StartEvent}s. This is used to remap the tables in the {@link
+ * TableCache} to their table ids in the new binlog file, to ensure table to tableId mapping remains
+ * consistent.
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -38,7 +39,7 @@ final class StartMapper implements Mapper<StartEvent, List<MysqlMutation>> {
 
     metrics.binlogFileStart();
 
-    tableCache.clear();
+    metrics.binlogFileSchemaFetches(tableCache.rotate());
     return Collections.emptyList();
   }
 }
@@ -6,6 +6,7 @@ package com.airbnb.spinaltap.mysql.mutation.mapper;
 
 import com.airbnb.jitney.event.spinaltap.v1.BinlogHeader;
 import com.airbnb.jitney.event.spinaltap.v1.Mutation;
+import com.airbnb.jitney.event.spinaltap.v1.UpdateImage;
 import com.airbnb.spinaltap.common.util.ClassBasedMapper;
 import com.airbnb.spinaltap.common.util.Mapper;
 import com.airbnb.spinaltap.mysql.ColumnSerializationUtil;
@@ -20,6 +21,7 @@ import com.airbnb.spinaltap.mysql.mutation.schema.Row;
 import com.google.common.collect.ImmutableMap;
 import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.function.Predicate;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
@@ -35,9 +37,18 @@ public abstract class ThriftMutationMapper<T extends MysqlMutation>
   protected final String sourceId;
 
   public static Mapper<com.airbnb.spinaltap.Mutation<?>, Mutation> create(final String sourceId) {
+    return create(sourceId, UpdateImage.FULL);
+  }
+
+  /**
+   * @param sourceId The id of the source host.
+   * @param updateImage The columns to include in the entities of UPDATE mutations.
+   */
+  public static Mapper<com.airbnb.spinaltap.Mutation<?>, Mutation> create(
+      final String sourceId, @NonNull final UpdateImage updateImage) {
     return ClassBasedMapper.<com.airbnb.spinaltap.Mutation<?>, Mutation>builder()
         .addMapper(MysqlInsertMutation.class, new InsertMutationMapper(sourceId))
-        .addMapper(MysqlUpdateMutation.class, new UpdateMutationMapper(sourceId))
+        .addMapper(MysqlUpdateMutation.class, new UpdateMutationMapper(sourceId, updateImage))
         .addMapper(MysqlDeleteMutation.class, new DeleteMutationMapper(sourceId))
         .build();
   }
@@ -75,9 +86,19 @@ public abstract class ThriftMutationMapper<T extends MysqlMutation>
   }
 
   protected static Map<String, ByteBuffer> transformToEntity(@NonNull final Row row) {
+    return transformToEntity(row, column -> true);
+  }
+
+  /** Transforms the columns of the row that match the given predicate on their names. */
+  protected static Map<String, ByteBuffer> transformToEntity(
+      @NonNull final Row row, @NonNull final Predicate<String> columnFilter) {
     final ImmutableMap.Builder<String, ByteBuffer> builder = ImmutableMap.builder();
 
     for (Column column : row.getColumns().values()) {
+      if (!columnFilter.test(column.getMetadata().getName())) {
+        continue;
+      }
+
       builder.put(
           column.getMetadata().getName(),
           ByteBuffer.wrap(ColumnSerializationUtil.serializeColumn(column)));
@@ -6,33 +6,74 @@ package com.airbnb.spinaltap.mysql.mutation.mapper;
 
 import com.airbnb.jitney.event.spinaltap.v1.Mutation;
 import com.airbnb.jitney.event.spinaltap.v1.MutationType;
+import com.airbnb.jitney.event.spinaltap.v1.UpdateImage;
 import com.airbnb.spinaltap.mysql.mutation.MysqlMutationMetadata;
 import com.airbnb.spinaltap.mysql.mutation.MysqlUpdateMutation;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 import lombok.NonNull;
 
 /**
  * Represents a {@link com.airbnb.spinaltap.common.util.Mapper} that maps a {@link
  * MysqlUpdateMutation} to its corresponding thrift {@link Mutation} form.
+ *
+ * <p>With a partial {@link UpdateImage}, the entity only has the primary key and the changed
+ * columns, and so does the previous entity for {@link UpdateImage#CHANGED_COLUMNS_ONLY}. The image
+ * is flagged in the binlog header.
  */
 class UpdateMutationMapper extends ThriftMutationMapper<MysqlUpdateMutation> {
+  private final UpdateImage updateImage;
+
   public UpdateMutationMapper(final String sourceId) {
+    this(sourceId, UpdateImage.FULL);
+  }
+
+  public UpdateMutationMapper(final String sourceId, @NonNull final UpdateImage updateImage) {
     super(sourceId);
+    this.updateImage = updateImage;
   }
 
   public Mutation map(@NonNull final MysqlUpdateMutation mutation) {
     final MysqlMutationMetadata metadata = mutation.getMetadata();
+    final com.airbnb.jitney.event.spinaltap.v1.Table table = metadata.getTable().getThriftTable();
+
+    if (updateImage == UpdateImage.FULL) {
+      final Mutation thriftMutation =
+          createMutation(mutation, table, transformToEntity(mutation.getRow()));
+      thriftMutation.setPreviousEntity(transformToEntity(mutation.getPreviousRow()));
+      return thriftMutation;
+    }
+
+    final Set<String> primaryKey = table.getPrimaryKey();
+    final Set<String> changedColumns = mutation.getChangedColumns();
+    final Predicate<String> columnFilter =
+        column -> primaryKey.contains(column) || changedColumns.contains(column);
 
     final Mutation thriftMutation =
-        new Mutation(
-            MutationType.UPDATE,
-            metadata.getTimestamp(),
-            sourceId,
-            metadata.getDataSource().getThriftDataSource(),
-            createBinlogHeader(metadata, mutation.getType().getCode()),
-            metadata.getTable().getThriftTable(),
-            transformToEntity(mutation.getRow()));
-
-    thriftMutation.setPreviousEntity(transformToEntity(mutation.getPreviousRow()));
+        createMutation(mutation, table, transformToEntity(mutation.getRow(), columnFilter));
+    thriftMutation.setPreviousEntity(
+        updateImage == UpdateImage.CHANGED_COLUMNS_ONLY
+            ? transformToEntity(mutation.getPreviousRow(), columnFilter)
+            : transformToEntity(mutation.getPreviousRow()));
+    thriftMutation.getBinlogHeader().setUpdateImage(updateImage);
     return thriftMutation;
   }
+
+  private Mutation createMutation(
+      final MysqlUpdateMutation mutation,
+      final com.airbnb.jitney.event.spinaltap.v1.Table table,
+      final Map<String, ByteBuffer> entity) {
+    final MysqlMutationMetadata metadata = mutation.getMetadata();
+
+    return new Mutation(
+        MutationType.UPDATE,
+        metadata.getTimestamp(),
+        sourceId,
+        metadata.getDataSource().getThriftDataSource(),
+        createBinlogHeader(metadata, mutation.getType().getCode()),
+        table,
+        entity);
+  }
 }
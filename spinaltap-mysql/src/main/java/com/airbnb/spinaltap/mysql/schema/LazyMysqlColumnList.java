@@ -0,0 +1,65 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.schema;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A list of {@link MysqlColumn}s backed by their JSON representation in the schema store, which
+ * is only deserialized on first access. Most schema store rows are either superseded or never
+ * looked up, so this avoids paying the deserialization cost for them.
+ */
+@Slf4j
+@RequiredArgsConstructor
+final class LazyMysqlColumnList extends AbstractList<MysqlColumn> {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final String EMPTY_LIST_JSON = "[]";
+
+  @Getter @NonNull private final String json;
+  private volatile List<MysqlColumn> columns;
+
+  @Override
+  public MysqlColumn get(int index) {
+    return getColumns().get(index);
+  }
+
+  @Override
+  public int size() {
+    return getColumns().size();
+  }
+
+  /**
+   * Columns are always serialized with the same {@link ObjectMapper}, so an empty list (i.e. a
+   * dropped table) can be detected without deserializing.
+   */
+  @Override
+  public boolean isEmpty() {
+    final List<MysqlColumn> decoded = columns;
+    return decoded != null ? decoded.isEmpty() : EMPTY_LIST_JSON.equals(json);
+  }
+
+  private List<MysqlColumn> getColumns() {
+    List<MysqlColumn> decoded = columns;
+    if (decoded == null) {
+      try {
+        decoded = OBJECT_MAPPER.readValue(json, new TypeReference<List<MysqlColumn>>() {});
+      } catch (IOException ex) {
+        log.error(String.format("Failed to deserialize columns %s. exception: %s", json, ex));
+        decoded = Collections.emptyList();
+      }
+      columns = decoded;
+    }
+    return decoded;
+  }
+}
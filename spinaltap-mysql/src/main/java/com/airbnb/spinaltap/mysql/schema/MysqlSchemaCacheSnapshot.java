@@ -0,0 +1,207 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.schema;
+
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local on-disk snapshot of a {@link MysqlSchemaStore} schema cache, keyed by the id of the last
+ * store row applied to it. On restart, the cache can be restored from the snapshot and only the
+ * rows added to the store since then need to be fetched.
+ *
+ * <p>As the store is shared between hosts, it may have been bootstrapped again or compressed since
+ * the snapshot was written. The snapshot keeps the {@link RowIdentity} of its last row, so that it
+ * can be checked against the store before it is used.
+ *
+ * <p>The snapshot is only an optimization: any failure to read or write it is logged and the
+ * schema cache is loaded from the store instead.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class MysqlSchemaCacheSnapshot {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @NonNull private final Path path;
+
+  public static MysqlSchemaCacheSnapshot create(
+      @NonNull final String directory,
+      @NonNull final String storeDBName,
+      @NonNull final String sourceName) {
+    return new MysqlSchemaCacheSnapshot(
+        Paths.get(directory, String.format("%s.%s.json", storeDBName, sourceName)));
+  }
+
+  /** @return the snapshot content, if present and readable. */
+  public Optional<Content> read() {
+    if (!Files.exists(path)) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(OBJECT_MAPPER.readValue(path.toFile(), Content.class));
+    } catch (IOException ex) {
+      log.error(String.format("Failed to read schema cache snapshot %s. exception: %s", path, ex));
+      delete();
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Writes the given schema cache to the snapshot. The snapshot is first written to a temporary
+   * file and then moved in place, so that a crash never leaves a partially written snapshot.
+   *
+   * @param lastRowId the id of the last store row reflected in the schema cache
+   * @param lastRow the identity of the last store row, or {@code null} if the store is empty
+   * @param schemas the schema cache content
+   */
+  public void write(
+      final long lastRowId,
+      final RowIdentity lastRow,
+      @NonNull final Collection<MysqlTableSchema> schemas) {
+    try {
+      Files.createDirectories(path.toAbsolutePath().getParent());
+      final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+      OBJECT_MAPPER.writeValue(
+          tempPath.toFile(),
+          new Content(
+              lastRowId,
+              lastRow,
+              schemas.stream().map(Entry::fromSchema).collect(Collectors.toList())));
+      Files.move(
+          tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException ex) {
+      log.error(String.format("Failed to write schema cache snapshot %s. exception: %s", path, ex));
+    }
+  }
+
+  public void delete() {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException ex) {
+      log.error(
+          String.format("Failed to delete schema cache snapshot %s. exception: %s", path, ex));
+    }
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Content {
+    private long lastRowId;
+    private RowIdentity lastRow;
+    private List<Entry> schemas = Collections.emptyList();
+  }
+
+  /**
+   * Identifies a store row beyond its id, which is reused if the store table is recreated: by its
+   * binlog position, GTID and a hash of its database and table.
+   */
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class RowIdentity {
+    private String binlogFilePos;
+    private String gtid;
+    private long tableHash;
+
+    public static RowIdentity of(
+        final String database, final String table, final String binlogFilePos, final String gtid) {
+      final Hasher hasher = Hashing.farmHashFingerprint64().newHasher();
+      putNullableString(hasher, database);
+      putNullableString(hasher, table);
+      return new RowIdentity(binlogFilePos, gtid, hasher.hash().asLong());
+    }
+
+    private static void putNullableString(final Hasher hasher, final String value) {
+      if (value == null) {
+        hasher.putInt(-1);
+      } else {
+        hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  /** Represents a {@link MysqlTableSchema} in the snapshot, with its columns kept as raw JSON. */
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Entry {
+    private long id;
+    private String database;
+    private String table;
+    private BinlogFilePos binlogFilePos;
+    private String gtid;
+    private String sql;
+    private long timestamp;
+    private String columns;
+    private Map<String, String> metadata;
+
+    static Entry fromSchema(final MysqlTableSchema schema) {
+      return new Entry(
+          schema.getId(),
+          schema.getDatabase(),
+          schema.getTable(),
+          schema.getBinlogFilePos(),
+          schema.getGtid(),
+          schema.getSql(),
+          schema.getTimestamp(),
+          toJson(schema.getColumns()),
+          schema.getMetadata());
+    }
+
+    RowIdentity toRowIdentity() {
+      return RowIdentity.of(database, table, binlogFilePos.toString(), gtid);
+    }
+
+    MysqlTableSchema toSchema() {
+      return new MysqlTableSchema(
+          id,
+          database,
+          table,
+          binlogFilePos,
+          gtid,
+          sql,
+          timestamp,
+          new LazyMysqlColumnList(columns),
+          metadata == null ? Collections.emptyMap() : metadata);
+    }
+
+    private static String toJson(final List<MysqlColumn> columns) {
+      if (columns instanceof LazyMysqlColumnList) {
+        return ((LazyMysqlColumnList) columns).getJson();
+      }
+      try {
+        return OBJECT_MAPPER.writeValueAsString(columns);
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+  }
+
+  /** Convenience to read the snapshot content back as {@link MysqlTableSchema}s. */
+  static List<MysqlTableSchema> toSchemas(final Content content) {
+    return content.getSchemas().stream().map(Entry::toSchema).collect(Collectors.toList());
+  }
+}
@@ -7,20 +7,36 @@ package com.airbnb.spinaltap.mysql.schema;
 import com.airbnb.spinaltap.mysql.MysqlSourceMetrics;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.validation.constraints.NotNull;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
-import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.TokenStreamRewriter;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.jdbi.v3.core.Handle;
@@ -30,22 +46,47 @@ import org.jdbi.v3.core.Jdbi;
 @RequiredArgsConstructor
 public class MysqlSchemaDatabase {
   private static final char DELIMITER = '/';
+  private static final int PARSED_DDL_CACHE_SIZE = 1000;
 
   private final String sourceName;
   private final Jdbi jdbi;
   private final MysqlSourceMetrics metrics;
 
-  void applyDDL(@NonNull final String sql, final String database) {
+  /**
+   * Cache of recently parsed DDL statements. The same DDL is typically parsed more than once, ex:
+   * when a DDL is replayed after a restart, or across retries.
+   */
+  private final Cache<ParseKey, ParsedDDL> parsedDDLCache =
+      CacheBuilder.newBuilder().maximumSize(PARSED_DDL_CACHE_SIZE).build();
+
+  /**
+   * Lexer and parser instances are reused across DDL statements of the same thread rather than
+   * created for each statement. Note the DFA cache built during prediction is shared across all
+   * {@link MySQLParser} instances, so it is warmed up by every statement parsed.
+   */
+  private final ThreadLocal<DDLParser> parser = ThreadLocal.withInitial(DDLParser::new);
+
+  /**
+   * Applies the DDL statement to the schema database.
+   *
+   * @param sql the DDL statement
+   * @param database the database selected when the DDL was executed
+   * @return the databases and tables affected by the DDL, or {@code null} if they cannot be
+   *     determined from the DDL statement.
+   */
+  DDLTargets applyDDL(@NonNull final String sql, final String database) {
     log.info(String.format("Applying DDL statement: %s (Database selected: %s)", sql, database));
     try (Handle handle = jdbi.open()) {
       handle.execute("SET foreign_key_checks=0");
+      final ParsedDDL parsedDDL = parseDDL(sql, database);
       MysqlSchemaUtil.VOID_RETRYER.call(
           () -> {
             MysqlSchemaUtil.executeWithJdbc(
-                handle, getSchemaDatabaseName(sourceName, database), addSourcePrefix(sql));
+                handle, getSchemaDatabaseName(sourceName, database), parsedDDL.getSql());
             return null;
           });
       metrics.schemaDatabaseApplyDDLSuccess(database);
+      return parsedDDL.getTargets();
     } catch (Exception ex) {
       log.error(
           String.format(
@@ -158,18 +199,77 @@ public class MysqlSchemaDatabase {
     }
   }
 
+  /**
+   * Fetches the columns of the given tables only, rather than all tables in the database.
+   *
+   * @return the columns of each table found, keyed by table name.
+   */
+  Map<String, List<MysqlColumn>> getColumnsForTables(
+      @NonNull final String database, @NonNull final Collection<String> tables) {
+    Map<String, List<MysqlColumn>> tableColumnsMap = new HashMap<>();
+    if (tables.isEmpty()) {
+      return tableColumnsMap;
+    }
+
+    try (Handle handle = jdbi.open()) {
+      MysqlSchemaUtil.VOID_RETRYER.call(
+          () -> {
+            tableColumnsMap.clear();
+            handle
+                .createQuery(
+                    "select TABLE_NAME, COLUMN_NAME, DATA_TYPE, COLUMN_TYPE, COLUMN_KEY from information_schema.COLUMNS "
+                        + "where TABLE_SCHEMA = :db and TABLE_NAME in (<tables>) "
+                        + "order by ORDINAL_POSITION")
+                .bind("db", getSchemaDatabaseName(sourceName, database))
+                .bindList("tables", ImmutableSet.copyOf(tables).asList())
+                .mapToMap(String.class)
+                .forEach(
+                    row -> {
+                      String table = row.get("table_name");
+                      tableColumnsMap.putIfAbsent(table, new LinkedList<>());
+                      tableColumnsMap
+                          .get(table)
+                          .add(
+                              new MysqlColumn(
+                                  row.get("column_name"),
+                                  row.get("data_type"),
+                                  row.get("column_type"),
+                                  "PRI".equals(row.get("column_key"))));
+                    });
+            return null;
+          });
+      return tableColumnsMap;
+    } catch (Exception ex) {
+      log.error(
+          String.format(
+              "Failed to fetch table columns for database: %s tables: %s", database, tables),
+          ex);
+      throw new RuntimeException(ex);
+    }
+  }
+
   @VisibleForTesting
   String addSourcePrefix(@NotNull final String sql) {
-    CharStream charStream = CharStreams.fromString(sql);
-    MySQLLexer lexer = new MySQLLexer(charStream);
-    CommonTokenStream tokens = new CommonTokenStream(lexer);
-    MySQLParser parser = new MySQLParser(tokens);
-    ParseTree tree = parser.root();
-    ParseTreeWalker walker = new ParseTreeWalker();
-    MySQLDBNamePrefixAdder prefixAdder =
-        new com.airbnb.spinaltap.mysql.schema.MysqlSchemaDatabase.MySQLDBNamePrefixAdder(tokens);
-    walker.walk(prefixAdder, tree);
-    return prefixAdder.rewriter.getText();
+    return parseDDL(sql, null).getSql();
+  }
+
+  /**
+   * Parses the DDL statement to add the source prefix to database names, and to extract the
+   * databases and tables it affects.
+   *
+   * @param sql the DDL statement
+   * @param database the database selected when the DDL was executed, used to resolve unqualified
+   *     table names
+   */
+  @VisibleForTesting
+  ParsedDDL parseDDL(@NotNull final String sql, final String database) {
+    final ParseKey key = new ParseKey(sql, database);
+    ParsedDDL parsedDDL = parsedDDLCache.getIfPresent(key);
+    if (parsedDDL == null) {
+      parsedDDL = parser.get().parse(sql, database);
+      parsedDDLCache.put(key, parsedDDL);
+    }
+    return parsedDDL;
   }
 
   private static String getSchemaDatabaseName(@NonNull final String source, final String database) {
@@ -179,15 +279,115 @@ public class MysqlSchemaDatabase {
     return String.format("%s%s%s", source, DELIMITER, database);
   }
 
+  /** The result of parsing a DDL statement. */
+  @Value
+  static class ParsedDDL {
+    /** The DDL statement with the source prefix added to database names. */
+    String sql;
+    /** The databases and tables affected, or {@code null} if they cannot be determined. */
+    DDLTargets targets;
+  }
+
+  /** Represents the databases and tables affected by a DDL statement. */
+  @Value
+  static class DDLTargets {
+    /** Databases affected as a whole, i.e. created or dropped. */
+    Set<String> databases;
+    /** Tables affected, keyed by database name. */
+    SetMultimap<String, String> tables;
+  }
+
+  @Value
+  private static class ParseKey {
+    String sql;
+    String database;
+  }
+
+  /**
+   * Parses DDL statements with a two-stage strategy: statements are first parsed with the faster
+   * SLL prediction mode, bailing out on the first syntax error. Only if that fails, which happens
+   * for a small fraction of valid statements, is the statement parsed again with full LL
+   * prediction.
+   */
+  private class DDLParser {
+    final MySQLLexer lexer = new MySQLLexer(null);
+    final CommonTokenStream tokens = new CommonTokenStream(lexer);
+    final MySQLParser parser = new MySQLParser(tokens);
+    final SyntaxErrorListener errorListener = new SyntaxErrorListener();
+
+    DDLParser() {
+      lexer.removeErrorListeners();
+      lexer.addErrorListener(errorListener);
+    }
+
+    ParsedDDL parse(final String sql, final String database) {
+      lexer.setInputStream(CharStreams.fromString(sql));
+      tokens.setTokenSource(lexer);
+      errorListener.hasErrors = false;
+
+      ParseTree tree;
+      try {
+        parser.setTokenStream(tokens);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        tree = parser.root();
+      } catch (ParseCancellationException ex) {
+        tokens.seek(0);
+        parser.setTokenStream(tokens);
+        parser.addErrorListener(errorListener);
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        tree = parser.root();
+      }
+
+      ParseTreeWalker walker = new ParseTreeWalker();
+      MySQLDBNamePrefixAdder prefixAdder = new MySQLDBNamePrefixAdder(tokens, database);
+      walker.walk(prefixAdder, tree);
+      return new ParsedDDL(
+          prefixAdder.rewriter.getText(),
+          errorListener.hasErrors ? null : prefixAdder.getTargets());
+    }
+  }
+
+  private static class SyntaxErrorListener extends BaseErrorListener {
+    boolean hasErrors = false;
+
+    @Override
+    public void syntaxError(
+        Recognizer<?, ?> recognizer,
+        Object offendingSymbol,
+        int line,
+        int charPositionInLine,
+        String msg,
+        RecognitionException ex) {
+      hasErrors = true;
+    }
+  }
+
   private class MySQLDBNamePrefixAdder extends MySQLBaseListener {
     final TokenStreamRewriter rewriter;
+    final String defaultDatabase;
+    final Set<String> databases = new HashSet<>();
+    final SetMultimap<String, String> tables = HashMultimap.create();
+    boolean hasUnresolvedTable = false;
 
-    MySQLDBNamePrefixAdder(TokenStream tokens) {
+    MySQLDBNamePrefixAdder(TokenStream tokens, String defaultDatabase) {
       rewriter = new TokenStreamRewriter(tokens);
+      this.defaultDatabase = defaultDatabase;
+    }
+
+    DDLTargets getTargets() {
+      if (hasUnresolvedTable || (databases.isEmpty() && tables.isEmpty())) {
+        return null;
+      }
+      return new DDLTargets(ImmutableSet.copyOf(databases), ImmutableSetMultimap.copyOf(tables));
     }
 
     @Override
     public void enterTable_name(MySQLParser.Table_nameContext ctx) {
+      addTarget(ctx);
+
       // If table name starts with dot(.), database name is not specified.
       // children.size() == 1 means no database name before table name
       if (!ctx.getText().startsWith(".") && ctx.children.size() != 1) {
@@ -212,14 +412,46 @@ public class MysqlSchemaDatabase {
 
     @Override
     public void enterCreate_database(MySQLParser.Create_databaseContext ctx) {
+      databases.add(unquote(ctx.id_().getText()));
       addPrefix(ctx.id_().getText(), ctx.id_().start);
     }
 
     @Override
     public void enterDrop_database(MySQLParser.Drop_databaseContext ctx) {
+      databases.add(unquote(ctx.id_().getText()));
       addPrefix(ctx.id_().getText(), ctx.id_().start);
     }
 
+    private void addTarget(MySQLParser.Table_nameContext ctx) {
+      String database = defaultDatabase;
+      String table;
+      if (ctx.DOT_ID() != null) {
+        // db.table
+        database = unquote(ctx.id_(0).getText());
+        table = ctx.DOT_ID().getText().substring(1);
+      } else if (ctx.id_().size() == 2) {
+        // db.`table` or `db`.`table`
+        database = unquote(ctx.id_(0).getText());
+        table = unquote(ctx.id_(1).getText());
+      } else {
+        // table or .table
+        table = unquote(ctx.id_(0).getText());
+      }
+
+      if (database == null) {
+        hasUnresolvedTable = true;
+      } else {
+        tables.put(database, table);
+      }
+    }
+
+    private String unquote(final String name) {
+      if (name.length() > 1 && name.startsWith("`") && name.endsWith("`")) {
+        return name.substring(1, name.length() - 1).replace("``", "`");
+      }
+      return name;
+    }
+
     private void addPrefix(@NotNull final String name, @NotNull final Token indexToken) {
       if (!name.startsWith("`")) {
         rewriter.replace(indexToken, String.format("`%s%s%s`", sourceName, DELIMITER, name));
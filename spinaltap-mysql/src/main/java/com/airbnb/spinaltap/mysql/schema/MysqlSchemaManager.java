@@ -7,14 +7,26 @@ package com.airbnb.spinaltap.mysql.schema;
 import com.airbnb.spinaltap.mysql.BinlogFilePos;
 import com.airbnb.spinaltap.mysql.GtidSet;
 import com.airbnb.spinaltap.mysql.MysqlClient;
+import com.airbnb.spinaltap.mysql.config.MysqlSchemaStoreConfiguration;
 import com.airbnb.spinaltap.mysql.event.QueryEvent;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
+import com.google.common.collect.Table;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -39,6 +51,24 @@ public class MysqlSchemaManager implements MysqlSchemaArchiver {
   private final MysqlSchemaReader schemaReader;
   private final MysqlClient mysqlClient;
   private final boolean isSchemaVersionEnabled;
+  private final int bootstrapParallelism;
+
+  public MysqlSchemaManager(
+      String sourceName,
+      MysqlSchemaStore schemaStore,
+      MysqlSchemaDatabase schemaDatabase,
+      MysqlSchemaReader schemaReader,
+      MysqlClient mysqlClient,
+      boolean isSchemaVersionEnabled) {
+    this(
+        sourceName,
+        schemaStore,
+        schemaDatabase,
+        schemaReader,
+        mysqlClient,
+        isSchemaVersionEnabled,
+        MysqlSchemaStoreConfiguration.DEFAULT_BOOTSTRAP_PARALLELISM);
+  }
 
   public List<MysqlColumn> getTableColumns(String database, String table) {
     return isSchemaVersionEnabled
@@ -46,6 +76,25 @@ public class MysqlSchemaManager implements MysqlSchemaArchiver {
         : schemaReader.getTableColumns(database, table);
   }
 
+  /**
+   * Fetches the columns of the given tables in a batch, i.e. with a single query when schema
+   * versioning is not enabled. Tables that are not found are left out.
+   *
+   * @param tables The table names, keyed by database.
+   * @return the columns of each table, keyed by database and table name.
+   */
+  public Table<String, String, List<MysqlColumn>> getTableColumns(
+      SetMultimap<String, String> tables) {
+    if (!isSchemaVersionEnabled) {
+      return schemaReader.getColumnsForTables(tables);
+    }
+
+    Table<String, String, List<MysqlColumn>> tableColumns = HashBasedTable.create();
+    tables.forEach(
+        (database, table) -> tableColumns.put(database, table, getTableColumns(database, table)));
+    return tableColumns;
+  }
+
   public void processDDL(QueryEvent event, String gtid) {
     String sql = event.getSql();
     BinlogFilePos pos = event.getBinlogFilePos();
@@ -90,9 +139,33 @@ public class MysqlSchemaManager implements MysqlSchemaArchiver {
     if (DATABASE_DDL_SQL_PATTERN.matcher(sql).find() || SYSTEM_DATABASES.contains(database)) {
       databaseToUse = null;
     }
-    schemaDatabase.applyDDL(sql, databaseToUse);
+    MysqlSchemaDatabase.DDLTargets targets = schemaDatabase.applyDDL(sql, databaseToUse);
+
+    // See what changed. Only the databases and tables affected by the DDL are checked if they can
+    // be determined, otherwise fall back to checking all databases.
+    boolean isTableColumnsChanged =
+        targets == null
+            ? processSchemaChangesForAllDatabases(event, gtid)
+            : processSchemaChangesForTargets(targets, event, gtid);
 
-    // See what changed, check database by database
+    if (!isTableColumnsChanged) {
+      // if the schema store is not updated, most likely the DDL does not change table columns.
+      // we need to update schema store here to keep a record, so the DDL won't be processed again
+      schemaStore.put(
+          new MysqlTableSchema(
+              0,
+              database,
+              null,
+              pos,
+              gtid,
+              sql,
+              event.getTimestamp(),
+              Collections.emptyList(),
+              Collections.emptyMap()));
+    }
+  }
+
+  private boolean processSchemaChangesForAllDatabases(QueryEvent event, String gtid) {
     Set<String> databasesInSchemaStore =
         ImmutableSet.copyOf(schemaStore.getSchemaCache().rowKeySet());
     Set<String> databasesInSchemaDatabase = ImmutableSet.copyOf(schemaDatabase.listDatabases());
@@ -119,22 +192,42 @@ public class MysqlSchemaManager implements MysqlSchemaArchiver {
               schemaDatabase.getColumnsForAllTables(existingDatbase));
       isTableColumnsChanged = isTableColumnsChanged || isColumnChangedForExistingDB;
     }
+    return isTableColumnsChanged;
+  }
 
-    if (!isTableColumnsChanged) {
-      // if the schema store is not updated, most likely the DDL does not change table columns.
-      // we need to update schema store here to keep a record, so the DDL won't be processed again
-      schemaStore.put(
-          new MysqlTableSchema(
-              0,
+  private boolean processSchemaChangesForTargets(
+      MysqlSchemaDatabase.DDLTargets targets, QueryEvent event, String gtid) {
+    boolean isTableColumnsChanged = false;
+
+    for (String database : targets.getDatabases()) {
+      boolean isColumnChangedForDB =
+          processTableSchemaChanges(
               database,
-              null,
-              pos,
+              event,
               gtid,
-              sql,
-              event.getTimestamp(),
-              Collections.emptyList(),
-              Collections.emptyMap()));
+              ImmutableMap.copyOf(schemaStore.getSchemaCache().row(database)),
+              schemaDatabase.getColumnsForAllTables(database));
+      isTableColumnsChanged = isTableColumnsChanged || isColumnChangedForDB;
     }
+
+    for (Map.Entry<String, Collection<String>> databaseTables :
+        targets.getTables().asMap().entrySet()) {
+      String database = databaseTables.getKey();
+      if (targets.getDatabases().contains(database)) {
+        continue;
+      }
+      Set<String> tables = ImmutableSet.copyOf(databaseTables.getValue());
+      boolean isColumnChangedForTables =
+          processTableSchemaChanges(
+              database,
+              event,
+              gtid,
+              ImmutableMap.copyOf(
+                  Maps.filterKeys(schemaStore.getSchemaCache().row(database), tables::contains)),
+              schemaDatabase.getColumnsForTables(database, tables));
+      isTableColumnsChanged = isTableColumnsChanged || isColumnChangedForTables;
+    }
+    return isTableColumnsChanged;
   }
 
   private boolean processTableSchemaChanges(
@@ -197,6 +290,7 @@ public class MysqlSchemaManager implements MysqlSchemaArchiver {
           sourceName,
           pos,
           pos.getGtidSet());
+      schemaStore.addMissingIndexes();
       schemaStore.loadSchemaCacheUntil(pos);
       return;
     }
@@ -208,35 +302,64 @@ public class MysqlSchemaManager implements MysqlSchemaArchiver {
       earliestPos.setGtidSet(new GtidSet(mysqlClient.getGlobalVariableValue("gtid_purged")));
     }
 
+    // Tables are bootstrapped concurrently, each on its own connections to the source and schema
+    // database, while columns are read once per database.
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            bootstrapParallelism,
+            new ThreadFactoryBuilder().setNameFormat(sourceName + "-schema-bootstrap-%d").build());
     List<MysqlTableSchema> allTableSchemas = new ArrayList<>();
-    for (String database : schemaReader.getAllDatabases()) {
-      if (SYSTEM_DATABASES.contains(database)) {
-        log.info("Skipping tables for system database: {}", database);
-        continue;
-      }
+    try {
+      List<Future<MysqlTableSchema>> futures = new ArrayList<>();
+      for (String database : schemaReader.getAllDatabases()) {
+        if (SYSTEM_DATABASES.contains(database)) {
+          log.info("Skipping tables for system database: {}", database);
+          continue;
+        }
 
-      log.info("Bootstrapping table schemas for database {}", database);
-      schemaDatabase.createDatabase(database);
+        log.info("Bootstrapping table schemas for database {}", database);
+        schemaDatabase.createDatabase(database);
 
-      for (String table : schemaReader.getAllTablesIn(database)) {
-        String createTableDDL = schemaReader.getCreateTableDDL(database, table);
-        schemaDatabase.applyDDL(createTableDDL, database);
-        allTableSchemas.add(
-            new MysqlTableSchema(
-                0,
-                database,
-                table,
-                earliestPos,
-                null,
-                createTableDDL,
-                System.currentTimeMillis(),
-                schemaReader.getTableColumns(database, table),
-                Collections.emptyMap()));
+        Map<String, List<MysqlColumn>> tableColumns =
+            schemaReader.getColumnsForAllTables(database);
+        for (String table : schemaReader.getAllTablesIn(database)) {
+          futures.add(
+              executor.submit(
+                  () -> bootstrapTable(database, table, tableColumns.get(table), earliestPos)));
+        }
+      }
+
+      for (Future<MysqlTableSchema> future : futures) {
+        allTableSchemas.add(future.get());
       }
+    } catch (InterruptedException | ExecutionException ex) {
+      log.error(String.format("Failed to bootstrap table schemas for %s", sourceName), ex);
+      throw new RuntimeException(ex);
+    } finally {
+      executor.shutdownNow();
     }
+
+    log.info("Bootstrapped {} table schemas for {}", allTableSchemas.size(), sourceName);
     schemaStore.bootstrap(allTableSchemas);
   }
 
+  private MysqlTableSchema bootstrapTable(
+      String database, String table, List<MysqlColumn> columns, BinlogFilePos earliestPos) {
+    String createTableDDL = schemaReader.getCreateTableDDL(database, table);
+    schemaDatabase.applyDDL(createTableDDL, database);
+    return new MysqlTableSchema(
+        0,
+        database,
+        table,
+        earliestPos,
+        null,
+        createTableDDL,
+        System.currentTimeMillis(),
+        // The table may have been created after the columns of the database were read
+        columns != null ? columns : schemaReader.getTableColumns(database, table),
+        Collections.emptyMap());
+  }
+
   @Override
   public synchronized void archive() {
     if (!isSchemaVersionEnabled) {
@@ -261,7 +384,8 @@ public class MysqlSchemaManager implements MysqlSchemaArchiver {
     schemaStore.compress(earliestPosition);
   }
 
-  private static boolean shouldProcessDDL(final String sql) {
+  /** @return whether the SQL is a DDL that may change database, table or index schemas. */
+  public static boolean shouldProcessDDL(final String sql) {
     return TABLE_DDL_SQL_PATTERN.matcher(sql).find()
         || INDEX_DDL_SQL_PATTERN.matcher(sql).find()
         || DATABASE_DDL_SQL_PATTERN.matcher(sql).find();
@@ -9,8 +9,18 @@ import com.airbnb.spinaltap.common.config.TlsConfiguration;
 import com.airbnb.spinaltap.mysql.MysqlClient;
 import com.airbnb.spinaltap.mysql.MysqlSourceMetrics;
 import com.airbnb.spinaltap.mysql.config.MysqlSchemaStoreConfiguration;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mysql.jdbc.jdbc2.optional.MysqlDataSource;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
 import org.jdbi.v3.core.Jdbi;
 
+@Slf4j
 public class MysqlSchemaManagerFactory {
   private final String username;
   private final String password;
@@ -18,6 +28,10 @@ public class MysqlSchemaManagerFactory {
   private final TlsConfiguration tlsConfiguration;
   private Jdbi jdbi;
 
+  /** Schema caches preloaded ahead of pipe creation, keyed by source name. */
+  private final ConcurrentMap<String, MysqlSchemaStore.LoadedSchemaCache> preloadedCaches =
+      Maps.newConcurrentMap();
+
   public MysqlSchemaManagerFactory(
       final String username,
       final String password,
@@ -29,15 +43,17 @@ public class MysqlSchemaManagerFactory {
     this.tlsConfiguration = tlsConfiguration;
 
     if (configuration != null) {
-      jdbi =
-          Jdbi.create(
-              MysqlClient.createMysqlDataSource(
-                  configuration.getHost(),
-                  configuration.getPort(),
-                  username,
-                  password,
-                  configuration.isMTlsEnabled(),
-                  tlsConfiguration));
+      MysqlDataSource dataSource =
+          MysqlClient.createMysqlDataSource(
+              configuration.getHost(),
+              configuration.getPort(),
+              username,
+              password,
+              configuration.isMTlsEnabled(),
+              tlsConfiguration);
+      // Send batched schema inserts (ex: on bootstrap) as multi-row statements
+      dataSource.setRewriteBatchedStatements(true);
+      jdbi = Jdbi.create(dataSource);
       jdbi.useHandle(
           handle -> {
             handle.execute(
@@ -67,10 +83,79 @@ public class MysqlSchemaManagerFactory {
             configuration.getDatabase(),
             configuration.getArchiveDatabase(),
             jdbi,
-            metrics);
+            metrics,
+            createSnapshot(sourceName));
+    schemaStore.setPreloadedCache(preloadedCaches.remove(sourceName));
     MysqlSchemaDatabase schemaDatabase = new MysqlSchemaDatabase(sourceName, jdbi, metrics);
     return new MysqlSchemaManager(
-        sourceName, schemaStore, schemaDatabase, schemaReader, mysqlClient, true);
+        sourceName,
+        schemaStore,
+        schemaDatabase,
+        schemaReader,
+        mysqlClient,
+        true,
+        configuration.getBootstrapParallelism());
+  }
+
+  /**
+   * Loads the latest schema cache of the given sources in parallel, so that only the schema
+   * changes since need to be fetched from the store when their pipes are started. Failures are
+   * logged and ignored, as the schema cache will be loaded on initialization instead.
+   *
+   * @param sourceNames the names of the sources with schema versioning enabled
+   * @param parallelism the maximum number of stores loaded concurrently
+   */
+  public void preloadSchemaStores(final Collection<String> sourceNames, final int parallelism) {
+    if (configuration == null || sourceNames.isEmpty()) {
+      return;
+    }
+
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.max(1, Math.min(parallelism, sourceNames.size())),
+            new ThreadFactoryBuilder().setNameFormat("schema-store-preload-%d").build());
+
+    try {
+      CompletableFuture.allOf(
+              sourceNames
+                  .stream()
+                  .map(
+                      sourceName ->
+                          CompletableFuture.runAsync(
+                              () -> preloadSchemaCache(sourceName), executor))
+                  .toArray(CompletableFuture[]::new))
+          .join();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void preloadSchemaCache(final String sourceName) {
+    try {
+      final MysqlSchemaStore schemaStore =
+          new MysqlSchemaStore(
+              sourceName,
+              configuration.getDatabase(),
+              configuration.getArchiveDatabase(),
+              jdbi,
+              new MysqlSourceMetrics(sourceName, new TaggedMetricRegistry()),
+              createSnapshot(sourceName));
+
+      if (schemaStore.isCreated()) {
+        preloadedCaches.put(sourceName, schemaStore.loadLatestSchemaCache());
+        log.info("Preloaded schema cache for source {}", sourceName);
+      }
+    } catch (Exception ex) {
+      log.error("Failed to preload schema cache for source " + sourceName, ex);
+    }
+  }
+
+  private MysqlSchemaCacheSnapshot createSnapshot(final String sourceName) {
+    if (configuration.getSnapshotDirectory() == null) {
+      return null;
+    }
+    return MysqlSchemaCacheSnapshot.create(
+        configuration.getSnapshotDirectory(), configuration.getDatabase(), sourceName);
   }
 
   public MysqlSchemaArchiver createArchiver(String sourceName) {
@@ -90,7 +175,8 @@ public class MysqlSchemaManagerFactory {
             configuration.getDatabase(),
             configuration.getArchiveDatabase(),
             jdbi,
-            metrics);
+            metrics,
+            createSnapshot(sourceName));
     MysqlSchemaDatabase schemaDatabase = new MysqlSchemaDatabase(sourceName, jdbi, metrics);
 
     return new MysqlSchemaManager(sourceName, schemaStore, schemaDatabase, null, null, true);
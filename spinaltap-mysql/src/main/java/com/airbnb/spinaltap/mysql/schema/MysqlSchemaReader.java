@@ -5,10 +5,17 @@
 package com.airbnb.spinaltap.mysql.schema;
 
 import com.airbnb.spinaltap.mysql.MysqlSourceMetrics;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Table;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -84,6 +91,102 @@ public class MysqlSchemaReader {
     }
   }
 
+  /**
+   * Fetches the columns of all tables in the database with a single query, rather than a query
+   * per table.
+   *
+   * @return the columns of each table, keyed by table name.
+   */
+  Map<String, List<MysqlColumn>> getColumnsForAllTables(@NonNull String database) {
+    try (Handle handle = jdbi.open()) {
+      Map<String, List<MysqlColumn>> tableColumnsMap = new HashMap<>();
+      MysqlSchemaUtil.VOID_RETRYER.call(
+          () -> {
+            tableColumnsMap.clear();
+            handle
+                .createQuery(
+                    "select TABLE_NAME, COLUMN_NAME, DATA_TYPE, COLUMN_TYPE, COLUMN_KEY from information_schema.COLUMNS "
+                        + "where TABLE_SCHEMA = :db "
+                        + "order by TABLE_NAME, ORDINAL_POSITION")
+                .bind("db", database)
+                .mapToMap(String.class)
+                .forEach(
+                    row ->
+                        tableColumnsMap
+                            .computeIfAbsent(row.get("table_name"), table -> new ArrayList<>())
+                            .add(
+                                new MysqlColumn(
+                                    row.get("column_name"),
+                                    row.get("data_type"),
+                                    row.get("column_type"),
+                                    "PRI".equals(row.get("column_key")))));
+            return null;
+          });
+      return tableColumnsMap;
+    } catch (Exception ex) {
+      log.error(String.format("Failed to fetch table columns for database: %s", database), ex);
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * Fetches the columns of the given tables across databases with a single query, rather than a
+   * query per table. Tables that are not found are left out.
+   *
+   * @param tables The table names, keyed by database.
+   * @return the columns of each table, keyed by database and table name.
+   */
+  public Table<String, String, List<MysqlColumn>> getColumnsForTables(
+      @NonNull final SetMultimap<String, String> tables) {
+    final Table<String, String, List<MysqlColumn>> tableColumns = HashBasedTable.create();
+    if (tables.isEmpty()) {
+      return tableColumns;
+    }
+
+    try (Handle handle = jdbi.open()) {
+      MysqlSchemaUtil.VOID_RETRYER.call(
+          () -> {
+            tableColumns.clear();
+            handle
+                .createQuery(
+                    "select TABLE_SCHEMA, TABLE_NAME, COLUMN_NAME, DATA_TYPE, COLUMN_TYPE, COLUMN_KEY from information_schema.COLUMNS "
+                        + "where TABLE_SCHEMA in (<databases>) and TABLE_NAME in (<tables>) "
+                        + "order by TABLE_SCHEMA, TABLE_NAME, ORDINAL_POSITION")
+                .bindList("databases", ImmutableSet.copyOf(tables.keySet()).asList())
+                .bindList("tables", ImmutableSet.copyOf(tables.values()).asList())
+                .mapToMap(String.class)
+                .forEach(
+                    row -> {
+                      String database = row.get("table_schema");
+                      String table = row.get("table_name");
+                      // The query matches any table name in any of the databases
+                      if (!tables.containsEntry(database, table)) {
+                        return;
+                      }
+                      if (!tableColumns.contains(database, table)) {
+                        tableColumns.put(database, table, new ArrayList<>());
+                      }
+                      tableColumns
+                          .get(database, table)
+                          .add(
+                              new MysqlColumn(
+                                  row.get("column_name"),
+                                  row.get("data_type"),
+                                  row.get("column_type"),
+                                  "PRI".equals(row.get("column_key"))));
+                    });
+            return null;
+          });
+      tableColumns
+          .cellSet()
+          .forEach(cell -> metrics.schemaStoreGetSuccess(cell.getRowKey(), cell.getColumnKey()));
+      return tableColumns;
+    } catch (Exception ex) {
+      log.error(String.format("Failed to fetch table columns for tables: %s", tables), ex);
+      throw new RuntimeException(ex);
+    }
+  }
+
   String getCreateTableDDL(@NonNull String database, @NonNull String table) {
     return jdbi.withHandle(
         handle -> {
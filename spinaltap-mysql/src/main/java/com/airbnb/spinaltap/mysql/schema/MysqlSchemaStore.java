@@ -11,6 +11,9 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Table;
 import com.google.common.collect.Tables;
@@ -21,13 +24,18 @@ import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.logging.log4j.util.Strings;
 import org.jdbi.v3.core.Handle;
@@ -55,22 +63,70 @@ public class MysqlSchemaStore {
           + "`timestamp` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,"
           + "  PRIMARY KEY (`id`),"
           + "  KEY `binlog_file_position_index` (`binlog_file_position`),"
-          + "  KEY `gtid_index` (`gtid`)"
+          + "  KEY `gtid_index` (`gtid`),"
+          + "  KEY `database_table_index` (`database`, `table`, `id`)"
           + ") ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_bin";
+  private static final String DATABASE_TABLE_INDEX = "database_table_index";
+  private static final String INDEX_EXISTS_QUERY =
+      "SELECT COUNT(*) FROM information_schema.STATISTICS"
+          + " WHERE table_schema = :db AND table_name = :table AND index_name = :index";
+  private static final String ADD_DATABASE_TABLE_INDEX_QUERY =
+      "ALTER TABLE `%s`.`%s` ADD INDEX `database_table_index` (`database`, `table`, `id`)";
   private static final String PUT_SCHEMA_QUERY =
       "INSERT INTO `%s`.`%s`"
           + " (`database`, `table`, `binlog_file_position`, `server_uuid`, `gtid_set`, `gtid`, `columns`, `sql`, `meta_data`, `timestamp`)"
           + " VALUES (:database, :table, :binlog_file_position, :server_uuid, :gtid_set, :gtid, :columns, :sql, :meta_data, :timestamp)";
+  private static final String ROW_POSITIONS_QUERY =
+      "SELECT `id`, `binlog_file_position`, `server_uuid`, `gtid_set` FROM `%s`.`%s`"
+          + " WHERE id < :beforeId ORDER BY id DESC LIMIT :limit";
+  private static final String LATEST_SCHEMAS_QUERY =
+      "SELECT s.* FROM `%1$s`.`%2$s` s INNER JOIN ("
+          + "SELECT MAX(id) AS id FROM `%1$s`.`%2$s`"
+          + " WHERE id <= :maxId AND `database` IS NOT NULL AND `table` IS NOT NULL"
+          + " GROUP BY `database`, `table`) latest ON s.id = latest.id";
+  private static final String SCHEMAS_BETWEEN_QUERY =
+      "SELECT * FROM `%s`.`%s` WHERE id > :fromId AND id <= :toId ORDER BY id ASC";
+  private static final String ROW_IDS_UNTIL_QUERY = "SELECT id FROM `%s`.`%s` WHERE id <= :maxId";
+  private static final String ROW_IDENTITIES_QUERY =
+      "SELECT `id`, `database`, `table`, `binlog_file_position`, `gtid` FROM `%s`.`%s`"
+          + " WHERE id IN (<ids>)";
+  private static final String LAST_ROW_ID_QUERY = "SELECT COALESCE(MAX(id), 0) FROM `%s`.`%s`";
+  private static final int ROW_POSITIONS_PAGE_SIZE = 100;
+  private static final int BOOTSTRAP_BATCH_SIZE = 500;
+
   private final String sourceName;
   private final String storeDBName;
   private final String archiveDBName;
   private final Jdbi jdbi;
   private final MysqlSourceMetrics metrics;
+  // Optional local snapshot of the schema cache, to only fetch the store delta on restart
+  private final MysqlSchemaCacheSnapshot snapshot;
   // Schema cache should always reflect the schema we currently need
   @Getter
   private final Table<String, String, MysqlTableSchema> schemaCache =
       Tables.newCustomTable(Maps.newHashMap(), Maps::newHashMap);
 
+  /**
+   * Schema cache loaded ahead of time (ex: in parallel with other sources during startup). It is
+   * consumed by the first call to {@link #loadSchemaCacheUntil(BinlogFilePos)}, which then only
+   * fetches the rows added to the store since, and discarded afterwards so that subsequent reloads
+   * always reflect the latest state.
+   */
+  private volatile LoadedSchemaCache preloadedCache;
+
+  public MysqlSchemaStore(
+      String sourceName,
+      String storeDBName,
+      String archiveDBName,
+      Jdbi jdbi,
+      MysqlSourceMetrics metrics) {
+    this(sourceName, storeDBName, archiveDBName, jdbi, metrics, null);
+  }
+
+  void setPreloadedCache(LoadedSchemaCache cache) {
+    preloadedCache = cache;
+  }
+
   public boolean isCreated() {
     return jdbi.withHandle(
             handle ->
@@ -84,14 +140,276 @@ public class MysqlSchemaStore {
         .isPresent();
   }
 
+  /**
+   * Adds the indexes missing from a store created before they were introduced, as the store table
+   * is only created if it does not exist. Failures are logged, as the indexes only speed up
+   * queries.
+   */
+  public void addMissingIndexes() {
+    try (Handle handle = jdbi.open()) {
+      final long indexColumns =
+          handle
+              .createQuery(INDEX_EXISTS_QUERY)
+              .bind("db", storeDBName)
+              .bind("table", sourceName)
+              .bind("index", DATABASE_TABLE_INDEX)
+              .mapTo(Long.class)
+              .one();
+      if (indexColumns == 0) {
+        log.info("Adding index {} to schema store of {}", DATABASE_TABLE_INDEX, sourceName);
+        handle.execute(String.format(ADD_DATABASE_TABLE_INDEX_QUERY, storeDBName, sourceName));
+      }
+    } catch (Exception ex) {
+      log.error(
+          String.format(
+              "Failed to add index %s to schema store of %s", DATABASE_TABLE_INDEX, sourceName),
+          ex);
+    }
+  }
+
+  /**
+   * Loads the schema cache to reflect the schemas as of the given position.
+   *
+   * <p>Store rows are appended in binlog order, so their ids increase monotonically with their
+   * position. Only the latest row per table up to the given position is fetched from the store, or
+   * if a local snapshot of the cache is available, only the rows added since the snapshot.
+   */
   public void loadSchemaCacheUntil(BinlogFilePos pos) {
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    final LoadedSchemaCache preloaded = preloadedCache;
+    preloadedCache = null;
+
+    final long maxRowId = getLastRowIdUntil(pos, true);
+    // The preloaded cache cannot be used if it reflects rows after the given position
+    final boolean usePreloaded = preloaded != null && preloaded.getLastRowId() <= maxRowId;
+
     schemaCache.clear();
-    for (MysqlTableSchema schema : getAllSchemas()) {
-      if (schema.getBinlogFilePos().compareTo(pos) > 0) {
-        break;
+    if (usePreloaded) {
+      loadSchemaCacheFrom(preloaded, maxRowId);
+    } else {
+      loadSchemaCacheUntil(maxRowId);
+    }
+
+    metrics.schemaStoreLoadCacheTime(stopwatch.elapsed(TimeUnit.MILLISECONDS), usePreloaded);
+  }
+
+  /**
+   * Loads the schema cache as of the latest store row, the same way as {@link
+   * #loadSchemaCacheUntil(BinlogFilePos)}. This is used to preload the cache before the position
+   * to load it until is known.
+   *
+   * @return the loaded schema cache
+   */
+  LoadedSchemaCache loadLatestSchemaCache() {
+    final long lastRowId = getLastRowId();
+
+    schemaCache.clear();
+    loadSchemaCacheUntil(lastRowId);
+
+    return new LoadedSchemaCache(lastRowId, ImmutableList.copyOf(schemaCache.values()));
+  }
+
+  private void loadSchemaCacheUntil(final long maxRowId) {
+    final Optional<LoadedSchemaCache> snapshotCache = readSnapshot(maxRowId);
+    if (snapshotCache.isPresent()) {
+      log.info(
+          "Loading schema cache for {} from snapshot at row {}",
+          sourceName,
+          snapshotCache.get().getLastRowId());
+      loadSchemaCacheFrom(snapshotCache.get(), maxRowId);
+    } else {
+      forEachLatestSchemaUntil(maxRowId, this::updateSchemaCache);
+      writeSnapshot(maxRowId);
+    }
+  }
+
+  /** Loads the schema cache from the given one, and the store rows added since up to the id. */
+  private void loadSchemaCacheFrom(final LoadedSchemaCache cache, final long maxRowId) {
+    cache.getSchemas().forEach(this::updateSchemaCache);
+
+    if (cache.getLastRowId() < maxRowId) {
+      forEachSchemaBetween(cache.getLastRowId(), maxRowId, this::updateSchemaCache);
+      writeSnapshot(maxRowId);
+    }
+  }
+
+  /** @return the schema cache from the local snapshot, if any and not after the given row id. */
+  private Optional<LoadedSchemaCache> readSnapshot(final long maxRowId) {
+    if (snapshot == null) {
+      return Optional.empty();
+    }
+
+    final Optional<MysqlSchemaCacheSnapshot.Content> content =
+        snapshot.read().filter(snapshotContent -> snapshotContent.getLastRowId() <= maxRowId);
+    if (!content.isPresent()) {
+      return Optional.empty();
+    }
+
+    if (!isSnapshotValid(content.get())) {
+      log.warn("Schema cache snapshot for {} does not match the schema store", sourceName);
+      snapshot.delete();
+      return Optional.empty();
+    }
+
+    return Optional.of(
+        new LoadedSchemaCache(
+            content.get().getLastRowId(), MysqlSchemaCacheSnapshot.toSchemas(content.get())));
+  }
+
+  /**
+   * The store is shared, so it may have been bootstrapped again (reusing row ids) or compressed by
+   * another host since the snapshot was written. The snapshot is only valid if its last row and
+   * the rows of its schemas are still in the store, unchanged. If the row of a schema was deleted
+   * on compression, then so may have been a later row dropping its table, which the rows added
+   * since the snapshot would miss.
+   */
+  private boolean isSnapshotValid(final MysqlSchemaCacheSnapshot.Content content) {
+    final Map<Long, MysqlSchemaCacheSnapshot.RowIdentity> rows = new HashMap<>();
+    content.getSchemas().forEach(entry -> rows.put(entry.getId(), entry.toRowIdentity()));
+
+    if (content.getLastRowId() != 0L) {
+      if (content.getLastRow() == null) {
+        return false;
+      }
+      rows.put(content.getLastRowId(), content.getLastRow());
+    }
+
+    return rows.isEmpty() || rows.equals(getRowIdentities(rows.keySet()));
+  }
+
+  private void writeSnapshot(final long lastRowId) {
+    if (snapshot == null) {
+      return;
+    }
+
+    MysqlSchemaCacheSnapshot.RowIdentity lastRow = null;
+    if (lastRowId != 0L) {
+      lastRow = getRowIdentities(Collections.singleton(lastRowId)).get(lastRowId);
+      if (lastRow == null) {
+        // The row was deleted since it was loaded, so the snapshot could not be checked
+        snapshot.delete();
+        return;
       }
-      updateSchemaCache(schema);
     }
+
+    snapshot.write(lastRowId, lastRow, schemaCache.values());
+  }
+
+  /**
+   * @return the id of the last store row at or before (if inclusive), or strictly before the given
+   *     position, or 0 if there is none. Rows are paged from the end of the store, as the given
+   *     position is typically close to the latest schema change.
+   */
+  @VisibleForTesting
+  long getLastRowIdUntil(final BinlogFilePos pos, final boolean inclusive) {
+    long beforeId = Long.MAX_VALUE;
+    while (true) {
+      final List<RowPosition> rowPositions =
+          getRowPositionsBefore(beforeId, ROW_POSITIONS_PAGE_SIZE);
+      for (RowPosition rowPosition : rowPositions) {
+        final int comparison = rowPosition.getBinlogFilePos().compareTo(pos);
+        if (comparison < 0 || (inclusive && comparison == 0)) {
+          return rowPosition.getId();
+        }
+        beforeId = rowPosition.getId();
+      }
+
+      if (rowPositions.size() < ROW_POSITIONS_PAGE_SIZE) {
+        return 0L;
+      }
+    }
+  }
+
+  /** @return the positions of the rows before the given id, in descending id order. */
+  @VisibleForTesting
+  List<RowPosition> getRowPositionsBefore(final long beforeId, final int limit) {
+    return jdbi.withHandle(
+        handle ->
+            handle
+                .createQuery(String.format(ROW_POSITIONS_QUERY, storeDBName, sourceName))
+                .bind("beforeId", beforeId)
+                .bind("limit", limit)
+                .map(
+                    (rs, ctx) ->
+                        new RowPosition(
+                            rs.getLong("id"),
+                            MysqlTableSchemaMapper.mapBinlogFilePos(
+                                rs.getString("binlog_file_position"),
+                                rs.getString("server_uuid"),
+                                rs.getString("gtid_set"))))
+                .list());
+  }
+
+  /** Streams the latest schema of each table up to the given row id to the consumer. */
+  @VisibleForTesting
+  void forEachLatestSchemaUntil(final long maxRowId, final Consumer<MysqlTableSchema> consumer) {
+    jdbi.useHandle(
+        handle ->
+            handle
+                .createQuery(String.format(LATEST_SCHEMAS_QUERY, storeDBName, sourceName))
+                .bind("maxId", maxRowId)
+                .setFetchSize(Integer.MIN_VALUE)
+                .map(MysqlTableSchemaMapper.INSTANCE)
+                .forEach(consumer));
+  }
+
+  /** Streams the schemas in the given row id range (exclusive, inclusive] in id order. */
+  @VisibleForTesting
+  void forEachSchemaBetween(
+      final long fromRowId, final long toRowId, final Consumer<MysqlTableSchema> consumer) {
+    jdbi.useHandle(
+        handle ->
+            handle
+                .createQuery(String.format(SCHEMAS_BETWEEN_QUERY, storeDBName, sourceName))
+                .bind("fromId", fromRowId)
+                .bind("toId", toRowId)
+                .setFetchSize(Integer.MIN_VALUE)
+                .map(MysqlTableSchemaMapper.INSTANCE)
+                .forEach(consumer));
+  }
+
+  @VisibleForTesting
+  List<Long> getRowIdsUntil(final long maxRowId) {
+    return jdbi.withHandle(
+        handle ->
+            handle
+                .createQuery(String.format(ROW_IDS_UNTIL_QUERY, storeDBName, sourceName))
+                .bind("maxId", maxRowId)
+                .mapTo(Long.class)
+                .list());
+  }
+
+  /** @return the identities of the store rows with the given ids, keyed by id. */
+  @VisibleForTesting
+  Map<Long, MysqlSchemaCacheSnapshot.RowIdentity> getRowIdentities(final Collection<Long> ids) {
+    return jdbi.withHandle(
+        handle ->
+            handle
+                .createQuery(String.format(ROW_IDENTITIES_QUERY, storeDBName, sourceName))
+                .bindList("ids", ids)
+                .map(
+                    (rs, ctx) ->
+                        Maps.immutableEntry(
+                            rs.getLong("id"),
+                            MysqlSchemaCacheSnapshot.RowIdentity.of(
+                                rs.getString("database"),
+                                rs.getString("table"),
+                                rs.getString("binlog_file_position"),
+                                rs.getString("gtid"))))
+                .list()
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+  }
+
+  /** @return the id of the latest store row, or 0 if the store is empty. */
+  @VisibleForTesting
+  long getLastRowId() {
+    return jdbi.withHandle(
+        handle ->
+            handle
+                .createQuery(String.format(LAST_ROW_ID_QUERY, storeDBName, sourceName))
+                .mapTo(Long.class)
+                .one());
   }
 
   @VisibleForTesting
@@ -168,24 +486,36 @@ public class MysqlSchemaStore {
       MysqlSchemaUtil.VOID_RETRYER.call(
           () -> {
             handle.execute(String.format(CREATE_SCHEMA_STORE_TABLE_QUERY, storeDBName, sourceName));
-            PreparedBatch batch =
-                handle.prepareBatch(String.format(PUT_SCHEMA_QUERY, storeDBName, sourceName));
-            for (MysqlTableSchema schema : schemas) {
-              GtidSet gtidSet = schema.getBinlogFilePos().getGtidSet();
-              batch
-                  .bind("database", schema.getDatabase())
-                  .bind("table", schema.getTable())
-                  .bind("binlog_file_position", schema.getBinlogFilePos().toString())
-                  .bind("server_uuid", schema.getBinlogFilePos().getServerUUID())
-                  .bind("gtid_set", gtidSet == null ? null : gtidSet.toString())
-                  .bind("gtid", schema.getGtid())
-                  .bind("columns", OBJECT_MAPPER.writeValueAsString(schema.getColumns()))
-                  .bind("sql", schema.getSql())
-                  .bind("meta_data", OBJECT_MAPPER.writeValueAsString(schema.getMetadata()))
-                  .bind("timestamp", new Timestamp(schema.getTimestamp()))
-                  .add();
+            if (snapshot != null) {
+              snapshot.delete();
             }
-            batch.execute();
+            // Insert in a single transaction so a retry never leaves partially inserted schemas
+            handle.useTransaction(
+                transactionHandle -> {
+                  for (List<MysqlTableSchema> partition :
+                      Lists.partition(schemas, BOOTSTRAP_BATCH_SIZE)) {
+                    PreparedBatch batch =
+                        transactionHandle.prepareBatch(
+                            String.format(PUT_SCHEMA_QUERY, storeDBName, sourceName));
+                    for (MysqlTableSchema schema : partition) {
+                      GtidSet gtidSet = schema.getBinlogFilePos().getGtidSet();
+                      batch
+                          .bind("database", schema.getDatabase())
+                          .bind("table", schema.getTable())
+                          .bind("binlog_file_position", schema.getBinlogFilePos().toString())
+                          .bind("server_uuid", schema.getBinlogFilePos().getServerUUID())
+                          .bind("gtid_set", gtidSet == null ? null : gtidSet.toString())
+                          .bind("gtid", schema.getGtid())
+                          .bind("columns", OBJECT_MAPPER.writeValueAsString(schema.getColumns()))
+                          .bind("sql", schema.getSql())
+                          .bind(
+                              "meta_data", OBJECT_MAPPER.writeValueAsString(schema.getMetadata()))
+                          .bind("timestamp", new Timestamp(schema.getTimestamp()))
+                          .add();
+                    }
+                    batch.execute();
+                  }
+                });
             getAllSchemas().forEach(this::updateSchemaCache);
             return null;
           });
@@ -247,44 +577,30 @@ public class MysqlSchemaStore {
                     "RENAME TABLE `%s`.`%s` TO `%s`.`%s`",
                     storeDBName, sourceName, archiveDBName, archiveTableName)));
     schemaCache.clear();
+    preloadedCache = null;
+    if (snapshot != null) {
+      snapshot.delete();
+    }
   }
 
   public void compress(BinlogFilePos earliestPos) {
     deleteSchemas(getRowIdsToDelete(earliestPos));
   }
 
+  /**
+   * @return the ids of the rows strictly before the given position, except for the ones currently
+   *     reflected in the schema cache. As row ids increase monotonically with position, this only
+   *     requires to locate the last row before the position rather than scanning all schemas.
+   */
   @VisibleForTesting
   Set<Long> getRowIdsToDelete(BinlogFilePos earliestPos) {
-    Table<String, String, List<MysqlTableSchema>> allSchemas =
-        Tables.newCustomTable(Maps.newHashMap(), Maps::newHashMap);
-    Set<Long> rowIdsToDelete = new HashSet<>();
-    getAllSchemas()
-        .forEach(
-            schema -> {
-              String database = schema.getDatabase();
-              String table = schema.getTable();
-              if (database == null || table == null) {
-                if (schema.getBinlogFilePos().compareTo(earliestPos) < 0) {
-                  rowIdsToDelete.add(schema.getId());
-                }
-              } else {
-                if (!allSchemas.contains(database, table)) {
-                  allSchemas.put(database, table, new LinkedList<>());
-                }
-                allSchemas.get(database, table).add(schema);
-              }
-            });
-
-    for (List<MysqlTableSchema> schemas : allSchemas.values()) {
-      for (MysqlTableSchema schema : schemas) {
-        if (schema.getBinlogFilePos().compareTo(earliestPos) >= 0) {
-          break;
-        }
-        if (!schema.equals(schemaCache.get(schema.getDatabase(), schema.getTable()))) {
-          rowIdsToDelete.add(schema.getId());
-        }
-      }
+    final long lastRowId = getLastRowIdUntil(earliestPos, false);
+    if (lastRowId == 0L) {
+      return Collections.emptySet();
     }
+
+    final Set<Long> rowIdsToDelete = new HashSet<>(getRowIdsUntil(lastRowId));
+    schemaCache.values().forEach(schema -> rowIdsToDelete.remove(schema.getId()));
     return rowIdsToDelete;
   }
 
@@ -317,25 +633,28 @@ public class MysqlSchemaStore {
   private static class MysqlTableSchemaMapper implements RowMapper<MysqlTableSchema> {
     public static MysqlTableSchemaMapper INSTANCE = new MysqlTableSchemaMapper();
 
-    @Override
-    public MysqlTableSchema map(ResultSet rs, StatementContext ctx) throws SQLException {
-      BinlogFilePos pos = BinlogFilePos.fromString(rs.getString("binlog_file_position"));
-      pos.setServerUUID(rs.getString("server_uuid"));
-      String gtidSet = rs.getString("gtid_set");
+    static BinlogFilePos mapBinlogFilePos(
+        final String binlogFilePosition, final String serverUUID, final String gtidSet) {
+      BinlogFilePos pos = BinlogFilePos.fromString(binlogFilePosition);
+      pos.setServerUUID(serverUUID);
       if (gtidSet != null) {
         pos.setGtidSet(new GtidSet(gtidSet));
       }
-      List<MysqlColumn> columns = Collections.emptyList();
+      return pos;
+    }
+
+    @Override
+    public MysqlTableSchema map(ResultSet rs, StatementContext ctx) throws SQLException {
+      BinlogFilePos pos =
+          mapBinlogFilePos(
+              rs.getString("binlog_file_position"),
+              rs.getString("server_uuid"),
+              rs.getString("gtid_set"));
       Map<String, String> metadata = Collections.emptyMap();
+      // Columns are only deserialized when accessed
       String columnsStr = rs.getString("columns");
-      if (columnsStr != null) {
-        try {
-          columns = OBJECT_MAPPER.readValue(columnsStr, new TypeReference<List<MysqlColumn>>() {});
-        } catch (IOException ex) {
-          log.error(
-              String.format("Failed to deserialize columns %s. exception: %s", columnsStr, ex));
-        }
-      }
+      List<MysqlColumn> columns =
+          columnsStr == null ? Collections.emptyList() : new LazyMysqlColumnList(columnsStr);
 
       String metadataStr = rs.getString("meta_data");
       if (metadataStr != null) {
@@ -361,4 +680,19 @@ public class MysqlSchemaStore {
           metadata);
     }
   }
+
+  /** A schema cache loaded as of a store row, ex: ahead of time or from a local snapshot. */
+  @Value
+  static class LoadedSchemaCache {
+    /** The id of the last store row reflected in the schemas. */
+    long lastRowId;
+
+    List<MysqlTableSchema> schemas;
+  }
+
+  @Value
+  static class RowPosition {
+    long id;
+    BinlogFilePos binlogFilePos;
+  }
 }
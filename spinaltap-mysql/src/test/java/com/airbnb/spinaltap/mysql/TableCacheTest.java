@@ -12,6 +12,10 @@ import com.airbnb.spinaltap.mysql.mutation.schema.ColumnMetadata;
 import com.airbnb.spinaltap.mysql.mutation.schema.Table;
 import com.airbnb.spinaltap.mysql.schema.MysqlColumn;
 import com.airbnb.spinaltap.mysql.schema.MysqlSchemaManager;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.junit.Test;
@@ -150,4 +154,197 @@ public class TableCacheTest {
     verify(schemaManager, times(1)).getTableColumns(DATABASE_NAME, newTable);
     verifyZeroInteractions(metrics);
   }
+
+  @Test
+  public void testInternTableAfterClear() throws Exception {
+    TableCache tableCache = new TableCache(schemaManager, OVERRIDING_DATABASE_NAME);
+    List<ColumnDataType> columnTypes =
+        Arrays.asList(
+            ColumnDataType.TINY, ColumnDataType.STRING, ColumnDataType.FLOAT, ColumnDataType.LONG);
+
+    when(schemaManager.getTableColumns(DATABASE_NAME, TABLE_NAME)).thenReturn(TABLE_COLUMNS);
+
+    tableCache.addOrUpdate(TABLE_ID, TABLE_NAME, DATABASE_NAME, columnTypes);
+    Table table = tableCache.get(TABLE_ID);
+
+    tableCache.clear();
+    tableCache.addOrUpdate(TABLE_ID, TABLE_NAME, DATABASE_NAME, columnTypes);
+
+    assertSame(table, tableCache.get(TABLE_ID));
+    assertSame(table.getThriftTable(), tableCache.get(TABLE_ID).getThriftTable());
+  }
+
+  @Test
+  public void testRemapTableAfterRotate() throws Exception {
+    TableCache tableCache = new TableCache(schemaManager, OVERRIDING_DATABASE_NAME);
+    List<ColumnDataType> columnTypes =
+        Arrays.asList(
+            ColumnDataType.TINY, ColumnDataType.STRING, ColumnDataType.FLOAT, ColumnDataType.LONG);
+
+    when(schemaManager.getTableColumns(DATABASE_NAME, TABLE_NAME)).thenReturn(TABLE_COLUMNS);
+
+    tableCache.addOrUpdate(TABLE_ID, TABLE_NAME, DATABASE_NAME, columnTypes);
+    assertEquals(1, tableCache.rotate());
+
+    long newTableId = TABLE_ID + 1;
+    tableCache.addOrUpdate(newTableId, TABLE_NAME, DATABASE_NAME, columnTypes);
+
+    Table table = tableCache.get(newTableId);
+    assertNull(tableCache.get(TABLE_ID));
+    assertEquals(newTableId, table.getId());
+    assertEquals(TABLE.getColumns(), table.getColumns());
+    assertEquals(TABLE.getPrimaryKey(), table.getPrimaryKey());
+    assertEquals(0, tableCache.rotate());
+    verify(schemaManager, times(1)).getTableColumns(DATABASE_NAME, TABLE_NAME);
+
+    // The schema is fetched again once the table no longer matches its column types
+    columnTypes = Arrays.asList(ColumnDataType.TINY, ColumnDataType.STRING, ColumnDataType.FLOAT);
+    when(schemaManager.getTableColumns(DATABASE_NAME, TABLE_NAME))
+        .thenReturn(TABLE_COLUMNS_UPDATED);
+
+    tableCache.addOrUpdate(newTableId, TABLE_NAME, DATABASE_NAME, columnTypes);
+
+    assertEquals(TABLE_UPDATED.getColumns(), tableCache.get(newTableId).getColumns());
+    verify(schemaManager, times(2)).getTableColumns(DATABASE_NAME, TABLE_NAME);
+  }
+
+  @Test
+  public void testRemapTableWithinBinlogFile() throws Exception {
+    TableCache tableCache = new TableCache(schemaManager, OVERRIDING_DATABASE_NAME);
+    List<ColumnDataType> columnTypes =
+        Arrays.asList(
+            ColumnDataType.TINY, ColumnDataType.STRING, ColumnDataType.FLOAT, ColumnDataType.LONG);
+
+    when(schemaManager.getTableColumns(DATABASE_NAME, TABLE_NAME)).thenReturn(TABLE_COLUMNS);
+    tableCache.addOrUpdate(TABLE_ID, TABLE_NAME, DATABASE_NAME, columnTypes);
+    tableCache.rotate();
+
+    // The first mapping in the new binlog file reuses the schema
+    tableCache.addOrUpdate(TABLE_ID + 1, TABLE_NAME, DATABASE_NAME, columnTypes);
+    verify(schemaManager, times(1)).getTableColumns(DATABASE_NAME, TABLE_NAME);
+
+    // A column renamed with the same type assigns a new table id within the binlog file
+    List<MysqlColumn> renamedColumns =
+        Arrays.asList(
+            new MysqlColumn("col1", "TINY", "TINY", true),
+            new MysqlColumn("renamed", "STRING", "TEXT", false),
+            new MysqlColumn("col3", "FLOAT", "FLOAT", true),
+            new MysqlColumn("col4", "LONG", "LONG", false));
+    when(schemaManager.getTableColumns(DATABASE_NAME, TABLE_NAME)).thenReturn(renamedColumns);
+
+    tableCache.addOrUpdate(TABLE_ID + 2, TABLE_NAME, DATABASE_NAME, columnTypes);
+
+    Table table = tableCache.get(TABLE_ID + 2);
+    assertTrue(table.getColumns().containsKey("renamed"));
+    assertFalse(table.getColumns().containsKey("col2"));
+    verify(schemaManager, times(2)).getTableColumns(DATABASE_NAME, TABLE_NAME);
+  }
+
+  @Test
+  public void testClearSchemas() throws Exception {
+    TableCache tableCache = new TableCache(schemaManager, OVERRIDING_DATABASE_NAME);
+    List<ColumnDataType> columnTypes =
+        Arrays.asList(
+            ColumnDataType.TINY, ColumnDataType.STRING, ColumnDataType.FLOAT, ColumnDataType.LONG);
+
+    when(schemaManager.getTableColumns(DATABASE_NAME, TABLE_NAME)).thenReturn(TABLE_COLUMNS);
+
+    tableCache.addOrUpdate(TABLE_ID, TABLE_NAME, DATABASE_NAME, columnTypes);
+    tableCache.clear();
+    tableCache.addOrUpdate(TABLE_ID + 1, TABLE_NAME, DATABASE_NAME, columnTypes);
+
+    verify(schemaManager, times(2)).getTableColumns(DATABASE_NAME, TABLE_NAME);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testBatchSchemaLoad() throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    BatchSchemaLoader schemaLoader = new BatchSchemaLoader(schemaManager, tasks::add);
+    TableCache tableCache = new TableCache(schemaManager, OVERRIDING_DATABASE_NAME, schemaLoader);
+    String otherTable = "other";
+    long otherTableId = TABLE_ID + 1;
+
+    com.google.common.collect.Table<String, String, List<MysqlColumn>> tableColumns =
+        HashBasedTable.create();
+    tableColumns.put(DATABASE_NAME, TABLE_NAME, TABLE_COLUMNS);
+    tableColumns.put(DATABASE_NAME, otherTable, TABLE_COLUMNS_UPDATED);
+    when(schemaManager.getTableColumns(any(SetMultimap.class))).thenReturn(tableColumns);
+
+    tableCache.addOrUpdate(
+        TABLE_ID,
+        TABLE_NAME,
+        DATABASE_NAME,
+        Arrays.asList(
+            ColumnDataType.TINY, ColumnDataType.STRING, ColumnDataType.FLOAT, ColumnDataType.LONG));
+    tableCache.addOrUpdate(
+        otherTableId,
+        otherTable,
+        DATABASE_NAME,
+        Arrays.asList(ColumnDataType.TINY, ColumnDataType.STRING, ColumnDataType.FLOAT));
+
+    // Both tables are loaded in a single batch, once the loader runs
+    assertTrue(tableCache.contains(TABLE_ID));
+    assertTrue(tableCache.contains(otherTableId));
+    assertEquals(1, tasks.size());
+
+    tasks.get(0).run();
+
+    assertEquals(TABLE, tableCache.get(TABLE_ID));
+    assertEquals(TABLE_UPDATED.getColumns(), tableCache.get(otherTableId).getColumns());
+    verify(schemaManager, times(1))
+        .getTableColumns(
+            ImmutableSetMultimap.of(DATABASE_NAME, TABLE_NAME, DATABASE_NAME, otherTable));
+    verify(schemaManager, never()).getTableColumns(anyString(), anyString());
+    assertEquals(2, tableCache.rotate());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testGetIfLoaded() throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    BatchSchemaLoader schemaLoader = new BatchSchemaLoader(schemaManager, tasks::add);
+    TableCache tableCache = new TableCache(schemaManager, OVERRIDING_DATABASE_NAME, schemaLoader);
+
+    com.google.common.collect.Table<String, String, List<MysqlColumn>> tableColumns =
+        HashBasedTable.create();
+    tableColumns.put(DATABASE_NAME, TABLE_NAME, TABLE_COLUMNS);
+    when(schemaManager.getTableColumns(any(SetMultimap.class))).thenReturn(tableColumns);
+
+    tableCache.addOrUpdate(
+        TABLE_ID,
+        TABLE_NAME,
+        DATABASE_NAME,
+        Arrays.asList(
+            ColumnDataType.TINY, ColumnDataType.STRING, ColumnDataType.FLOAT, ColumnDataType.LONG));
+
+    // The lookup does not block while the schema is loading
+    assertNull(tableCache.getIfLoaded(TABLE_ID));
+    assertTrue(tableCache.contains(TABLE_ID));
+
+    tasks.get(0).run();
+
+    assertEquals(TABLE, tableCache.getIfLoaded(TABLE_ID));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testBatchSchemaLoadFallback() throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    BatchSchemaLoader schemaLoader = new BatchSchemaLoader(schemaManager, tasks::add);
+    TableCache tableCache = new TableCache(schemaManager, OVERRIDING_DATABASE_NAME, schemaLoader);
+    List<ColumnDataType> columnTypes =
+        Arrays.asList(
+            ColumnDataType.TINY, ColumnDataType.STRING, ColumnDataType.FLOAT, ColumnDataType.LONG);
+
+    when(schemaManager.getTableColumns(any(SetMultimap.class)))
+        .thenThrow(new RuntimeException("batch failure"));
+    when(schemaManager.getTableColumns(DATABASE_NAME, TABLE_NAME)).thenReturn(TABLE_COLUMNS);
+
+    tableCache.addOrUpdate(TABLE_ID, TABLE_NAME, DATABASE_NAME, columnTypes);
+    tasks.forEach(Runnable::run);
+
+    assertEquals(TABLE, tableCache.get(TABLE_ID));
+    verify(schemaManager, times(1)).getTableColumns(DATABASE_NAME, TABLE_NAME);
+  }
 }
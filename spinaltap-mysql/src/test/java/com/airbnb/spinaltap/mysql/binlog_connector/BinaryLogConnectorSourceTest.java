@@ -0,0 +1,257 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.binlog_connector;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.airbnb.spinaltap.common.config.DestinationConfiguration;
+import com.airbnb.spinaltap.common.source.MysqlSourceState;
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.MysqlClient;
+import com.airbnb.spinaltap.mysql.MysqlSourceMetrics;
+import com.airbnb.spinaltap.mysql.StateHistory;
+import com.airbnb.spinaltap.mysql.StateRepository;
+import com.airbnb.spinaltap.mysql.TableCache;
+import com.airbnb.spinaltap.mysql.config.MysqlConfiguration;
+import com.airbnb.spinaltap.mysql.schema.MysqlSchemaManager;
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.XidEventData;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.stubbing.Answer;
+
+public class BinaryLogConnectorSourceTest {
+  private static final String BINLOG_FILE = "mysql-bin-changelog.000001";
+  private static final long SAVED_POSITION = 100L;
+  private static final long TIMEOUT_MS = 10000L;
+
+  private final BinaryLogClient binlogClient = mock(BinaryLogClient.class);
+  private final MysqlClient mysqlClient = mock(MysqlClient.class);
+  private final TableCache tableCache = mock(TableCache.class);
+  private final MysqlSchemaManager schemaManager = mock(MysqlSchemaManager.class);
+  private final MysqlSourceMetrics metrics = mock(MysqlSourceMetrics.class);
+
+  @SuppressWarnings("unchecked")
+  private final StateRepository<MysqlSourceState> stateRepository = mock(StateRepository.class);
+
+  @SuppressWarnings("unchecked")
+  private final StateHistory<MysqlSourceState> stateHistory = mock(StateHistory.class);
+
+  private BinaryLogConnectorSource source;
+  private BinaryLogClient.EventListener eventListener;
+  private BinaryLogClient.LifecycleListener lifecycleListener;
+
+  @Before
+  public void setUp() {
+    MysqlConfiguration config =
+        new MysqlConfiguration(
+            "test",
+            ImmutableList.of("db:users"),
+            "localhost",
+            null,
+            3306,
+            null,
+            new DestinationConfiguration());
+    config.setFastReconnectEnabled(true);
+
+    source =
+        new BinaryLogConnectorSource(
+            "test",
+            config,
+            null,
+            binlogClient,
+            mysqlClient,
+            tableCache,
+            stateRepository,
+            stateHistory,
+            schemaManager,
+            metrics,
+            new AtomicLong(0L));
+
+    ArgumentCaptor<BinaryLogClient.EventListener> eventListenerCaptor =
+        ArgumentCaptor.forClass(BinaryLogClient.EventListener.class);
+    ArgumentCaptor<BinaryLogClient.LifecycleListener> lifecycleListenerCaptor =
+        ArgumentCaptor.forClass(BinaryLogClient.LifecycleListener.class);
+    verify(binlogClient).registerEventListener(eventListenerCaptor.capture());
+    verify(binlogClient).registerLifecycleListener(lifecycleListenerCaptor.capture());
+    eventListener = eventListenerCaptor.getValue();
+    lifecycleListener = lifecycleListenerCaptor.getValue();
+
+    when(binlogClient.getBinlogFilename()).thenReturn(BINLOG_FILE);
+    when(stateRepository.read())
+        .thenReturn(
+            new MysqlSourceState(
+                0L, 0L, 0L, new BinlogFilePos(BINLOG_FILE, SAVED_POSITION, SAVED_POSITION)));
+  }
+
+  @Test
+  public void testReconnectFromLastTransaction() throws Exception {
+    doAnswer(disconnectAfter(createXidEvent(200L, 250L)))
+        .doAnswer(stopAfter(createXidEvent(250L, 300L)))
+        .when(binlogClient)
+        .connect();
+
+    source.open();
+    source.close();
+
+    verify(binlogClient, times(2)).connect();
+    verify(binlogClient).setBinlogPosition(SAVED_POSITION);
+    verify(binlogClient).setBinlogPosition(250L);
+    verify(metrics).fastReconnect();
+
+    // The source is not re-initialized from its checkpoint
+    verify(stateRepository).read();
+    verify(schemaManager).initialize(any(BinlogFilePos.class));
+    verify(tableCache).clear();
+  }
+
+  @Test
+  public void testRecordReconnectTime() throws Exception {
+    doAnswer(disconnectAfter(createXidEvent(200L, 250L)))
+        .doAnswer(stopAfter(createXidEvent(250L, 300L), createXidEvent(300L, 350L)))
+        .when(binlogClient)
+        .connect();
+
+    source.open();
+    source.close();
+
+    // Only the first event after reconnecting is timed
+    verify(metrics).reconnectTime(anyLong());
+  }
+
+  @Test
+  public void testNoReconnectOnInvalidPosition() throws Exception {
+    doAnswer(
+            failAfter(
+                listener ->
+                    listener.onCommunicationFailure(
+                        binlogClient,
+                        new IOException(
+                            BinaryLogConnectorSource.INVALID_BINLOG_POSITION_ERROR_CODE
+                                + " - Could not find first log file name in binary log index"))))
+        .when(binlogClient)
+        .connect();
+
+    source.open();
+    source.close();
+
+    verify(binlogClient).connect();
+    verify(metrics, never()).fastReconnect();
+  }
+
+  @Test
+  public void testNoReconnectOnDeserializationFailure() throws Exception {
+    doAnswer(
+            failAfter(
+                listener ->
+                    listener.onEventDeserializationFailure(
+                        binlogClient, new IOException("Failed to deserialize data of event"))))
+        .when(binlogClient)
+        .connect();
+
+    source.open();
+    source.close();
+
+    verify(binlogClient).connect();
+    verify(metrics, never()).fastReconnect();
+  }
+
+  @Test
+  public void testRetryFailedReconnect() throws Exception {
+    doAnswer(disconnectAfter())
+        .doThrow(new IOException("Connection refused"))
+        .doAnswer(stopAfter(createXidEvent(200L, 250L)))
+        .when(binlogClient)
+        .connect();
+
+    source.open();
+    verify(metrics, timeout(TIMEOUT_MS)).reconnectTime(anyLong());
+    source.close();
+
+    verify(binlogClient, times(3)).connect();
+    verify(metrics, times(2)).fastReconnect();
+    verify(metrics, never()).startFailure(any(Throwable.class));
+  }
+
+  @Test
+  public void testStopAfterMaxReconnectAttempts() throws Exception {
+    doAnswer(disconnectAfter())
+        .doThrow(new IOException("Connection refused"))
+        .when(binlogClient)
+        .connect();
+
+    source.open();
+    verify(metrics, timeout(TIMEOUT_MS)).startFailure(any(IOException.class));
+    source.close();
+
+    verify(binlogClient, times(4)).connect();
+    verify(metrics, times(3)).fastReconnect();
+    verify(metrics, never()).reconnectTime(anyLong());
+  }
+
+  /** Streams the events and then drops the connection. */
+  private Answer<Void> disconnectAfter(final Event... events) {
+    return invocation -> {
+      for (Event event : events) {
+        eventListener.onEvent(event);
+      }
+      lifecycleListener.onDisconnect(binlogClient);
+      return null;
+    };
+  }
+
+  /** Streams the events and then stops the source, as if closed while streaming. */
+  private Answer<Void> stopAfter(final Event... events) {
+    return invocation -> {
+      for (Event event : events) {
+        eventListener.onEvent(event);
+      }
+      source.disconnect();
+      lifecycleListener.onDisconnect(binlogClient);
+      return null;
+    };
+  }
+
+  /** Reports a failure to the lifecycle listener and then drops the connection. */
+  private Answer<Void> failAfter(final Consumer<BinaryLogClient.LifecycleListener> failure) {
+    return invocation -> {
+      try {
+        failure.accept(lifecycleListener);
+      } catch (RuntimeException ex) {
+        // The client reports listener failures itself
+      }
+      lifecycleListener.onDisconnect(binlogClient);
+      return null;
+    };
+  }
+
+  private static Event createXidEvent(final long position, final long nextPosition) {
+    EventHeaderV4 header = new EventHeaderV4();
+    header.setEventType(EventType.XID);
+    header.setEventLength(nextPosition - position);
+    header.setNextPosition(nextPosition);
+    header.setTimestamp(System.currentTimeMillis());
+
+    XidEventData data = new XidEventData();
+    data.setXid(position);
+    return new Event(header, data);
+  }
+}
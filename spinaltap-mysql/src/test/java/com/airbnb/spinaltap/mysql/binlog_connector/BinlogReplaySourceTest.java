@@ -0,0 +1,133 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.binlog_connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.airbnb.spinaltap.Mutation;
+import com.airbnb.spinaltap.common.source.MysqlSourceState;
+import com.airbnb.spinaltap.common.source.Source;
+import com.airbnb.spinaltap.mysql.MysqlSourceMetrics;
+import com.airbnb.spinaltap.mysql.StateHistory;
+import com.airbnb.spinaltap.mysql.StateRepository;
+import com.airbnb.spinaltap.mysql.mutation.MysqlMutation;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class BinlogReplaySourceTest {
+  private static final String SOURCE_NAME = "test";
+  private static final int TRANSACTION_COUNT = 10;
+  private static final int ROWS_PER_EVENT = 5;
+
+  private static final Table USERS = SyntheticBinlogGenerator.createTable(1L, "users", 5);
+  private static final Table ORDERS = SyntheticBinlogGenerator.createTable(2L, "orders", 8);
+
+  private final MysqlSourceMetrics metrics = mock(MysqlSourceMetrics.class);
+
+  @SuppressWarnings("unchecked")
+  private final StateRepository<MysqlSourceState> stateRepository = mock(StateRepository.class);
+
+  @SuppressWarnings("unchecked")
+  private final StateHistory<MysqlSourceState> stateHistory = mock(StateHistory.class);
+
+  @Test
+  public void testReplayGeneratedEvents() throws Exception {
+    List<MysqlMutation> mutations = replay(ImmutableList.of(USERS, ORDERS), 1);
+
+    // Only transactions on the subscribed table are mapped to mutations
+    assertEquals(TRANSACTION_COUNT / 2 * ROWS_PER_EVENT, mutations.size());
+    for (MysqlMutation mutation : mutations) {
+      assertEquals("users", mutation.getMetadata().getTable().getName());
+      assertEquals(5, mutation.getRow().getColumns().size());
+    }
+  }
+
+  @Test
+  public void testReplayMultiplePasses() throws Exception {
+    List<MysqlMutation> mutations = replay(ImmutableList.of(USERS), 3);
+
+    assertEquals(3 * TRANSACTION_COUNT * ROWS_PER_EVENT, mutations.size());
+    assertEquals(
+        Mutation.Type.INSERT, mutations.get(TRANSACTION_COUNT * ROWS_PER_EVENT).getType());
+    assertTrue(
+        mutations.get(0).getMetadata().getFilePos().getFileNumber()
+            < mutations.get(mutations.size() - 1).getMetadata().getFilePos().getFileNumber());
+  }
+
+  @Test
+  public void testDeriveSchemaFromTableMap() throws Exception {
+    BinlogReplaySource source =
+        BinlogReplaySource.create(
+            SOURCE_NAME,
+            new SyntheticBinlogGenerator(0L)
+                .createEventReaderFactory(ImmutableList.of(USERS), 1, 1),
+            ImmutableList.of(),
+            ImmutableSet.of(USERS.getCanonicalName()),
+            0,
+            1,
+            stateRepository,
+            stateHistory,
+            metrics);
+
+    List<MysqlMutation> mutations = collect(source, 1);
+
+    assertEquals(1, mutations.size());
+    Table table = mutations.get(0).getMetadata().getTable();
+    assertEquals(5, table.getColumns().size());
+    assertTrue(table.getColumns().get("column_0").isPrimaryKey());
+  }
+
+  private List<MysqlMutation> replay(final List<Table> tables, final int passes)
+      throws Exception {
+    SyntheticBinlogGenerator generator = new SyntheticBinlogGenerator(0L);
+    BinlogReplaySource source =
+        BinlogReplaySource.create(
+            SOURCE_NAME,
+            generator.createEventReaderFactory(tables, TRANSACTION_COUNT, ROWS_PER_EVENT),
+            tables,
+            ImmutableSet.of(USERS.getCanonicalName()),
+            0,
+            passes,
+            stateRepository,
+            stateHistory,
+            metrics);
+
+    int transactionsOnUsers = (TRANSACTION_COUNT + tables.size() - 1) / tables.size();
+    return collect(source, passes * transactionsOnUsers * ROWS_PER_EVENT);
+  }
+
+  private List<MysqlMutation> collect(final BinlogReplaySource source, final int expectedCount)
+      throws Exception {
+    List<MysqlMutation> mutations = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(expectedCount);
+
+    source.addListener(
+        new Source.Listener() {
+          @Override
+          public void onMutation(List<? extends Mutation<?>> batch) {
+            for (Mutation<?> mutation : batch) {
+              mutations.add((MysqlMutation) mutation);
+              latch.countDown();
+            }
+          }
+        });
+
+    source.open();
+    try {
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    } finally {
+      source.close();
+    }
+    return mutations;
+  }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.binlog_connector;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.airbnb.spinaltap.common.config.DestinationConfiguration;
+import com.airbnb.spinaltap.common.source.MysqlSourceState;
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.MysqlClient;
+import com.airbnb.spinaltap.mysql.MysqlSourceMetrics;
+import com.airbnb.spinaltap.mysql.StateHistory;
+import com.airbnb.spinaltap.mysql.StateRepository;
+import com.airbnb.spinaltap.mysql.TableCache;
+import com.airbnb.spinaltap.mysql.config.MysqlConfiguration;
+import com.airbnb.spinaltap.mysql.schema.MysqlSchemaManager;
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.google.common.collect.ImmutableList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SharedBinlogStreamTest {
+  private static final String BINLOG_FILE = "mysql-bin-changelog.000001";
+
+  private final BinaryLogClient binlogClient = mock(BinaryLogClient.class);
+  private final MysqlClient mysqlClient = mock(MysqlClient.class);
+  private final MysqlSourceMetrics metrics = mock(MysqlSourceMetrics.class);
+
+  private SharedBinlogStream stream;
+
+  @Before
+  public void setUp() {
+    stream =
+        new SharedBinlogStream(
+            "localhost:3306",
+            SharedBinlogStream.ConnectionKey.create(createConfig("test"), "user", "pw", null),
+            binlogClient,
+            mysqlClient);
+    when(binlogClient.getBinlogFilename()).thenReturn(BINLOG_FILE);
+  }
+
+  @Test
+  public void testConnectOnFirstRegister() throws Exception {
+    SharedBinlogSource source = createSource("first", 100L);
+
+    stream.register(source);
+
+    verify(binlogClient).setBinlogFilename(BINLOG_FILE);
+    verify(binlogClient).setBinlogPosition(100L);
+    verify(binlogClient).connect(anyLong());
+  }
+
+  @Test
+  public void testJoinAtLaterPosition() throws Exception {
+    stream.register(createSource("first", 100L));
+
+    when(binlogClient.isConnected()).thenReturn(true);
+    when(binlogClient.getBinlogPosition()).thenReturn(200L);
+    stream.register(createSource("second", 300L));
+
+    verify(binlogClient, never()).disconnect();
+    verify(binlogClient).connect(anyLong());
+  }
+
+  @Test
+  public void testRestartAtEarlierPosition() throws Exception {
+    stream.register(createSource("first", 100L));
+
+    when(binlogClient.isConnected()).thenReturn(true);
+    when(binlogClient.getBinlogPosition()).thenReturn(200L);
+    stream.register(createSource("second", 50L));
+
+    verify(binlogClient).disconnect();
+    verify(binlogClient).setBinlogPosition(50L);
+    verify(binlogClient, times(2)).connect(anyLong());
+  }
+
+  @Test
+  public void testDisconnectOnLastUnregister() throws Exception {
+    SharedBinlogSource first = createSource("first", 100L);
+    SharedBinlogSource second = createSource("second", 100L);
+
+    stream.register(first);
+    when(binlogClient.isConnected()).thenReturn(true);
+    when(binlogClient.getBinlogPosition()).thenReturn(100L);
+    stream.register(second);
+
+    stream.unregister(first);
+    verify(binlogClient, never()).disconnect();
+
+    stream.unregister(second);
+    verify(binlogClient).disconnect();
+  }
+
+  @Test
+  public void testSourceConnection() throws Exception {
+    SharedBinlogSource source = createSource("first", 100L);
+    assertFalse(source.isConnected());
+
+    source.connect();
+    when(binlogClient.isConnected()).thenReturn(true);
+    assertTrue(source.isConnected());
+
+    source.disconnect();
+    assertFalse(source.isConnected());
+    verify(binlogClient).disconnect();
+  }
+
+  @Test
+  public void testShareStreamWithSameSettings() throws Exception {
+    MysqlConfiguration config = createConfig("shared");
+
+    SharedBinlogStream first = getOrCreate(config, "user", 1L);
+    assertSame(first, getOrCreate(createConfig("other"), "user", 1L));
+    assertNotSame(first, getOrCreate(config, "other_user", 1L));
+
+    // Sources of other host roles connect with other server ids
+    assertSame(first, getOrCreate(config, "user", 101L));
+
+    config.setSocketTimeoutInSeconds(5);
+    assertNotSame(first, getOrCreate(config, "user", 1L));
+  }
+
+  @Test
+  public void testConnectWithServerIdOfCreatingSource() throws Exception {
+    MysqlConfiguration config = createConfig("server_id");
+    config.setPort(3308);
+
+    BinaryLogClient client = mock(BinaryLogClient.class);
+    SharedBinlogStream shared =
+        SharedBinlogStream.getOrCreate(
+            config, "user", "pw", 1L, null, () -> client, () -> mock(MysqlClient.class));
+
+    assertSame(shared, getOrCreate(config, "user", 101L));
+    verify(client).setServerId(1L);
+  }
+
+  @Test
+  public void testReleaseStreamOnLastUnregister() throws Exception {
+    MysqlConfiguration config = createConfig("released");
+    config.setPort(3307);
+
+    SharedBinlogStream shared = getOrCreate(config, "user", 1L);
+    SharedBinlogSource source = createSource("released", shared, 100L);
+
+    shared.register(source);
+    shared.unregister(source);
+
+    SharedBinlogStream created = getOrCreate(config, "user", 1L);
+    assertNotSame(shared, created);
+
+    // The released stream is not shared again once replaced
+    shared.register(source);
+    assertSame(created, getOrCreate(config, "user", 1L));
+  }
+
+  private static SharedBinlogStream getOrCreate(
+      final MysqlConfiguration config, final String user, final long serverId) {
+    return SharedBinlogStream.getOrCreate(
+        config,
+        user,
+        "pw",
+        serverId,
+        null,
+        () -> mock(BinaryLogClient.class),
+        () -> mock(MysqlClient.class));
+  }
+
+  private static MysqlConfiguration createConfig(final String name) {
+    return new MysqlConfiguration(
+        name,
+        ImmutableList.of("db:users"),
+        "localhost",
+        null,
+        3306,
+        null,
+        new DestinationConfiguration());
+  }
+
+  private SharedBinlogSource createSource(final String name, final long position) {
+    return createSource(name, stream, position);
+  }
+
+  @SuppressWarnings("unchecked")
+  private SharedBinlogSource createSource(
+      final String name, final SharedBinlogStream stream, final long position) {
+    SharedBinlogSource source =
+        new SharedBinlogSource(
+            name,
+            createConfig(name),
+            stream,
+            mock(TableCache.class),
+            (StateRepository<MysqlSourceState>) mock(StateRepository.class),
+            (StateHistory<MysqlSourceState>) mock(StateHistory.class),
+            mock(MysqlSchemaManager.class),
+            metrics,
+            new AtomicLong(0L));
+    source.setPosition(new BinlogFilePos(BINLOG_FILE, position, position));
+    return source;
+  }
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.capture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.event.BinlogEvent;
+import com.airbnb.spinaltap.mysql.event.TableMapEvent;
+import com.airbnb.spinaltap.mysql.event.UpdateEvent;
+import com.airbnb.spinaltap.mysql.event.WriteEvent;
+import com.airbnb.spinaltap.mysql.event.XidEvent;
+import com.airbnb.spinaltap.mysql.mutation.schema.ColumnDataType;
+import com.airbnb.spinaltap.mysql.mutation.schema.ColumnMetadata;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinlogCaptureTest {
+  private static final String GTID_SET = "5ad9cb1c-0b6d-11e9-9e5d-0242ac110002:1-100";
+  private static final String SERVER_UUID = "5ad9cb1c-0b6d-11e9-9e5d-0242ac110002";
+
+  private static final Table TABLE =
+      new Table(
+          1L,
+          "users",
+          "test_db",
+          ImmutableList.of(
+              new ColumnMetadata("id", ColumnDataType.LONGLONG, true, 0, "bigint(20)"),
+              new ColumnMetadata("name", ColumnDataType.VARCHAR, false, 1, "varchar(255)"),
+              new ColumnMetadata("balance", ColumnDataType.NEWDECIMAL, false, 2, "decimal(10,2)"),
+              new ColumnMetadata("created_at", ColumnDataType.TIMESTAMP_V2, false, 3),
+              new ColumnMetadata("data", ColumnDataType.BLOB, false, 4)),
+          ImmutableList.of("id"));
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    BinlogFilePos filePos = new BinlogFilePos("mysql-bin-changelog.000012", 100, 200);
+    BinlogFilePos gtidFilePos =
+        new BinlogFilePos("mysql-bin-changelog.000012", 200, 300, GTID_SET, SERVER_UUID);
+    Serializable[] row = {
+      1L, "alice", new BigDecimal("12.50"), new Timestamp(1546300800123L), new byte[] {1, 2, 3}
+    };
+    Serializable[] updatedRow = {1L, null, new BigDecimal("0.00"), null, new byte[0]};
+
+    try (BinlogCaptureWriter writer = new BinlogCaptureWriter(directory, 1024 * 1024, 2)) {
+      writer.appendTable(TABLE);
+      writer.append(
+          new TableMapEvent(
+              1L,
+              10L,
+              1000L,
+              filePos,
+              "test_db",
+              "users",
+              new byte[] {8, 15, (byte) 246, 17, (byte) 252}));
+      writer.append(new WriteEvent(1L, 10L, 1000L, filePos, ImmutableList.of(row)));
+      writer.append(
+          new UpdateEvent(
+              1L,
+              10L,
+              1000L,
+              gtidFilePos,
+              ImmutableList.of(Maps.immutableEntry(row, updatedRow))));
+      writer.append(new XidEvent(10L, 1000L, gtidFilePos, 42L));
+    }
+
+    List<Table> tables = new ArrayList<>();
+    try (BinlogCaptureReader reader = new BinlogCaptureReader(directory, tables::add)) {
+      TableMapEvent tableMapEvent = (TableMapEvent) reader.readEvent();
+      assertEquals(1, tables.size());
+      assertEquals(TABLE.getCanonicalName(), tables.get(0).getCanonicalName());
+      assertEquals(TABLE.getColumns(), tables.get(0).getColumns());
+      assertEquals(TABLE.getPrimaryKey(), tables.get(0).getPrimaryKey());
+
+      assertEquals(1L, tableMapEvent.getTableId());
+      assertEquals(10L, tableMapEvent.getServerId());
+      assertEquals(1000L, tableMapEvent.getTimestamp());
+      assertEquals(filePos, tableMapEvent.getBinlogFilePos());
+      assertEquals("users", tableMapEvent.getTable());
+      assertEquals(ColumnDataType.NEWDECIMAL, tableMapEvent.getColumnTypes().get(2));
+      assertEquals(ColumnDataType.BLOB, tableMapEvent.getColumnTypes().get(4));
+
+      WriteEvent writeEvent = (WriteEvent) reader.readEvent();
+      assertRowEquals(row, writeEvent.getRows().get(0));
+
+      UpdateEvent updateEvent = (UpdateEvent) reader.readEvent();
+      assertEquals(gtidFilePos, updateEvent.getBinlogFilePos());
+      assertRowEquals(row, updateEvent.getRows().get(0).getKey());
+      assertRowEquals(updatedRow, updateEvent.getRows().get(0).getValue());
+
+      assertEquals(42L, ((XidEvent) reader.readEvent()).getXid());
+      assertNull(reader.readEvent());
+    }
+  }
+
+  @Test
+  public void testRotation() throws Exception {
+    Path directory = folder.getRoot().toPath();
+
+    try (BinlogCaptureWriter writer = new BinlogCaptureWriter(directory, 1024, 2)) {
+      writer.appendTable(TABLE);
+      for (int i = 0; i < 100; i++) {
+        writer.append(createWriteEvent(i));
+        writer.flush();
+      }
+    }
+
+    assertEquals(2, BinlogCaptureReader.listSegments(directory).size());
+
+    // The remaining segments can be read on their own, with the schemas they start with
+    List<Table> tables = new ArrayList<>();
+    List<BinlogEvent> events = readAll(new BinlogCaptureReader(directory, tables::add));
+
+    assertTrue(!events.isEmpty() && events.size() < 100);
+    assertEquals(TABLE.getCanonicalName(), tables.get(0).getCanonicalName());
+    assertEquals(createWriteEvent(99).getOffset(), events.get(events.size() - 1).getOffset());
+  }
+
+  @Test
+  public void testSeek() throws Exception {
+    Path directory = folder.getRoot().toPath();
+
+    try (BinlogCaptureWriter writer = new BinlogCaptureWriter(directory, 16 * 1024, 10)) {
+      writer.appendTable(TABLE);
+      for (int i = 0; i < 100; i++) {
+        writer.append(createWriteEvent(i));
+        writer.flush();
+      }
+    }
+
+    List<Table> tables = new ArrayList<>();
+    BinlogEvent target = createWriteEvent(60);
+    BinlogCaptureReader reader = new BinlogCaptureReader(directory, tables::add);
+    reader.seek(target.getOffset());
+    List<BinlogEvent> events = readAll(reader);
+
+    assertEquals(40, events.size());
+    assertEquals(target.getOffset(), events.get(0).getOffset());
+    assertEquals(TABLE.getCanonicalName(), tables.get(0).getCanonicalName());
+  }
+
+  @Test
+  public void testReadWhileWriting() throws Exception {
+    Path directory = folder.getRoot().toPath();
+
+    try (BinlogCaptureWriter writer = new BinlogCaptureWriter(directory, 1024 * 1024, 2);
+        BinlogCaptureReader reader = new BinlogCaptureReader(directory, table -> {})) {
+      assertNull(reader.readEvent());
+
+      writer.append(createWriteEvent(0));
+      assertNull(reader.readEvent());
+
+      writer.flush();
+      assertEquals(createWriteEvent(0).getOffset(), reader.readEvent().getOffset());
+      assertNull(reader.readEvent());
+
+      writer.append(createWriteEvent(1));
+      writer.flush();
+      assertEquals(createWriteEvent(1).getOffset(), reader.readEvent().getOffset());
+    }
+  }
+
+  @Test
+  public void testReadWhileRotating() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    int eventCount = 500;
+
+    try (BinlogCaptureWriter writer = new BinlogCaptureWriter(directory, 1024, eventCount);
+        BinlogCaptureReader reader = new BinlogCaptureReader(directory, table -> {})) {
+      // Segments rotate every few flushed events, while the reader tails the capture
+      CompletableFuture<List<BinlogEvent>> events =
+          CompletableFuture.supplyAsync(
+              () -> {
+                List<BinlogEvent> tailedEvents = new ArrayList<>();
+                try {
+                  while (tailedEvents.size() < eventCount) {
+                    BinlogEvent event = reader.readEvent();
+                    if (event != null) {
+                      tailedEvents.add(event);
+                    }
+                  }
+                } catch (Exception ex) {
+                  throw new CompletionException(ex);
+                }
+                return tailedEvents;
+              });
+
+      writer.appendTable(TABLE);
+      for (int i = 0; i < eventCount; i++) {
+        writer.append(createWriteEvent(i));
+        writer.flush();
+      }
+
+      List<BinlogEvent> tailedEvents = events.get(30, TimeUnit.SECONDS);
+      for (int i = 0; i < eventCount; i++) {
+        assertEquals(createWriteEvent(i).getOffset(), tailedEvents.get(i).getOffset());
+      }
+    }
+  }
+
+  private static WriteEvent createWriteEvent(final int i) {
+    final Serializable[] row = {
+      (long) i, Strings.repeat("name", i), new BigDecimal(i), null, new byte[] {(byte) i}
+    };
+    return new WriteEvent(
+        1L,
+        10L,
+        1000L + i,
+        new BinlogFilePos("mysql-bin-changelog.000001", (i + 1) * 10, (i + 2) * 10),
+        ImmutableList.of(row));
+  }
+
+  private static List<BinlogEvent> readAll(final BinlogCaptureReader reader) throws Exception {
+    final List<BinlogEvent> events = new ArrayList<>();
+    try (BinlogCaptureReader closeableReader = reader) {
+      BinlogEvent event;
+      while ((event = closeableReader.readEvent()) != null) {
+        events.add(event);
+      }
+    }
+    return events;
+  }
+
+  private static void assertRowEquals(final Serializable[] expected, final Serializable[] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      if (expected[i] instanceof byte[]) {
+        assertArrayEquals((byte[]) expected[i], (byte[]) actual[i]);
+      } else {
+        assertEquals(expected[i], actual[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.event.BinlogEvent;
+import com.airbnb.spinaltap.mysql.event.WriteEvent;
+import com.airbnb.spinaltap.mysql.event.XidEvent;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinlogSpoolTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testAppendAndPoll() throws Exception {
+    try (BinlogSpool spool = new BinlogSpool(folder.getRoot().toPath(), 1024 * 1024, 2)) {
+      assertNull(spool.poll(10, TimeUnit.MILLISECONDS));
+
+      // Events are drained once their transaction is appended
+      spool.append(createWriteEvent(0));
+      assertNull(spool.poll(10, TimeUnit.MILLISECONDS));
+
+      spool.append(createXidEvent(1));
+      assertTrue(spool.poll(10, TimeUnit.MILLISECONDS) instanceof WriteEvent);
+      assertTrue(spool.poll(10, TimeUnit.MILLISECONDS) instanceof XidEvent);
+      assertNull(spool.poll(10, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  @Test
+  public void testBlockWhenFull() throws Exception {
+    Path directory = folder.getRoot().toPath();
+
+    try (BinlogSpool spool = new BinlogSpool(directory, 512, 2)) {
+      int offset = 0;
+      while (spool.getLagSegments() < 2) {
+        assertFalse(spool.append(createWriteEvent(offset++)));
+        assertFalse(spool.append(createXidEvent(offset++)));
+      }
+
+      CompletableFuture<Boolean> blockedAppend =
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return spool.append(createXidEvent(10_000));
+                } catch (Exception ex) {
+                  throw new RuntimeException(ex);
+                }
+              });
+
+      Thread.sleep(200);
+      assertFalse(blockedAppend.isDone());
+
+      // Draining unblocks appending, and deletes the drained segments
+      for (int i = 0; i < offset; i++) {
+        BinlogEvent event = spool.poll(1, TimeUnit.SECONDS);
+        assertEquals(createFilePos(i), event.getBinlogFilePos());
+      }
+
+      assertTrue(blockedAppend.get(1, TimeUnit.SECONDS));
+      assertEquals(createFilePos(10_000), spool.poll(1, TimeUnit.SECONDS).getBinlogFilePos());
+      assertTrue(BinlogCaptureReader.listSegments(directory).size() <= 2);
+    }
+  }
+
+  @Test
+  public void testClearOnOpen() throws Exception {
+    Path directory = folder.getRoot().toPath();
+
+    try (BinlogCaptureWriter writer = new BinlogCaptureWriter(directory, 1024 * 1024, 2)) {
+      writer.append(createWriteEvent(0));
+    }
+
+    try (BinlogSpool spool = new BinlogSpool(directory, 1024 * 1024, 2)) {
+      assertNull(spool.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    assertTrue(BinlogCaptureReader.listSegments(directory).isEmpty());
+  }
+
+  private static WriteEvent createWriteEvent(final int offset) {
+    final Serializable[] row = {(long) offset, Strings.repeat("spool", 20)};
+    return new WriteEvent(1L, 10L, 1000L, createFilePos(offset), ImmutableList.of(row));
+  }
+
+  private static XidEvent createXidEvent(final int offset) {
+    return new XidEvent(10L, 1000L, createFilePos(offset), offset);
+  }
+
+  private static BinlogFilePos createFilePos(final int offset) {
+    return new BinlogFilePos("mysql-bin-changelog.000001", offset + 4, offset + 5);
+  }
+}
@@ -7,6 +7,7 @@ package com.airbnb.spinaltap.mysql.event.mapper;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -406,6 +407,19 @@ public class MysqlMutationMapperTest {
 
     List<? extends Mutation> mutations = eventMapper.map(event);
 
+    assertTrue(mutations.isEmpty());
+    verify(tableCache, times(1)).rotate();
+    verify(tableCache, never()).clear();
+  }
+
+  @Test
+  public void testDDLQuery() throws Exception {
+    QueryEvent queryEvent =
+        new QueryEvent(
+            SERVER_ID, 15l, BINLOG_FILE_POS, DATABASE_NAME, "ALTER TABLE users ADD COLUMN x INT");
+
+    List<? extends Mutation> mutations = eventMapper.map(queryEvent);
+
     assertTrue(mutations.isEmpty());
     verify(tableCache, times(1)).clear();
   }
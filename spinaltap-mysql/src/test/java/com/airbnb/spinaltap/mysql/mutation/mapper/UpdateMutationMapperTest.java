@@ -0,0 +1,96 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.mutation.mapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.airbnb.jitney.event.spinaltap.v1.Mutation;
+import com.airbnb.jitney.event.spinaltap.v1.UpdateImage;
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.DataSource;
+import com.airbnb.spinaltap.mysql.mutation.MysqlMutationMetadata;
+import com.airbnb.spinaltap.mysql.mutation.MysqlUpdateMutation;
+import com.airbnb.spinaltap.mysql.mutation.schema.Column;
+import com.airbnb.spinaltap.mysql.mutation.schema.ColumnDataType;
+import com.airbnb.spinaltap.mysql.mutation.schema.ColumnMetadata;
+import com.airbnb.spinaltap.mysql.mutation.schema.Row;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+public class UpdateMutationMapperTest {
+  private static final ColumnMetadata ID_COLUMN =
+      new ColumnMetadata("id", ColumnDataType.LONGLONG, true, 0);
+  private static final ColumnMetadata NAME_COLUMN =
+      new ColumnMetadata("name", ColumnDataType.VARCHAR, false, 1);
+  private static final ColumnMetadata COUNT_COLUMN =
+      new ColumnMetadata("count", ColumnDataType.LONG, false, 2);
+
+  private static final Table TABLE =
+      new Table(
+          0L,
+          "users",
+          "test",
+          null,
+          ImmutableList.of(ID_COLUMN, NAME_COLUMN, COUNT_COLUMN),
+          ImmutableList.of("id"));
+
+  private static final MysqlUpdateMutation MUTATION =
+      new MysqlUpdateMutation(
+          new MysqlMutationMetadata(
+              new DataSource("localhost", 3306, "service"),
+              new BinlogFilePos(),
+              TABLE,
+              0L,
+              0L,
+              0L,
+              null,
+              null,
+              0L,
+              0),
+          createRow(1L, "foo", 1),
+          createRow(1L, "foo", 2));
+
+  @Test
+  public void testFullImage() {
+    Mutation mutation = new UpdateMutationMapper("source").map(MUTATION);
+
+    assertEquals(ImmutableSet.of("id", "name", "count"), mutation.getEntity().keySet());
+    assertEquals(ImmutableSet.of("id", "name", "count"), mutation.getPreviousEntity().keySet());
+    assertFalse(mutation.getBinlogHeader().isSetUpdateImage());
+  }
+
+  @Test
+  public void testChangedColumnsImage() {
+    Mutation mutation =
+        new UpdateMutationMapper("source", UpdateImage.CHANGED_COLUMNS).map(MUTATION);
+
+    assertEquals(ImmutableSet.of("id", "count"), mutation.getEntity().keySet());
+    assertEquals(ImmutableSet.of("id", "name", "count"), mutation.getPreviousEntity().keySet());
+    assertEquals(UpdateImage.CHANGED_COLUMNS, mutation.getBinlogHeader().getUpdateImage());
+  }
+
+  @Test
+  public void testChangedColumnsOnlyImage() {
+    Mutation mutation =
+        new UpdateMutationMapper("source", UpdateImage.CHANGED_COLUMNS_ONLY).map(MUTATION);
+
+    assertEquals(ImmutableSet.of("id", "count"), mutation.getEntity().keySet());
+    assertEquals(ImmutableSet.of("id", "count"), mutation.getPreviousEntity().keySet());
+    assertEquals(UpdateImage.CHANGED_COLUMNS_ONLY, mutation.getBinlogHeader().getUpdateImage());
+  }
+
+  private static Row createRow(long id, String name, int count) {
+    return new Row(
+        TABLE,
+        ImmutableMap.of(
+            "id", new Column(ID_COLUMN, id),
+            "name", new Column(NAME_COLUMN, name),
+            "count", new Column(COUNT_COLUMN, count)));
+  }
+}
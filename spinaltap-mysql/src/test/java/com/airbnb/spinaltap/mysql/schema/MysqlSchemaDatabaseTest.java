@@ -8,6 +8,8 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import com.airbnb.spinaltap.mysql.MysqlSourceMetrics;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
 import org.jdbi.v3.core.Jdbi;
 import org.junit.Test;
 
@@ -222,4 +224,66 @@ public class MysqlSchemaDatabaseTest {
     String expectedDDL = "DROP INDEX `index222` ON `source/db_name`.`table22`;";
     assertEquals(expectedDDL, schemaDatabase.addSourcePrefix(ddl));
   }
+
+  @Test
+  public void testParseDDLTargets() throws Exception {
+    MysqlSchemaDatabase.DDLTargets targets =
+        schemaDatabase.parseDDL("ALTER TABLE `db1`.`table1` ADD name text", "db2").getTargets();
+    assertEquals(ImmutableSet.of(), targets.getDatabases());
+    assertEquals(ImmutableSetMultimap.of("db1", "table1"), targets.getTables());
+
+    targets = schemaDatabase.parseDDL("RENAME TABLE table1 TO db3.table2", "db2").getTargets();
+    assertEquals(ImmutableSetMultimap.of("db2", "table1", "db3", "table2"), targets.getTables());
+
+    targets = schemaDatabase.parseDDL("CREATE INDEX idx ON table1 (name)", "db1").getTargets();
+    assertEquals(ImmutableSetMultimap.of("db1", "table1"), targets.getTables());
+
+    targets = schemaDatabase.parseDDL("DROP DATABASE `db4`", null).getTargets();
+    assertEquals(ImmutableSet.of("db4"), targets.getDatabases());
+    assertTrue(targets.getTables().isEmpty());
+
+    // Unqualified table without a selected database cannot be resolved
+    assertNull(schemaDatabase.parseDDL("DROP TABLE table1", null).getTargets());
+  }
+
+  @Test
+  public void testParseDDLRetryWithLL() throws Exception {
+    // The SLL parse bails on the syntax error, and only the LL retry reports it and recovers
+    MysqlSchemaDatabase.ParsedDDL parsedDDL =
+        schemaDatabase.parseDDL("ALTER TABLE `db1`.`table1` ADD name text )", null);
+    assertEquals("ALTER TABLE `source/db1`.`table1` ADD name text )", parsedDDL.getSql());
+    assertNull(parsedDDL.getTargets());
+  }
+
+  @Test
+  public void testParseDDLCachedByDatabase() throws Exception {
+    String ddl = "ALTER TABLE table1 ADD name text";
+    MysqlSchemaDatabase.ParsedDDL first = schemaDatabase.parseDDL(ddl, "db1");
+    MysqlSchemaDatabase.ParsedDDL second = schemaDatabase.parseDDL(ddl, "db2");
+
+    assertEquals(ImmutableSetMultimap.of("db1", "table1"), first.getTargets().getTables());
+    assertEquals(ImmutableSetMultimap.of("db2", "table1"), second.getTargets().getTables());
+    assertSame(first, schemaDatabase.parseDDL(ddl, "db1"));
+    assertSame(second, schemaDatabase.parseDDL(ddl, "db2"));
+  }
+
+  @Test
+  public void testParseDDLReusesParser() throws Exception {
+    assertNull(
+        schemaDatabase
+            .parseDDL("CREATE TABLE `db1`.`table1` (`id` int(11) NOT NULL) )", null)
+            .getTargets());
+
+    // The errors and tokens of the previous statement parsed on the thread are not carried over
+    MysqlSchemaDatabase.ParsedDDL parsedDDL =
+        schemaDatabase.parseDDL("DROP TABLE `db2`.`table2`", null);
+    assertEquals("DROP TABLE `source/db2`.`table2`", parsedDDL.getSql());
+    assertEquals(ImmutableSetMultimap.of("db2", "table2"), parsedDDL.getTargets().getTables());
+
+    parsedDDL = schemaDatabase.parseDDL("RENAME TABLE db3.table3 TO db3.table4", null);
+    assertEquals("RENAME TABLE `source/db3`.`table3` TO `source/db3`.`table4`", parsedDDL.getSql());
+    assertEquals(
+        ImmutableSetMultimap.of("db3", "table3", "db3", "table4"),
+        parsedDDL.getTargets().getTables());
+  }
 }
@@ -12,6 +12,8 @@ import com.airbnb.spinaltap.mysql.MysqlClient;
 import com.airbnb.spinaltap.mysql.event.QueryEvent;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Table;
 import com.google.common.collect.Tables;
@@ -20,6 +22,7 @@ import java.util.Collections;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 public class MysqlSchemaManagerTest {
   private static final String GTID = "fec1aada-c5fc-11e9-9af8-0242ac110003:1002";
@@ -279,4 +282,120 @@ public class MysqlSchemaManagerTest {
                 Collections.emptyList(),
                 Collections.emptyMap()));
   }
+
+  @Test
+  public void testAlterTableWithTargets() {
+    String sql = "ALTER TABLE db1.table1 ADD account VARCHAR(255)";
+    QueryEvent event = new QueryEvent(1L, TIMESTAMP, BINLOG_FILE_POS, "db1", sql);
+    List<MysqlColumn> newTableColumns =
+        Arrays.asList(
+            new MysqlColumn("id", "int", "int", false),
+            new MysqlColumn("account", "varchar", "varchar(255)", false));
+    when(schemaDatabase.applyDDL(sql, "db1"))
+        .thenReturn(
+            new MysqlSchemaDatabase.DDLTargets(
+                ImmutableSet.of(), ImmutableSetMultimap.of("db1", "table1")));
+    when(schemaDatabase.getColumnsForTables("db1", ImmutableSet.of("table1")))
+        .thenReturn(ImmutableMap.of("table1", newTableColumns));
+
+    schemaManager.processDDL(event, GTID);
+    verify(schemaDatabase, never()).listDatabases();
+    verify(schemaDatabase, never()).getColumnsForAllTables(anyString());
+    verify(schemaStore, times(1)).put(any(MysqlTableSchema.class));
+    verify(schemaStore)
+        .put(
+            new MysqlTableSchema(
+                0,
+                "db1",
+                "table1",
+                BINLOG_FILE_POS,
+                GTID,
+                sql,
+                TIMESTAMP,
+                newTableColumns,
+                Collections.emptyMap()));
+  }
+
+  @Test
+  public void testRenameTableWithTargets() {
+    String sql = "RENAME TABLE db2.table3 TO db2.table4";
+    QueryEvent event = new QueryEvent(1L, TIMESTAMP, BINLOG_FILE_POS, "db2", sql);
+    when(schemaDatabase.applyDDL(sql, "db2"))
+        .thenReturn(
+            new MysqlSchemaDatabase.DDLTargets(
+                ImmutableSet.of(), ImmutableSetMultimap.of("db2", "table3", "db2", "table4")));
+    when(schemaDatabase.getColumnsForTables("db2", ImmutableSet.of("table3", "table4")))
+        .thenReturn(ImmutableMap.of("table4", TABLE3_COLUMNS));
+
+    schemaManager.processDDL(event, GTID);
+    verify(schemaDatabase, never()).getColumnsForAllTables(anyString());
+    verify(schemaStore)
+        .put(
+            new MysqlTableSchema(
+                0,
+                "db2",
+                "table3",
+                BINLOG_FILE_POS,
+                GTID,
+                sql,
+                TIMESTAMP,
+                Collections.emptyList(),
+                Collections.emptyMap()));
+    verify(schemaStore)
+        .put(
+            new MysqlTableSchema(
+                0,
+                "db2",
+                "table4",
+                BINLOG_FILE_POS,
+                GTID,
+                sql,
+                TIMESTAMP,
+                TABLE3_COLUMNS,
+                Collections.emptyMap()));
+  }
+
+  @Test
+  public void testInitializeCreatedStore() {
+    when(schemaStore.isCreated()).thenReturn(true);
+
+    schemaManager.initialize(BINLOG_FILE_POS);
+
+    // Stores created before the indexes were introduced are migrated
+    verify(schemaStore).addMissingIndexes();
+    verify(schemaStore).loadSchemaCacheUntil(BINLOG_FILE_POS);
+    verify(schemaStore, never()).bootstrap(anyList());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testBootstrap() {
+    when(schemaStore.isCreated()).thenReturn(false);
+    when(mysqlClient.getBinaryLogs()).thenReturn(ImmutableList.of("mysql-binlog.001233"));
+    when(mysqlClient.getServerUUID()).thenReturn("fec1aada-c5fc-11e9-9af8-0242ac110003");
+    when(mysqlClient.isGtidModeEnabled()).thenReturn(false);
+    when(schemaReader.getAllDatabases()).thenReturn(ImmutableList.of("mysql", "db1"));
+    when(schemaReader.getAllTablesIn("db1")).thenReturn(ImmutableList.of("table1", "table2"));
+    when(schemaReader.getColumnsForAllTables("db1"))
+        .thenReturn(ImmutableMap.of("table1", TABLE1_COLUMNS, "table2", TABLE2_COLUMNS));
+    when(schemaReader.getCreateTableDDL("db1", "table1")).thenReturn(TABLE1_SCHEMA.getSql());
+    when(schemaReader.getCreateTableDDL("db1", "table2")).thenReturn(TABLE2_SCHEMA.getSql());
+
+    schemaManager.initialize(BINLOG_FILE_POS);
+
+    verify(schemaDatabase).createDatabase("db1");
+    verify(schemaDatabase, never()).createDatabase("mysql");
+    verify(schemaDatabase).applyDDL(TABLE1_SCHEMA.getSql(), "db1");
+    verify(schemaDatabase).applyDDL(TABLE2_SCHEMA.getSql(), "db1");
+    verify(schemaReader, never()).getTableColumns(anyString(), anyString());
+
+    ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+    verify(schemaStore).bootstrap(captor.capture());
+    List<MysqlTableSchema> schemas = captor.getValue();
+    assertEquals(2, schemas.size());
+    assertEquals("table1", schemas.get(0).getTable());
+    assertEquals(TABLE1_COLUMNS, schemas.get(0).getColumns());
+    assertEquals("table2", schemas.get(1).getTable());
+    assertEquals(TABLE2_COLUMNS, schemas.get(1).getColumns());
+  }
 }
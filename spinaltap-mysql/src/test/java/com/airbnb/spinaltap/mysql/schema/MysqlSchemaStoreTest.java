@@ -10,13 +10,19 @@ import static org.mockito.Mockito.*;
 import com.airbnb.spinaltap.mysql.BinlogFilePos;
 import com.airbnb.spinaltap.mysql.MysqlSourceMetrics;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import org.jdbi.v3.core.Jdbi;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class MysqlSchemaStoreTest {
   private static final String SERVER_UUID_1 = "fec1aada-c5fc-11e9-9af8-0242ac110003";
@@ -117,9 +123,95 @@ public class MysqlSchemaStoreTest {
               mock(Jdbi.class),
               mock(MysqlSourceMetrics.class)));
 
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Before
   public void setUp() {
+    stubStoreQueries(schemaStore);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void stubStoreQueries(MysqlSchemaStore schemaStore) {
     doReturn(ALL_TABLE_SCHEMAS).when(schemaStore).getAllSchemas();
+    doReturn(FIFTH_SCHEMA.getId()).when(schemaStore).getLastRowId();
+    doAnswer(
+            invocation -> {
+              long beforeId = invocation.getArgumentAt(0, Long.class);
+              int limit = invocation.getArgumentAt(1, Integer.class);
+              return Lists.reverse(ALL_TABLE_SCHEMAS)
+                  .stream()
+                  .filter(schema -> schema.getId() < beforeId)
+                  .limit(limit)
+                  .map(
+                      schema ->
+                          new MysqlSchemaStore.RowPosition(
+                              schema.getId(), schema.getBinlogFilePos()))
+                  .collect(Collectors.toList());
+            })
+        .when(schemaStore)
+        .getRowPositionsBefore(anyLong(), anyInt());
+    doAnswer(
+            invocation -> {
+              long maxId = invocation.getArgumentAt(0, Long.class);
+              Consumer<MysqlTableSchema> consumer = invocation.getArgumentAt(1, Consumer.class);
+              ALL_TABLE_SCHEMAS
+                  .stream()
+                  .filter(schema -> schema.getId() <= maxId && schema.getTable() != null)
+                  .collect(
+                      Collectors.toMap(
+                          schema -> schema.getDatabase() + "." + schema.getTable(),
+                          schema -> schema,
+                          (first, second) -> second))
+                  .values()
+                  .forEach(consumer);
+              return null;
+            })
+        .when(schemaStore)
+        .forEachLatestSchemaUntil(anyLong(), any());
+    doAnswer(
+            invocation -> {
+              long maxId = invocation.getArgumentAt(0, Long.class);
+              return ALL_TABLE_SCHEMAS
+                  .stream()
+                  .map(MysqlTableSchema::getId)
+                  .filter(id -> id <= maxId)
+                  .collect(Collectors.toList());
+            })
+        .when(schemaStore)
+        .getRowIdsUntil(anyLong());
+    doAnswer(
+            invocation -> {
+              long fromId = invocation.getArgumentAt(0, Long.class);
+              long toId = invocation.getArgumentAt(1, Long.class);
+              Consumer<MysqlTableSchema> consumer = invocation.getArgumentAt(2, Consumer.class);
+              ALL_TABLE_SCHEMAS
+                  .stream()
+                  .filter(schema -> schema.getId() > fromId && schema.getId() <= toId)
+                  .forEach(consumer);
+              return null;
+            })
+        .when(schemaStore)
+        .forEachSchemaBetween(anyLong(), anyLong(), any());
+    stubRowIdentities(schemaStore, ALL_TABLE_SCHEMAS);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void stubRowIdentities(
+      MysqlSchemaStore schemaStore, List<MysqlTableSchema> schemas) {
+    doAnswer(
+            invocation -> {
+              Collection<Long> ids = invocation.getArgumentAt(0, Collection.class);
+              return schemas
+                  .stream()
+                  .filter(schema -> ids.contains(schema.getId()))
+                  .collect(
+                      Collectors.toMap(
+                          MysqlTableSchema::getId,
+                          schema ->
+                              MysqlSchemaCacheSnapshot.Entry.fromSchema(schema).toRowIdentity()));
+            })
+        .when(schemaStore)
+        .getRowIdentities(anyCollection());
   }
 
   @Test
@@ -212,4 +304,130 @@ public class MysqlSchemaStoreTest {
     assertEquals(
         new HashSet<>(Arrays.asList(1L, 3L, 4L, 5L)), schemaStore.getRowIdsToDelete(earliestPos));
   }
+
+  @Test
+  public void testLoadSchemaFromSnapshot() throws Exception {
+    MysqlSchemaCacheSnapshot snapshot =
+        new MysqlSchemaCacheSnapshot(temporaryFolder.getRoot().toPath().resolve("test.json"));
+    MysqlSchemaStore store =
+        spy(
+            new MysqlSchemaStore(
+                "test",
+                "schema_store",
+                "schema_archive",
+                mock(Jdbi.class),
+                mock(MysqlSourceMetrics.class),
+                snapshot));
+    stubStoreQueries(store);
+
+    BinlogFilePos pos = new BinlogFilePos("mysql-binlog.001399", 100, 120, null, SERVER_UUID_1);
+    store.loadSchemaCacheUntil(pos);
+    assertEquals(2L, snapshot.read().get().getLastRowId());
+    verify(store, never()).forEachSchemaBetween(anyLong(), anyLong(), any());
+
+    pos = new BinlogFilePos("mysql-binlog.001403", 400, 420, null, SERVER_UUID_1);
+    store.loadSchemaCacheUntil(pos);
+    verify(store).forEachSchemaBetween(eq(2L), eq(4L), any());
+    assertEquals(2, store.getSchemaCache().size());
+    assertEquals(THIRD_SCHEMA, store.get("db1", "table1"));
+    assertEquals(SECOND_SCHEMA, store.get("db1", "table2"));
+    assertEquals(4L, snapshot.read().get().getLastRowId());
+
+    // Rewinding before the snapshot falls back to loading from the store
+    pos = new BinlogFilePos("mysql-binlog.001399", 100, 120, null, SERVER_UUID_1);
+    store.loadSchemaCacheUntil(pos);
+    assertEquals(FIRST_SCHEMA, store.get("db1", "table1"));
+    assertEquals(SECOND_SCHEMA, store.get("db1", "table2"));
+  }
+
+  @Test
+  public void testLoadSchemaFromPreloadedCache() {
+    MysqlSourceMetrics metrics = mock(MysqlSourceMetrics.class);
+    MysqlSchemaStore store =
+        spy(
+            new MysqlSchemaStore(
+                "test", "schema_store", "schema_archive", mock(Jdbi.class), metrics));
+    stubStoreQueries(store);
+
+    MysqlSchemaStore.LoadedSchemaCache preloaded = store.loadLatestSchemaCache();
+    assertEquals(5L, preloaded.getLastRowId());
+    assertEquals(Collections.singletonList(SECOND_SCHEMA), preloaded.getSchemas());
+
+    store.setPreloadedCache(preloaded);
+    BinlogFilePos pos = new BinlogFilePos("mysql-binlog.001444", 1100, 1420, null, SERVER_UUID_1);
+    store.loadSchemaCacheUntil(pos);
+    verify(store, times(1)).forEachLatestSchemaUntil(anyLong(), any());
+    verify(metrics).schemaStoreLoadCacheTime(anyLong(), eq(true));
+    assertEquals(1, store.getSchemaCache().size());
+    assertEquals(SECOND_SCHEMA, store.get("db1", "table2"));
+  }
+
+  @Test
+  public void testLoadSchemaBeforePreloadedCache() {
+    MysqlSourceMetrics metrics = mock(MysqlSourceMetrics.class);
+    MysqlSchemaStore store =
+        spy(
+            new MysqlSchemaStore(
+                "test", "schema_store", "schema_archive", mock(Jdbi.class), metrics));
+    stubStoreQueries(store);
+
+    // The preloaded cache reflects rows after the position, so it is discarded
+    store.setPreloadedCache(store.loadLatestSchemaCache());
+    BinlogFilePos pos = new BinlogFilePos("mysql-binlog.001399", 100, 120, null, SERVER_UUID_1);
+    store.loadSchemaCacheUntil(pos);
+    verify(store).forEachLatestSchemaUntil(eq(2L), any());
+    verify(metrics).schemaStoreLoadCacheTime(anyLong(), eq(false));
+    assertEquals(2, store.getSchemaCache().size());
+    assertEquals(FIRST_SCHEMA, store.get("db1", "table1"));
+    assertEquals(SECOND_SCHEMA, store.get("db1", "table2"));
+  }
+
+  @Test
+  public void testLoadSchemaFromStaleSnapshot() throws Exception {
+    MysqlSchemaCacheSnapshot snapshot =
+        new MysqlSchemaCacheSnapshot(temporaryFolder.getRoot().toPath().resolve("test.json"));
+    MysqlSchemaStore store =
+        spy(
+            new MysqlSchemaStore(
+                "test",
+                "schema_store",
+                "schema_archive",
+                mock(Jdbi.class),
+                mock(MysqlSourceMetrics.class),
+                snapshot));
+    stubStoreQueries(store);
+
+    BinlogFilePos pos = new BinlogFilePos("mysql-binlog.001403", 400, 420, null, SERVER_UUID_1);
+    store.loadSchemaCacheUntil(pos);
+    assertEquals(4L, snapshot.read().get().getLastRowId());
+
+    // The store was compressed by another host, deleting the superseded row of table1
+    stubRowIdentities(store, ImmutableList.of(SECOND_SCHEMA, FOURTH_SCHEMA, FIFTH_SCHEMA));
+    pos = new BinlogFilePos("mysql-binlog.001444", 1100, 1420, null, SERVER_UUID_1);
+    store.loadSchemaCacheUntil(pos);
+    verify(store, never()).forEachSchemaBetween(anyLong(), anyLong(), any());
+    verify(store).forEachLatestSchemaUntil(eq(5L), any());
+
+    // The store was bootstrapped again, reusing the row ids of the snapshot
+    stubRowIdentities(
+        store,
+        ImmutableList.of(
+            FIRST_SCHEMA,
+            SECOND_SCHEMA,
+            THIRD_SCHEMA,
+            FOURTH_SCHEMA,
+            new MysqlTableSchema(
+                5,
+                "db2",
+                "table3",
+                SECOND_POS,
+                SERVER_UUID_1 + ":488",
+                "CREATE TABLE table3 (id INT)",
+                492000,
+                TABLE1_COLUMNS,
+                Collections.emptyMap())));
+    store.loadSchemaCacheUntil(pos);
+    verify(store, never()).forEachSchemaBetween(anyLong(), anyLong(), any());
+    verify(store, times(2)).forEachLatestSchemaUntil(eq(5L), any());
+  }
 }
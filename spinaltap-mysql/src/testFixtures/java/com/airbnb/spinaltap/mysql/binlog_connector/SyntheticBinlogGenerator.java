@@ -0,0 +1,393 @@
+/**
+ * Copyright 2019 Airbnb. Licensed under Apache-2.0. See License in the project root for license
+ * information.
+ */
+package com.airbnb.spinaltap.mysql.binlog_connector;
+
+import com.airbnb.spinaltap.Mutation;
+import com.airbnb.spinaltap.mysql.BinlogFilePos;
+import com.airbnb.spinaltap.mysql.DataSource;
+import com.airbnb.spinaltap.mysql.Transaction;
+import com.airbnb.spinaltap.mysql.mutation.MysqlDeleteMutation;
+import com.airbnb.spinaltap.mysql.mutation.MysqlInsertMutation;
+import com.airbnb.spinaltap.mysql.mutation.MysqlMutation;
+import com.airbnb.spinaltap.mysql.mutation.MysqlMutationMetadata;
+import com.airbnb.spinaltap.mysql.mutation.MysqlUpdateMutation;
+import com.airbnb.spinaltap.mysql.mutation.schema.Column;
+import com.airbnb.spinaltap.mysql.mutation.schema.ColumnDataType;
+import com.airbnb.spinaltap.mysql.mutation.schema.ColumnMetadata;
+import com.airbnb.spinaltap.mysql.mutation.schema.Row;
+import com.airbnb.spinaltap.mysql.mutation.schema.Table;
+import com.github.shyiko.mysql.binlog.event.DeleteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.GtidEventData;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.XidEventData;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Generates synthetic but realistic binlog data, i.e. tables of a given width, shyiko {@link
+ * Event}s as streamed by the binlog client, and the {@link MysqlMutation}s they map to. This is
+ * used to measure throughput without a MySQL server, ex: in benchmarks or replay sources. It is a
+ * test fixture, shared with the benchmarks, and is not part of the main jar.
+ *
+ * <p>Generated values are deterministic for a given seed, so that runs are comparable. Event
+ * timestamps are the current time, so that lag metrics behave as for a live source.
+ */
+public final class SyntheticBinlogGenerator {
+  public static final String DATABASE = "synthetic_db";
+
+  private static final long SERVER_ID = 1L;
+  private static final String SERVER_UUID = "a6f5a1b4-2e3c-11e9-8f2d-0242ac110002";
+  private static final String BINLOG_FILE_NAME = "mysql-bin-changelog.000001";
+  private static final int EVENT_LENGTH = 100;
+  private static final int STRING_LENGTH = 24;
+  private static final int BLOB_LENGTH = 64;
+  private static final long BASE_TIMESTAMP_MS = 1546300800000L;
+
+  /** Column types of generated tables, in order, after the primary key. */
+  private static final ColumnDataType[] COLUMN_TYPES = {
+    ColumnDataType.VARCHAR,
+    ColumnDataType.LONG,
+    ColumnDataType.TIMESTAMP,
+    ColumnDataType.LONGLONG,
+    ColumnDataType.DOUBLE,
+    ColumnDataType.BLOB
+  };
+
+  @Getter
+  private final DataSource dataSource = new DataSource("localhost", 3306, "synthetic_service");
+
+  private final Random random;
+  private long position = 4L;
+  private long transactionNumber = 1L;
+  private long xid = 1L;
+
+  public SyntheticBinlogGenerator(final long seed) {
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Creates a table with an auto-increment primary key and the given total number of columns.
+   *
+   * @param tableId the binlog table id
+   * @param name the table name
+   * @param columnCount the number of columns, including the primary key
+   */
+  public static Table createTable(final long tableId, final String name, final int columnCount) {
+    final List<ColumnMetadata> columns = new ArrayList<>(columnCount);
+
+    columns.add(new ColumnMetadata("id", ColumnDataType.LONGLONG, true, 0));
+    for (int position = 1; position < columnCount; position++) {
+      columns.add(
+          new ColumnMetadata(
+              "column_" + position,
+              COLUMN_TYPES[(position - 1) % COLUMN_TYPES.length],
+              false,
+              position));
+    }
+
+    return new Table(tableId, name, DATABASE, columns, ImmutableList.of("id"));
+  }
+
+  /** @return the DDL statement creating the given table. */
+  public static String createTableDDL(@NonNull final Table table) {
+    final StringBuilder ddl =
+        new StringBuilder("CREATE TABLE `")
+            .append(table.getDatabase())
+            .append("`.`")
+            .append(table.getName())
+            .append("` (");
+
+    for (ColumnMetadata column : table.getColumns().values()) {
+      ddl.append('`').append(column.getName()).append("` ").append(toSqlType(column));
+      if (column.isPrimaryKey()) {
+        ddl.append(" NOT NULL AUTO_INCREMENT");
+      }
+      ddl.append(", ");
+    }
+
+    return ddl.append("PRIMARY KEY (`id`)) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4").toString();
+  }
+
+  /** @return the column type codes of the given table, as in a TABLE_MAP event. */
+  public static byte[] getColumnTypeCodes(@NonNull final Table table) {
+    final byte[] codes = new byte[table.getColumns().size()];
+    int index = 0;
+    for (ColumnMetadata column : table.getColumns().values()) {
+      codes[index++] = (byte) column.getColType().getCode();
+    }
+    return codes;
+  }
+
+  /** @return a row of the given table with random values and the given primary key. */
+  public Serializable[] createRow(@NonNull final Table table, final long id) {
+    final Serializable[] row = new Serializable[table.getColumns().size()];
+    int index = 0;
+    for (ColumnMetadata column : table.getColumns().values()) {
+      row[index++] = column.isPrimaryKey() ? id : randomValue(column.getColType());
+    }
+    return row;
+  }
+
+  /**
+   * @return the events of a transaction applying the given mutation type to {@code rowCount} rows
+   *     of the given table, ex: GTID, BEGIN, TABLE_MAP, WRITE_ROWS and XID.
+   */
+  public List<Event> createTransaction(
+      @NonNull final Table table, @NonNull final Mutation.Type type, final int rowCount) {
+    return ImmutableList.of(
+        createGtidEvent(),
+        createQueryEvent("BEGIN"),
+        createTableMapEvent(table),
+        createRowsEvent(table, type, rowCount),
+        createXidEvent());
+  }
+
+  /**
+   * @return a factory of {@link BinlogReplaySource} readers of generated transactions on the given
+   *     tables, cycling through inserts, updates and deletes.
+   */
+  public BinlogReplaySource.EventReaderFactory createEventReaderFactory(
+      @NonNull final List<Table> tables, final int transactionCount, final int rowsPerEvent) {
+    final Mutation.Type[] types = {
+      Mutation.Type.INSERT, Mutation.Type.UPDATE, Mutation.Type.DELETE
+    };
+
+    return () ->
+        new BinlogReplaySource.EventReader() {
+          private final Deque<Event> events = new ArrayDeque<>();
+          private int transaction = 0;
+
+          @Override
+          public Event readEvent() {
+            if (events.isEmpty() && transaction < transactionCount) {
+              events.addAll(
+                  createTransaction(
+                      tables.get(transaction % tables.size()),
+                      types[transaction % types.length],
+                      rowsPerEvent));
+              transaction++;
+            }
+            return events.poll();
+          }
+
+          @Override
+          public void close() {}
+        };
+  }
+
+  public Event createGtidEvent() {
+    final GtidEventData data = new GtidEventData();
+    data.setGtid(String.format("%s:%d", SERVER_UUID, transactionNumber++));
+    return createEvent(EventType.GTID, data);
+  }
+
+  public Event createQueryEvent(final String sql) {
+    final QueryEventData data = new QueryEventData();
+    data.setDatabase(DATABASE);
+    data.setSql(sql);
+    return createEvent(EventType.QUERY, data);
+  }
+
+  public Event createTableMapEvent(@NonNull final Table table) {
+    final TableMapEventData data = new TableMapEventData();
+    data.setTableId(table.getId());
+    data.setDatabase(table.getDatabase());
+    data.setTable(table.getName());
+    data.setColumnTypes(getColumnTypeCodes(table));
+    return createEvent(EventType.TABLE_MAP, data);
+  }
+
+  public Event createRowsEvent(
+      @NonNull final Table table, @NonNull final Mutation.Type type, final int rowCount) {
+    final BitSet includedColumns = new BitSet();
+    includedColumns.set(0, table.getColumns().size());
+
+    switch (type) {
+      case INSERT:
+        final WriteRowsEventData writeData = new WriteRowsEventData();
+        writeData.setTableId(table.getId());
+        writeData.setIncludedColumns(includedColumns);
+        writeData.setRows(createRows(table, rowCount));
+        return createEvent(EventType.EXT_WRITE_ROWS, writeData);
+      case UPDATE:
+        final UpdateRowsEventData updateData = new UpdateRowsEventData();
+        updateData.setTableId(table.getId());
+        updateData.setIncludedColumnsBeforeUpdate(includedColumns);
+        updateData.setIncludedColumns(includedColumns);
+        updateData.setRows(createUpdatedRows(table, rowCount));
+        return createEvent(EventType.EXT_UPDATE_ROWS, updateData);
+      case DELETE:
+        final DeleteRowsEventData deleteData = new DeleteRowsEventData();
+        deleteData.setTableId(table.getId());
+        deleteData.setIncludedColumns(includedColumns);
+        deleteData.setRows(createRows(table, rowCount));
+        return createEvent(EventType.EXT_DELETE_ROWS, deleteData);
+      default:
+        throw new IllegalArgumentException("Unsupported mutation type " + type);
+    }
+  }
+
+  public Event createXidEvent() {
+    final XidEventData data = new XidEventData();
+    data.setXid(xid++);
+    return createEvent(EventType.XID, data);
+  }
+
+  /** @return {@code count} mutations of the given type on the given table. */
+  public List<MysqlMutation> createMutations(
+      @NonNull final Table table, @NonNull final Mutation.Type type, final int count) {
+    final List<MysqlMutation> mutations = new ArrayList<>(count);
+    final BinlogFilePos filePos = nextBinlogFilePos();
+    final Transaction transaction =
+        new Transaction(System.currentTimeMillis(), filePos.getPosition(), filePos);
+
+    for (int i = 0; i < count; i++) {
+      final MysqlMutationMetadata metadata =
+          new MysqlMutationMetadata(
+              dataSource,
+              filePos,
+              table,
+              SERVER_ID,
+              filePos.getPosition() + i,
+              System.currentTimeMillis(),
+              transaction,
+              transaction,
+              1L,
+              i);
+      final Row row = toRow(table, createRow(table, i));
+
+      switch (type) {
+        case INSERT:
+          mutations.add(new MysqlInsertMutation(metadata, row));
+          break;
+        case UPDATE:
+          mutations.add(new MysqlUpdateMutation(metadata, toRow(table, createRow(table, i)), row));
+          break;
+        case DELETE:
+          mutations.add(new MysqlDeleteMutation(metadata, row));
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported mutation type " + type);
+      }
+    }
+
+    return mutations;
+  }
+
+  public static Row toRow(@NonNull final Table table, @NonNull final Serializable[] values) {
+    final ImmutableMap.Builder<String, Column> columns = ImmutableMap.builder();
+    int index = 0;
+    for (ColumnMetadata column : table.getColumns().values()) {
+      columns.put(column.getName(), new Column(column, values[index++]));
+    }
+    return new Row(table, columns.build());
+  }
+
+  /** @return the binlog position of the next event, advancing the position. */
+  public BinlogFilePos nextBinlogFilePos() {
+    final long eventPosition = position;
+    position += EVENT_LENGTH;
+    return BinlogFilePos.builder()
+        .withFileName(BINLOG_FILE_NAME)
+        .withPosition(eventPosition)
+        .withNextPosition(position)
+        .withServerUUID(SERVER_UUID)
+        .withGtidSet(String.format("%s:1-%d", SERVER_UUID, transactionNumber))
+        .build();
+  }
+
+  private Event createEvent(final EventType type, final EventData data) {
+    final BinlogFilePos filePos = nextBinlogFilePos();
+    final EventHeaderV4 header = new EventHeaderV4();
+    header.setEventType(type);
+    header.setServerId(SERVER_ID);
+    header.setTimestamp(System.currentTimeMillis());
+    header.setEventLength(EVENT_LENGTH);
+    header.setNextPosition(filePos.getNextPosition());
+    return new Event(header, data);
+  }
+
+  private List<Serializable[]> createRows(final Table table, final int rowCount) {
+    final List<Serializable[]> rows = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      rows.add(createRow(table, random.nextInt(Integer.MAX_VALUE)));
+    }
+    return rows;
+  }
+
+  private List<Map.Entry<Serializable[], Serializable[]>> createUpdatedRows(
+      final Table table, final int rowCount) {
+    final List<Map.Entry<Serializable[], Serializable[]>> rows = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      final long id = random.nextInt(Integer.MAX_VALUE);
+      rows.add(Maps.immutableEntry(createRow(table, id), createRow(table, id)));
+    }
+    return rows;
+  }
+
+  private Serializable randomValue(final ColumnDataType type) {
+    switch (type) {
+      case VARCHAR:
+        return randomString();
+      case LONG:
+        return random.nextInt();
+      case LONGLONG:
+        return random.nextLong();
+      case DOUBLE:
+        return random.nextDouble();
+      case TIMESTAMP:
+        return new Timestamp(BASE_TIMESTAMP_MS + random.nextInt(Integer.MAX_VALUE));
+      case BLOB:
+        final byte[] bytes = new byte[BLOB_LENGTH];
+        random.nextBytes(bytes);
+        return bytes;
+      default:
+        throw new IllegalArgumentException("Unsupported column type " + type);
+    }
+  }
+
+  private String randomString() {
+    return new UUID(random.nextLong(), random.nextLong()).toString().substring(0, STRING_LENGTH);
+  }
+
+  private static String toSqlType(final ColumnMetadata column) {
+    switch (column.getColType()) {
+      case VARCHAR:
+        return "varchar(255)";
+      case LONG:
+        return "int(11)";
+      case LONGLONG:
+        return "bigint(20)";
+      case DOUBLE:
+        return "double";
+      case TIMESTAMP:
+        return "timestamp NULL DEFAULT NULL";
+      case BLOB:
+        return "blob";
+      default:
+        throw new IllegalArgumentException("Unsupported column type " + column.getColType());
+    }
+  }
+}
@@ -14,6 +14,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.google.common.collect.ImmutableMap;
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
@@ -32,24 +35,58 @@ public final class SpinalTapStandaloneApp {
     final SpinalTapStandaloneConfiguration config =
         objectMapper.readValue(new File(args[0]), SpinalTapStandaloneConfiguration.class);
 
-    final MysqlPipeFactory mysqlPipeFactory = createMysqlPipeFactory(config);
+    final MysqlSchemaManagerFactory schemaManagerFactory =
+        new MysqlSchemaManagerFactory(
+            config.getMysqlUser(),
+            config.getMysqlPassword(),
+            config.getMysqlSchemaStoreConfig(),
+            config.getTlsConfiguration());
+    final MysqlPipeFactory mysqlPipeFactory = createMysqlPipeFactory(config, schemaManagerFactory);
     final ZookeeperRepositoryFactory zkRepositoryFactory = createZookeeperRepositoryFactory(config);
-    final PipeManager pipeManager = new PipeManager();
-
-    for (MysqlConfiguration mysqlSourceConfig : config.getMysqlSources()) {
-      final String sourceName = mysqlSourceConfig.getName();
-      final String partitionName = String.format("%s_0", sourceName);
-      pipeManager.addPipes(
-          sourceName,
-          partitionName,
-          mysqlPipeFactory.createPipes(mysqlSourceConfig, partitionName, zkRepositoryFactory, 0));
-    }
+    final PipeManager pipeManager =
+        new PipeManager(config.getPipeStartParallelism(), config.getPipeStartRatePerSecond());
 
     Runtime.getRuntime().addShutdownHook(new Thread(pipeManager::stop));
+
+    // Warm up the schema caches for all sources at once, rather than sequentially on pipe start
+    schemaManagerFactory.preloadSchemaStores(
+        config
+            .getMysqlSources()
+            .stream()
+            .filter(MysqlConfiguration::isSchemaVersionEnabled)
+            .map(MysqlConfiguration::getName)
+            .collect(Collectors.toList()),
+        config.getPipeStartParallelism());
+
+    final List<CompletableFuture<Void>> futures =
+        config
+            .getMysqlSources()
+            .stream()
+            .map(
+                mysqlSourceConfig -> {
+                  final String sourceName = mysqlSourceConfig.getName();
+                  final String partitionName = String.format("%s_0", sourceName);
+                  return pipeManager
+                      .addPipesAsync(
+                          sourceName,
+                          partitionName,
+                          () ->
+                              mysqlPipeFactory.createPipes(
+                                  mysqlSourceConfig, partitionName, zkRepositoryFactory, 0))
+                      .exceptionally(
+                          ex -> {
+                            log.error("Failed to add pipes for source " + sourceName, ex);
+                            return null;
+                          });
+                })
+            .collect(Collectors.toList());
+
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
   }
 
   private static MysqlPipeFactory createMysqlPipeFactory(
-      final SpinalTapStandaloneConfiguration config) {
+      final SpinalTapStandaloneConfiguration config,
+      final MysqlSchemaManagerFactory schemaManagerFactory) {
     return new MysqlPipeFactory(
         config.getMysqlUser(),
         config.getMysqlPassword(),
@@ -57,11 +94,7 @@ public final class SpinalTapStandaloneApp {
         config.getTlsConfiguration(),
         ImmutableMap.of(
             "kafka", () -> new KafkaDestinationBuilder<>(config.getKafkaProducerConfig())),
-        new MysqlSchemaManagerFactory(
-            config.getMysqlUser(),
-            config.getMysqlPassword(),
-            config.getMysqlSchemaStoreConfig(),
-            config.getTlsConfiguration()),
+        schemaManagerFactory,
         new TaggedMetricRegistry());
   }
 
@@ -19,6 +19,8 @@ import lombok.Data;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class SpinalTapStandaloneConfiguration {
   public static final int DEFAULT_MYSQL_SERVER_ID = 65535;
+  public static final int DEFAULT_PIPE_START_PARALLELISM = 4;
+  public static final double DEFAULT_PIPE_START_RATE_PER_SECOND = 10.0;
 
   @NotNull
   @JsonProperty("zk-connection-string")
@@ -63,4 +65,12 @@ public class SpinalTapStandaloneConfiguration {
   @NotNull
   @JsonProperty("mysql-sources")
   private List<MysqlConfiguration> mysqlSources;
+
+  /** The maximum number of pipes created and started concurrently on startup. */
+  @JsonProperty("pipe-start-parallelism")
+  private int pipeStartParallelism = DEFAULT_PIPE_START_PARALLELISM;
+
+  /** The maximum number of pipes started per second, to avoid overwhelming the source hosts. */
+  @JsonProperty("pipe-start-rate-per-second")
+  private double pipeStartRatePerSecond = DEFAULT_PIPE_START_RATE_PER_SECOND;
 }